@@ -0,0 +1,13 @@
+package com.xinsite.common.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 只读标记注解：方法(或类的全部方法)中事务外的查询走数据源的只读副本，没有配置副本时走原数据源；
+ * 方法中的写操作(DBFunction)仍走主库，允许少量复制延迟的查询(列表、报表、导出)才使用
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadOnly {
+}
@@ -211,4 +211,12 @@ public class ReturnMap {
     public static String getReLoginFail(String msg) {
         return getReLoginFail(0, msg);
     }
+
+    //系统启动预热中，返回的信息
+    public static String getStarting() {
+        Map<String, Object> resultMap = new HashMap<String, Object>();
+        resultMap.put("success", false);
+        resultMap.put("error_msg", "系统启动中，请稍后再试！");
+        return GsonUtils.toJson(resultMap);
+    }
 }
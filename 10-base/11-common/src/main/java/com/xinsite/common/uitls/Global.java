@@ -19,17 +19,25 @@ public class Global {
     private static String location = "config/application.yml";
 
     /**
-     * 保存全局属性值
+     * 保存全局属性值，只读快照，重新加载时整体替换
      */
-    private static Properties props;
+    private static volatile Properties props;
 
+    /**
+     * 重新读取配置文件
+     */
+    public static void reload() {
+        props = YmlUtils.getYmlByFileName(location);
+    }
 
     /**
      * 获取配置
      */
     public static String getConfig(String key) {
+        Properties props = Global.props;
         if (props == null) {
             props = YmlUtils.getYmlByFileName(location);
+            Global.props = props;
         }
         String value = StringUtils.EMPTY;
         if (props != null) {
@@ -3,17 +3,35 @@ package com.xinsite.common.uitls;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.TimerTask;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * 异步任务管理器
+ * 异步任务管理器：定时用的调度线程 + 按任务类型分开的工作线程池(io、cpu、db)，慢任务只占用所在线程池；
+ * 线程池配置config.task_pool_io/cpu/db：线程数,队列大小,队列满时处理(caller_runs、abort、discard、discard_oldest)；
+ * 调度线程上不执行caller_runs(按abort处理并记录日志)，丢弃的submit任务会被取消；
+ * 带key的任务同一key按提交顺序逐个执行(如同一session的同步，后提交的不会被先提交的覆盖)
  */
 public class TaskUtils {
     private static final Logger logger = LoggerFactory.getLogger(TaskUtils.class);
 
+    /**
+     * 任务类型：io(网络、文件、外部接口)，cpu(计算)，db(数据库写入)
+     */
+    public enum Pool {
+        io, cpu, db
+    }
+
     /**
      * 当前对象实例
      */
@@ -25,9 +43,24 @@ public class TaskUtils {
     private final int OPERATE_DELAY_TIME = 10;
 
     /**
-     * 异步操作任务调度线程池
+     * 定时调度线程，只负责到时把任务交给工作线程池
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 工作线程池
+     */
+    private final Map<Pool, Worker> workers = new EnumMap<>(Pool.class);
+
+    /**
+     * 按key串行的任务：key -> 等待执行的任务(队首为正在执行的任务)
+     */
+    private final Map<String, Queue<Runnable>> serials = new HashMap<>();
+
+    /**
+     * 当前线程是否为调度线程(正在把到时的任务交给工作线程池)
      */
-    private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private static final ThreadLocal<Boolean> SCHEDULING = new ThreadLocal<>();
 
     /**
      * 获取当前对象实例 多线程安全单例模式(使用双重同步锁)
@@ -41,42 +74,340 @@ public class TaskUtils {
         return task;
     }
 
+    private TaskUtils() {
+        this(getInt("config.task_scheduler_size", 2), Global.getConfig("config.task_pool_io"),
+                Global.getConfig("config.task_pool_cpu"), Global.getConfig("config.task_pool_db"));
+    }
 
     /**
-     * 执行任务
+     * @param io、cpu、db 线程池配置：线程数,队列大小,队列满时处理
+     */
+    TaskUtils(int schedulerSize, String io, String cpu, String db) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        scheduler = Executors.newScheduledThreadPool(schedulerSize, new NamedThreadFactory("task-scheduler"));
+        workers.put(Pool.io, new Worker(Pool.io, io, Math.max(4, cpus * 2), 1000));
+        workers.put(Pool.cpu, new Worker(Pool.cpu, cpu, cpus, 1000));
+        workers.put(Pool.db, new Worker(Pool.db, db, 4, 2000));
+    }
+
+    /**
+     * 执行任务(io线程池，延迟10毫秒)
      *
      * @param task 任务
      */
     public void execute(TimerTask task) {
-        executor.schedule(task, OPERATE_DELAY_TIME, TimeUnit.MILLISECONDS);
+        schedule(Pool.io, task, OPERATE_DELAY_TIME, TimeUnit.MILLISECONDS);
     }
 
-    public static void main(String[] args) {
-        TaskUtils.getInstance().execute(new TimerTask() {
-            @Override
-            public void run() {
+    /**
+     * 执行任务(io线程池，延迟10毫秒)，同一key的任务按提交顺序逐个执行，不同key互不影响
+     *
+     * @param key  串行标识，如sessionId
+     * @param task 任务
+     */
+    public void execute(String key, TimerTask task) {
+        synchronized (serials) {
+            Queue<Runnable> queue = serials.get(key);
+            if (queue != null) {  //前面的任务还未执行完，排在后面由同一线程依次执行
+                queue.add(task);
+                return;
+            }
+            queue = new ArrayDeque<>();
+            queue.add(task);
+            serials.put(key, queue);
+        }
+        Serial serial = new Serial(Pool.io, key);
+        try {
+            scheduler.schedule(() -> {
+                SCHEDULING.set(Boolean.TRUE);
+                try {
+                    execute(serial.pool, serial);
+                } catch (RejectedExecutionException ex) {
+                    serial.drop();
+                    throw ex;
+                } finally {
+                    SCHEDULING.remove();
+                }
+            }, OPERATE_DELAY_TIME, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            serial.drop();
+            throw ex;
+        }
+    }
 
+    /**
+     * 在指定线程池执行任务
+     */
+    public void execute(Pool pool, Runnable task) {
+        workers.get(pool).execute(task);
+    }
+
+    /**
+     * 在指定线程池执行任务，返回结果；队列满被丢弃或线程池已停止时返回已取消的Future
+     */
+    public <T> Future<T> submit(Pool pool, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        workers.get(pool).execute(future);
+        return future;
+    }
+
+    /**
+     * 延迟后在指定线程池执行任务；线程池队列满时不在调度线程上执行，任务被拒绝时返回的Future抛出RejectedExecutionException
+     */
+    public ScheduledFuture<?> schedule(Pool pool, Runnable task, long delay, TimeUnit unit) {
+        return scheduler.schedule(() -> {
+            SCHEDULING.set(Boolean.TRUE);
+            try {
+                execute(pool, task);
+            } finally {
+                SCHEDULING.remove();
             }
-        });
+        }, delay, unit);
     }
 
     /**
-     * 停止任务线程池
+     * 各线程池的运行统计
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Worker worker : workers.values()) list.add(worker.getStats());
+        return list;
+    }
+
+    /**
+     * 停止任务线程池：不再接受新任务，等待已提交的任务执行完(最多config.task_shutdown_seconds秒，默认30)；
+     * 先等调度线程把延迟中的任务交给工作线程池，再停止工作线程池，否则延迟10毫秒的任务会被拒绝
      */
     public void shutdown() {
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
+        if (scheduler.isShutdown()) return;
+        scheduler.shutdown();
+        long deadline = System.currentTimeMillis() + getInt("config.task_shutdown_seconds", 30) * 1000L;
+        try {
+            if (!scheduler.awaitTermination(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+                List<Runnable> dropped = scheduler.shutdownNow();
+                for (Runnable runnable : dropped) ((Future<?>) runnable).cancel(false);
+                logger.info("Task scheduler did not terminate, {} delayed tasks dropped", dropped.size());
+            }
+            for (Worker worker : workers.values()) worker.executor.shutdown();
+            for (Worker worker : workers.values()) {
+                long wait = Math.max(deadline - System.currentTimeMillis(), 0);
+                if (!worker.executor.awaitTermination(wait, TimeUnit.MILLISECONDS)) {
+                    List<Runnable> dropped = worker.executor.shutdownNow();
+                    for (Runnable runnable : dropped) cancel(runnable);
+                    logger.info("Pool task-{} did not terminate, {} tasks dropped", worker.pool, dropped.size());
+                }
+            }
+        } catch (InterruptedException ie) {
+            for (Worker worker : workers.values()) worker.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 取消未执行的submit任务，避免Future.get()一直等待；丢弃串行任务时移除其key，后面的任务可以重新开始
+     */
+    private static void cancel(Runnable runnable) {
+        if (runnable instanceof Job && ((Job) runnable).task instanceof Future) {
+            ((Future<?>) ((Job) runnable).task).cancel(false);
+        } else if (runnable instanceof Job && ((Job) runnable).task instanceof Serial) {
+            ((Serial) ((Job) runnable).task).drop();
+        }
+    }
+
+    private static int getInt(String key, int defaultValue) {
+        try {
+            String value = Global.getConfig(key);
+            if (value != null && !value.trim().isEmpty()) return Integer.parseInt(value.trim());
+        } catch (Exception ex) {
+            logger.warn("Config {} error: {}", key, ex.toString());
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 工作线程池及统计(排队时间、执行时间)
+     */
+    private static class Worker {
+        final Pool pool;
+        final ThreadPoolExecutor executor;
+        final String rejected;
+
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong rejectedCount = new AtomicLong();
+        final AtomicLong queueNanos = new AtomicLong();
+        final AtomicLong runNanos = new AtomicLong();
+        final AtomicLong maxRunNanos = new AtomicLong();
+
+        Worker(Pool pool, String setting, int defaultThreads, int defaultQueue) {
+            this.pool = pool;
+            String[] items = setting == null ? new String[0] : setting.split(",");
+            int threads = parse(items, 0, defaultThreads);
+            int queue = parse(items, 1, defaultQueue);
+            this.rejected = items.length > 2 ? items[2].trim() : "caller_runs";
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queue), new NamedThreadFactory("task-" + pool), this::rejectedExecution);
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        private static int parse(String[] items, int index, int defaultValue) {
+            try {
+                if (items.length > index && !items[index].trim().isEmpty())
+                    return Math.max(Integer.parseInt(items[index].trim()), 1);
+            } catch (NumberFormatException ex) {
+                logger.warn("Task pool config error: {}", ex.toString());
+            }
+            return defaultValue;
+        }
+
+        /**
+         * 队列满或线程池已停止时的处理，丢弃的任务如果是Future则取消
+         */
+        private void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            rejectedCount.incrementAndGet();
+            if (executor.isShutdown()) {
+                logger.warn("Pool task-{} is shutdown, task rejected", pool);
+                cancel(runnable);
+            } else if ("abort".equals(rejected)) {
+                cancel(runnable);
+                throw new RejectedExecutionException("Pool task-" + pool + " queue is full");
+            } else if ("discard".equals(rejected)) {
+                cancel(runnable);
+            } else if ("discard_oldest".equals(rejected)) {
+                cancel(executor.getQueue().poll());
+                executor.execute(runnable);
+            } else if (SCHEDULING.get() != null) {
+                logger.warn("Pool task-{} queue is full, task rejected on scheduler thread", pool);
+                cancel(runnable);
+                throw new RejectedExecutionException("Pool task-" + pool + " queue is full");
+            } else {
+                runnable.run();
+            }
+        }
+
+        void execute(Runnable task) {
+            submitted.incrementAndGet();
+            executor.execute(new Job(this, task));
+        }
+
+        Map<String, Object> getStats() {
+            long done = completed.get();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("pool", pool.name());
+            map.put("threads", executor.getMaximumPoolSize());
+            map.put("active", executor.getActiveCount());
+            map.put("queue", executor.getQueue().size());
+            map.put("queue_capacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+            map.put("rejected_policy", rejected);
+            map.put("submitted", submitted.get());
+            map.put("completed", done);
+            map.put("failed", failed.get());
+            map.put("rejected", rejectedCount.get());
+            map.put("avg_queue_millis", done == 0 ? 0 : queueNanos.get() / done / 1000000.0);
+            map.put("avg_run_millis", done == 0 ? 0 : runNanos.get() / done / 1000000.0);
+            map.put("max_run_millis", maxRunNanos.get() / 1000000.0);
+            return map;
+        }
+    }
+
+    /**
+     * 工作线程池中的任务：记录排队时间、执行时间
+     */
+    private static class Job implements Runnable {
+        final Worker worker;
+        final Runnable task;
+        final long queued = System.nanoTime();
+
+        Job(Worker worker, Runnable task) {
+            this.worker = worker;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            worker.queueNanos.addAndGet(start - queued);
             try {
-                if (!executor.awaitTermination(120, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
-                    if (!executor.awaitTermination(120, TimeUnit.SECONDS)) {
-                        logger.info("Pool did not terminate");
+                task.run();
+            } catch (Throwable ex) {
+                worker.failed.incrementAndGet();
+                logger.error("Task in pool task-" + worker.pool + " failure. ", ex);
+            } finally {
+                long cost = System.nanoTime() - start;
+                worker.runNanos.addAndGet(cost);
+                worker.maxRunNanos.accumulateAndGet(cost, Math::max);
+                worker.completed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 依次执行同一key排队的任务，队列空时移除key
+     */
+    private class Serial implements Runnable {
+        final Pool pool;
+        final String key;
+
+        Serial(Pool pool, String key) {
+            this.pool = pool;
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Runnable task;
+                synchronized (serials) {
+                    task = serials.get(key).peek();
+                }
+                try {
+                    task.run();
+                } catch (Throwable ex) {
+                    workers.get(pool).failed.incrementAndGet();
+                    logger.error("Task [" + key + "] in pool task-" + pool + " failure. ", ex);
+                }
+                synchronized (serials) {
+                    Queue<Runnable> queue = serials.get(key);
+                    queue.poll();
+                    if (queue.isEmpty()) {
+                        serials.remove(key);
+                        return;
                     }
                 }
-            } catch (InterruptedException ie) {
-                executor.shutdownNow();
-                Thread.currentThread().interrupt();
             }
+            drop();
+        }
+
+        /**
+         * 未能执行(被拒绝、线程池强制停止)：丢弃排队的任务
+         */
+        void drop() {
+            Queue<Runnable> queue;
+            synchronized (serials) {
+                queue = serials.remove(key);
+            }
+            if (queue != null) logger.warn("Pool task-{} dropped {} tasks of [{}]", pool, queue.size(), key);
+        }
+    }
+
+    /**
+     * 线程命名：task-io-1
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger index = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 }
@@ -183,7 +183,8 @@ public class EncodeUtils {
 	private static Pattern p1 = Pattern.compile("<\\s*(script|link|style|iframe)\\s([\\s\\S]+?)<\\/\\s*\\1\\s*>", Pattern.CASE_INSENSITIVE);
 	private static Pattern p2 = Pattern.compile("\\s*on[a-z]+\\s*=\\s*(\"[^\"]+\"|'[^']+'|[^\\s]+)\\s*(?=>)", Pattern.CASE_INSENSITIVE);
 	private static Pattern p3 = Pattern.compile("\\s*(href|src)\\s*=\\s*(\"\\s*(javascript|vbscript):[^\"]+\"|'\\s*(javascript|vbscript):[^']+'|(javascript|vbscript):[^\\s]+)\\s*(?=>)", Pattern.CASE_INSENSITIVE);
-	private static Pattern p4 = Pattern.compile("epression\\((.|\\n)*\\);?", Pattern.CASE_INSENSITIVE);
+	// 同epression\((.|\n)*\);?，用字符类代替分组，长文本不会栈溢出
+	private static Pattern p4 = Pattern.compile("epression\\([^\\r\\u0085\\u2028\\u2029]*\\);?", Pattern.CASE_INSENSITIVE);
 	
 	/**
 	 * XSS 非法字符过滤
@@ -193,14 +194,18 @@ public class EncodeUtils {
 	 * 	3、\s*(href|src)\s*=\s*("\s*(javascript|vbscript):[^"]+"|'\s*(javascript|vbscript):[^']+'|(javascript|vbscript):[^\s]+)\s*(?=>) 
 	 * 	4、epression\((.|\n)*\);? 
 	 * 其它情况下：进行HTML4编码
+	 * 不含<、>、"及epression(的内容以上规则都不会改变，扫描一遍后直接返回(不去首尾空格时为原字符串)
 	 * @author www.xinsite.vip
 	 */
 	public static String xssFilter(String text) {
 		if (text != null){
-			String oriValue = StringUtils.trim(text), value = oriValue;
-			value = p1.matcher(value).replaceAll("");
-			value = p2.matcher(value).replaceAll("");
-			value = p3.matcher(value).replaceAll("");
+			String value = StringUtils.trim(text);
+			if (!isXssSuspect(value)) return value;
+			if (value.indexOf('<') >= 0) value = p1.matcher(value).replaceAll("");
+			if (value.indexOf('>') >= 0) {
+				value = p2.matcher(value).replaceAll("");
+				value = p3.matcher(value).replaceAll("");
+			}
 			value = p4.matcher(value).replaceAll("");
 			// 如果开始不是HTML，XML，JOSN格式，则再进行HTML的 "、<、> 转码。
 			if (!StringUtils.startsWithIgnoreCase(value, "<!--HTML-->") 	// HTML
@@ -209,15 +214,49 @@ public class EncodeUtils {
 					&& !(StringUtils.startsWith(value, "{") && StringUtils.endsWith(value, "}")) // JSON Object
 					&& !(StringUtils.startsWith(value, "[") && StringUtils.endsWith(value, "]")) // JSON Array
 				){
-				value = value.replaceAll("\"", "&quot;").replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+				value = escapeXssChars(value);
 			}
-//			if (logger.isInfoEnabled() && !value.equals(oriValue)){
+//			if (logger.isInfoEnabled() && !value.equals(text)){
 //				logger.info("xssFilter: {} to {}", text, value);
 //			}
 			return value;
 		}
 		return null;
 	}
+
+	/**
+	 * 是否可能被xssFilter规则改变：规则1需要<，规则2、3需要>，规则4需要epression(，转码只处理"、<、>
+	 */
+	private static boolean isXssSuspect(String value) {
+		for (int i = 0, len = value.length(); i < len; i++) {
+			char c = value.charAt(i);
+			if (c == '<' || c == '>' || c == '"') return true;
+			if (c == '(' && i >= 9 && value.regionMatches(true, i - 9, "epression", 0, 9)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * "、<、>一次扫描转码，没有时返回原字符串
+	 */
+	private static String escapeXssChars(String value) {
+		StringBuilder sb = null;
+		int last = 0;
+		for (int i = 0, len = value.length(); i < len; i++) {
+			String replace;
+			switch (value.charAt(i)) {
+				case '"': replace = "&quot;"; break;
+				case '<': replace = "&lt;"; break;
+				case '>': replace = "&gt;"; break;
+				default: continue;
+			}
+			if (sb == null) sb = new StringBuilder(len + 16);
+			sb.append(value, last, i).append(replace);
+			last = i + 1;
+		}
+		if (sb == null) return value;
+		return sb.append(value, last, value.length()).toString();
+	}
 	
 	// 预编译SQL过滤正则表达式
 	private static Pattern p5 = Pattern.compile("(?:')|(?:--)|(/\\*(?:.|[\\n\\r])*?\\*/)|(\\b(select|update|and|or|delete|insert|trancate|char|into|substr|ascii|declare|exec|count|master|into|drop|execute)\\b)", Pattern.CASE_INSENSITIVE);
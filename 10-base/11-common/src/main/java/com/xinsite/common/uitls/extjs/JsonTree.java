@@ -4,11 +4,17 @@ import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
-import java.util.Set;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
 
 /**
  * Extjs,TreePanel组件Json格式字符串
+ * 全部加载树先按pid分组建索引，再深度优先直接写出，节点数线性
  *
  * @author www.xinsite.vip
  * @version 2018-9-11
@@ -18,20 +24,14 @@ public class JsonTree {
      * 树形Json格式字符串,所有列加额外属性（逐层加载）
      */
     public static String getTreeJson(JsonArray array) {
-        JsonObject object = GsonUtils.getObject(array, 0);
-        Set<String> fields = object.keySet();
-        String[] attributes = fields.toArray(new String[fields.size()]);
-        return getTreeJson(array, "", attributes);
+        return getTreeJson(array, "", getFields(array));
     }
 
     /**
      * 树形Json格式字符串,所有列加额外属性（逐层加载）
      */
     public static String getTreeJson(JsonArray array, String otherAttr) {
-        JsonObject object = GsonUtils.getObject(array, 0);
-        Set<String> fields = object.keySet();
-        String[] attributes = fields.toArray(new String[fields.size()]);
-        return getTreeJson(array, otherAttr, attributes);
+        return getTreeJson(array, otherAttr, getFields(array));
     }
 
     /**
@@ -45,57 +45,52 @@ public class JsonTree {
      * 树形Json格式字符串,指定列加额外属性（逐层加载）
      */
     public static String getTreeJson(JsonArray array, String otherAttr, String[] fields) {
-        StringBuilder strResult = new StringBuilder("[");
-        for (int i = 0; i < array.size(); i++) {
-            JsonObject jsonObject = array.get(i).getAsJsonObject();
-            if (strResult.length() != 1) strResult.append(",");
-            strResult.append("{");
-
-            for (int j = 0; j < fields.length; j++) {
-                if (j != 0) strResult.append(",");
-                if (fields[j].equals("leaf"))
-                    strResult.append(String.format("%s:%s", fields[j], GsonUtils.tryParse(jsonObject, fields[j], true)));
-                else {
-                    String value = GsonUtils.tryParse(jsonObject, fields[j], "");
-                    value = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\r", "\\r").replace("\n", "\\n");
-                    strResult.append(String.format("%s:\"%s\"", fields[j], value));
-                }
+        StringWriter out = new StringWriter();
+        writeTreeJson(out, array, otherAttr, fields);
+        return out.toString();
+    }
+
+    /**
+     * 树形Json写入输出流,指定列加额外属性（逐层加载）
+     */
+    public static void writeTreeJson(Writer out, JsonArray array, String otherAttr, String[] fields) {
+        try {
+            JsonWriter writer = new JsonWriter(out);
+            String[][] others = parseAttr(otherAttr);
+            writer.beginArray();
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject jsonObject = array.get(i).getAsJsonObject();
+                writer.beginObject();
+                writeFields(writer, jsonObject, fields);
+                writeAttr(writer, others);
+                writer.endObject();
             }
-            if (!StringUtils.isEmpty(otherAttr)) strResult.append("," + otherAttr);
-            strResult.append("}");
+            writer.endArray();
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
-        strResult.append("]");
-        return strResult.toString();
     }
 
     /**
      *   Extjs树形组件(全部加载树)
      */
     public static String getTreeJsonByPid(JsonArray array, String pid_value) {
-        JsonObject object = GsonUtils.getObject(array, 0);
-        Set<String> sets = object.keySet();
-        String[] fields = sets.toArray(new String[sets.size()]);
-        return getTreeJson(array, "id", "pid", pid_value, "", "", fields);
+        return getTreeJson(array, "id", "pid", pid_value, "", "", getFields(array));
     }
 
     /**
      *   Extjs树形组件(全部加载树)
      */
     public static String getTreeJsonByPid(JsonArray array, String field_id, String pid_value) {
-        JsonObject object = GsonUtils.getObject(array, 0);
-        Set<String> sets = object.keySet();
-        String[] fields = sets.toArray(new String[sets.size()]);
-        return getTreeJson(array, field_id, "pid", pid_value, "", "", fields);
+        return getTreeJson(array, field_id, "pid", pid_value, "", "", getFields(array));
     }
 
     /**
      *   Extjs树形组件(全部加载树)
      */
     public static String getTreeJsonByPid(JsonArray array, String pid_value, String parentAttr, String childAttr) {
-        JsonObject object = GsonUtils.getObject(array, 0);
-        Set<String> sets = object.keySet();
-        String[] fields = sets.toArray(new String[sets.size()]);
-        return getTreeJson(array, "id", "pid", pid_value, parentAttr, childAttr, fields);
+        return getTreeJson(array, "id", "pid", pid_value, parentAttr, childAttr, getFields(array));
     }
 
     /**
@@ -109,37 +104,124 @@ public class JsonTree {
      *   Extjs树形组件(全部加载树)
      */
     public static String getTreeJson(JsonArray array, String field_id, String field_pid, String pid_value, String parentAttr, String childAttr, String[] fields) {
-        StringBuilder strResult = new StringBuilder("[");
-        JsonArray child = GsonUtils.getWhereArray(array, field_pid, pid_value);
-        for (int i = 0; i < child.size(); i++) {
-            JsonObject jsonObject = child.get(i).getAsJsonObject();
-            if (strResult.length() != 1) strResult.append(",");
-            strResult.append("{");
-
-            for (int j = 0; j < fields.length; j++) {
-                if (j != 0) strResult.append(",");
-                if (fields[j].equals("leaf"))
-                    strResult.append(String.format("%s:%s", fields[j], GsonUtils.tryParse(jsonObject, fields[j], true)));
-                else {
-                    String value = GsonUtils.tryParse(jsonObject, fields[j], "");
-                    value = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\r", "\\r").replace("\n", "\\n");
-                    strResult.append(String.format("%s:\"%s\"", fields[j], value));
+        StringWriter out = new StringWriter();
+        writeTreeJson(out, array, field_id, field_pid, pid_value, parentAttr, childAttr, fields);
+        return out.toString();
+    }
+
+    /**
+     *   Extjs树形组件(全部加载树)写入输出流，有子结点的加leaf:false、children及parentAttr，否则加leaf:true及childAttr
+     */
+    public static void writeTreeJson(Writer out, JsonArray array, String field_id, String field_pid, String pid_value, String parentAttr, String childAttr, String[] fields) {
+        Map<String, List<JsonObject>> index = new HashMap<>();
+        if (!StringUtils.isEmpty(field_pid)) {
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject jsonObject = array.get(i).getAsJsonObject();
+                String pid = GsonUtils.tryParse(jsonObject, field_pid, "");
+                index.computeIfAbsent(pid, k -> new ArrayList<>()).add(jsonObject);
+            }
+        }
+        String[][] parents = parseAttr(parentAttr);
+        String[][] childs = parseAttr(childAttr);
+        try {
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginArray();
+            //显式栈代替递归，层级很深时不会栈溢出；已写出的结点不再写出，pid成环时不会死循环
+            Set<JsonObject> written = Collections.newSetFromMap(new IdentityHashMap<>());
+            Deque<Iterator<JsonObject>> stack = new ArrayDeque<>();
+            stack.push(getChildren(index, pid_value).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<JsonObject> it = stack.peek();
+                if (!it.hasNext()) {
+                    stack.pop();
+                    writer.endArray();
+                    if (!stack.isEmpty()) {
+                        writeAttr(writer, parents);
+                        writer.endObject();
+                    }
+                    continue;
+                }
+                JsonObject jsonObject = it.next();
+                if (!written.add(jsonObject)) continue;
+                writer.beginObject();
+                writeFields(writer, jsonObject, fields);
+                List<JsonObject> nodes = getChildren(index, GsonUtils.tryParse(jsonObject, field_id, ""));
+                if (nodes.size() > 0) {
+                    writer.name("leaf").value(false);
+                    writer.name("children").beginArray();
+                    stack.push(nodes.iterator());
+                } else {
+                    writer.name("leaf").value(true);
+                    writeAttr(writer, childs);
+                    writer.endObject();
                 }
             }
-            pid_value = GsonUtils.tryParse(jsonObject, field_id, "");
-            JsonArray nodes = GsonUtils.getWhereArray(array, field_pid, pid_value);
-            if (nodes.size() > 0) {
-                strResult.append(",leaf:false");
-                strResult.append(",children:" + getTreeJson(array, field_id, field_pid, pid_value, parentAttr, childAttr, fields));
-                if (!StringUtils.isEmpty(parentAttr)) strResult.append("," + parentAttr);
-            } else {
-                strResult.append(",leaf:true");
-                if (!StringUtils.isEmpty(childAttr)) strResult.append("," + childAttr);
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static List<JsonObject> getChildren(Map<String, List<JsonObject>> index, String pid_value) {
+        if (StringUtils.isEmpty(pid_value)) return Collections.emptyList();
+        return index.getOrDefault(pid_value, Collections.emptyList());
+    }
+
+    private static String[] getFields(JsonArray array) {
+        Set<String> fields = GsonUtils.getObject(array, 0).keySet();
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    private static void writeFields(JsonWriter writer, JsonObject jsonObject, String[] fields) throws IOException {
+        for (String field : fields) {
+            if (field.equals("leaf"))
+                writer.name(field).value(GsonUtils.tryParse(jsonObject, field, true));
+            else
+                writer.name(field).value(GsonUtils.tryParse(jsonObject, field, ""));
+        }
+    }
+
+    /**
+     * 额外属性，如：iconCls:'jgjszIcon',expanded:true，解析成[名称,值]
+     */
+    private static String[][] parseAttr(String attr) {
+        if (StringUtils.isEmpty(attr)) return new String[0][];
+        List<String[]> list = new ArrayList<>();
+        int start = 0;
+        char quote = 0;
+        for (int i = 0; i <= attr.length(); i++) {
+            char c = i < attr.length() ? attr.charAt(i) : ',';
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ',' || i == attr.length()) {
+                String item = attr.substring(start, i).trim();
+                int pos = item.indexOf(':');
+                if (pos > 0) list.add(new String[]{unquote(item.substring(0, pos).trim()), item.substring(pos + 1).trim()});
+                start = i + 1;
             }
-            strResult.append("}");
         }
-        strResult.append("]");
-        return strResult.toString();
+        return list.toArray(new String[list.size()][]);
     }
 
+    private static void writeAttr(JsonWriter writer, String[][] attrs) throws IOException {
+        for (String[] attr : attrs) {
+            String value = attr[1];
+            writer.name(attr[0]);
+            if (value.length() > 1 && (value.charAt(0) == '\'' || value.charAt(0) == '"'))
+                writer.value(unquote(value));
+            else
+                writer.jsonValue(value);
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() > 1) {
+            char c = value.charAt(0);
+            if ((c == '\'' || c == '"') && value.charAt(value.length() - 1) == c)
+                return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
 }
@@ -0,0 +1,80 @@
+package com.xinsite.common.uitls.io;
+
+import com.xinsite.common.uitls.codec.EncodeUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 分片文件读写：预分配文件、按偏移写入分片(同时计算MD5)、整个文件MD5
+ * 各分片写入互不重叠的区域，可多个线程(请求)同时写同一个文件
+ */
+public class ChunkFileUtils {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 创建(或调整)指定长度的文件
+     */
+    public static void preallocate(File file, long length) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() != length) raf.setLength(length);
+        }
+    }
+
+    /**
+     * 从流中读取length个字节写到文件position处，返回这部分内容的MD5(小写16进制)；流中内容不足或超出时抛出EOFException
+     */
+    public static String writeChunk(File file, long position, InputStream in, long length) throws IOException {
+        MessageDigest digest = getMd5();
+        byte[] bytes = new byte[(int) Math.min(BUFFER_SIZE, Math.max(length, 1))];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            long remaining = length;
+            while (remaining > 0) {
+                int count = in.read(bytes, 0, (int) Math.min(bytes.length, remaining));
+                if (count < 0) throw new EOFException("分片内容不完整，缺少" + remaining + "字节");
+                digest.update(bytes, 0, count);
+                buffer.clear().limit(count);
+                while (buffer.hasRemaining()) position += channel.write(buffer, position);
+                remaining -= count;
+            }
+        }
+        if (in.read() != -1) throw new EOFException("分片内容超出" + length + "字节");
+        return EncodeUtils.encodeHex(digest.digest());
+    }
+
+    /**
+     * 整个文件的MD5(小写16进制)
+     */
+    public static String md5Hex(File file) throws IOException {
+        MessageDigest digest = getMd5();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return EncodeUtils.encodeHex(digest.digest());
+    }
+
+    private static MessageDigest getMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -30,17 +30,17 @@ public class ByteUtils {
             String type = unit_val.substring(len - 2, len).toUpperCase();
             int val = ValueUtils.tryParse(unit_val.substring(0, len - 2), 0);
             if (UnitEnum.B.toString().equals(type)) {
-                size = val * UNIT;
+                size = (long) val * UNIT;
             } else if (UnitEnum.KB.toString().equals(type)) {
-                size = val * UNIT;
+                size = (long) val * UNIT;
             } else if (UnitEnum.MB.toString().equals(type)) {
-                size = val * UNIT * UNIT;
+                size = (long) val * UNIT * UNIT;
             } else if (UnitEnum.GB.toString().equals(type)) {
-                size = val * UNIT * UNIT * UNIT;
+                size = (long) val * UNIT * UNIT * UNIT;
             } else if (UnitEnum.TB.toString().equals(type)) {
-                size = val * UNIT * UNIT * UNIT * UNIT;
+                size = (long) val * UNIT * UNIT * UNIT * UNIT;
             } else if (UnitEnum.PB.toString().equals(type)) {
-                size = val * UNIT * UNIT * UNIT * UNIT * UNIT;
+                size = (long) val * UNIT * UNIT * UNIT * UNIT * UNIT;
             }
         } else {
             size = ValueUtils.tryParse(unit_val, 0L);
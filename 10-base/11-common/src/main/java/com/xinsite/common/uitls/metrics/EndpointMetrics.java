@@ -0,0 +1,152 @@
+package com.xinsite.common.uitls.metrics;
+
+import com.xinsite.common.uitls.Global;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按请求处理方法(Controller.method)统计：执行中请求数、累计次数，及最近1、5、15分钟的吞吐量、耗时百分位、状态码类别、响应字节数
+ * 配置：config.request_stats(开关，默认开启)
+ */
+public class EndpointMetrics {
+
+    /**
+     * 统计的方法数上限，超出的计入"(其它)"
+     */
+    private static final int MAX_ENDPOINTS = 2000;
+    private static final String OTHER = "(其它)";
+
+    /**
+     * 某处理方法的统计
+     */
+    private static class Endpoint {
+        final String name;
+        final AtomicInteger inflight = new AtomicInteger();
+        volatile LongAdder total = new LongAdder();
+        volatile RollingRecorder recorder = new RollingRecorder();
+        volatile long lastTime;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private static volatile long resetTime = System.currentTimeMillis();
+
+    /**
+     * 是否统计，config.request_stats为false时关闭
+     */
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(Global.getConfig("config.request_stats"));
+    }
+
+    private static Endpoint getEndpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            if (endpoints.size() >= MAX_ENDPOINTS) name = OTHER;
+            endpoint = endpoints.computeIfAbsent(name, Endpoint::new);
+        }
+        return endpoint;
+    }
+
+    /**
+     * 请求开始，返回开始时间(纳秒)
+     */
+    public static long begin(String name) {
+        getEndpoint(name).inflight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求结束：耗时、状态码、响应字节数(未知时为-1)
+     */
+    public static void end(String name, long startNanos, int status, long bytes) {
+        Endpoint endpoint = getEndpoint(name);
+        endpoint.inflight.decrementAndGet();
+        endpoint.total.increment();
+        long now = System.currentTimeMillis();
+        endpoint.lastTime = now;
+        endpoint.recorder.record(now, (System.nanoTime() - startNanos) / 1000, status, bytes);
+    }
+
+    /**
+     * 各处理方法的统计，按最近minutes分钟的请求次数排序，取前top个
+     */
+    public static List<Map<String, Object>> getEndpoints(int minutes, int top) {
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            rows.add(new Object[]{endpoint, endpoint.recorder.snapshot(now, minutes)});
+        }
+        rows.sort((a, b) -> Long.compare(((RollingRecorder.Snapshot) b[1]).count, ((RollingRecorder.Snapshot) a[1]).count));
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Object[] row : rows) {
+            if (list.size() >= top) break;
+            Endpoint endpoint = (Endpoint) row[0];
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("endpoint", endpoint.name);
+            map.put("inflight", endpoint.inflight.get());
+            map.put("total", endpoint.total.sum());
+            map.putAll(((RollingRecorder.Snapshot) row[1]).toMap());
+            map.put("last_time", format(endpoint.lastTime));
+            list.add(map);
+        }
+        return list;
+    }
+
+    /**
+     * 全部请求最近1、5、15分钟的汇总
+     */
+    public static Map<String, Object> getSummary() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> map = new LinkedHashMap<>();
+        int inflight = 0;
+        long total = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            inflight += endpoint.inflight.get();
+            total += endpoint.total.sum();
+        }
+        map.put("enabled", isEnabled());
+        map.put("reset_time", format(resetTime));
+        map.put("endpoints", endpoints.size());
+        map.put("inflight", inflight);
+        map.put("total", total);
+        for (int minutes : new int[]{1, 5, 15}) {
+            RollingRecorder.Snapshot sum = new RollingRecorder.Snapshot(minutes);
+            for (Endpoint endpoint : endpoints.values()) merge(sum, endpoint.recorder.snapshot(now, minutes));
+            map.put("m" + minutes, sum.toMap());
+        }
+        return map;
+    }
+
+    private static void merge(RollingRecorder.Snapshot target, RollingRecorder.Snapshot source) {
+        target.count += source.count;
+        target.totalMicros += source.totalMicros;
+        target.bytes += source.bytes;
+        target.maxMicros = Math.max(target.maxMicros, source.maxMicros);
+        for (int i = 0; i < target.status.length; i++) target.status[i] += source.status[i];
+        for (int i = 0; i < target.buckets.length; i++) target.buckets[i] += source.buckets[i];
+    }
+
+    /**
+     * 清空统计(保留执行中请求数)
+     */
+    public static void reset() {
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.recorder = new RollingRecorder();
+            endpoint.total = new LongAdder();
+            endpoint.lastTime = 0;
+        }
+        resetTime = System.currentTimeMillis();
+    }
+
+    private static String format(long time) {
+        if (time == 0) return "";
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time));
+    }
+}
@@ -0,0 +1,76 @@
+package com.xinsite.common.uitls.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时分布(微秒)，对数线性分桶：8微秒以下每微秒一个桶，之后每个2的幂区间分8个桶，
+ * 百分位取所在桶的中点，相对误差不超过1/16；记录只做一次原子加，不加锁
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 35;   //2^35微秒约9.5小时，超出的计入最后一个桶
+
+    /**
+     * 桶数
+     */
+    public static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long micros) {
+        counts.incrementAndGet(index(micros));
+    }
+
+    /**
+     * 各桶计数累加到counts
+     */
+    public void addTo(long[] target) {
+        for (int i = 0; i < BUCKETS; i++) target[i] += counts.get(i);
+    }
+
+    /**
+     * 耗时所在的桶
+     */
+    public static int index(long micros) {
+        if (micros < SUB_COUNT) return micros < 0 ? 0 : (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * 桶的下限(包含)
+     */
+    public static long lowerBound(int index) {
+        if (index < SUB_COUNT) return index;
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        long sub = index % SUB_COUNT;
+        return (SUB_COUNT + sub) << (exponent - SUB_BITS);
+    }
+
+    /**
+     * 桶的宽度
+     */
+    public static long width(int index) {
+        if (index < SUB_COUNT) return 1;
+        return 1L << (index / SUB_COUNT - 1);
+    }
+
+    /**
+     * 百分位耗时(微秒)，p为0~1；没有记录时返回0
+     */
+    public static double percentile(long[] counts, double p) {
+        long total = 0;
+        for (long count : counts) total += count;
+        if (total == 0) return 0;
+        long rank = Math.max((long) Math.ceil(total * p), 1);
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i];
+            if (sum >= rank) return i < SUB_COUNT ? i : lowerBound(i) + width(i) / 2.0;
+        }
+        return lowerBound(counts.length - 1);
+    }
+}
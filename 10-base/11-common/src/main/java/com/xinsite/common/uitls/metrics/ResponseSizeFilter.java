@@ -0,0 +1,32 @@
+package com.xinsite.common.uitls.metrics;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求统计的响应字节数：用ResponseSizeWrapper包装响应，LogInterceptor按ResponseSizeWrapper.getBytes(request)取值；
+ * config.request_stats关闭时不包装
+ */
+public class ResponseSizeFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!EndpointMetrics.isEnabled() || !(response instanceof HttpServletResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ResponseSizeWrapper wrapper = new ResponseSizeWrapper((HttpServletResponse) response);
+        wrapper.bind(request);
+        chain.doFilter(request, wrapper);
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,162 @@
+package com.xinsite.common.uitls.metrics;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 统计实际写出的响应字节数(分块输出没有Content-Length)：输出流、字符输出仍由容器处理，只累加字节数；
+ * 字符按响应编码计算字节数
+ */
+public class ResponseSizeWrapper extends HttpServletResponseWrapper {
+    private static final String ATTRIBUTE = ResponseSizeWrapper.class.getName();
+
+    private long bytes;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public ResponseSizeWrapper(HttpServletResponse response) {
+        super(response);
+    }
+
+    /**
+     * 本次请求ResponseSizeFilter统计的响应字节数，未经过滤器时返回-1
+     */
+    public static long getBytes(ServletRequest request) {
+        Object wrapper = request.getAttribute(ATTRIBUTE);
+        return wrapper instanceof ResponseSizeWrapper ? ((ResponseSizeWrapper) wrapper).getBytes() : -1;
+    }
+
+    void bind(ServletRequest request) {
+        request.setAttribute(ATTRIBUTE, this);
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) outputStream = new CountingOutputStream(super.getOutputStream());
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            PrintWriter target = super.getWriter();  //先取容器的Writer，确定响应编码
+            writer = new PrintWriter(new CountingWriter(target, getCharset()), false);  //不另加缓冲，写出即计数
+        }
+        return writer;
+    }
+
+    private Charset getCharset() {
+        try {
+            return Charset.forName(getCharacterEncoding());
+        } catch (Exception ex) {
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+    private class CountingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream target;
+
+        CountingOutputStream(ServletOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            bytes += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            target.setWriteListener(listener);
+        }
+    }
+
+    private class CountingWriter extends Writer {
+        private final PrintWriter target;
+        private final Charset charset;
+        private final boolean utf8;
+
+        CountingWriter(PrintWriter target, Charset charset) {
+            this.target = target;
+            this.charset = charset;
+            this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            target.write(cbuf, off, len);
+            bytes += utf8 ? getUtf8Length(cbuf, off, len) : new String(cbuf, off, len).getBytes(charset).length;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            target.write(str, off, len);
+            bytes += utf8 ? getUtf8Length(str, off, len) : str.substring(off, off + len).getBytes(charset).length;
+        }
+
+        @Override
+        public void flush() {
+            target.flush();
+        }
+
+        @Override
+        public void close() {
+            target.close();
+        }
+    }
+
+    /**
+     * UTF-8字节数：代理对的两个字符各计2字节(合计4字节)，分在两次写出时同样正确
+     */
+    private static long getUtf8Length(CharSequence chars, int off, int len) {
+        long length = 0;
+        for (int i = off; i < off + len; i++) length += getUtf8Length(chars.charAt(i));
+        return length;
+    }
+
+    private static long getUtf8Length(char[] chars, int off, int len) {
+        long length = 0;
+        for (int i = off; i < off + len; i++) length += getUtf8Length(chars[i]);
+        return length;
+    }
+
+    private static int getUtf8Length(char c) {
+        if (c < 0x80) return 1;
+        if (c < 0x800 || Character.isSurrogate(c)) return 2;
+        return 3;
+    }
+}
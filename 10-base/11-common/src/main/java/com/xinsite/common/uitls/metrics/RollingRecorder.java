@@ -0,0 +1,132 @@
+package com.xinsite.common.uitls.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按分钟滚动的请求统计(次数、耗时分布、状态码类别、响应字节数)，保留最近16分钟，
+ * 可取最近1、5、15分钟的汇总；每分钟一个槽，跨分钟时用CAS替换旧槽，记录不加锁
+ */
+public class RollingRecorder {
+    private static final int SLOTS = 16;
+    private static final long MINUTE = 60 * 1000L;
+
+    private final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(SLOTS);
+
+    /**
+     * 一分钟的统计
+     */
+    private static class Slot {
+        final long minute;
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder count = new LongAdder();
+        final LongAdder totalMicros = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final AtomicLong maxMicros = new AtomicLong();
+        final AtomicLongArray status = new AtomicLongArray(5);  //1xx~5xx
+
+        Slot(long minute) {
+            this.minute = minute;
+        }
+    }
+
+    public void record(long micros, int status, long bytes) {
+        record(System.currentTimeMillis(), micros, status, bytes);
+    }
+
+    void record(long now, long micros, int status, long bytes) {
+        Slot slot = getSlot(now / MINUTE);
+        slot.histogram.record(micros);
+        slot.count.increment();
+        slot.totalMicros.add(micros);
+        if (bytes > 0) slot.bytes.add(bytes);
+        long max = slot.maxMicros.get();
+        while (micros > max && !slot.maxMicros.compareAndSet(max, micros)) max = slot.maxMicros.get();
+        int status_class = status / 100 - 1;
+        if (status_class >= 0 && status_class < 5) slot.status.incrementAndGet(status_class);
+    }
+
+    private Slot getSlot(long minute) {
+        int index = (int) (minute % SLOTS);
+        while (true) {
+            Slot slot = slots.get(index);
+            if (slot != null && slot.minute == minute) return slot;
+            if (slot != null && slot.minute > minute) return slot;  //时钟回拨时计入当前槽
+            Slot fresh = new Slot(minute);
+            if (slots.compareAndSet(index, slot, fresh)) return fresh;
+        }
+    }
+
+    /**
+     * 最近minutes分钟(含当前分钟)的汇总
+     */
+    public Snapshot snapshot(int minutes) {
+        return snapshot(System.currentTimeMillis(), minutes);
+    }
+
+    Snapshot snapshot(long now, int minutes) {
+        minutes = Math.max(1, Math.min(minutes, SLOTS - 1));
+        long current = now / MINUTE;
+        Snapshot snapshot = new Snapshot(minutes);
+        for (int i = 0; i < SLOTS; i++) {
+            Slot slot = slots.get(i);
+            if (slot == null || slot.minute <= current - minutes || slot.minute > current) continue;
+            slot.histogram.addTo(snapshot.buckets);
+            snapshot.count += slot.count.sum();
+            snapshot.totalMicros += slot.totalMicros.sum();
+            snapshot.bytes += slot.bytes.sum();
+            snapshot.maxMicros = Math.max(snapshot.maxMicros, slot.maxMicros.get());
+            for (int k = 0; k < 5; k++) snapshot.status[k] += slot.status.get(k);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 某时间段的汇总
+     */
+    public static class Snapshot {
+        public final int minutes;
+        public long count;
+        public long totalMicros;
+        public long maxMicros;
+        public long bytes;
+        public final long[] status = new long[5];
+        public final long[] buckets = new long[LatencyHistogram.BUCKETS];
+
+        Snapshot(int minutes) {
+            this.minutes = minutes;
+        }
+
+        /**
+         * 百分位耗时(毫秒)，不超过最大耗时
+         */
+        public double percentile(double p) {
+            return Math.min(LatencyHistogram.percentile(buckets, p), maxMicros) / 1000.0;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("rps", round(count / (minutes * 60.0)));
+            map.put("avg_ms", count == 0 ? 0 : round(totalMicros / 1000.0 / count));
+            map.put("p50_ms", round(percentile(0.50)));
+            map.put("p95_ms", round(percentile(0.95)));
+            map.put("p99_ms", round(percentile(0.99)));
+            map.put("max_ms", round(maxMicros / 1000.0));
+            map.put("2xx", status[1]);
+            map.put("3xx", status[2]);
+            map.put("4xx", status[3]);
+            map.put("5xx", status[4]);
+            map.put("bytes", bytes);
+            return map;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.xinsite.common.uitls.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 采样记录文件(只追加)：文件头(标识、指标数)，之后每条记录为时间(long) + 各指标值(double)；
+ * 启动时replay重放到SampleHistory，末尾不完整的记录(写入中断)截掉；
+ * 文件超过保留记录数的2倍时compact，只留保留时间内的记录
+ */
+public class SampleFile {
+    private static final int MAGIC = 0x58535331;   //XSS1
+    private static final int HEADER = 8;
+
+    private final File file;
+    private final int metrics;
+    private final int recordSize;
+    private final ByteBuffer buffer;
+    private FileChannel channel;
+
+    public interface Handler {
+        void record(long time, double[] values);
+    }
+
+    public SampleFile(File file, int metrics) {
+        this.file = file;
+        this.metrics = metrics;
+        this.recordSize = 8 + metrics * 8;
+        this.buffer = ByteBuffer.allocate(recordSize);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 打开文件并重放since之后的记录(handler为null时只打开)，返回重放条数；文件头不符(指标数变了)时重建文件
+     */
+    public synchronized int replay(long since, Handler handler) throws IOException {
+        close();
+        if (file.getParentFile() != null) file.getParentFile().mkdirs();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!checkHeader()) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(metrics);
+            header.flip();
+            channel.write(header, 0);
+            channel.position(HEADER);
+            return 0;
+        }
+        int replayed = 0;
+        long size = channel.size();
+        long end = HEADER + (size - HEADER) / recordSize * recordSize;
+        double[] values = new double[metrics];
+        ByteBuffer block = ByteBuffer.allocate(recordSize * 1024);
+        for (long position = HEADER; handler != null && position < end; ) {
+            block.clear();
+            block.limit((int) Math.min(block.capacity(), end - position));
+            while (block.hasRemaining()) {
+                if (channel.read(block, position + block.position()) < 0) break;
+            }
+            block.flip();
+            while (block.remaining() >= recordSize) {
+                long time = block.getLong();
+                for (int m = 0; m < metrics; m++) values[m] = block.getDouble();
+                if (time >= since) {
+                    handler.record(time, values);
+                    replayed++;
+                }
+            }
+            position += block.limit();
+        }
+        if (end < size) channel.truncate(end);
+        channel.position(end);
+        return replayed;
+    }
+
+    private boolean checkHeader() throws IOException {
+        if (channel.size() < HEADER) return false;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == metrics;
+    }
+
+    /**
+     * 追加一条记录(需先replay打开文件)
+     */
+    public synchronized void append(long time, double[] values) throws IOException {
+        if (channel == null) return;
+        buffer.clear();
+        buffer.putLong(time);
+        for (int m = 0; m < metrics; m++) buffer.putDouble(values[m]);
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**
+     * 记录数
+     */
+    public synchronized long size() throws IOException {
+        if (channel == null) return 0;
+        return (channel.size() - HEADER) / recordSize;
+    }
+
+    /**
+     * 重写文件，只保留since之后的记录
+     */
+    public synchronized void compact(long since) throws IOException {
+        if (channel == null) return;
+        File temp = new File(file.getPath() + ".tmp");
+        SampleFile target = new SampleFile(temp, metrics);
+        try {
+            Files.deleteIfExists(temp.toPath());
+            target.replay(0, null);
+            replay(since, (time, values) -> {
+                try {
+                    target.append(time, values);
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+        } catch (IllegalStateException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw ex;
+        } finally {
+            target.close();
+        }
+        close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        replay(0, null);
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.xinsite.common.uitls.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 定长环形缓冲的采样历史：每个分级(如10秒保留1小时、1分钟保留24小时、10分钟保留7天)按时间分桶，
+ * 每桶保存各指标的最小、平均、最大值；数组在创建时分配，记录时不再分配内存，占用内存固定
+ * 时间由调用者传入(毫秒)，便于重放历史记录
+ */
+public class SampleHistory {
+
+    private final String[] names;
+    private final Tier[] tiers;
+
+    /**
+     * 一个分级：capacity个桶，每桶resolution毫秒
+     */
+    private static class Tier {
+        final long resolution;
+        final int capacity;
+        final long[] start;     //桶的开始时间，-1为空
+        final int[] count;      //[桶 * 指标数 + 指标]，有效采样数
+        final double[] min;
+        final double[] max;
+        final double[] sum;
+
+        Tier(long resolution, int capacity, int metrics) {
+            this.resolution = resolution;
+            this.capacity = capacity;
+            this.start = new long[capacity];
+            this.count = new int[capacity * metrics];
+            this.min = new double[capacity * metrics];
+            this.max = new double[capacity * metrics];
+            this.sum = new double[capacity * metrics];
+            Arrays.fill(start, -1);
+        }
+
+        long span() {
+            return resolution * capacity;
+        }
+    }
+
+    /**
+     * @param names 指标名称
+     * @param tiers 分级，每项为{桶的秒数, 保留的秒数}，按桶从小到大
+     */
+    public SampleHistory(String[] names, long[][] tiers) {
+        this.names = names.clone();
+        this.tiers = new Tier[tiers.length];
+        for (int i = 0; i < tiers.length; i++) {
+            int capacity = (int) Math.max(tiers[i][1] / tiers[i][0], 1);
+            this.tiers[i] = new Tier(tiers[i][0] * 1000, capacity, names.length);
+        }
+    }
+
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * 记录一次采样，values与指标名称一一对应，NaN表示本次未取到
+     */
+    public synchronized void record(long time, double[] values) {
+        int metrics = names.length;
+        for (Tier tier : tiers) {
+            long bucket = time - Math.floorMod(time, tier.resolution);
+            int slot = (int) Math.floorMod(bucket / tier.resolution, (long) tier.capacity);
+            if (tier.start[slot] > bucket) continue;   //比桶内数据还早(时钟回拨)，丢弃
+            int base = slot * metrics;
+            if (tier.start[slot] != bucket) {
+                tier.start[slot] = bucket;
+                Arrays.fill(tier.count, base, base + metrics, 0);
+                Arrays.fill(tier.sum, base, base + metrics, 0);
+            }
+            for (int m = 0; m < metrics; m++) {
+                double value = values[m];
+                if (Double.isNaN(value)) continue;
+                int i = base + m;
+                if (tier.count[i] == 0 || value < tier.min[i]) tier.min[i] = value;
+                if (tier.count[i] == 0 || value > tier.max[i]) tier.max[i] = value;
+                tier.sum[i] += value;
+                tier.count[i]++;
+            }
+        }
+    }
+
+    /**
+     * 时间段[from, to]的历史，取能覆盖from的最细分级；now为当前时间
+     * 返回：resolution(秒)、time(桶开始时间)，及每个指标的min、avg、max数组(桶内没有该指标时为null)
+     */
+    public synchronized Map<String, Object> range(long now, long from, long to) {
+        Tier tier = tiers[tiers.length - 1];
+        for (Tier t : tiers) {
+            if (now - from <= t.span()) {
+                tier = t;
+                break;
+            }
+        }
+        int metrics = names.length;
+        List<Integer> slots = new ArrayList<>();
+        long first = from - Math.floorMod(from, tier.resolution);
+        long oldest = now - Math.floorMod(now, tier.resolution) - tier.span() + tier.resolution;
+        for (long bucket = Math.max(first, oldest); bucket <= to && bucket <= now; bucket += tier.resolution) {
+            int slot = (int) Math.floorMod(bucket / tier.resolution, (long) tier.capacity);
+            if (tier.start[slot] == bucket) slots.add(slot);
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("resolution", tier.resolution / 1000);
+        long[] time = new long[slots.size()];
+        for (int k = 0; k < time.length; k++) time[k] = tier.start[slots.get(k)];
+        map.put("time", time);
+        for (int m = 0; m < metrics; m++) {
+            Double[] min = new Double[time.length];
+            Double[] avg = new Double[time.length];
+            Double[] max = new Double[time.length];
+            for (int k = 0; k < time.length; k++) {
+                int i = slots.get(k) * metrics + m;
+                if (tier.count[i] == 0) continue;
+                min[k] = round(tier.min[i]);
+                max[k] = round(tier.max[i]);
+                avg[k] = round(tier.sum[i] / tier.count[i]);
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("min", min);
+            values.put("avg", avg);
+            values.put("max", max);
+            map.put(names[m], values);
+        }
+        return map;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -7,19 +7,29 @@ import com.xinsite.common.uitls.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.InputStream;
+
 /**
  * 获取地址类
+ * 优先查离线IP地址库(config.ip_db_file，未配置时取classpath:ipdb/ip_region.db)，没有地址库时查淘宝API
  */
 public class AddressUtils {
     private static final Logger log = LoggerFactory.getLogger(AddressUtils.class);
 
+    private static final String IP_DB_RESOURCE = "ipdb/ip_region.db";
+    private static volatile IpRegionDb ipRegionDb;
+    private static volatile boolean ipRegionLoaded = false;
+
     public static String getRealAddressByIP(String ip) {
         if (IpUtils.isLocalAddr(ip)) {
             return "内网IP";
         }
         String address;
         if (Global.getBoolean("config.is_enabled")) {
-            address = AddressUtils.getAddressByTaoBao(ip);
+            IpRegionDb db = AddressUtils.getIpRegionDb();
+            if (db != null) address = db.search(ip);
+            else address = AddressUtils.getAddressByTaoBao(ip);
         } else {
             return "XX XX";
         }
@@ -27,6 +37,38 @@ public class AddressUtils {
         return address;
     }
 
+    /**
+     * 离线IP地址库，只载入一次，没有地址库时返回null
+     */
+    public static IpRegionDb getIpRegionDb() {
+        if (!ipRegionLoaded) {
+            synchronized (AddressUtils.class) {
+                if (!ipRegionLoaded) {
+                    ipRegionDb = AddressUtils.loadIpRegionDb();
+                    ipRegionLoaded = true;
+                }
+            }
+        }
+        return ipRegionDb;
+    }
+
+    private static IpRegionDb loadIpRegionDb() {
+        String path = Global.getConfig("config.ip_db_file");
+        try {
+            if (StringUtils.isNotEmpty(path)) {
+                File file = new File(path);
+                if (file.isFile()) return IpRegionDb.open(file);
+                log.warn("IP地址库文件不存在 {}", path);
+            }
+            try (InputStream in = AddressUtils.class.getClassLoader().getResourceAsStream(IP_DB_RESOURCE)) {
+                if (in != null) return IpRegionDb.load(in);
+            }
+        } catch (Exception e) {
+            log.error("IP地址库载入异常 {}", e.toString());
+        }
+        return null;
+    }
+
     /**
      * 地址查询：淘宝API接口
      */
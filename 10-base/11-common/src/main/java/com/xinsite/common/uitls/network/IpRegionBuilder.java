@@ -0,0 +1,145 @@
+package com.xinsite.common.uitls.network;
+
+import com.xinsite.common.uitls.lang.StringUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 由CSV生成离线IP地址库文件(IpRegionDb)
+ * CSV每行：起始IP,结束IP,地区(地区中可以有逗号)，空行及#开头的行忽略；IPv4、IPv6可以混排，同类IP段不能重叠
+ * 用法：java -cp 11-common.jar com.xinsite.common.uitls.network.IpRegionBuilder ip.csv ip_region.db
+ */
+public class IpRegionBuilder {
+
+    private static class Range {
+        final byte[] start;
+        final byte[] end;
+        final int region;
+
+        Range(byte[] start, byte[] end, int region) {
+            this.start = start;
+            this.end = end;
+            this.region = region;
+        }
+    }
+
+    private static final Comparator<Range> START_ORDER = (a, b) -> compare(a.start, b.start);
+
+    /**
+     * 读取CSV生成地址库文件，返回IP段数
+     */
+    public static int build(File csv, File out) throws IOException {
+        List<Range> v4 = new ArrayList<>();
+        List<Range> v6 = new ArrayList<>();
+        Map<String, Integer> regions = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8))) {
+            String line;
+            int line_num = 0;
+            while ((line = reader.readLine()) != null) {
+                line_num++;
+                if (line_num == 1 && line.startsWith("\uFEFF")) line = line.substring(1);
+                if (StringUtils.isBlank(line) || line.startsWith("#")) continue;
+                String[] cols = line.split(",", 3);
+                if (cols.length < 3) throw new IOException("第" + line_num + "行格式错误：" + line);
+                byte[] start = toAddress(cols[0].trim());
+                byte[] end = toAddress(cols[1].trim());
+                if (start == null || end == null || start.length != end.length || compare(start, end) > 0)
+                    throw new IOException("第" + line_num + "行IP段错误：" + line);
+                String region = cols[2].trim();
+                if (region.getBytes(StandardCharsets.UTF_8).length > 0xFFFF)
+                    throw new IOException("第" + line_num + "行地区过长");
+                Integer index = regions.get(region);
+                if (index == null) {
+                    index = regions.size();
+                    regions.put(region, index);
+                }
+                (start.length == 4 ? v4 : v6).add(new Range(start, end, index));
+            }
+        }
+        check(v4);
+        check(v6);
+        write(out, v4, v6, regions.keySet());
+        return v4.size() + v6.size();
+    }
+
+    private static byte[] toAddress(String ip) {
+        byte[] addr = IpUtils.textToNumericFormatV4(ip);
+        if (addr == null && ip.indexOf(':') >= 0) addr = IpUtils.textToNumericFormatV6(ip);
+        return addr;
+    }
+
+    /**
+     * 按起始地址排序，检查是否重叠
+     */
+    private static void check(List<Range> ranges) throws IOException {
+        ranges.sort(START_ORDER);
+        for (int i = 1; i < ranges.size(); i++) {
+            if (compare(ranges.get(i - 1).end, ranges.get(i).start) >= 0)
+                throw new IOException("IP段重叠：" + toText(ranges.get(i - 1).start) + " - " + toText(ranges.get(i).start));
+        }
+    }
+
+    private static void write(File out, List<Range> v4, List<Range> v6, Collection<String> regions) throws IOException {
+        ByteArrayOutputStream region_bytes = new ByteArrayOutputStream();
+        DataOutputStream region_out = new DataOutputStream(region_bytes);
+        for (String region : regions) {
+            byte[] bytes = region.getBytes(StandardCharsets.UTF_8);
+            region_out.writeShort(bytes.length);
+            region_out.write(bytes);
+        }
+        int region_offset = IpRegionDb.HEADER_SIZE + v4.size() * IpRegionDb.V4_ENTRY + v6.size() * IpRegionDb.V6_ENTRY;
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out)))) {
+            dos.writeInt(IpRegionDb.MAGIC);
+            dos.writeInt(IpRegionDb.VERSION);
+            dos.writeInt(v4.size());
+            dos.writeInt(v6.size());
+            dos.writeInt(regions.size());
+            dos.writeInt(region_offset);
+            for (Range range : v4) {
+                dos.write(range.start);
+                dos.write(range.end);
+                dos.writeInt(range.region);
+            }
+            for (Range range : v6) {
+                dos.write(range.start);
+                dos.write(range.end);
+                dos.writeInt(range.region);
+            }
+            region_bytes.writeTo(dos);
+        }
+    }
+
+    /**
+     * 无符号逐字节比较
+     */
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int c = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    private static String toText(byte[] addr) {
+        if (addr.length == 4) return (addr[0] & 0xFF) + "." + (addr[1] & 0xFF) + "." + (addr[2] & 0xFF) + "." + (addr[3] & 0xFF);
+        StringBuilder sb = new StringBuilder();
+        ByteBuffer bb = ByteBuffer.wrap(addr);
+        for (int i = 0; i < 8; i++) {
+            if (i > 0) sb.append(':');
+            sb.append(Integer.toHexString(bb.getShort() & 0xFFFF));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("用法：IpRegionBuilder <ip.csv> <ip_region.db>");
+            return;
+        }
+        int count = build(new File(args[0]), new File(args[1]));
+        System.out.println("已生成" + args[1] + "，IP段数：" + count);
+    }
+}
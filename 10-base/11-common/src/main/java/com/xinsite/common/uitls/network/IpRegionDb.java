@@ -0,0 +1,147 @@
+package com.xinsite.common.uitls.network;
+
+import com.xinsite.common.uitls.lang.StringUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 离线IP地址库：IP段(起始、结束)按起始地址排序存放，二分查找所在段的地区，支持IPv4、IPv6；
+ * 文件直接内存映射，地区名称载入时解码一次；查询只读不加锁，不缓存(二分查找与解析IP的耗时相当于查一次缓存)
+ * 文件格式(大端)：
+ * 1、头部：XIPD、版本、IPv4段数、IPv6段数、地区数、地区区域偏移(各4字节)
+ * 2、IPv4段：起始(4)、结束(4)、地区序号(4)
+ * 3、IPv6段：起始(16)、结束(16)、地区序号(4)
+ * 4、地区：长度(2)+UTF-8内容
+ * 由IpRegionBuilder从CSV生成
+ */
+public class IpRegionDb {
+    static final int MAGIC = 0x58495044; //XIPD
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int V4_ENTRY = 12;
+    static final int V6_ENTRY = 36;
+
+    private final ByteBuffer buffer;
+    private final int v4Count;
+    private final int v6Count;
+    private final int v6Offset;
+    private final String[] regions;
+
+    private IpRegionDb(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("不是IP地址库文件");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("IP地址库版本不支持：" + buffer.getInt(4));
+        v4Count = buffer.getInt(8);
+        v6Count = buffer.getInt(12);
+        int regionCount = buffer.getInt(16);
+        int position = buffer.getInt(20);
+        v6Offset = HEADER_SIZE + v4Count * V4_ENTRY;
+        regions = new String[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            for (int j = 0; j < length; j++) bytes[j] = buffer.get(position + 2 + j);
+            regions[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += 2 + length;
+        }
+    }
+
+    /**
+     * 打开地址库文件(内存映射)
+     */
+    public static IpRegionDb open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return new IpRegionDb(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 从流中读取地址库(如jar包中的资源，不能映射时整体读入内存)
+     */
+    public static IpRegionDb load(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bytes = new byte[8192];
+        int length;
+        while ((length = in.read(bytes)) != -1) out.write(bytes, 0, length);
+        return new IpRegionDb(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    public int getV4Count() {
+        return v4Count;
+    }
+
+    public int getV6Count() {
+        return v6Count;
+    }
+
+    /**
+     * 查询IP所在地区，不是IP地址或者不在地址库中返回null
+     */
+    public String search(String ip) {
+        if (StringUtils.isEmpty(ip)) return null;
+        ip = ip.trim();
+        byte[] addr = IpUtils.textToNumericFormatV4(ip);
+        if (addr == null && ip.indexOf(':') >= 0) addr = IpUtils.textToNumericFormatV6(ip);
+        return addr != null ? search(addr) : null;
+    }
+
+    /**
+     * 查询IP(4字节或16字节)所在地区
+     */
+    public String search(byte[] addr) {
+        if (addr.length == 4) return searchV4(ByteBuffer.wrap(addr).getInt());
+        if (addr.length == 16) {
+            ByteBuffer bb = ByteBuffer.wrap(addr);
+            return searchV6(bb.getLong(0), bb.getLong(8));
+        }
+        return null;
+    }
+
+    /**
+     * 起始地址不大于ip的最后一段，再判断是否在段内
+     */
+    private String searchV4(int ip) {
+        int low = 0, high = v4Count - 1, found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Integer.compareUnsigned(buffer.getInt(HEADER_SIZE + mid * V4_ENTRY), ip) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) return null;
+        int position = HEADER_SIZE + found * V4_ENTRY;
+        if (Integer.compareUnsigned(ip, buffer.getInt(position + 4)) > 0) return null;
+        return regions[buffer.getInt(position + 8)];
+    }
+
+    private String searchV6(long hi, long lo) {
+        int low = 0, high = v6Count - 1, found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = v6Offset + mid * V6_ENTRY;
+            if (compare(buffer.getLong(position), buffer.getLong(position + 8), hi, lo) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) return null;
+        int position = v6Offset + found * V6_ENTRY;
+        if (compare(hi, lo, buffer.getLong(position + 16), buffer.getLong(position + 24)) > 0) return null;
+        return regions[buffer.getInt(position + 32)];
+    }
+
+    static int compare(long hi1, long lo1, long hi2, long lo2) {
+        int c = Long.compareUnsigned(hi1, hi2);
+        return c != 0 ? c : Long.compareUnsigned(lo1, lo2);
+    }
+}
@@ -249,6 +249,7 @@ public class IpUtils {
                     arrayOfByte1[(i2++)] = arrayOfByte3[i7];
                 }
                 j = 0;
+                break;  //内嵌的IPv4已整体解析
             } else {
                 return null;
             }
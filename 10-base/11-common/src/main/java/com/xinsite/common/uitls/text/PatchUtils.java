@@ -0,0 +1,48 @@
+package com.xinsite.common.uitls.text;
+
+import java.util.LinkedList;
+
+/**
+ * 文本增量存储：用DiffMatchPatch生成与上一版本的补丁文本(带patch:前缀)，
+ * 还原时在上一版本完整内容上应用补丁
+ */
+public class PatchUtils {
+    /**
+     * 补丁内容前缀，完整内容(json)不会以此开头
+     */
+    public static final String PATCH_PREFIX = "patch:";
+
+    /**
+     * 是否补丁内容
+     */
+    public static boolean isPatch(String text) {
+        return text != null && text.startsWith(PATCH_PREFIX);
+    }
+
+    /**
+     * 生成从text1到text2的补丁，补丁不小于text2一半或者不能准确还原时返回null(应存完整内容)
+     */
+    public static String makePatch(String text1, String text2) {
+        if (text1 == null || text2 == null) return null;
+        DiffMatchPatch dmp = new DiffMatchPatch();
+        String patch = PATCH_PREFIX + dmp.patch_toText(dmp.patch_make(text1, text2));
+        if (patch.length() * 2 >= text2.length()) return null;
+        if (!text2.equals(applyPatch(text1, patch))) return null;
+        return patch;
+    }
+
+    /**
+     * 在text上应用补丁，不是补丁时原样返回补丁内容(完整内容)，补丁未全部应用时返回null
+     */
+    public static String applyPatch(String text, String patch) {
+        if (!isPatch(patch)) return patch;
+        if (text == null) return null;
+        DiffMatchPatch dmp = new DiffMatchPatch();
+        LinkedList<DiffMatchPatch.Patch> patches = new LinkedList<>(dmp.patch_fromText(patch.substring(PATCH_PREFIX.length())));
+        Object[] result = dmp.patch_apply(patches, text);
+        for (boolean applied : (boolean[]) result[1]) {
+            if (!applied) return null;
+        }
+        return (String) result[0];
+    }
+}
@@ -0,0 +1,255 @@
+package com.xinsite.common.uitls.web.http;
+
+import com.xinsite.common.uitls.lang.StringUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 文件下载：支持断点续传(Range单段、多段，206/416)、缓存验证(ETag、Last-Modified，304)
+ * 文件内容用FileChannel.transferTo输出；Tomcat支持sendfile时交给容器零拷贝发送
+ */
+public class FileDownloadUtils {
+
+    /**
+     * 多段请求最多段数，超过时按整个文件返回
+     */
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * 使用Tomcat sendfile的最小长度(同Tomcat DefaultServlet默认的sendfileSize)
+     */
+    private static final long SENDFILE_SIZE = 48 * 1024;
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 文件中的一段，start、end都包含
+     */
+    public static class Range {
+        public final long start;
+        public final long end;
+
+        public Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * 输出文件，调用前设置好Content-Disposition等头；contentType为空时按文件扩展名取
+     */
+    public static void download(HttpServletRequest request, HttpServletResponse response, File file, String contentType) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified() / 1000 * 1000;  //HTTP日期精确到秒
+        String etag = getEtag(length, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        ServletUtils.setEtag(response, etag);
+        ServletUtils.setLastModifiedHeader(response, lastModified);
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (StringUtils.isEmpty(contentType)) contentType = request.getServletContext().getMimeType(file.getName());
+        if (StringUtils.isEmpty(contentType)) contentType = "application/octet-stream";
+
+        List<Range> ranges = null;
+        if (isIfRangeMatched(request, etag, lastModified)) {
+            ranges = parseRanges(request.getHeader(HttpHeaders.RANGE), length);
+        }
+        if (ranges == null) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            sendFile(request, response, file, 0, length);
+        } else if (ranges.isEmpty()) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        } else if (ranges.size() == 1) {
+            Range range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, getContentRange(range, length));
+            response.setContentType(contentType);
+            response.setContentLengthLong(range.length());
+            sendFile(request, response, file, range.start, range.length());
+        } else {
+            sendRanges(response, file, ranges, length, contentType);
+        }
+    }
+
+    /**
+     * 强ETag：文件长度-最后修改时间(16进制)
+     */
+    public static String getEtag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * If-None-Match(弱比较)优先，没有时比较If-Modified-Since
+     */
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String if_none_match = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (if_none_match != null) return matchEtag(if_none_match, etag, true);
+        long if_modified_since = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return if_modified_since != -1 && lastModified <= if_modified_since;
+    }
+
+    /**
+     * 没有If-Range，或者If-Range(强ETag或日期)与文件一致时，Range才有效
+     */
+    private static boolean isIfRangeMatched(HttpServletRequest request, String etag, long lastModified) {
+        String if_range = request.getHeader(HttpHeaders.IF_RANGE);
+        if (if_range == null) return true;
+        if_range = if_range.trim();
+        if (if_range.startsWith("\"") || if_range.startsWith("W/")) return matchEtag(if_range, etag, false);
+        long date = getDateHeader(request, HttpHeaders.IF_RANGE);
+        return date != -1 && lastModified <= date;
+    }
+
+    private static boolean matchEtag(String header, String etag, boolean weak) {
+        for (String item : header.split(",")) {
+            item = item.trim();
+            if (item.equals("*")) return true;
+            if (item.startsWith("W/")) {
+                if (!weak) continue;
+                item = item.substring(2);
+            }
+            if (item.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析Range头：没有、格式不对、不是bytes或段数过多时返回null(返回整个文件)；都不能满足时返回空列表(416)
+     */
+    public static List<Range> parseRanges(String header, long length) {
+        if (StringUtils.isEmpty(header)) return null;
+        header = header.trim();
+        if (!header.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) return null;
+        List<Range> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            spec = spec.trim();
+            int index = spec.indexOf('-');
+            if (index < 0) return null;
+            String first = spec.substring(0, index).trim();
+            String last = spec.substring(index + 1).trim();
+            long start, end;
+            try {
+                if (first.isEmpty()) {
+                    //-N：最后N个字节
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) return null;
+                    if (suffix == 0 || length == 0) continue;
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) return null;
+                    if (start >= length) continue;
+                    end = Math.min(end, length - 1);
+                }
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+            ranges.add(new Range(start, end));
+        }
+        return ranges;
+    }
+
+    private static String getContentRange(Range range, long length) {
+        return "bytes " + range.start + "-" + range.end + "/" + length;
+    }
+
+    /**
+     * 输出文件的一段：Tomcat支持sendfile时由容器发送，否则transferTo到响应流
+     */
+    private static void sendFile(HttpServletRequest request, HttpServletResponse response, File file, long start, long count) throws IOException {
+        if (count >= SENDFILE_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            transfer(channel, start, count, Channels.newChannel(response.getOutputStream()));
+        }
+        response.flushBuffer();
+    }
+
+    /**
+     * multipart/byteranges：各段前输出分隔及段头，Content-Length按全部内容计算
+     */
+    private static void sendRanges(HttpServletResponse response, File file, List<Range> ranges, long length, String contentType) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> heads = new ArrayList<>(ranges.size());
+        long content_length = 0;
+        for (Range range : ranges) {
+            String head = "\r\n--" + boundary + "\r\n" +
+                    HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n" +
+                    HttpHeaders.CONTENT_RANGE + ": " + getContentRange(range, length) + "\r\n\r\n";
+            byte[] bytes = head.getBytes(StandardCharsets.ISO_8859_1);
+            heads.add(bytes);
+            content_length += bytes.length + range.length();
+        }
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        content_length += tail.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(content_length);
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(heads.get(i));
+                transfer(channel, ranges.get(i).start, ranges.get(i).length(), target);
+            }
+        }
+        out.write(tail);
+        response.flushBuffer();
+    }
+
+    /**
+     * 从文件position开始输出count个字节，文件变短时抛出EOFException
+     */
+    public static void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        while (count > 0) {
+            long bytes = channel.transferTo(position, count, target);
+            if (bytes <= 0) {
+                if (position >= channel.size()) throw new EOFException("文件长度已变化：" + channel.size());
+                continue;
+            }
+            position += bytes;
+            count -= bytes;
+        }
+    }
+}
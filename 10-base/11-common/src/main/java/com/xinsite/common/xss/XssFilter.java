@@ -20,6 +20,11 @@ public class XssFilter implements Filter {
      */
     public List<String> excludes = new ArrayList<>();
 
+    /**
+     * 排除链接正则(init时预编译)
+     */
+    private List<Pattern> excludePatterns = new ArrayList<>();
+
     /**
      * xss过滤开关
      */
@@ -33,6 +38,7 @@ public class XssFilter implements Filter {
             String[] url = tempExcludes.split(",");
             for (int i = 0; url != null && i < url.length; i++) {
                 excludes.add(url[i]);
+                excludePatterns.add(Pattern.compile("^" + url[i]));
             }
         }
         if (StringUtils.isNotEmpty(tempEnabled)) {
@@ -57,12 +63,11 @@ public class XssFilter implements Filter {
         if (!enabled) {
             return true;
         }
-        if (excludes == null || excludes.isEmpty()) {
+        if (excludePatterns.isEmpty()) {
             return false;
         }
         String url = request.getServletPath();
-        for (String pattern : excludes) {
-            Pattern p = Pattern.compile("^" + pattern);
+        for (Pattern p : excludePatterns) {
             Matcher m = p.matcher(url);
             if (m.find()) {
                 return true;
@@ -5,6 +5,8 @@ import com.xinsite.common.uitls.codec.JsoupUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * XSS过滤处理
@@ -12,6 +14,9 @@ import javax.servlet.http.HttpServletRequestWrapper;
 public class XssWrapper extends HttpServletRequestWrapper {
     //敏感信息是否直接过滤，true:直接过滤掉；false:进行特殊字符转换
     private boolean is_xss_filter = false;
+    //本次请求已过滤的参数值，同一参数多次读取时不重复过滤
+    private Map<String, String> parameters = new HashMap<>();
+    private Map<String, String[]> parameterValues = new HashMap<>();
 
     /**
      * @param request
@@ -32,20 +37,29 @@ public class XssWrapper extends HttpServletRequestWrapper {
      */
     @Override
     public String getParameter(String name) {
-        String value = super.getParameter(name);
-        return clean(value);
+        if (parameters.containsKey(name)) return parameters.get(name);
+        String value = clean(super.getParameter(name));
+        parameters.put(name, value);
+        return value;
     }
 
     @Override
     public String[] getParameterValues(String name) {
-        String[] values = super.getParameterValues(name);
-        if (values != null) {
-            for (int i = 0; i < values.length; i++) {
-                //values[i] = Jsoup.clean(values[i], Whitelist.relaxed()).trim();  //防xss攻击和过滤前后空格
-                values[i] = clean(values[i]);
+        String[] values;
+        if (parameterValues.containsKey(name)) {
+            values = parameterValues.get(name);
+        } else {
+            values = super.getParameterValues(name);
+            if (values != null) {
+                values = values.clone();
+                for (int i = 0; i < values.length; i++) {
+                    //values[i] = Jsoup.clean(values[i], Whitelist.relaxed()).trim();  //防xss攻击和过滤前后空格
+                    values[i] = clean(values[i]);
+                }
             }
+            parameterValues.put(name, values);
         }
-        return values;
+        return values == null ? null : values.clone();
     }
 
     /**
@@ -0,0 +1,239 @@
+package com.xinsite.common.uitls;
+
+import com.xinsite.common.uitls.TaskUtils.Pool;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimerTask;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 线程池队列满时的处理：调度线程不执行caller_runs，丢弃的submit任务被取消；
+ * 慢任务不影响其它任务，同一key的任务按顺序逐个执行，停止时延迟中的任务也执行完
+ */
+public class TaskUtilsTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private TaskUtils tasks;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (tasks != null) tasks.shutdown();
+    }
+
+    /**
+     * io线程池只有1个线程、队列1个：占住线程并排满队列
+     */
+    private Future<String> fill(String policy) throws Exception {
+        tasks = new TaskUtils(1, "1,1," + policy, null, null);
+        CountDownLatch started = new CountDownLatch(1);
+        tasks.execute(Pool.io, () -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return tasks.submit(Pool.io, () -> "queued");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void callerRunsOnCallerThread() throws Exception {
+        fill("caller_runs");
+        AtomicReference<Thread> ran = new AtomicReference<>();
+        tasks.execute(Pool.io, () -> ran.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), ran.get());
+    }
+
+    @Test
+    public void callerRunsNotOnScheduler() throws Exception {
+        Future<String> queued = fill("caller_runs");
+        AtomicReference<Thread> ran = new AtomicReference<>();
+        ScheduledFuture<?> rejected = tasks.schedule(Pool.io, () -> ran.set(Thread.currentThread()), 0, TimeUnit.MILLISECONDS);
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            fail("task should be rejected");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        }
+        assertNull(ran.get());
+
+        //调度线程仍然可用：其它线程池的任务照常执行
+        CountDownLatch done = new CountDownLatch(1);
+        tasks.schedule(Pool.cpu, () -> {
+            ran.set(Thread.currentThread());
+            done.countDown();
+        }, 0, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(ran.get().getName().startsWith("task-cpu-"));
+
+        release.countDown();
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void callerRunsOnWorkerThread() throws Exception {
+        fill("caller_runs");
+        CountDownLatch handed = new CountDownLatch(1);
+        AtomicReference<Future<String>> inner = new AtomicReference<>();
+        tasks.schedule(Pool.cpu, () -> {
+            inner.set(tasks.submit(Pool.io, () -> "never"));
+            handed.countDown();
+        }, 0, TimeUnit.MILLISECONDS);
+        assertTrue(handed.await(5, TimeUnit.SECONDS));
+        //在cpu线程上提交，caller_runs在该线程执行
+        assertEquals("never", inner.get().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void discardCancelsFuture() throws Exception {
+        fill("discard");
+        Future<String> future = tasks.submit(Pool.io, () -> "discarded");
+        assertTrue(future.isCancelled());
+        future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void discardOldestCancelsOldest() throws Exception {
+        Future<String> oldest = fill("discard_oldest");
+        Future<String> newest = tasks.submit(Pool.io, () -> "newest");
+        assertTrue(oldest.isCancelled());
+        release.countDown();
+        assertEquals("newest", newest.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void abortThrows() throws Exception {
+        fill("abort");
+        tasks.submit(Pool.io, () -> "aborted");
+    }
+
+    @Test
+    public void submitAfterShutdownIsCancelled() throws Exception {
+        tasks = new TaskUtils(1, "1,1", null, null);
+        tasks.shutdown();
+        assertTrue(tasks.submit(Pool.io, () -> "late").isCancelled());
+    }
+
+    private static TimerTask timerTask(Runnable runnable) {
+        return new TimerTask() {
+            @Override
+            public void run() {
+                runnable.run();
+            }
+        };
+    }
+
+    /**
+     * io线程池的慢任务只占一个线程：io其它任务、cpu和db线程池、其它key的任务照常执行
+     */
+    @Test
+    public void slowTaskDoesNotBlockOthers() throws Exception {
+        tasks = new TaskUtils(1, "2,10", "1,10", "1,10");
+        CountDownLatch started = new CountDownLatch(2);
+        tasks.execute(Pool.io, () -> {
+            started.countDown();
+            await(release);
+        });
+        tasks.execute("slow", timerTask(() -> {
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch done = new CountDownLatch(3);
+        tasks.execute(Pool.cpu, done::countDown);
+        tasks.execute(Pool.db, done::countDown);
+        tasks.schedule(Pool.cpu, done::countDown, 0, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        //io的2个线程都被占住，其它key的任务排队等待，不是在调度线程上执行
+        CountDownLatch other = new CountDownLatch(1);
+        tasks.execute("other", timerTask(other::countDown));
+        assertFalse(other.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 同一key的任务不并发、按提交顺序执行：模拟session同步，先提交的慢任务不会覆盖后提交的
+     */
+    @Test
+    public void sameKeyRunsInOrder() throws Exception {
+        tasks = new TaskUtils(2, "8,1000", null, null);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlap = new AtomicInteger();
+        AtomicReference<Integer> saved = new AtomicReference<>();
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            final int version = i;
+            tasks.execute("session-1", timerTask(() -> {
+                if (running.incrementAndGet() > 1) overlap.incrementAndGet();
+                if (version == 0) sleep(100);  //第一次同步很慢
+                saved.set(version);
+                order.add(version);
+                running.decrementAndGet();
+                done.countDown();
+            }));
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlap.get());
+        assertEquals(Integer.valueOf(99), saved.get());
+        for (int i = 0; i < 100; i++) assertEquals(Integer.valueOf(i), order.get(i));
+    }
+
+    /**
+     * 同一key的任务失败不影响后面的任务，执行完后key可以重新使用
+     */
+    @Test
+    public void sameKeyContinuesAfterFailure() throws Exception {
+        tasks = new TaskUtils(1, "2,10", null, null);
+        CountDownLatch done = new CountDownLatch(2);
+        tasks.execute("key", timerTask(() -> {
+            throw new IllegalStateException("sync failure");
+        }));
+        tasks.execute("key", timerTask(done::countDown));
+        Thread.sleep(100);
+        tasks.execute("key", timerTask(done::countDown));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1L, tasks.getStats().get(0).get("failed"));
+    }
+
+    /**
+     * 提交后立即停止：延迟10毫秒的任务(含按key串行的)都执行完
+     */
+    @Test
+    public void shutdownDrainsDelayedTasks() throws Exception {
+        tasks = new TaskUtils(1, "2,1000", null, null);
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            tasks.execute(timerTask(ran::incrementAndGet));
+            tasks.execute("session-" + (i % 3), timerTask(ran::incrementAndGet));
+        }
+        tasks.schedule(Pool.db, ran::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        tasks.shutdown();
+        assertEquals(101, ran.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
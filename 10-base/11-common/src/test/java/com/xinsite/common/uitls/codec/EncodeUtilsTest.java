@@ -0,0 +1,99 @@
+package com.xinsite.common.uitls.codec;
+
+import com.xinsite.common.uitls.lang.StringUtils;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * EncodeUtils.xssFilter：与原实现(逐条正则替换、replaceAll转码)的结果一致
+ */
+public class EncodeUtilsTest {
+
+    private static final Pattern p1 = Pattern.compile("<\\s*(script|link|style|iframe)\\s([\\s\\S]+?)<\\/\\s*\\1\\s*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern p2 = Pattern.compile("\\s*on[a-z]+\\s*=\\s*(\"[^\"]+\"|'[^']+'|[^\\s]+)\\s*(?=>)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern p3 = Pattern.compile("\\s*(href|src)\\s*=\\s*(\"\\s*(javascript|vbscript):[^\"]+\"|'\\s*(javascript|vbscript):[^']+'|(javascript|vbscript):[^\\s]+)\\s*(?=>)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern p4 = Pattern.compile("epression\\((.|\\n)*\\);?", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 原实现，作为对照
+     */
+    private static String reference(String text) {
+        if (text == null) return null;
+        String value = StringUtils.trim(text);
+        value = p1.matcher(value).replaceAll("");
+        value = p2.matcher(value).replaceAll("");
+        value = p3.matcher(value).replaceAll("");
+        value = p4.matcher(value).replaceAll("");
+        if (!StringUtils.startsWithIgnoreCase(value, "<!--HTML-->")
+                && !StringUtils.startsWithIgnoreCase(value, "<?xml ")
+                && !StringUtils.contains(value, "id=\"FormHtml\"")
+                && !(StringUtils.startsWith(value, "{") && StringUtils.endsWith(value, "}"))
+                && !(StringUtils.startsWith(value, "[") && StringUtils.endsWith(value, "]"))) {
+            value = value.replaceAll("\"", "&quot;").replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+        }
+        return value;
+    }
+
+    private static final String[] VECTORS = {
+            "", "   ", "张三", "  admin  ", "a < b", "a > b", "say \"hi\"", "{\"a\":\"<b>\"}", "[\"<i>\"]",
+            "<script>alert(1)</script>", "<SCRIPT SRC=http://xss.rocks/xss.js></SCRIPT>",
+            "<script >alert('x')</ script >", "<ScRiPt type=\"text/javascript\">a()</sCrIpT>",
+            "<iframe src=\"javascript:alert(1)\"></iframe>", "<link rel=stylesheet href=x></link>",
+            "<style>body{}</style>text", "<IMG SRC=\"javascript:alert('XSS');\">", "<IMG SRC=javascript:alert('XSS')>",
+            "<IMG SRC=JaVaScRiPt:alert('XSS')>", "<a href='vbscript:msgbox(1)'>x</a>", "<a href = \" javascript:x()\" >",
+            "<IMG \"\"\"><SCRIPT>alert(\"XSS\")</SCRIPT>\">", "<BODY ONLOAD=alert('XSS')>", "<img src=x onerror=alert(1)>",
+            "<div onmouseover=\"a()\" >", "<div onclick='b()'>", "<svg/onload=alert(1)>",
+            "<DIV STYLE=\"width: expression(alert('XSS'));\">", "xepression(alert(1));", "EPRESSION(a)\n(b);tail",
+            "epression(", "a epression(x) b", "<!--HTML--><script>a</script>", "<?xml version=\"1.0\"?><a>\"</a>",
+            "<form id=\"FormHtml\"><input value=\"<x>\"></form>", "<<SCRIPT>alert(\"XSS\");//<</SCRIPT>",
+            "<scr<script>ipt>alert(1)</script>", "\"><script>alert(document.cookie)</script>",
+            "<a href=\"http://example.com\">ok</a>", "1 < 2 && 3 > 2", "<", ">", "\"", "\t<b>\n"
+    };
+
+    @Test
+    public void sameAsReferenceOnVectors() {
+        assertNull(EncodeUtils.xssFilter(null));
+        for (String text : VECTORS) {
+            assertEquals(text, reference(text), EncodeUtils.xssFilter(text));
+        }
+    }
+
+    /**
+     * 由规则相关的片段随机拼接
+     */
+    @Test
+    public void sameAsReferenceOnFuzz() {
+        String[] parts = {"<", ">", "\"", "'", " ", "\n", "\r", "\t", "/", "=", "(", ")", ";", "{", "}", "[", "]",
+                "script", "SCRIPT", "iframe", "style", "link", "on", "onload", "onerror", "href", "src",
+                "javascript:", "vbscript:", "epression(", "ePression(", ");", "<!--HTML-->", "<?xml ",
+                "id=\"FormHtml\"", "a", "b", "1", "中文", "\u0085", "\u2028"};
+        Random random = new Random(20200420L);
+        for (int n = 0; n < 50000; n++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = random.nextInt(16); i >= 0; i--) sb.append(parts[random.nextInt(parts.length)]);
+            String text = sb.toString();
+            assertEquals(text, reference(text), EncodeUtils.xssFilter(text));
+        }
+    }
+
+    @Test
+    public void plainTextUnchanged() {
+        String text = "普通文本 abc-123_x@y.com";
+        assertSame(text, EncodeUtils.xssFilter(text));
+        assertEquals("abc", EncodeUtils.xssFilter("  abc "));
+    }
+
+    /**
+     * 原规则4的分组写法在长文本时栈溢出
+     */
+    @Test
+    public void longExpression() {
+        StringBuilder sb = new StringBuilder("epression(");
+        for (int i = 0; i < 100000; i++) sb.append('x');
+        assertEquals("", EncodeUtils.xssFilter(sb.append(");").toString()));
+    }
+}
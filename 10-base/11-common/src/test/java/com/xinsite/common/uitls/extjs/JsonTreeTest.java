@@ -0,0 +1,193 @@
+package com.xinsite.common.uitls.extjs;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JsonTree：解析后与原实现(String.format拼接、逐层getWhereArray递归)的结果一致；
+ * pid成环时每个结点只写出一次，层级很深时不会栈溢出
+ */
+public class JsonTreeTest {
+
+    private static final String[] TEXTS = {"总公司", "研发部\"一组\"", "C:\\data\\dept", "第一行\r\n第二行", "Sales & <Marketing>", ""};
+
+    /**
+     * 原实现(逐层加载)，作为对照
+     */
+    private static String reference(JsonArray array, String otherAttr, String[] fields) {
+        StringBuilder strResult = new StringBuilder("[");
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject jsonObject = array.get(i).getAsJsonObject();
+            if (strResult.length() != 1) strResult.append(",");
+            strResult.append("{");
+            appendFields(strResult, jsonObject, fields);
+            if (!StringUtils.isEmpty(otherAttr)) strResult.append("," + otherAttr);
+            strResult.append("}");
+        }
+        strResult.append("]");
+        return strResult.toString();
+    }
+
+    /**
+     * 原实现(全部加载树)，作为对照
+     */
+    private static String reference(JsonArray array, String field_id, String field_pid, String pid_value, String parentAttr, String childAttr, String[] fields) {
+        StringBuilder strResult = new StringBuilder("[");
+        JsonArray child = GsonUtils.getWhereArray(array, field_pid, pid_value);
+        for (int i = 0; i < child.size(); i++) {
+            JsonObject jsonObject = child.get(i).getAsJsonObject();
+            if (strResult.length() != 1) strResult.append(",");
+            strResult.append("{");
+            appendFields(strResult, jsonObject, fields);
+            pid_value = GsonUtils.tryParse(jsonObject, field_id, "");
+            JsonArray nodes = GsonUtils.getWhereArray(array, field_pid, pid_value);
+            if (nodes.size() > 0) {
+                strResult.append(",leaf:false");
+                strResult.append(",children:" + reference(array, field_id, field_pid, pid_value, parentAttr, childAttr, fields));
+                if (!StringUtils.isEmpty(parentAttr)) strResult.append("," + parentAttr);
+            } else {
+                strResult.append(",leaf:true");
+                if (!StringUtils.isEmpty(childAttr)) strResult.append("," + childAttr);
+            }
+            strResult.append("}");
+        }
+        strResult.append("]");
+        return strResult.toString();
+    }
+
+    private static void appendFields(StringBuilder strResult, JsonObject jsonObject, String[] fields) {
+        for (int j = 0; j < fields.length; j++) {
+            if (j != 0) strResult.append(",");
+            if (fields[j].equals("leaf"))
+                strResult.append(String.format("%s:%s", fields[j], GsonUtils.tryParse(jsonObject, fields[j], true)));
+            else {
+                String value = GsonUtils.tryParse(jsonObject, fields[j], "");
+                value = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\r", "\\r").replace("\n", "\\n");
+                strResult.append(String.format("%s:\"%s\"", fields[j], value));
+            }
+        }
+    }
+
+    /**
+     * 原实现是Extjs的Js对象字面量(属性名不加引号、单引号字符串)，按宽松模式解析后比较
+     */
+    private static JsonElement parse(String json) {
+        return new JsonParser().parse(json);
+    }
+
+    private static JsonObject node(int id, int pid, String text) {
+        JsonObject dr = new JsonObject();
+        dr.addProperty("id", id);
+        dr.addProperty("pid", pid);
+        dr.addProperty("text", text);
+        dr.addProperty("serialcode", id % 7);
+        return dr;
+    }
+
+    /**
+     * 部门树：每个结点的父结点为之前的随机结点
+     */
+    private static JsonArray randomTree(Random random, int size) {
+        JsonArray array = new JsonArray();
+        for (int id = 1; id <= size; id++) {
+            int pid = id == 1 || random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(id - 1);
+            array.add(node(id, pid, TEXTS[random.nextInt(TEXTS.length)] + id));
+        }
+        return array;
+    }
+
+    @Test
+    public void flatSameAsReference() {
+        Random random = new Random(7);
+        JsonArray array = randomTree(random, 60);
+        for (int i = 0; i < array.size(); i++) {
+            if (i % 3 == 0) GsonUtils.getObject(array, i).addProperty("leaf", i % 2 == 0);
+        }
+        String[] fields = {"id", "text", "leaf"};
+        for (String attr : new String[]{"", "checked:false", "iconCls:'jgjszIcon',expanded:true"}) {
+            assertEquals(attr, parse(reference(array, attr, fields)), parse(JsonTree.getTreeJson(array, attr, fields)));
+            assertEquals(attr, parse(reference(array, attr, "id,pid,text".split(","))), parse(JsonTree.getTreeJson(array, attr, "id,pid,text")));
+        }
+        String[] all = {"id", "pid", "text", "serialcode"};
+        JsonArray plain = randomTree(random, 20);
+        assertEquals(parse(reference(plain, "", all)), parse(JsonTree.getTreeJson(plain)));
+        assertEquals(parse(reference(plain, "checked:false", all)), parse(JsonTree.getTreeJson(plain, "checked:false")));
+    }
+
+    @Test
+    public void treeSameAsReference() {
+        Random random = new Random(11);
+        String[] fields = {"id", "pid", "text", "serialcode"};
+        for (int size : new int[]{1, 2, 10, 50, 300}) {
+            JsonArray array = randomTree(random, size);
+            assertEquals(parse(reference(array, "id", "pid", "0", "", "", fields)), parse(JsonTree.getTreeJsonByPid(array, "0")));
+            assertEquals(parse(reference(array, "id", "pid", "0", "iconCls:'jgjszIcon',expanded:true", "checked:false", fields)),
+                    parse(JsonTree.getTreeJsonByPid(array, "0", "iconCls:'jgjszIcon',expanded:true", "checked:false")));
+            assertEquals(parse(reference(array, "id", "pid", "0", "expanded:false", "iconCls:'userIcon',checked:false", fields)),
+                    parse(JsonTree.getTreeJsonByPid(array, "0", "expanded:false", "iconCls:'userIcon',checked:false")));
+            //从中间结点开始
+            assertEquals(parse(reference(array, "id", "pid", "1", "", "", fields)), parse(JsonTree.getTreeJsonByPid(array, "1")));
+            String[] some = {"id", "text"};
+            assertEquals(parse(reference(array, "id", "pid", "0", "", "", some)), parse(JsonTree.getTreeJsonByPid(array, "pid", "0", some)));
+        }
+        JsonArray empty = randomTree(random, 5);
+        assertEquals(parse(reference(empty, "id", "pid", "99", "", "", fields)), parse(JsonTree.getTreeJsonByPid(empty, "99")));
+        assertEquals("[]", JsonTree.getTreeJsonByPid(empty, "99"));
+    }
+
+    /**
+     * 与根结点不相连的环：原实现不会访问，结果一致；与根结点相连的环：原实现无限递归，现在每个结点只写出一次
+     */
+    @Test
+    public void pidCycle() {
+        JsonArray array = new JsonArray();
+        array.add(node(1, 0, "根"));
+        array.add(node(2, 1, "子"));
+        array.add(node(7, 8, "环A"));
+        array.add(node(8, 7, "环B"));
+        array.add(node(9, 9, "自环"));
+        assertEquals(parse(reference(array, "id", "pid", "0", "expanded:true", "checked:false", new String[]{"id", "pid", "text", "serialcode"})),
+                parse(JsonTree.getTreeJsonByPid(array, "0", "expanded:true", "checked:false")));
+
+        array.add(node(0, 2, "回到根"));
+        JsonArray tree = parse(JsonTree.getTreeJsonByPid(array, "0", "expanded:true", "checked:false")).getAsJsonArray();
+        JsonObject root = GsonUtils.getObject(tree, 0);
+        assertEquals(1, tree.size());
+        assertEquals("1", GsonUtils.tryParse(root, "id", ""));
+        JsonObject child = root.getAsJsonArray("children").get(0).getAsJsonObject();
+        assertEquals("2", GsonUtils.tryParse(child, "id", ""));
+        JsonObject back = child.getAsJsonArray("children").get(0).getAsJsonObject();
+        assertEquals("0", GsonUtils.tryParse(back, "id", ""));
+        //结点1已写出，不再展开
+        assertEquals(0, back.getAsJsonArray("children").size());
+        assertEquals(true, back.get("expanded").getAsBoolean());
+    }
+
+    @Test
+    public void deepChain() {
+        JsonArray array = new JsonArray();
+        for (int id = 1; id <= 100; id++) array.add(node(id, id - 1, "第" + id + "层"));
+        assertEquals(parse(reference(array, "id", "pid", "0", "expanded:true", "checked:false", new String[]{"id", "pid", "text", "serialcode"})),
+                parse(JsonTree.getTreeJsonByPid(array, "0", "expanded:true", "checked:false")));
+
+        //原实现递归，层级很深时栈溢出
+        int depth = 100000;
+        array = new JsonArray();
+        for (int id = 1; id <= depth; id++) array.add(node(id, id - 1, "n" + id));
+        String json = JsonTree.getTreeJsonByPid(array, "0", "expanded:true", "checked:false");
+        assertEquals(depth, StringUtils.countMatches(json, "\"id\":"));
+        assertEquals(1, StringUtils.countMatches(json, "\"leaf\":true"));
+        assertEquals(depth - 1, StringUtils.countMatches(json, "\"expanded\":true"));
+        assertTrue(json.contains("\"id\":\"" + depth + "\",\"pid\":\"" + (depth - 1) + "\""));
+        assertTrue(json.endsWith("],\"expanded\":true}]"));
+    }
+}
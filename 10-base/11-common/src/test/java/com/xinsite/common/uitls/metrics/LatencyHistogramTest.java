@@ -0,0 +1,99 @@
+package com.xinsite.common.uitls.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 耗时分布百分位与排序后的精确值比较：相对误差不超过1/16
+ */
+public class LatencyHistogramTest {
+    private static final double[] PERCENTILES = {0.01, 0.25, 0.50, 0.75, 0.90, 0.95, 0.99, 0.999, 1.0};
+
+    /**
+     * 精确百分位：排序后第ceil(n*p)个
+     */
+    private static long exact(long[] sorted, double p) {
+        int rank = (int) Math.max(Math.ceil(sorted.length * p), 1);
+        return sorted[rank - 1];
+    }
+
+    private static void check(String name, long[] values) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value : values) histogram.record(value);
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(counts);
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double p : PERCENTILES) {
+            long expected = exact(sorted, p);
+            double actual = LatencyHistogram.percentile(counts, p);
+            assertEquals(name + " p" + p, expected, actual, expected / 16.0);
+        }
+    }
+
+    @Test
+    public void uniform() {
+        Random random = new Random(1);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) values[i] = random.nextInt(200000);
+        check("uniform", values);
+    }
+
+    @Test
+    public void logNormal() {
+        Random random = new Random(2);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) values[i] = (long) Math.exp(8 + random.nextGaussian() * 1.5);
+        check("lognormal", values);
+    }
+
+    @Test
+    public void bimodalWithTail() {
+        Random random = new Random(3);
+        long[] values = new long[50000];
+        for (int i = 0; i < values.length; i++) {
+            int r = random.nextInt(1000);
+            if (r < 700) values[i] = 300 + random.nextInt(200);             //缓存命中
+            else if (r < 995) values[i] = 20000 + random.nextInt(30000);    //查库
+            else values[i] = 2000000 + random.nextInt(8000000);             //慢请求
+        }
+        check("bimodal", values);
+    }
+
+    @Test
+    public void smallValuesExact() {
+        long[] values = {0, 1, 1, 2, 3, 5, 7, 7, 7};
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value : values) histogram.record(value);
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(counts);
+        for (double p : PERCENTILES) {
+            assertEquals(exact(values, p), LatencyHistogram.percentile(counts, p), 0);
+        }
+    }
+
+    @Test
+    public void emptyIsZero() {
+        assertEquals(0, LatencyHistogram.percentile(new long[LatencyHistogram.BUCKETS], 0.99), 0);
+    }
+
+    /**
+     * 每个桶的下限、宽度与index一致，桶之间连续
+     */
+    @Test
+    public void bucketBounds() {
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            long lower = LatencyHistogram.lowerBound(i);
+            long upper = lower + LatencyHistogram.width(i);
+            assertEquals(upper, LatencyHistogram.lowerBound(i + 1));
+            assertEquals(i, LatencyHistogram.index(lower));
+            assertEquals(i, LatencyHistogram.index(upper - 1));
+        }
+        assertEquals(0, LatencyHistogram.index(-5));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,165 @@
+package com.xinsite.common.uitls.metrics;
+
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * ResponseSizeFilter：分块输出(没有Content-Length)时按实际写出的字节数统计，输出流、字符输出(按响应编码)结果与响应体一致
+ */
+public class ResponseSizeFilterTest {
+    private final ResponseSizeFilter filter = new ResponseSizeFilter();
+
+    /**
+     * 模拟响应：输出内容，不设Content-Length
+     */
+    private static class Response {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final Charset charset;
+        PrintWriter writer;
+
+        Response(Charset charset) {
+            this.charset = charset;
+        }
+
+        HttpServletResponse proxy() {
+            return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletResponse.class}, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "getCharacterEncoding":
+                        return charset.name();
+                    case "getHeader":
+                        return null;
+                    case "getOutputStream":
+                        return new ServletOutputStream() {
+                            @Override
+                            public void write(int b) {
+                                body.write(b);
+                            }
+
+                            @Override
+                            public boolean isReady() {
+                                return true;
+                            }
+
+                            @Override
+                            public void setWriteListener(WriteListener listener) {
+                            }
+                        };
+                    case "getWriter":
+                        if (writer == null) writer = new PrintWriter(new OutputStreamWriter(body, charset));
+                        return writer;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        byte[] getBody() {
+            if (writer != null) writer.flush();
+            return body.toByteArray();
+        }
+    }
+
+    private static HttpServletRequest request(Map<String, Object> attributes) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ResponseSizeFilterTest.class.getClassLoader(), new Class[]{HttpServletRequest.class}, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getAttribute":
+                    return attributes.get(args[0]);
+                case "setAttribute":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * 过滤后(在处理方法之后，同LogInterceptor.afterCompletion)取统计的字节数
+     */
+    private long doFilter(Response response, FilterChain chain) throws Exception {
+        HttpServletRequest request = request(new HashMap<>());
+        long[] bytes = {0};
+        filter.doFilter(request, response.proxy(), (req, resp) -> {
+            chain.doFilter(req, resp);
+            bytes[0] = ResponseSizeWrapper.getBytes(request);
+        });
+        assertEquals(bytes[0], ResponseSizeWrapper.getBytes(request));
+        return bytes[0];
+    }
+
+    @Test
+    public void chunkedOutputStream() throws Exception {
+        Response response = new Response(StandardCharsets.UTF_8);
+        byte[] json = "{\"success\":true,\"data\":[\"中文\"]}".getBytes(StandardCharsets.UTF_8);
+        long bytes = doFilter(response, (req, resp) -> {
+            ServletOutputStream out = resp.getOutputStream();
+            for (int i = 0; i < 100; i++) {
+                out.write(json, 0, 10);
+                out.write(json[10]);
+                out.write(json, 11, json.length - 11);
+                out.flush();
+            }
+        });
+        assertEquals(json.length * 100, bytes);
+        assertEquals(response.getBody().length, bytes);
+    }
+
+    /**
+     * 字符输出：中文3字节、代理对(分两次写出)4字节、换行
+     */
+    @Test
+    public void writerUtf8() throws Exception {
+        Response response = new Response(StandardCharsets.UTF_8);
+        String emoji = new String(Character.toChars(0x1F600));
+        long bytes = doFilter(response, (req, resp) -> {
+            PrintWriter writer = resp.getWriter();
+            writer.print("{\"name\":\"张三\",\"é\":1}");
+            writer.write(emoji.charAt(0));
+            writer.write(emoji.toCharArray(), 1, 1);
+            writer.println();
+            writer.write("0123456789", 2, 5);
+            writer.printf("%d", 42);
+        });
+        assertEquals(response.getBody().length, bytes);
+        assertEquals(("{\"name\":\"张三\",\"é\":1}" + emoji + System.lineSeparator() + "23456" + "42").getBytes(StandardCharsets.UTF_8).length, bytes);
+    }
+
+    @Test
+    public void writerOtherCharset() throws Exception {
+        Charset gbk = Charset.forName("GBK");
+        Response response = new Response(gbk);
+        long bytes = doFilter(response, (req, resp) -> {
+            PrintWriter writer = resp.getWriter();
+            writer.print("{\"name\":\"张三\"}");
+            writer.write("abc中".toCharArray(), 1, 3);
+        });
+        assertEquals(response.getBody().length, bytes);
+        assertEquals(("{\"name\":\"张三\"}" + "bc中").getBytes(gbk).length, bytes);
+    }
+
+    @Test
+    public void emptyBody() throws Exception {
+        assertEquals(0, doFilter(new Response(StandardCharsets.UTF_8), (req, resp) -> {
+        }));
+    }
+
+    @Test
+    public void notFiltered() {
+        assertEquals(-1, ResponseSizeWrapper.getBytes(request(new HashMap<>())));
+    }
+}
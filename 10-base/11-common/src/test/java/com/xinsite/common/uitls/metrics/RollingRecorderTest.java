@@ -0,0 +1,71 @@
+package com.xinsite.common.uitls.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按分钟滚动的统计：时间窗口汇总、过期槽不计入、百分位与精确值比较
+ */
+public class RollingRecorderTest {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long START = 1000 * MINUTE;
+
+    @Test
+    public void windows() {
+        RollingRecorder recorder = new RollingRecorder();
+        for (int m = 0; m < 20; m++) {
+            for (int i = 0; i <= m; i++) recorder.record(START + m * MINUTE + i, 1000, 200, 10);
+        }
+        long now = START + 19 * MINUTE + 30000;
+        assertEquals(20, recorder.snapshot(now, 1).count);
+        assertEquals(20 + 19 + 18 + 17 + 16, recorder.snapshot(now, 5).count);
+        assertEquals((6 + 20) * 15 / 2, recorder.snapshot(now, 15).count);
+        assertEquals(200, recorder.snapshot(now, 1).bytes);
+
+        //没有新请求时，窗口外的槽不计入
+        assertEquals(0, recorder.snapshot(now + 20 * MINUTE, 15).count);
+    }
+
+    @Test
+    public void statusAndMax() {
+        RollingRecorder recorder = new RollingRecorder();
+        recorder.record(START, 100, 200, -1);
+        recorder.record(START, 5000, 302, -1);
+        recorder.record(START, 300, 404, -1);
+        recorder.record(START, 200, 500, -1);
+        recorder.record(START, 200, 0, -1);
+        RollingRecorder.Snapshot snapshot = recorder.snapshot(START, 1);
+        assertEquals(5, snapshot.count);
+        assertEquals(0, snapshot.bytes);
+        assertEquals(5000, snapshot.maxMicros);
+        assertArrayEquals(new long[]{0, 1, 1, 1, 1}, snapshot.status);
+        assertEquals(5.0, snapshot.percentile(1.0), 5.0 / 16);
+        assertTrue(snapshot.percentile(1.0) <= 5.0);
+    }
+
+    /**
+     * 多分钟合并后的百分位与全部耗时排序后的精确值比较
+     */
+    @Test
+    public void percentilesAcrossMinutes() {
+        RollingRecorder recorder = new RollingRecorder();
+        Random random = new Random(7);
+        long[] values = new long[60000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(9 + random.nextGaussian());
+            recorder.record(START + (i % 5) * MINUTE, values[i], 200, 0);
+        }
+        Arrays.sort(values);
+        RollingRecorder.Snapshot snapshot = recorder.snapshot(START + 4 * MINUTE, 5);
+        assertEquals(values.length, snapshot.count);
+        for (double p : new double[]{0.50, 0.95, 0.99}) {
+            double expected = values[(int) Math.ceil(values.length * p) - 1] / 1000.0;
+            assertEquals("p" + p, expected, snapshot.percentile(p), expected / 16.0);
+        }
+        assertTrue(snapshot.percentile(1.0) <= values[values.length - 1] / 1000.0);
+    }
+}
@@ -0,0 +1,115 @@
+package com.xinsite.common.uitls.metrics;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 采样历史：按分级聚合min/avg/max、选择分级、环形覆盖(内存固定)、缺失值及时钟回拨
+ */
+public class SampleHistoryTest {
+    private static final long SECOND = 1000L;
+    private static final long START = 1599999960000L;   //60秒的整数倍
+
+    /**
+     * 10秒保留1分钟，60秒保留10分钟
+     */
+    private static SampleHistory create() {
+        return new SampleHistory(new String[]{"cpu", "mem"}, new long[][]{{10, 60}, {60, 600}});
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Double[] values(Map<String, Object> range, String name, String kind) {
+        return (Double[]) ((Map<String, Object>) range.get(name)).get(kind);
+    }
+
+    @Test
+    public void aggregate() {
+        SampleHistory history = create();
+        //每秒采样一次，cpu为秒数，mem固定
+        for (int s = 0; s < 30; s++) history.record(START + s * SECOND, new double[]{s, 50});
+        long now = START + 29 * SECOND;
+        Map<String, Object> range = history.range(now, START, now);
+        assertEquals(10L, range.get("resolution"));
+        assertArrayEquals(new long[]{START, START + 10 * SECOND, START + 20 * SECOND}, (long[]) range.get("time"));
+        assertArrayEquals(new Double[]{0.0, 10.0, 20.0}, values(range, "cpu", "min"));
+        assertArrayEquals(new Double[]{4.5, 14.5, 24.5}, values(range, "cpu", "avg"));
+        assertArrayEquals(new Double[]{9.0, 19.0, 29.0}, values(range, "cpu", "max"));
+        assertArrayEquals(new Double[]{50.0, 50.0, 50.0}, values(range, "mem", "avg"));
+
+        //超过10秒级保留时长时取60秒级
+        range = history.range(now, now - 5 * 60 * SECOND, now);
+        assertEquals(60L, range.get("resolution"));
+        assertArrayEquals(new long[]{START}, (long[]) range.get("time"));
+        assertArrayEquals(new Double[]{14.5}, values(range, "cpu", "avg"));
+        assertArrayEquals(new Double[]{29.0}, values(range, "cpu", "max"));
+    }
+
+    @Test
+    public void missingValues() {
+        SampleHistory history = create();
+        history.record(START, new double[]{1, Double.NaN});
+        history.record(START + SECOND, new double[]{3, Double.NaN});
+        history.record(START + 10 * SECOND, new double[]{5, 7});
+        Map<String, Object> range = history.range(START + 10 * SECOND, START, START + 10 * SECOND);
+        assertArrayEquals(new Double[]{2.0, 5.0}, values(range, "cpu", "avg"));
+        assertArrayEquals(new Double[]{null, 7.0}, values(range, "mem", "avg"));
+    }
+
+    /**
+     * 长时间采样后只保留各分级容量内的桶，旧桶被覆盖，数组不增长
+     */
+    @Test
+    public void boundedMemory() throws Exception {
+        SampleHistory history = create();
+        int arrays = sizeOf(history);
+        long time = START;
+        for (int s = 0; s < 24 * 3600; s++, time += SECOND) history.record(time, new double[]{s % 100, s});
+        long now = time - SECOND;
+        assertEquals(arrays, sizeOf(history));
+
+        Map<String, Object> fine = history.range(now, now - 60 * SECOND, now);
+        assertEquals(10L, fine.get("resolution"));
+        assertEquals(6, ((long[]) fine.get("time")).length);
+
+        Map<String, Object> all = history.range(now, 0, now);
+        assertEquals(60L, all.get("resolution"));
+        long[] times = (long[]) all.get("time");
+        assertEquals(10, times.length);
+        assertEquals(now - now % (60 * SECOND) - 9 * 60 * SECOND, times[0]);
+        for (int k = 1; k < times.length; k++) assertEquals(times[k - 1] + 60 * SECOND, times[k]);
+        //最后一桶为最近1分钟的采样
+        assertEquals(now / SECOND - START / SECOND, values(all, "mem", "max")[9], 0);
+    }
+
+    @Test
+    public void clockRollback() {
+        SampleHistory history = create();
+        history.record(START + 70 * SECOND, new double[]{10, 10});
+        //比同一槽内的数据早一圈，丢弃
+        history.record(START + 10 * SECOND, new double[]{99, 99});
+        Map<String, Object> range = history.range(START + 70 * SECOND, START + 10 * SECOND, START + 70 * SECOND);
+        assertArrayEquals(new long[]{START + 70 * SECOND}, (long[]) range.get("time"));
+        assertArrayEquals(new Double[]{10.0}, values(range, "cpu", "max"));
+    }
+
+    /**
+     * 各分级数组的总长度
+     */
+    private static int sizeOf(SampleHistory history) throws Exception {
+        Field field = SampleHistory.class.getDeclaredField("tiers");
+        field.setAccessible(true);
+        int size = 0;
+        for (Object tier : (Object[]) field.get(history)) {
+            for (String name : new String[]{"start", "count", "min", "max", "sum"}) {
+                Field array = tier.getClass().getDeclaredField(name);
+                array.setAccessible(true);
+                size += java.lang.reflect.Array.getLength(array.get(tier));
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,215 @@
+package com.xinsite.common.uitls.network;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 离线IP地址库：CSV由IpRegionBuilder生成文件，open(内存映射)与load(读入内存)查询结果相同；
+ * IPv4、IPv6及IPv4映射地址的命中、未命中，IP段边界，重叠及错误IP段拒绝生成，IpUtils解析内嵌IPv4
+ */
+public class IpRegionDbTest {
+    private static final String CSV = "\uFEFF# 起始IP,结束IP,地区\n" +
+            "1.0.1.0,1.0.3.255,中国,广东\n" +   //乱序，生成时排序
+            "1.0.0.0,1.0.0.255,中国,福建\n" +
+            "\n" +
+            "1.0.4.0,1.0.4.0,单个地址\n" +     //与前一段相邻
+            "8.8.8.0,8.8.8.255,美国\n" +
+            "200.0.0.0,255.255.255.255,高位\n" +  //大于0x7FFFFFFF，无符号比较
+            "2001:db8::,2001:db8::ffff,测试网\n" +
+            "2400:da00::,2400:da00:ffff:ffff:ffff:ffff:ffff:ffff,中国,北京\n" +
+            "ff00::,ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff,组播\n";
+
+    private static File dir;
+    private static IpRegionDb mapped;
+    private static IpRegionDb loaded;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        dir = Files.createTempDirectory("ipdb").toFile();
+        File db = build(CSV);
+        mapped = IpRegionDb.open(db);
+        try (InputStream in = new FileInputStream(db)) {
+            loaded = IpRegionDb.load(in);
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        dir.delete();
+    }
+
+    private static File build(String csv) throws IOException {
+        File in = File.createTempFile("ip_region", ".csv", dir);
+        File out = new File(in.getPath() + ".db");
+        Files.write(in.toPath(), csv.getBytes(StandardCharsets.UTF_8));
+        IpRegionBuilder.build(in, out);
+        return out;
+    }
+
+    private static void assertRegion(String expected, String ip) {
+        assertEquals(ip, expected, mapped.search(ip));
+        assertEquals(ip, expected, loaded.search(ip));
+    }
+
+    @Test
+    public void counts() {
+        assertEquals(5, mapped.getV4Count());
+        assertEquals(3, mapped.getV6Count());
+        assertEquals(5, loaded.getV4Count());
+        assertEquals(3, loaded.getV6Count());
+    }
+
+    @Test
+    public void v4() {
+        assertRegion("中国,福建", "1.0.0.0");
+        assertRegion("中国,福建", "1.0.0.128");
+        assertRegion("中国,福建", " 1.0.0.255 ");
+        assertRegion("中国,广东", "1.0.1.0");
+        assertRegion("中国,广东", "1.0.3.255");
+        assertRegion("单个地址", "1.0.4.0");
+        assertRegion("美国", "8.8.8.8");
+        assertRegion("高位", "200.0.0.0");
+        assertRegion("高位", "255.255.255.255");
+
+        assertRegion(null, "0.255.255.255");  //第一段之前
+        assertRegion(null, "1.0.4.1");
+        assertRegion(null, "8.8.7.255");
+        assertRegion(null, "8.8.9.0");
+        assertRegion(null, "199.255.255.255");
+    }
+
+    @Test
+    public void v6() {
+        assertRegion("测试网", "2001:db8::");
+        assertRegion("测试网", "2001:DB8:0:0:0:0:0:ffff");
+        assertRegion("中国,北京", "2400:da00::1");
+        assertRegion("中国,北京", "2400:da00:ffff:ffff:ffff:ffff:ffff:ffff");
+        assertRegion("组播", "ff02::1");
+        assertRegion("组播", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+
+        assertRegion(null, "::1");
+        assertRegion(null, "2001:db7:ffff:ffff:ffff:ffff:ffff:ffff");
+        assertRegion(null, "2001:db8::1:0");
+        assertRegion(null, "2400:da01::");
+        assertRegion(null, "fe80::1%eth0");
+    }
+
+    /**
+     * IPv4映射的IPv6地址按IPv4段查询(点分及十六进制写法)
+     */
+    @Test
+    public void v4Mapped() {
+        assertRegion("中国,福建", "::ffff:1.0.0.1");
+        assertRegion("美国", "::FFFF:8.8.8.8");
+        assertRegion("美国", "0:0:0:0:0:ffff:808:808");
+        assertRegion("高位", "::ffff:255.255.255.255");
+        assertRegion(null, "::ffff:8.8.9.0");
+    }
+
+    @Test
+    public void notAddress() {
+        assertRegion(null, null);
+        assertRegion(null, "");
+        assertRegion(null, "unknown");
+        assertRegion(null, "1.0.0.0.1");
+        assertRegion(null, "1.0.0.256");
+        assertRegion(null, "2001:db8:::1");
+        assertRegion(null, "::ffff:1.0.0");
+        assertNull(mapped.search(new byte[8]));
+    }
+
+    /**
+     * IpUtils.textToNumericFormatV6：内嵌的点分IPv4整体解析后结束，映射地址转为4字节
+     */
+    @Test
+    public void parseEmbeddedV4() {
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, IpUtils.textToNumericFormatV6("::ffff:1.2.3.4"));
+        assertArrayEquals(new byte[]{(byte) 192, (byte) 168, 0, 1}, IpUtils.textToNumericFormatV6("0:0:0:0:0:ffff:192.168.0.1"));
+        byte[] compatible = IpUtils.textToNumericFormatV6("::1.2.3.4");  //IPv4兼容地址(不是映射)，仍是16字节
+        assertEquals(16, compatible.length);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, new byte[]{compatible[12], compatible[13], compatible[14], compatible[15]});
+        byte[] prefixed = IpUtils.textToNumericFormatV6("64:ff9b::10.0.0.1");
+        assertEquals(16, prefixed.length);
+        assertEquals(0x64, prefixed[1]);
+        assertEquals(10, prefixed[12]);
+        assertNull(IpUtils.textToNumericFormatV6("::ffff:1.2.3.4:5"));
+        assertNull(IpUtils.textToNumericFormatV6("::ffff:1.2.3"));
+        assertTrue(IpUtils.isIPv6LiteralAddress("::ffff:10.0.0.1"));
+    }
+
+    @Test
+    public void rejectOverlap() throws IOException {
+        assertBuildFails("1.0.0.0,1.0.0.255,甲\n1.0.0.255,1.0.1.0,乙\n");   //端点重合
+        assertBuildFails("1.0.0.0,1.0.0.255,甲\n1.0.0.10,1.0.0.20,乙\n");  //包含
+        assertBuildFails("2001:db8::,2001:db8::ff,甲\n2001:db8::80,2001:db8::1ff,乙\n");
+        //相邻的段可以；IPv4与IPv6分开检查(::1.0.0.0是16字节的IPv4兼容地址)
+        File db = build("1.0.0.0,1.0.0.255,甲\n1.0.1.0,1.0.1.255,乙\n::1.0.0.0,::1.0.0.255,丙\n");
+        IpRegionDb region = IpRegionDb.open(db);
+        assertEquals("乙", region.search("1.0.1.0"));
+        assertEquals("丙", region.search("::1.0.0.8"));
+        assertEquals("甲", region.search("1.0.0.8"));
+    }
+
+    @Test
+    public void rejectBadRange() {
+        assertBuildFails("1.0.0.255,1.0.0.0,起始大于结束\n");
+        assertBuildFails("1.0.0.0,2001:db8::,类型不同\n");
+        assertBuildFails("1.0.0.0,1.0.0.x,不是IP\n");
+        assertBuildFails("1.0.0.0,1.0.0.255\n");
+    }
+
+    private static void assertBuildFails(String csv) {
+        try {
+            build(csv);
+            fail("应拒绝：" + csv);
+        } catch (IOException ex) {
+            //expected
+        }
+    }
+
+    @Test
+    public void notDbFile() throws IOException {
+        try {
+            IpRegionDb.load(new ByteArrayInputStream("not an ip database".getBytes(StandardCharsets.UTF_8)));
+            fail();
+        } catch (IOException ex) {
+            //expected
+        }
+    }
+
+    /**
+     * 多线程同时查询(不加锁)结果一致
+     */
+    @Test
+    public void concurrentSearch() throws Exception {
+        String[] ips = {"1.0.0.1", "1.0.2.2", "8.8.8.8", "9.9.9.9", "2400:da00::8", "::ffff:8.8.8.1", "250.1.1.1"};
+        String[] expected = new String[ips.length];
+        for (int i = 0; i < ips.length; i++) expected[i] = mapped.search(ips[i]);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final IpRegionDb db = t % 2 == 0 ? mapped : loaded;
+            futures.add(pool.submit(() -> {
+                for (int n = 0; n < 20000; n++) {
+                    int i = n % ips.length;
+                    assertEquals(ips[i], expected[i], db.search(ips[i]));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+}
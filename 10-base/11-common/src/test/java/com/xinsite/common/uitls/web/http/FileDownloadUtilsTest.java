@@ -0,0 +1,312 @@
+package com.xinsite.common.uitls.web.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * FileDownloadUtils：Range单段、多段(206/416)、If-Range、ETag及Last-Modified(304)、sendfile
+ */
+public class FileDownloadUtilsTest {
+    private static final String TYPE = "application/octet-stream";
+
+    private File file;
+    private byte[] content;
+    private String etag;
+    private long lastModified;
+
+    /**
+     * 模拟请求：请求头、属性
+     */
+    private static class Request {
+        final Map<String, String> headers = new HashMap<>();
+        final Map<String, Object> attributes = new HashMap<>();
+
+        Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        HttpServletRequest proxy() {
+            return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletRequest.class}, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "getHeader":
+                        return headers.get(args[0]);
+                    case "getDateHeader":
+                        String value = headers.get(args[0]);
+                        if (value == null) return -1L;
+                        try {
+                            return httpDate().parse(value).getTime();
+                        } catch (ParseException ex) {
+                            throw new IllegalArgumentException(value);
+                        }
+                    case "getAttribute":
+                        return attributes.get(args[0]);
+                    case "setAttribute":
+                        attributes.put((String) args[0], args[1]);
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+
+    /**
+     * 模拟响应：状态、响应头、输出内容
+     */
+    private static class Response {
+        int status = HttpServletResponse.SC_OK;
+        String contentType;
+        long contentLength = -1;
+        final Map<String, String> headers = new HashMap<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpServletResponse proxy() {
+            ServletOutputStream out = new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                }
+
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+            };
+            return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletResponse.class}, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "setStatus":
+                        status = (Integer) args[0];
+                        return null;
+                    case "setHeader":
+                        headers.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "setDateHeader":
+                        headers.put((String) args[0], httpDate().format(new Date((Long) args[1])));
+                        return null;
+                    case "setContentType":
+                        contentType = (String) args[0];
+                        return null;
+                    case "setContentLengthLong":
+                        contentLength = (Long) args[0];
+                        return null;
+                    case "getOutputStream":
+                        return out;
+                    case "flushBuffer":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+
+    private static SimpleDateFormat httpDate() {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+
+    @Before
+    public void setup() throws IOException {
+        content = new byte[100];
+        for (int i = 0; i < content.length; i++) content[i] = (byte) ('a' + i % 26);
+        file = File.createTempFile("download", ".bin");
+        Files.write(file.toPath(), content);
+        file.setLastModified(1587340800000L);
+        lastModified = file.lastModified() / 1000 * 1000;
+        etag = FileDownloadUtils.getEtag(content.length, lastModified);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private Response download(Request request) throws IOException {
+        Response response = new Response();
+        FileDownloadUtils.download(request.proxy(), response.proxy(), file, TYPE);
+        return response;
+    }
+
+    private byte[] slice(int start, int end) {
+        return Arrays.copyOfRange(content, start, end + 1);
+    }
+
+    @Test
+    public void fullFile() throws IOException {
+        Response response = download(new Request());
+        assertEquals(200, response.status);
+        assertEquals(content.length, response.contentLength);
+        assertArrayEquals(content, response.body.toByteArray());
+        assertEquals(etag, response.headers.get(HttpHeaders.ETAG));
+        assertEquals("bytes", response.headers.get(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(httpDate().format(new Date(lastModified)), response.headers.get(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    public void notModified() throws IOException {
+        Response response = download(new Request().header(HttpHeaders.IF_NONE_MATCH, "\"x\", W/" + etag));
+        assertEquals(304, response.status);
+        assertEquals(0, response.body.size());
+
+        response = download(new Request().header(HttpHeaders.IF_NONE_MATCH, "*"));
+        assertEquals(304, response.status);
+
+        String since = httpDate().format(new Date(lastModified));
+        response = download(new Request().header(HttpHeaders.IF_MODIFIED_SINCE, since));
+        assertEquals(304, response.status);
+
+        //If-None-Match优先于If-Modified-Since
+        response = download(new Request().header(HttpHeaders.IF_NONE_MATCH, "\"other\"").header(HttpHeaders.IF_MODIFIED_SINCE, since));
+        assertEquals(200, response.status);
+
+        response = download(new Request().header(HttpHeaders.IF_MODIFIED_SINCE, httpDate().format(new Date(lastModified - 1000))));
+        assertEquals(200, response.status);
+
+        response = download(new Request().header(HttpHeaders.IF_MODIFIED_SINCE, "not a date"));
+        assertEquals(200, response.status);
+        assertArrayEquals(content, response.body.toByteArray());
+    }
+
+    @Test
+    public void singleRange() throws IOException {
+        Response response = download(new Request().header(HttpHeaders.RANGE, "bytes=10-19"));
+        assertEquals(206, response.status);
+        assertEquals("bytes 10-19/100", response.headers.get(HttpHeaders.CONTENT_RANGE));
+        assertEquals(10, response.contentLength);
+        assertArrayEquals(slice(10, 19), response.body.toByteArray());
+
+        response = download(new Request().header(HttpHeaders.RANGE, "bytes=-5"));
+        assertEquals("bytes 95-99/100", response.headers.get(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(slice(95, 99), response.body.toByteArray());
+
+        response = download(new Request().header(HttpHeaders.RANGE, "bytes=90-"));
+        assertEquals("bytes 90-99/100", response.headers.get(HttpHeaders.CONTENT_RANGE));
+
+        response = download(new Request().header(HttpHeaders.RANGE, "bytes=98-500"));
+        assertEquals("bytes 98-99/100", response.headers.get(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(slice(98, 99), response.body.toByteArray());
+    }
+
+    @Test
+    public void unsatisfiable() throws IOException {
+        for (String range : new String[]{"bytes=100-", "bytes=200-300", "bytes=-0", "bytes=150-160,-0"}) {
+            Response response = download(new Request().header(HttpHeaders.RANGE, range));
+            assertEquals(range, 416, response.status);
+            assertEquals("bytes */100", response.headers.get(HttpHeaders.CONTENT_RANGE));
+            assertEquals(0, response.body.size());
+        }
+    }
+
+    @Test
+    public void invalidRangeIgnored() throws IOException {
+        StringBuilder many = new StringBuilder("bytes=");
+        for (int i = 0; i < 17; i++) many.append(i == 0 ? "" : ",").append(i).append("-").append(i);
+        for (String range : new String[]{"bytes=abc", "items=0-1", "bytes=5-2", "bytes=10", "bytes=--1", many.toString()}) {
+            Response response = download(new Request().header(HttpHeaders.RANGE, range));
+            assertEquals(range, 200, response.status);
+            assertArrayEquals(range, content, response.body.toByteArray());
+        }
+    }
+
+    @Test
+    public void ifRange() throws IOException {
+        Response response = download(new Request().header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, etag));
+        assertEquals(206, response.status);
+
+        response = download(new Request().header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, "\"stale\""));
+        assertEquals(200, response.status);
+        assertArrayEquals(content, response.body.toByteArray());
+
+        //If-Range只做强比较
+        response = download(new Request().header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, "W/" + etag));
+        assertEquals(200, response.status);
+
+        response = download(new Request().header(HttpHeaders.RANGE, "bytes=0-9")
+                .header(HttpHeaders.IF_RANGE, httpDate().format(new Date(lastModified))));
+        assertEquals(206, response.status);
+
+        response = download(new Request().header(HttpHeaders.RANGE, "bytes=0-9")
+                .header(HttpHeaders.IF_RANGE, httpDate().format(new Date(lastModified - 1000))));
+        assertEquals(200, response.status);
+    }
+
+    @Test
+    public void multipartRanges() throws IOException {
+        Response response = download(new Request().header(HttpHeaders.RANGE, "bytes=0-4, 10-14, -3"));
+        assertEquals(206, response.status);
+        assertTrue(response.contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = response.contentType.substring(response.contentType.indexOf('=') + 1);
+        assertEquals(response.body.size(), response.contentLength);
+
+        String body = new String(response.body.toByteArray(), StandardCharsets.ISO_8859_1);
+        String expected = part(boundary, 0, 4) + part(boundary, 10, 14) + part(boundary, 97, 99) + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, body);
+    }
+
+    private String part(String boundary, int start, int end) {
+        return "\r\n--" + boundary + "\r\n" + HttpHeaders.CONTENT_TYPE + ": " + TYPE + "\r\n" +
+                HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/100\r\n\r\n" +
+                new String(slice(start, end), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 容器支持sendfile且长度不小于48KB时只设置请求属性，不写响应流
+     */
+    @Test
+    public void sendfile() throws IOException {
+        content = new byte[64 * 1024];
+        Files.write(file.toPath(), content);
+        Request request = new Request().header(HttpHeaders.RANGE, "bytes=1024-");
+        request.attributes.put("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        Response response = new Response();
+        FileDownloadUtils.download(request.proxy(), response.proxy(), file, TYPE);
+        assertEquals(206, response.status);
+        assertEquals(0, response.body.size());
+        assertEquals(file.getCanonicalPath(), request.attributes.get("org.apache.tomcat.sendfile.filename"));
+        assertEquals(1024L, request.attributes.get("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) content.length, request.attributes.get("org.apache.tomcat.sendfile.end"));
+
+        //小于48KB时直接输出
+        request = new Request().header(HttpHeaders.RANGE, "bytes=0-99");
+        request.attributes.put("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        response = new Response();
+        FileDownloadUtils.download(request.proxy(), response.proxy(), file, TYPE);
+        assertEquals(100, response.body.size());
+        assertNull(request.attributes.get("org.apache.tomcat.sendfile.filename"));
+    }
+
+    @Test
+    public void parseRanges() {
+        assertNull(FileDownloadUtils.parseRanges(null, 100));
+        assertNull(FileDownloadUtils.parseRanges("", 100));
+        assertTrue(FileDownloadUtils.parseRanges("bytes=0-", 0).isEmpty());
+        List<FileDownloadUtils.Range> ranges = FileDownloadUtils.parseRanges("BYTES= 0-0 , 5-", 10);
+        assertEquals(2, ranges.size());
+        assertEquals(1, ranges.get(0).length());
+        assertEquals(5, ranges.get(1).start);
+        assertEquals(9, ranges.get(1).end);
+    }
+}
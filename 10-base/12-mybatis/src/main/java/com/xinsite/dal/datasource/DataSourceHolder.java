@@ -5,6 +5,7 @@ import com.xinsite.dal.uitls.Utils_Yml;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * 数据源切换处理
@@ -18,6 +19,25 @@ public class DataSourceHolder {
      */
     private static final ThreadLocal<String> CONTEXT_IDEN = new ThreadLocal<>();
 
+    /**
+     * 只读范围的嵌套层数，大于0时查询可以走只读副本
+     */
+    private static final ThreadLocal<Integer> READ_ONLY = new ThreadLocal<>();
+
+    /**
+     * Spring事务的层数(DynamicTransactionManager维护)，事务中都走主库
+     */
+    private static final ThreadLocal<Integer> TRANSACTION = new ThreadLocal<>();
+
+    /**
+     * 主数据源名称，从yml快照读取一次，配置重新加载时更新
+     */
+    private static volatile String masterKey;
+
+    static {
+        Utils_Yml.addReloadListener(location -> masterKey = readMasterKey());
+    }
+
     /**
      * 设置数据源的变量
      */
@@ -54,6 +74,79 @@ public class DataSourceHolder {
      * 获得主数据源的变量
      */
     public static String getMasterKey() {
+        String master_nama = masterKey;
+        if (master_nama == null) {
+            master_nama = readMasterKey();
+            masterKey = master_nama;
+        }
+        return master_nama;
+    }
+
+    /**
+     * 开始只读范围(可嵌套)，范围内事务外的查询轮流走当前数据源的只读副本：
+     * try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) { ... }
+     */
+    public static Scope readOnly() {
+        Integer depth = READ_ONLY.get();
+        return new Scope(depth == null ? 1 : depth + 1);
+    }
+
+    /**
+     * 范围内强制走主库(只读范围中的写操作)
+     */
+    public static Scope primary() {
+        return new Scope(0);
+    }
+
+    /**
+     * 当前是否可以走只读副本：在只读范围内，且不在Spring事务中(DruidUtils事务中的查询使用事务连接，也是主库)
+     */
+    public static boolean isReplicaRead() {
+        Integer depth = READ_ONLY.get();
+        if (depth == null || depth <= 0) return false;
+        if (TRANSACTION.get() != null) return false;
+        return !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /**
+     * Spring事务开始获取连接前调用，事务连接固定走主库
+     */
+    public static void beginTransaction() {
+        Integer depth = TRANSACTION.get();
+        TRANSACTION.set(depth == null ? 1 : depth + 1);
+    }
+
+    /**
+     * Spring事务结束后调用
+     */
+    public static void endTransaction() {
+        Integer depth = TRANSACTION.get();
+        if (depth == null || depth <= 1) TRANSACTION.remove();
+        else TRANSACTION.set(depth - 1);
+    }
+
+    /**
+     * 只读(或主库)范围，close时恢复到进入前的状态
+     */
+    public static class Scope implements AutoCloseable {
+        private final Integer previous = READ_ONLY.get();
+        private boolean closed = false;
+
+        private Scope(int depth) {
+            if (depth > 0) READ_ONLY.set(depth);
+            else READ_ONLY.remove();
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (previous == null) READ_ONLY.remove();
+            else READ_ONLY.set(previous);
+        }
+    }
+
+    private static String readMasterKey() {
         String master_nama = Utils_Yml.getValue("config.master_database");
         if (StringUtils.isEmpty(master_nama)) master_nama = "master";
         return master_nama;
@@ -2,10 +2,12 @@ package com.xinsite.dal.datasource;
 
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Map;
 
 /**
- * 动态数据源
+ * 动态数据源，只读范围内(事务外)的连接轮流取自只读副本，副本都不可用时走原数据源
  */
 public class DynamicDataSource extends AbstractRoutingDataSource {
     public DynamicDataSource(DataSource defaultTargetDataSource, Map<Object, Object> targetDataSources) {
@@ -18,4 +20,13 @@ public class DynamicDataSource extends AbstractRoutingDataSource {
     protected Object determineCurrentLookupKey() {
         return DataSourceHolder.getDataSourceType();
     }
-}
\ No newline at end of file
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (DataSourceHolder.isReplicaRead()) {
+            Connection conn = ReplicaRouter.getConnection(DataSourceHolder.getDBKey());
+            if (conn != null) return conn;
+        }
+        return super.getConnection();
+    }
+}
@@ -0,0 +1,36 @@
+package com.xinsite.dal.datasource;
+
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.sql.DataSource;
+
+/**
+ * 事务管理：事务开始获取连接前标记事务，事务中的连接(包括只读范围内)都走主库
+ */
+public class DynamicTransactionManager extends DataSourceTransactionManager {
+
+    public DynamicTransactionManager(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        DataSourceHolder.beginTransaction();
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error ex) {
+            DataSourceHolder.endTransaction();
+            throw ex;
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            DataSourceHolder.endTransaction();
+        }
+    }
+}
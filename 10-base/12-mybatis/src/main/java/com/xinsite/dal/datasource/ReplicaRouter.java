@@ -0,0 +1,171 @@
+package com.xinsite.dal.datasource;
+
+import com.xinsite.dal.uitls.Utils_Value;
+import com.xinsite.dal.uitls.Utils_Yml;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只读副本路由：每个数据源可以有多个只读副本，只读范围内的查询轮流使用，都不可用时返回null走主库；
+ * 每隔config.replica_check_millis毫秒(默认30秒)对全部副本执行验证查询，获取连接或验证失败的副本停用，
+ * 停用的副本通过验证后才恢复使用
+ */
+public class ReplicaRouter {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    private static final Map<String, List<Replica>> replicas = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    private static final int QUERY_TIMEOUT_SECONDS = 3;
+    private static ScheduledExecutorService checker;
+
+    private static class Replica {
+        final String name;
+        final DataSource dataSource;
+        final String validationQuery;
+        volatile boolean down = false;  //停用，通过验证后恢复
+
+        Replica(String name, DataSource dataSource, String validationQuery) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.validationQuery = validationQuery;
+        }
+    }
+
+    /**
+     * 添加数据源的只读副本，验证查询为select 1
+     */
+    public static void addReplica(String db_key, String name, DataSource dataSource) {
+        addReplica(db_key, name, dataSource, null);
+    }
+
+    /**
+     * 添加数据源的只读副本，同名副本已存在时不变；添加第一个副本时开始定时验证
+     */
+    public static void addReplica(String db_key, String name, DataSource dataSource, String validationQuery) {
+        if (StringUtils.isEmpty(validationQuery)) validationQuery = "select 1";
+        List<Replica> list = replicas.computeIfAbsent(db_key, key -> new CopyOnWriteArrayList<>());
+        synchronized (list) {
+            for (Replica replica : list) {
+                if (replica.name.equals(name)) return;
+            }
+            list.add(new Replica(name, dataSource, validationQuery));
+        }
+        counters.computeIfAbsent(db_key, key -> new AtomicInteger());
+        startChecker();
+        log.info("数据源{}添加只读副本{}", db_key, name);
+    }
+
+    /**
+     * 数据源是否配置了只读副本
+     */
+    public static boolean hasReplicas(String db_key) {
+        List<Replica> list = replicas.get(db_key);
+        return list != null && !list.isEmpty();
+    }
+
+    /**
+     * 移除全部只读副本(不关闭连接池)
+     */
+    public static void clear() {
+        replicas.clear();
+        counters.clear();
+    }
+
+    /**
+     * 轮流从可用的副本获取连接，没有副本或都不可用时返回null；获取失败的副本停用，等待验证
+     */
+    public static Connection getConnection(String db_key) {
+        List<Replica> list = replicas.get(db_key);
+        if (list == null || list.isEmpty()) return null;
+        int size = list.size();
+        int start = (counters.get(db_key).getAndIncrement() & Integer.MAX_VALUE) % size;
+        for (int i = 0; i < size; i++) {
+            Replica replica = list.get((start + i) % size);
+            if (replica.down) continue;
+            try {
+                Connection conn = replica.dataSource.getConnection();
+                if (conn == null) throw new SQLException("获取连接为空");
+                return conn;
+            } catch (SQLException ex) {
+                setDown(db_key, replica, ex);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 对全部副本执行验证查询：失败的停用，停用的副本通过后恢复，返回可用的副本数
+     */
+    public static int check() {
+        int count = 0;
+        for (Map.Entry<String, List<Replica>> entry : replicas.entrySet()) {
+            for (Replica replica : entry.getValue()) {
+                try {
+                    validate(replica);
+                    if (replica.down) {
+                        replica.down = false;
+                        log.info("数据源{}的只读副本{}通过验证，恢复使用", entry.getKey(), replica.name);
+                    }
+                    count++;
+                } catch (Exception ex) {
+                    setDown(entry.getKey(), replica, ex);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void validate(Replica replica) throws SQLException {
+        try (Connection conn = replica.dataSource.getConnection()) {
+            if (conn == null) throw new SQLException("获取连接为空");
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+                statement.execute(replica.validationQuery);
+            }
+        }
+    }
+
+    private static void setDown(String db_key, Replica replica, Exception ex) {
+        if (replica.down) return;
+        replica.down = true;
+        log.warn("数据源{}的只读副本{}不可用，通过验证后恢复：{}", db_key, replica.name, ex.getMessage());
+    }
+
+    private static synchronized void startChecker() {
+        if (checker != null) return;
+        long millis = getCheckMillis();
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(() -> {
+            try {
+                check();
+            } catch (Throwable ex) {
+                log.error("只读副本验证失败", ex);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static long getCheckMillis() {
+        String millis = Utils_Yml.getValue("config.replica_check_millis");
+        if (StringUtils.isEmpty(millis)) return 30000;
+        return Math.max(Utils_Value.tryParse(millis, 30000L), 1000L);
+    }
+}
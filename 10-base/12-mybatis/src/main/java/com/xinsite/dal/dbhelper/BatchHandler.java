@@ -0,0 +1,10 @@
+package com.xinsite.dal.dbhelper;
+
+import com.google.gson.JsonArray;
+
+/**
+ * 游标分批读取时，每批数据的处理回调
+ */
+public interface BatchHandler {
+    void handle(JsonArray rows) throws Exception;
+}
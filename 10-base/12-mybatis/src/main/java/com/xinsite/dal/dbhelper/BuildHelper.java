@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -50,6 +51,48 @@ public class BuildHelper {
         return table_names;
     }
 
+    /**
+     * 表是否存在(按JDBC元数据，各数据库通用)
+     */
+    public static boolean isExistTable(String tableName) throws Exception {
+        try {
+            Connection conn = DruidUtils.getConnection();
+            DatabaseMetaData meta = conn.getMetaData();
+            try (ResultSet rs = meta.getTables(conn.getCatalog(), null, toIdentifier(meta, tableName), new String[]{"TABLE"})) {
+                return rs.next();
+            }
+        } finally {
+            DruidUtils.close();
+        }
+    }
+
+    /**
+     * 表中是否有以该字段开头的索引(按JDBC元数据，各数据库通用，不按索引名判断)
+     */
+    public static boolean isIndexedColumn(String tableName, String columnName) throws Exception {
+        try {
+            Connection conn = DruidUtils.getConnection();
+            DatabaseMetaData meta = conn.getMetaData();
+            try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), null, toIdentifier(meta, tableName), false, true)) {
+                while (rs.next()) {
+                    if (rs.getInt("ORDINAL_POSITION") == 1 && columnName.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) return true;
+                }
+            }
+            return false;
+        } finally {
+            DruidUtils.close();
+        }
+    }
+
+    /**
+     * 按数据库保存标识符的大小写转换表名
+     */
+    private static String toIdentifier(DatabaseMetaData meta, String name) throws Exception {
+        if (meta.storesUpperCaseIdentifiers()) return name.toUpperCase();
+        if (meta.storesLowerCaseIdentifiers()) return name.toLowerCase();
+        return name;
+    }
+
     /**
      * 获取表中所有字段名称
      */
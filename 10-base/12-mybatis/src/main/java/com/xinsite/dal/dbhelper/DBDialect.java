@@ -0,0 +1,125 @@
+package com.xinsite.dal.dbhelper;
+
+import com.xinsite.dal.datasource.DataSourceHolder;
+import com.xinsite.dal.uitls.Utils_String;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数据库分页方言，按当前数据源(DataSourceHolder)识别一次后缓存
+ */
+public enum DBDialect {
+    /**
+     * mysql:limit start,size
+     */
+    MYSQL,
+
+    /**
+     * h2、postgresql、sqlite:limit size offset start
+     */
+    LIMIT_OFFSET,
+
+    /**
+     * oracle 12c以上:offset start rows fetch next size rows only
+     */
+    OFFSET_FETCH,
+
+    /**
+     * sqlserver 2012以上:offset fetch，必需有order by
+     */
+    SQLSERVER,
+
+    /**
+     * oracle 12c以下:rownum嵌套
+     */
+    ORACLE_ROWNUM,
+
+    /**
+     * 未识别的数据库，保持客户端跳行
+     */
+    OTHER;
+
+    private static final Logger log = LoggerFactory.getLogger(DBDialect.class);
+
+    /**
+     * oracle rownum分页附加的行号列，取数时需排除
+     */
+    public static final String ROW_ALIAS = "row_num_";
+
+    private static final Map<String, DBDialect> dialects = new ConcurrentHashMap<>();
+
+    /**
+     * 获取当前数据源的分页方言
+     */
+    public static DBDialect get(Connection conn) {
+        String db_key = DataSourceHolder.getDBKey();
+        DBDialect dialect = dialects.get(db_key);
+        if (dialect == null) {
+            dialect = parse(conn);
+            dialects.put(db_key, dialect);
+        }
+        return dialect;
+    }
+
+    /**
+     * 数据源重新配置后清空
+     */
+    public static void clear() {
+        dialects.clear();
+    }
+
+    private static DBDialect parse(Connection conn) {
+        try {
+            DatabaseMetaData meta = conn.getMetaData();
+            String product = meta.getDatabaseProductName().toLowerCase();
+            int version = meta.getDatabaseMajorVersion();
+            if (product.contains("mysql") || product.contains("mariadb")) return MYSQL;
+            if (product.contains("h2") || product.contains("postgresql") || product.contains("sqlite"))
+                return LIMIT_OFFSET;
+            if (product.contains("oracle")) return version >= 12 ? OFFSET_FETCH : ORACLE_ROWNUM;
+            if (product.contains("microsoft sql server")) return version >= 11 ? SQLSERVER : OTHER;
+        } catch (Exception e) {
+            log.error(e.getMessage());
+        }
+        return OTHER;
+    }
+
+    /**
+     * 是否在数据库端分页
+     */
+    public boolean isServerPage() {
+        return this != OTHER;
+    }
+
+    /**
+     * 拼接分页语句
+     *
+     * @param sql:已带排序的查询语句
+     * @param orderBy:排序表达式(sqlserver的offset必需有排序)
+     * @param pageStart:开始行，从0开始
+     * @param pageSize:页大小
+     */
+    public String pageSql(String sql, String orderBy, int pageStart, int pageSize) {
+        switch (this) {
+            case MYSQL:
+                return String.format("%s limit %d,%d", sql, pageStart, pageSize);
+            case LIMIT_OFFSET:
+                return String.format("%s limit %d offset %d", sql, pageSize, pageStart);
+            case SQLSERVER:
+                if (Utils_String.isEmpty(orderBy)) sql += " order by (select 0)";
+                return String.format("%s offset %d rows fetch next %d rows only", sql, pageStart, pageSize);
+            case OFFSET_FETCH:
+                return String.format("%s offset %d rows fetch next %d rows only", sql, pageStart, pageSize);
+            case ORACLE_ROWNUM:
+                String page_sql = "select * from (select a.*,rownum %s from(%s) a where rownum <=%d) b where b.%s >%d";
+                return String.format(page_sql, ROW_ALIAS, sql, pageStart + pageSize, ROW_ALIAS, pageStart);
+            default:
+                return sql;
+        }
+    }
+}
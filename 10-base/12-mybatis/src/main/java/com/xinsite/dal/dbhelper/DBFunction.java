@@ -8,9 +8,11 @@ import com.xinsite.dal.uitls.Utils_Gson;
 import com.xinsite.dal.uitls.Utils_String;
 import com.xinsite.dal.uitls.Utils_Value;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class DBFunction {
 
@@ -167,6 +169,38 @@ public class DBFunction {
         return DruidUtils.executeNonQuery(sql, params);
     }
 
+    /**
+     * 批量执行同一Sql(每行一组参数)，返回影响的总行数
+     */
+    public static int executeBatch(String sql, List<DBParameter[]> rows) throws Exception {
+        return DruidUtils.executeBatch(sql, rows);
+    }
+
+    /**
+     * 游标方式分批读取查询结果(不整体放入内存)，每batchSize行回调一次，返回总行数
+     */
+    public static long executeCursor(String sql, int batchSize, BatchHandler handler, DBParameter... params) throws Exception {
+        return DruidUtils.executeCursor(sql, Math.max(batchSize, 1), handler, params);
+    }
+
+    /**
+     * 根据表名，批量新增数据(每行字段相同，字段取fields)
+     */
+    public static int insertBatch(List<Map<String, Object>> rows, String tableName, String... fields) throws Exception {
+        if (rows == null || rows.size() == 0 || fields.length == 0) return 0;
+        String strSql = String.format("insert into %s (%s) values(@%s)", tableName,
+                String.join(",", fields), String.join(",@", fields));
+        List<DBParameter[]> list = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            DBParameter[] params = new DBParameter[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                params[i] = new DBParameter(fields[i], row.get(fields[i]));
+            }
+            list.add(params);
+        }
+        return DruidUtils.executeBatch(strSql, list);
+    }
+
     /**
      * 根据表名，修改数据
      */
@@ -311,6 +345,20 @@ public class DBFunction {
         DruidUtils.rollback();
     }
 
+    /**
+     * 当前事务提交后执行，回滚时丢弃；不在事务中时立即执行
+     */
+    public static void afterCommit(Runnable action) {
+        DruidUtils.afterCommit(action);
+    }
+
+    /**
+     * 在单独的自动提交连接上执行，不加入当前事务(调用方回滚时不回滚)
+     */
+    public static <T> T executeAutoCommit(Callable<T> action) throws Exception {
+        return DruidUtils.executeAutoCommit(action);
+    }
+
     /**
      * 关闭连接
      */
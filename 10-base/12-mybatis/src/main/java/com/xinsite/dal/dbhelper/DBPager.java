@@ -24,6 +24,13 @@ public class DBPager {
     private String orderColumn;  //查询sql排序表达式,形如:id desc,time asc
     private String showColumn;   //显示的字段
     private List<DBParameter> params;
+    private String seekColumn;   //键集分页的排序列
+    private String seekKey;      //键集分页的主键列
+    private boolean seekDesc;    //键集分页是否倒序
+    private Object seekValue;    //上一页末行排序列的值
+    private Object seekKeyValue; //上一页末行主键的值
+
+    private static final String SEEK_ALIAS = "seek_t_"; //键集分页派生表别名
 
     public DBPager() {
         this.params = new ArrayList<DBParameter>();
@@ -53,17 +60,20 @@ public class DBPager {
      * 获取当前页的记录(JsonArray)
      */
     public JsonArray getCurPageArray() throws Exception {
-        String sql = String.format("select %s %s", querySQL, getOrderColumn());
-        if (querySQL.trim().toLowerCase().indexOf("select") == 0)
-            sql = String.format("%s %s", querySQL, getOrderColumn());
         JsonArray array = new JsonArray();
         Connection conn = DruidUtils.getConnection();
         PreparedStatement pstmt = null;
         ResultSet rset = null;
+        DBDialect dialect = DBDialect.get(conn);
+        String sql = getPageSql(dialect);
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        DBParameter[] params = getPageParams();
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         try {
             pstmt = conn.prepareStatement(dbsql.getSql());
-            dbsql.setParameters(sql, pstmt, DBParameter.getParameter(params)); //添加查询参数
+            dbsql.setParameters(sql, pstmt, params); //添加查询参数
+            if (dialect.isServerPage()) pstmt.setMaxRows(pageSize);
             rset = pstmt.executeQuery();
             ResultSetMetaData metaData = rset.getMetaData();
             int columnCount = metaData.getColumnCount();  // 获取列数
@@ -72,16 +82,17 @@ public class DBPager {
                 cols = showColumn.split(",");
             }
             int index = 0;
-            int lastRow = pageStart + pageSize - 1; //最后一行
+            int firstRow = dialect.isServerPage() ? 0 : pageStart; //数据库端分页时已跳过
+            int lastRow = firstRow + pageSize - 1; //最后一行
             // 遍历ResultSet中的每条数据
             while (rset.next()) {
-                //int rowcount = rset.getRow();    //获得当前行号，即总记录数
-                if (index >= pageStart) {
+                if (index >= firstRow) {
                     JsonObject jsonObj = new JsonObject();
                     for (int i = 1; i <= columnCount; i++) {  // 遍历每一列
                         String columnName = metaData.getColumnLabel(i);
+                        if (DBDialect.ROW_ALIAS.equalsIgnoreCase(columnName)) continue;
                         if (cols.length == 0 || Utils_String.contains(cols, columnName, true)) {
-                            String value = rset.getString(columnName);
+                            String value = rset.getString(i);
                             jsonObj.addProperty(columnName, value);
                         }
                     }
@@ -91,9 +102,11 @@ public class DBPager {
                 index++;
             }
         } catch (SQLException e) {
+            error = true;
             System.out.println(e.getMessage());
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -105,32 +118,34 @@ public class DBPager {
      * 获取当前页的记录(List)
      */
     public List getCurPageList(Class clz) throws Exception {
-        String sql = String.format("select %s %s", querySQL, getOrderColumn());
         List<Object> list = new ArrayList<Object>();
         Connection conn = DruidUtils.getConnection();
         PreparedStatement pstmt = null;
         ResultSet rset = null;
+        DBDialect dialect = DBDialect.get(conn);
+        String sql = getPageSql(dialect);
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        DBParameter[] params = getPageParams();
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         try {
             pstmt = conn.prepareStatement(dbsql.getSql());
-            dbsql.setParameters(sql, pstmt, DBParameter.getParameter(params)); //添加查询参数
+            dbsql.setParameters(sql, pstmt, params); //添加查询参数
+            if (dialect.isServerPage()) pstmt.setMaxRows(pageSize);
             rset = pstmt.executeQuery();
             ResultSetMetaData metaData = rset.getMetaData();
             int columnCount = metaData.getColumnCount();  // 获取列数
-            String[] cols = new String[0];
-            if (Utils_String.isNotEmpty(showColumn)) {
-                cols = showColumn.split(",");
-            }
             int index = 0;
-            int lastRow = pageStart + pageSize - 1; //最后一行
+            int firstRow = dialect.isServerPage() ? 0 : pageStart; //数据库端分页时已跳过
+            int lastRow = firstRow + pageSize - 1; //最后一行
             // 遍历ResultSet中的每条数据
             while (rset.next()) {
-                //int rowcount = rset.getRow();    //获得当前行号，即总记录数
-                if (index >= pageStart) {
+                if (index >= firstRow) {
                     BeanWrapperImpl bw = new BeanWrapperImpl(clz);
                     for (int i = 1; i <= columnCount; i++) {  // 遍历每一列
                         String name = metaData.getColumnLabel(i);
-                        String value = rset.getString(name);
+                        if (DBDialect.ROW_ALIAS.equalsIgnoreCase(name)) continue;
+                        String value = rset.getString(i);
                         try {
                             Utils_Gson.setProperty(bw, Utils_String.transferToCamel(name, false), value);
                         } catch (Exception e) {
@@ -142,9 +157,11 @@ public class DBPager {
                 index++;
             }
         } catch (SQLException e) {
+            error = true;
             System.out.println(e.getMessage());
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -152,22 +169,96 @@ public class DBPager {
         return list;
     }
 
+    /**
+     * 按数据库方言拼接分页语句；设置了键集分页(seek)并带上一页末行值时，不再使用偏移量，
+     * 原查询作为派生表，按输出列过滤排序(子查询、group by、having及多表同名列都不受影响)
+     */
+    public String getPageSql(DBDialect dialect) {
+        String sql = querySQL;
+        if (sql.trim().toLowerCase().indexOf("select") != 0) sql = "select " + sql;
+        String order = getOrderColumn();
+        int start = pageStart;
+        if (isSeek()) {
+            order = getSeekOrder();
+            sql = String.format("select * from (%s) %s where %s", sql, SEEK_ALIAS, getSeekWhere());
+            start = 0;
+        }
+        return dialect.pageSql(sql + order, order, start, pageSize);
+    }
+
+    /**
+     * 是否使用键集分页：有上一页末行主键值，按排序列时还需有排序列的值(为空时按偏移量分页)
+     */
+    public boolean isSeek() {
+        if (Utils_String.isEmpty(seekKey) || seekKeyValue == null) return false;
+        return isSeekByKey() || seekValue != null;
+    }
+
+    /**
+     * 设置键集分页(seek)：按排序列+主键定位，深页查询与页码无关；排序列、主键须在查询的显示列中，
+     * 带表别名时(如a1.id)按输出列名(id)过滤
+     *
+     * @param seekColumn:排序列，为空时只按主键
+     * @param seekKey:主键列
+     * @param seekDesc:是否倒序
+     * @param seekValue:上一页末行排序列的值，为空时按偏移量分页
+     * @param seekKeyValue:上一页末行主键的值，为空时按偏移量分页
+     */
+    public void setSeek(String seekColumn, String seekKey, boolean seekDesc, Object seekValue, Object seekKeyValue) {
+        this.seekColumn = seekColumn;
+        this.seekKey = seekKey;
+        this.seekDesc = seekDesc;
+        this.seekValue = seekValue;
+        this.seekKeyValue = seekKeyValue;
+    }
+
+    private boolean isSeekByKey() {
+        return Utils_String.isEmpty(seekColumn) || getLabel(seekColumn).equalsIgnoreCase(getLabel(seekKey));
+    }
+
+    /**
+     * 输出列名，去掉表别名
+     */
+    private static String getLabel(String column) {
+        column = column.trim();
+        return column.substring(column.lastIndexOf('.') + 1);
+    }
+
+    private String getSeekWhere() {
+        String op = seekDesc ? "<" : ">";
+        if (isSeekByKey()) return String.format("%s%s@seek_key", getLabel(seekKey), op);
+        return String.format("(%1$s%3$s@seek_value or (%1$s=@seek_value and %2$s%3$s@seek_key))", getLabel(seekColumn), getLabel(seekKey), op);
+    }
+
+    private String getSeekOrder() {
+        String dir = seekDesc ? " desc" : " asc";
+        if (isSeekByKey()) return " order by " + getLabel(seekKey) + dir;
+        return " order by " + getLabel(seekColumn) + dir + "," + getLabel(seekKey) + dir;
+    }
+
+    private DBParameter[] getPageParams() {
+        List<DBParameter> list = new ArrayList<DBParameter>();
+        if (params != null) list.addAll(params);
+        if (isSeek()) {
+            list.add(new DBParameter("seek_key", seekKeyValue));
+            if (!isSeekByKey()) list.add(new DBParameter("seek_value", seekValue));
+        }
+        return DBParameter.getParameter(list);
+    }
+
     /**
      * Mysql数据库分页语句
      */
     public String mysqlToString() {
-        return String.format("select %s %s limit %d,%d", querySQL, getOrderColumn(), pageStart, pageSize);
+        return DBDialect.MYSQL.pageSql(String.format("select %s %s", querySQL, getOrderColumn()), getOrderColumn(), pageStart, pageSize);
     }
 
     /**
      * oracle数据库分页语句
      */
     public String oracleToString() {
-        int firstNum = pageStart;
-        int lastNum = pageStart + pageSize - 1;
         String sql = String.format("select %s %s", querySQL, getOrderColumn());
-        String page_sql = "select * from (select rownum r,a.* from(%s) a where rownum <=%d) b where b.r >=%d";
-        return String.format(page_sql, sql, lastNum, firstNum);
+        return DBDialect.ORACLE_ROWNUM.pageSql(sql, getOrderColumn(), pageStart, pageSize);
     }
 
     public String getPrimaryKey() {
@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class DruidUtils {
 
@@ -27,6 +28,7 @@ public class DruidUtils {
     private static DynamicDataSource dataSource = null;
 
     private static ThreadLocal<Connection> container = new ThreadLocal<Connection>(); //声明线程共享变量
+    private static ThreadLocal<List<Runnable>> afterCommits = new ThreadLocal<>(); //事务提交后执行的操作
 
     static {
         if (dataSource == null) {
@@ -64,6 +66,15 @@ public class DruidUtils {
         return conn;
     }
 
+    /**
+     * 获取写操作的连接，只读范围内也走主库
+     */
+    protected static Connection getWriteConnection() throws Exception {
+        try (DataSourceHolder.Scope scope = DataSourceHolder.primary()) {
+            return getConnection();
+        }
+    }
+
     /***获取当前线程上的连接开启事务*/
     protected static void startTransaction(String... data_source) {
         if (data_source != null && data_source.length > 0) {
@@ -73,7 +84,7 @@ public class DruidUtils {
         }
 
         try {
-            Connection conn = getConnection();//从连接池中获取连接
+            Connection conn = getWriteConnection();//从连接池中获取连接(主库)
             conn.setAutoCommit(false);//开启事务
         } catch (Exception e) {
             //e.printStackTrace();
@@ -89,12 +100,14 @@ public class DruidUtils {
                 conn.commit();//提交事务
                 conn.close();  //关闭连接
                 //System.out.println(Thread.currentThread().getName() + "事务已经提交......");
+                runAfterCommits();
             }
         } catch (Exception e) {
             //e.printStackTrace();
             log.error(e.getMessage());
         } finally {
             try {
+                afterCommits.remove();
                 DataSourceHolder.clearDataSourceType();
                 container.remove();//从当前线程移除连接切记
             } catch (Exception e2) {
@@ -103,6 +116,62 @@ public class DruidUtils {
         }
     }
 
+    /**
+     * 事务提交后执行(如更新内存中的计数)，回滚时丢弃；不在事务中时立即执行
+     */
+    protected static void afterCommit(Runnable action) {
+        Connection conn = container.get();
+        boolean transaction = false;
+        try {
+            transaction = conn != null && !conn.isClosed() && !conn.getAutoCommit();
+        } catch (SQLException e) {
+            log.error(e.getMessage());
+        }
+        if (!transaction) {
+            action.run();
+            return;
+        }
+        List<Runnable> actions = afterCommits.get();
+        if (actions == null) {
+            actions = new ArrayList<>();
+            afterCommits.set(actions);
+        }
+        actions.add(action);
+    }
+
+    /**
+     * 不加入当前线程的事务，语句在单独的自动提交连接上执行(如登记表的更新、建表)：
+     * 调用方的事务回滚时不回滚，其中的建表语句也不会隐式提交调用方的事务；执行完恢复原来的事务连接
+     */
+    protected static <T> T executeAutoCommit(Callable<T> action) throws Exception {
+        Connection conn = container.get();
+        List<Runnable> actions = afterCommits.get();
+        container.remove();
+        afterCommits.remove();
+        try (DataSourceHolder.Scope scope = DataSourceHolder.primary()) {
+            return action.call();
+        } finally {
+            closeConn(container.get()); //执行中没有关闭的连接
+            if (conn != null) container.set(conn);
+            else container.remove();
+            if (actions != null) afterCommits.set(actions);
+            else afterCommits.remove();
+        }
+    }
+
+    private static void runAfterCommits() {
+        List<Runnable> actions = afterCommits.get();
+        if (actions == null) return;
+        afterCommits.remove();
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (Exception e) {
+                log.error(e.getMessage());
+            }
+        }
+    }
+
     /***回滚事务*/
     protected static void rollback() {
         try {
@@ -116,6 +185,7 @@ public class DruidUtils {
             log.error(e.getMessage());
         } finally {
             try {
+                afterCommits.remove();
                 DataSourceHolder.clearDataSourceType();
                 container.remove();//从当前线程移除连接切记
             } catch (Exception e2) {
@@ -229,6 +299,8 @@ public class DruidUtils {
         int rowcount = 0;
         Connection conn = DruidUtils.getConnection();
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         PreparedStatement pstmt = null;
         ResultSet rset = null;
         try {
@@ -238,9 +310,11 @@ public class DruidUtils {
             rset.last();    //光标在最后一行
             rowcount = rset.getRow();    //获得当前行号，即总记录数
         } catch (Exception e) {
+            error = true;
             printErrorLog(e, sql);
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -255,6 +329,8 @@ public class DruidUtils {
         Connection conn = DruidUtils.getConnection();
         String value = "";
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         PreparedStatement pstmt = null;
         ResultSet rset = null;
         try {
@@ -267,9 +343,11 @@ public class DruidUtils {
                 value = rset.getString(1);
             }
         } catch (Exception e) {
+            error = true;
             printErrorLog(e, sql);
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -281,8 +359,10 @@ public class DruidUtils {
      * 更新Sql，返回更新的行数
      */
     protected static int executeNonQuery(String sql, DBParameter... params) throws Exception {
-        Connection conn = DruidUtils.getConnection();
+        Connection conn = DruidUtils.getWriteConnection();
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         PreparedStatement pstmt = null;
         Statement statement = null;
         try {
@@ -304,21 +384,131 @@ public class DruidUtils {
 //            Statement stmt = conn.createStatement();
 //            return stmt.executeUpdate(sql);
         } catch (Exception e) {
+            error = true;
             printErrorLog(e, sql);
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeStmt(statement);
         }
     }
 
+    /**
+     * 批量执行同一Sql(每行一组参数)，返回影响的总行数
+     */
+    protected static int executeBatch(String sql, List<DBParameter[]> rows) throws Exception {
+        if (rows == null || rows.size() == 0) return 0;
+        Connection conn = DruidUtils.getWriteConnection();
+        NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = conn.prepareStatement(dbsql.getSql());
+            for (DBParameter[] params : rows) {
+                dbsql.setParameters(sql, pstmt, params); //添加查询参数
+                pstmt.addBatch();
+            }
+            int sum = 0;
+            for (int i : pstmt.executeBatch()) {
+                if (i > 0) sum += i;
+                else if (i == Statement.SUCCESS_NO_INFO) sum++;
+            }
+            return sum;
+        } catch (Exception e) {
+            error = true;
+            printErrorLog(e, sql);
+            throw e;
+        } finally {
+            SqlStats.record(dbsql, sql, null, start, error);
+            DruidUtils.close();
+            DruidUtils.closePstmt(pstmt);
+        }
+    }
+
+    /**
+     * 游标方式(只进只读)分批读取，每batchSize行回调一次，返回总行数
+     * 使用单独的连接，回调中可以执行其它查询；mysql为流式结果集，其它数据库按fetchSize取数
+     * 不在DruidUtils事务中时取只读副本的连接(配置了副本时)
+     */
+    protected static long executeCursor(String sql, int batchSize, BatchHandler handler, DBParameter... params) throws Exception {
+        Connection conn;
+        try (DataSourceHolder.Scope scope = container.get() == null ? DataSourceHolder.readOnly() : DataSourceHolder.primary()) {
+            conn = dataSource != null ? dataSource.getConnection() : ReadProperties.getConnection();
+        }
+        if (conn == null) throw new RuntimeException("获取数据源连接失败！");
+        NSQLUtils dbsql = NSQLUtils.get(sql);
+        PreparedStatement pstmt = null;
+        ResultSet rset = null;
+        boolean autoCommit = conn.getAutoCommit();
+        long start = SqlStats.start(); //执行统计只计查询，不含分批回调
+        try {
+            boolean mysql = DBDialect.get(conn) == DBDialect.MYSQL;
+            if (!mysql && autoCommit) conn.setAutoCommit(false); //postgresql等需在事务中fetchSize才生效
+            pstmt = conn.prepareStatement(dbsql.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(mysql ? Integer.MIN_VALUE : batchSize);
+            dbsql.setParameters(sql, pstmt, params); //添加查询参数
+            rset = pstmt.executeQuery();
+            SqlStats.record(dbsql, sql, params, start, false);
+            start = 0;
+            ResultSetMetaData metaData = rset.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            List<String> names = new ArrayList<>();
+            List<Integer> indexs = new ArrayList<>();
+            for (int i = 1; i <= columnCount; i++) {
+                String columnName = metaData.getColumnLabel(i);
+                if (names.contains(columnName)) continue; //重名列取第一列，同executeJsonArray
+                names.add(columnName);
+                indexs.add(i);
+            }
+            long count = 0;
+            JsonArray rows = new JsonArray();
+            while (rset.next()) {
+                JsonObject jsonObj = new JsonObject();
+                for (int i = 0; i < names.size(); i++) {
+                    jsonObj.addProperty(names.get(i), rset.getString(indexs.get(i)));
+                }
+                rows.add(jsonObj);
+                if (rows.size() >= batchSize) {
+                    count += rows.size();
+                    handler.handle(rows);
+                    rows = new JsonArray();
+                }
+            }
+            if (rows.size() > 0) {
+                count += rows.size();
+                handler.handle(rows);
+            }
+            return count;
+        } catch (SQLException e) {
+            SqlStats.record(dbsql, sql, params, start, true);
+            printErrorLog(e, sql);
+            throw e;
+        } finally {
+            DruidUtils.closeRs(rset);
+            DruidUtils.closePstmt(pstmt);
+            try {
+                if (autoCommit && !conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                log.error(e.getMessage());
+            }
+            closeConn(conn);
+        }
+    }
+
     /**
      * 新增数据表，返回新增的主键Id
      */
     protected static <T> T insertTable(String sql, T id, DBParameter... params) throws Exception {
-        Connection conn = DruidUtils.getConnection();
+        Connection conn = DruidUtils.getWriteConnection();
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         PreparedStatement pstmt = null;
         ResultSet rset = null;
         try {
@@ -336,9 +526,11 @@ public class DruidUtils {
                 log.error(e.getMessage());
             }
         } catch (Exception e) {
+            error = true;
             printErrorLog(e, sql);
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -350,8 +542,10 @@ public class DruidUtils {
      * 新增数据表，返回新增的主键Id
      */
     protected static int executeAddTable(String sql, DBParameter... params) throws Exception {
-        Connection conn = DruidUtils.getConnection();
+        Connection conn = DruidUtils.getWriteConnection();
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         PreparedStatement pstmt = null;
         ResultSet rset = null;
         int id = 0;
@@ -370,9 +564,11 @@ public class DruidUtils {
                 log.error(e.getMessage());
             }
         } catch (Exception e) {
+            error = true;
             printErrorLog(e, sql);
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -410,6 +606,8 @@ public class DruidUtils {
         PreparedStatement pstmt = null;
         ResultSet rset = null;
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         try {
             pstmt = conn.prepareStatement(dbsql.getSql());
             dbsql.setParameters(sql, pstmt, params); //添加查询参数
@@ -430,9 +628,11 @@ public class DruidUtils {
                 list.add(bw.getWrappedInstance());
             }
         } catch (SQLException e) {
+            error = true;
             printErrorLog(e, sql);
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -456,6 +656,8 @@ public class DruidUtils {
         PreparedStatement pstmt = null;
         ResultSet rset = null;
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         try {
             pstmt = conn.prepareStatement(dbsql.getSql());
             dbsql.setParameters(sql, pstmt, params); //添加查询参数
@@ -481,9 +683,11 @@ public class DruidUtils {
                 array.add(map);
             }
         } catch (SQLException e) {
+            error = true;
             printErrorLog(e, sql);
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -503,6 +707,8 @@ public class DruidUtils {
         PreparedStatement pstmt = null;
         ResultSet rset = null;
         NSQLUtils dbsql = NSQLUtils.get(sql);
+        long start = SqlStats.start(); //执行统计
+        boolean error = false;
         try {
             pstmt = conn.prepareStatement(dbsql.getSql());
             dbsql.setParameters(sql, pstmt, params); //添加查询参数
@@ -529,9 +735,11 @@ public class DruidUtils {
             }
         } catch (SQLException e) {
             //System.out.println(e.getMessage());
+            error = true;
             printErrorLog(e, sql);
             throw e;
         } finally {
+            SqlStats.record(dbsql, sql, params, start, error);
             DruidUtils.close();
             DruidUtils.closePstmt(pstmt);
             DruidUtils.closeRs(rset);
@@ -2,14 +2,17 @@ package com.xinsite.dal.dbhelper;
 
 
 import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.uitls.LruCache;
 import org.apache.commons.lang3.StringUtils;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * SQL语句抽象，提供基于命名参数的SQL语句功能
@@ -17,13 +20,17 @@ import java.util.Map;
  * @author zhangxiaxin
  */
 public class NSQLUtils {
-    // 静态集合缓存使用过的NSQL
-    private static Map<String, NSQLUtils> caches = new HashMap<String, NSQLUtils>();
+    // 静态集合缓存使用过的NSQL，key为常量折叠后的语句，有界并发
+    private static final LruCache<String, NSQLUtils> caches = new LruCache<>(2048);
 
     private String sql_naming;
     private String sql_execute;
     private String[] names;
+    private Map<String, int[]> indexs; //参数名对应的位置(从1开始)
+    private String fingerprint; //常量折叠成?后的语句，用于执行统计
     private static char prefix = '@';
+    private static final char LITERAL = '\u0000'; //常量占位符
+    private static final Pattern IN_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+"); //in(?,?,?)折叠成in(?)
 
     private NSQLUtils() {
         // 用户不能实例化对象
@@ -35,15 +42,10 @@ public class NSQLUtils {
     }
 
     public void setParameter(PreparedStatement ps, String name, Object value) throws SQLException {
-        for (int a = 0, b = names.length - 1; a <= b; a++, b--) {
-            if (names[a].equals(name)) {
-                //ps.setNull(1, Types.NULL);
-                ps.setObject(a + 1, value);
-                //break;
-            }
-            if (a != b && names[b].equals(name)) {
-                ps.setObject(b + 1, value);
-                //break;
+        int[] positions = indexs.get(name);
+        if (positions != null) {
+            for (int position : positions) {
+                ps.setObject(position, value);
             }
         }
     }
@@ -100,18 +102,122 @@ public class NSQLUtils {
     }
 
     /**
-     * 获取对象实例，此方法将缓存分析过的SQL语句以提高性能
+     * 获取对象实例，此方法将缓存分析过的SQL语句以提高性能；
+     * 语句中的字符串、数字常量折叠后作为缓存key，只是拼接id不同的语句共用一个缓存
      *
      * @param sql
      * @return
      */
     public static NSQLUtils get(String sql) {
-        NSQLUtils nsql = caches.get(sql);
+        if (sql == null) {
+            throw new NullPointerException("SQL String is null");
+        }
+        List<String> literals = new ArrayList<String>();
+        String key = normalize(sql, literals);
+        NSQLUtils nsql = caches.get(key);
         if (nsql == null) {
-            nsql = NSQLUtils.parse(sql);
-            caches.put(sql, nsql);
+            nsql = NSQLUtils.parse(key);
+            caches.put(key, nsql);
         }
-        return nsql;
+        if (literals.isEmpty()) return nsql;
+        return nsql.bind(sql, literals);
+    }
+
+    /**
+     * 缓存统计：size、capacity、hits、misses、evictions
+     */
+    public static Map<String, Object> getCacheStats() {
+        return caches.getStats();
+    }
+
+    /**
+     * 常量折叠后的语句(常量及in列表显示为?)，只是常量不同的语句相同
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 设置缓存大小
+     */
+    public static void setCacheSize(int size) {
+        caches.setCapacity(size);
+    }
+
+    /**
+     * 把常量填回折叠后的语句，参数位置共用缓存对象
+     */
+    private NSQLUtils bind(String sql, List<String> literals) {
+        StringBuilder sql_builder = new StringBuilder(sql.length() + 16);
+        int index = 0;
+        for (int i = 0; i < sql_execute.length(); i++) {
+            char c = sql_execute.charAt(i);
+            if (c == LITERAL) sql_builder.append(literals.get(index++));
+            else sql_builder.append(c);
+        }
+        NSQLUtils dbsql = new NSQLUtils();
+        dbsql.sql_naming = sql;
+        dbsql.sql_execute = sql_builder.toString();
+        dbsql.names = names;
+        dbsql.indexs = indexs;
+        dbsql.fingerprint = fingerprint;
+        return dbsql;
+    }
+
+    /**
+     * 折叠语句中的常量：'字符串'、"字符串"、独立的数字，替换成占位符并按顺序取出
+     */
+    public static String normalize(String sql, List<String> literals) {
+        StringBuilder builder = null;
+        int last = 0;
+        int length = sql.length();
+        for (int index = 0; index < length; index++) {
+            char c = sql.charAt(index);
+            int end = -1;
+            if (c == '\'' || c == '"') {
+                end = index + 1;
+                while (end < length) {
+                    char e = sql.charAt(end);
+                    if (e == '\\') {
+                        end += 2;
+                        continue;
+                    }
+                    if (e == c) {
+                        if (end + 1 < length && sql.charAt(end + 1) == c) { //''转义
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                if (end >= length) return builder == null ? sql : builder.append(sql, last, length).toString(); //引号不成对，不再折叠
+                end++;
+            } else if (c >= '0' && c <= '9' && !isNamePart(sql, index - 1)) {
+                end = index + 1;
+                while (end < length && ((sql.charAt(end) >= '0' && sql.charAt(end) <= '9') || sql.charAt(end) == '.')) end++;
+                if (end < length && isNamePart(sql, end)) { //形如1abc，不是数字
+                    index = end;
+                    continue;
+                }
+            }
+            if (end > index) {
+                if (builder == null) builder = new StringBuilder(length);
+                builder.append(sql, last, index).append(LITERAL);
+                literals.add(sql.substring(index, end));
+                last = end;
+                index = end - 1;
+            }
+        }
+        if (builder == null) return sql;
+        return builder.append(sql, last, length).toString();
+    }
+
+    private static boolean isNamePart(String sql, int index) {
+        if (index < 0 || index >= sql.length()) return false;
+        char c = sql.charAt(index);
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (c >= '0' && c <= '9')
+                || c == prefix || c == '.' || c == '$' || c == '`' || c > 127;
     }
 
     /**
@@ -155,7 +261,15 @@ public class NSQLUtils {
         NSQLUtils dbsql = new NSQLUtils();
         dbsql.sql_naming = sql;
         dbsql.sql_execute = sql_builder.toString();
-        dbsql.names = names.toArray(dbsql.names = new String[names.size()]);
+        dbsql.names = names.toArray(new String[names.size()]);
+        dbsql.indexs = new HashMap<String, int[]>();
+        for (int index = 0; index < dbsql.names.length; index++) {
+            int[] positions = dbsql.indexs.get(dbsql.names[index]);
+            positions = positions == null ? new int[1] : Arrays.copyOf(positions, positions.length + 1);
+            positions[positions.length - 1] = index + 1;
+            dbsql.indexs.put(dbsql.names[index], positions);
+        }
+        dbsql.fingerprint = IN_LIST.matcher(sql.replace(LITERAL, '?')).replaceAll("?");
         return dbsql;
     }
 
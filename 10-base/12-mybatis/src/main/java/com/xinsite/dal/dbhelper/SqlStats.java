@@ -0,0 +1,329 @@
+package com.xinsite.dal.dbhelper;
+
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.uitls.Utils_String;
+import com.xinsite.dal.uitls.Utils_Value;
+import com.xinsite.dal.uitls.Utils_Yml;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL执行统计：按常量折叠后的语句汇总次数、总耗时、最大耗时及耗时分布(百分位)，
+ * 超过慢SQL阈值的语句连同参数、调用的BLL方法放入按耗时的最小堆(只保留耗时最长的N条，reset后重新记录)；
+ * 慢SQL同样只记折叠常量后的语句，拼接在语句中的密码、盐值等常量不会保留
+ * 配置：config.sql_stats(开关)、config.sql_slow_millis(慢SQL阈值)、config.sql_slow_size(慢SQL条数)
+ */
+public class SqlStats {
+
+    /**
+     * 统计的语句数上限，超出的计入"(其它)"
+     */
+    private static final int MAX_STATEMENTS = 5000;
+    private static final String OTHER = "(其它)";
+
+    /**
+     * 耗时分布桶：第i个桶为[2^(i-1), 2^i)微秒
+     */
+    private static final int BUCKETS = 32;
+
+    /**
+     * 慢SQL中不显示参数值的参数名称(包含即可，不区分大小写)
+     */
+    private static final String[] SENSITIVE = {"password", "pwd", "salt", "token", "key"};
+
+    /**
+     * 某语句的汇总
+     */
+    private static class Stat {
+        final String fingerprint;
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        volatile long lastTime;
+
+        Stat(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        void add(long nanos, boolean error) {
+            count.increment();
+            if (error) errors.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+            long micros = nanos / 1000;
+            buckets.incrementAndGet(Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1));
+            lastTime = System.currentTimeMillis();
+        }
+
+        /**
+         * 百分位耗时(毫秒)，取所在桶的上限
+         */
+        double percentile(long[] counts, long total, double p) {
+            long rank = (long) Math.ceil(total * p);
+            long sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += counts[i];
+                if (sum >= rank && sum > 0) return (1L << i) / 1000.0;
+            }
+            return maxNanos.get() / 1000000.0;
+        }
+
+        Map<String, Object> toMap() {
+            long total = count.sum();
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) counts[i] = buckets.get(i);
+            long totalCount = 0;
+            for (long c : counts) totalCount += c;
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("sql", fingerprint);
+            map.put("count", total);
+            map.put("errors", errors.sum());
+            map.put("total_ms", round(totalNanos.sum() / 1000000.0));
+            map.put("avg_ms", total == 0 ? 0 : round(totalNanos.sum() / 1000000.0 / total));
+            map.put("max_ms", round(maxNanos.get() / 1000000.0));
+            map.put("p50_ms", round(Math.min(percentile(counts, totalCount, 0.50), maxNanos.get() / 1000000.0)));
+            map.put("p95_ms", round(Math.min(percentile(counts, totalCount, 0.95), maxNanos.get() / 1000000.0)));
+            map.put("p99_ms", round(Math.min(percentile(counts, totalCount, 0.99), maxNanos.get() / 1000000.0)));
+            map.put("last_time", format(lastTime));
+            return map;
+        }
+    }
+
+    /**
+     * 慢SQL记录
+     */
+    private static class SlowSql {
+        final String fingerprint;
+        final String params;
+        final long nanos;
+        final double millis;
+        final long time;
+        final String caller;
+        final String thread;
+        final boolean error;
+
+        SlowSql(String fingerprint, String params, long nanos, String caller, boolean error) {
+            this.fingerprint = fingerprint;
+            this.params = params;
+            this.nanos = nanos;
+            this.millis = nanos / 1000000.0;
+            this.time = System.currentTimeMillis();
+            this.caller = caller;
+            this.thread = Thread.currentThread().getName();
+            this.error = error;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("sql", fingerprint);
+            map.put("params", params);
+            map.put("millis", round(millis));
+            map.put("time", format(time));
+            map.put("caller", caller);
+            map.put("thread", thread);
+            map.put("error", error);
+            return map;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Stat> stats = new ConcurrentHashMap<>();
+    private static final PriorityQueue<SlowSql> slows = new PriorityQueue<>(Comparator.comparingLong(slow -> slow.nanos));
+    private static int slowSize = 100;
+    private static volatile long slowFloor;  //已满时堆中最短的耗时，不超过时不再取调用方法、参数
+    private static volatile boolean enabled = true;
+    static volatile long slowNanos = 500_000_000L;  //慢SQL阈值，测试时替换
+    private static volatile long resetTime = System.currentTimeMillis();
+
+    static {
+        loadConfig();
+        Utils_Yml.addReloadListener(location -> loadConfig());
+    }
+
+    private static void loadConfig() {
+        String enabled_str = Utils_Yml.getValue("config.sql_stats");
+        enabled = Utils_String.isEmpty(enabled_str) || Utils_Value.toBoolean(enabled_str);
+        slowNanos = Utils_Value.tryParse(Utils_Yml.getValue("config.sql_slow_millis"), 500L) * 1000000L;
+        int size = Math.max(Utils_Value.tryParse(Utils_Yml.getValue("config.sql_slow_size"), 100), 1);
+        synchronized (slows) {
+            slowSize = size;
+            while (slows.size() > slowSize) slows.poll();
+            updateFloor();
+        }
+    }
+
+    /**
+     * 开始计时，关闭统计时返回0
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 结束计时并计入统计
+     *
+     * @param dbsql:已解析的语句，为空时按sql折叠常量
+     * @param start:start()的返回值，为0时不统计
+     */
+    public static void record(NSQLUtils dbsql, String sql, DBParameter[] params, long start, boolean error) {
+        if (start == 0) return;
+        long nanos = System.nanoTime() - start;
+        String fingerprint = dbsql != null ? dbsql.getFingerprint() : null;
+        if (fingerprint == null) fingerprint = NSQLUtils.get(sql).getFingerprint();
+        getStat(fingerprint).add(nanos, error);
+        if (nanos >= slowNanos && nanos > slowFloor) {
+            addSlow(new SlowSql(abbreviate(fingerprint, 4000), getParams(params), nanos, getCaller(), error));
+        }
+    }
+
+    /**
+     * 慢SQL放入最小堆，已满时替换耗时最短的一条
+     */
+    private static void addSlow(SlowSql slow) {
+        synchronized (slows) {
+            if (slows.size() >= slowSize) {
+                if (slow.nanos <= slows.peek().nanos) return;
+                slows.poll();
+            }
+            slows.add(slow);
+            updateFloor();
+        }
+    }
+
+    private static void updateFloor() {
+        slowFloor = slows.size() >= slowSize ? slows.peek().nanos : 0;
+    }
+
+    private static Stat getStat(String fingerprint) {
+        Stat stat = stats.get(fingerprint);
+        if (stat == null) {
+            if (stats.size() >= MAX_STATEMENTS) fingerprint = OTHER;
+            stat = stats.get(fingerprint);
+            if (stat == null) {
+                Stat created = new Stat(fingerprint);
+                stat = stats.putIfAbsent(fingerprint, created);
+                if (stat == null) stat = created;
+            }
+        }
+        return stat;
+    }
+
+    /**
+     * 调用的BLL方法：取调用栈中第一个bll包的方法，没有时取第一个数据访问层之外的方法
+     */
+    private static String getCaller() {
+        StackTraceElement other = null;
+        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+            String name = element.getClassName();
+            if (name.startsWith("java.") || name.startsWith("com.xinsite.dal.")) continue;
+            if (name.contains(".bll.")) return element.toString();
+            if (other == null) other = element;
+        }
+        return other == null ? "" : other.toString();
+    }
+
+    /**
+     * 慢SQL的参数，名称含password、pwd、salt、token、key的参数值用***代替
+     */
+    static String getParams(DBParameter[] params) {
+        if (params == null || params.length == 0) return "";
+        StringBuilder sb = new StringBuilder();
+        for (DBParameter p : params) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(p.getKey()).append("=");
+            sb.append(isSensitive(p.getKey()) ? "***" : abbreviate(String.valueOf(p.getValue()), 200));
+        }
+        return sb.toString();
+    }
+
+    static boolean isSensitive(String name) {
+        if (name == null) return false;
+        String lower = name.toLowerCase();
+        for (String word : SENSITIVE) {
+            if (lower.contains(word)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 各语句汇总，按总耗时倒序
+     */
+    public static List<Map<String, Object>> getStatements(int top) {
+        List<Stat> list = new ArrayList<>(stats.values());
+        list.sort((a, b) -> Long.compare(b.totalNanos.sum(), a.totalNanos.sum()));
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < list.size() && (top <= 0 || i < top); i++) {
+            result.add(list.get(i).toMap());
+        }
+        return result;
+    }
+
+    /**
+     * 耗时最长的慢SQL，按耗时倒序
+     */
+    public static List<Map<String, Object>> getSlowStatements() {
+        List<SlowSql> list;
+        synchronized (slows) {
+            list = new ArrayList<>(slows);
+        }
+        list.sort((a, b) -> Double.compare(b.millis, a.millis));
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (SlowSql slow : list) result.add(slow.toMap());
+        return result;
+    }
+
+    /**
+     * 统计概况
+     */
+    public static Map<String, Object> getSummary() {
+        long count = 0, errors = 0, nanos = 0;
+        for (Stat stat : stats.values()) {
+            count += stat.count.sum();
+            errors += stat.errors.sum();
+            nanos += stat.totalNanos.sum();
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", enabled);
+        map.put("slow_millis", slowNanos / 1000000);
+        map.put("slow_size", slowSize);
+        map.put("statements", stats.size());
+        map.put("count", count);
+        map.put("errors", errors);
+        map.put("total_ms", round(nanos / 1000000.0));
+        map.put("reset_time", format(resetTime));
+        return map;
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        stats.clear();
+        synchronized (slows) {
+            slows.clear();
+            updateFloor();
+        }
+        resetTime = System.currentTimeMillis();
+    }
+
+    private static String abbreviate(String str, int max) {
+        if (str == null || str.length() <= max) return str;
+        return str.substring(0, max) + "...";
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static String format(long time) {
+        if (time == 0) return "";
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time));
+    }
+}
@@ -3,6 +3,7 @@ package com.xinsite.dal.properties;
 import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceBuilder;
 import com.xinsite.dal.datasource.DataSourceHolder;
+import com.xinsite.dal.datasource.ReplicaRouter;
 import com.xinsite.dal.uitls.Utils_Props;
 import com.xinsite.dal.uitls.Utils_Value;
 import com.xinsite.dal.uitls.Utils_Yml;
@@ -12,6 +13,8 @@ import java.sql.Connection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * 以文件形式读取数据源，通过Application启动时
@@ -21,6 +24,12 @@ public class ReadProperties {
     private static Map<String, DruidDataSource> map = new HashMap<>();
 
     public static Connection getConnection() throws Exception {
+        if (DataSourceHolder.isReplicaRead()) {
+            String db_key = DataSourceHolder.getDBKey();
+            if (!map.containsKey(db_key)) addDataSource(db_key);
+            Connection conn = ReplicaRouter.getConnection(db_key);
+            if (conn != null) return conn;
+        }
         DruidDataSource source = getDataSource();
 
         if (source == null) throw new RuntimeException("获取数据源连接池失败！");
@@ -62,12 +71,46 @@ public class ReadProperties {
 
                 ReadProperties.setDataSource(dataSource, conf);
                 map.put(db_key, dataSource);
+                ReadProperties.addReplicas(db_key, conf);
             } catch (Exception e) {
                 System.out.println("新增数据库创建连接池失败！");
             }
         }
     }
 
+    /**
+     * 添加数据源的只读副本，配置在数据源下：replicas.{副本名称}.url、username、password、enabled
+     */
+    public static void addReplicas(String db_key, Properties conf) {
+        if (conf == null || ReplicaRouter.hasReplicas(db_key)) return;
+        String prex_key = String.format("spring.datasource.druid.%s.replicas.", db_key);
+        Set<String> names = new TreeSet<>();
+        for (String key : conf.stringPropertyNames()) {
+            if (!key.startsWith(prex_key)) continue;
+            String name = key.substring(prex_key.length());
+            if (name.indexOf('.') > 0) names.add(name.substring(0, name.indexOf('.')));
+        }
+        for (String name : names) {
+            String replica_key = prex_key + name + ".";
+            String enabled_str = conf.getProperty(replica_key + "enabled");
+            if (!StringUtils.isEmpty(enabled_str) && !Utils_Value.toBoolean(enabled_str)) continue;
+            try {
+                DruidDataSource dataSource = DruidDataSourceBuilder.create().build();
+                dataSource.setName(db_key + "-" + name);
+                dataSource.setUrl(conf.getProperty(replica_key + "url"));
+                dataSource.setUsername(conf.getProperty(replica_key + "username"));
+                dataSource.setPassword(conf.getProperty(replica_key + "password"));
+                ReadProperties.setDataSource(dataSource, conf);
+                //副本不可用时尽快失败，改用其它副本或主库
+                dataSource.setFailFast(true);
+                dataSource.setMaxWait(Math.min(dataSource.getMaxWait(), 3000));
+                ReplicaRouter.addReplica(db_key, name, dataSource, dataSource.getValidationQuery());
+            } catch (Exception e) {
+                System.out.println("只读副本" + db_key + "." + name + "创建连接池失败！");
+            }
+        }
+    }
+
     public static void setDataSource(DruidDataSource dataSource, Properties conf) {
         DruidProperties properties = DruidProperties.getInstance();
         dataSource.setDbType(conf.getProperty("spring.datasource.type"));
@@ -0,0 +1,115 @@
+package com.xinsite.dal.uitls;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界并发缓存，近似LRU淘汰：读不加锁，超出容量时由一个线程批量淘汰最久未访问的条目；
+ * 访问时间记在各条目上(System.nanoTime)，同一毫秒内重复命中不再写，热点条目没有共享计数器的竞争
+ */
+public class LruCache<K, V> {
+    private final ConcurrentHashMap<K, Node<V>> map = new ConcurrentHashMap<>();
+    private static final long RESOLUTION = 1000000L;   //访问时间精度(纳秒)
+    private final ReentrantLock evictLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile int capacity;
+
+    private static final class Node<V> {
+        final V value;
+        volatile long access;
+
+        Node(V value, long access) {
+            this.value = value;
+            this.access = access;
+        }
+    }
+
+    public LruCache(int capacity) {
+        setCapacity(capacity);
+    }
+
+    public V get(K key) {
+        Node<V> node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        long now = System.nanoTime();
+        if (now - node.access >= RESOLUTION) node.access = now;
+        return node.value;
+    }
+
+    public void put(K key, V value) {
+        map.put(key, new Node<>(value, System.nanoTime()));
+        if (map.size() > capacity) evict();
+    }
+
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * 缓存命中统计：size、capacity、hits、misses、evictions
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", map.size());
+        stats.put("capacity", capacity);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    /**
+     * 淘汰到容量的7/8，按访问时间排序，摊销到每次put；正在淘汰时其它线程不等待，
+     * 超出容量1/8以上时才等待，大小最多为容量的9/8加上并发put的线程数
+     */
+    private void evict() {
+        int slack = Math.max(1, capacity / 8);
+        if (map.size() > capacity + slack) evictLock.lock();
+        else if (!evictLock.tryLock()) return;
+        try {
+            while (map.size() > capacity) {
+                int count = map.size() - (capacity - slack);
+                //先取访问时间快照再排序，避免并发访问改变比较结果
+                List<Object[]> entries = new ArrayList<>(map.size());
+                for (Map.Entry<K, Node<V>> entry : map.entrySet()) {
+                    entries.add(new Object[]{entry.getKey(), entry.getValue(), entry.getValue().access});
+                }
+                entries.sort((a, b) -> Long.signum((Long) a[2] - (Long) b[2]));  //nanoTime按差值比较
+                for (int i = 0; i < count && i < entries.size(); i++) {
+                    Object[] entry = entries.get(i);
+                    if (map.remove(entry[0], entry[1])) evictions.increment();
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+}
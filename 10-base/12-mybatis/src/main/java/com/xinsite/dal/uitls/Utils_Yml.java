@@ -5,14 +5,44 @@ import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
 import org.yaml.snakeyaml.Yaml;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class Utils_Yml {
     private static final Logger logger = LoggerFactory.getLogger(Utils_Yml.class);
 
+    private static final String DEFAULT_LOCATION = "config/application.yml";
+
+    /**
+     * 已解析的yml快照(只读)，按文件位置缓存，重新加载时整体替换
+     */
+    private static final Map<String, Map<String, String>> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 快照重新加载后的回调，参数为文件位置
+     */
+    private static final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 正在监视的文件
+     */
+    private static final Map<String, Thread> watchers = new ConcurrentHashMap<>();
+
+    /**
+     * 文件变化后等待写完的时间(毫秒)，期间的多次变化只重新加载一次
+     */
+    private static final long SETTLE_MILLIS = 200;
+
     /**
      * 根据文件名获取yml的文件内容
      *
@@ -20,7 +50,7 @@ public class Utils_Yml {
      */
     public static Properties getYmlByFileName(String location) {
         Properties props = null;
-        if (location == null) location = "config/application.yml";
+        if (location == null) location = DEFAULT_LOCATION;
         Resource resource = Utils_Resource.getResource(location);
         if (resource.exists()) {
             InputStreamReader in = null;
@@ -50,15 +80,128 @@ public class Utils_Yml {
     }
 
     /**
-     * 根据key获取值
+     * 根据key获取值(读取快照，不再每次解析文件)
      *
      * @param key
      * @return
      */
     public static String getValue(String key) {
-        Properties props = getYmlByFileName(null);
-        if (props == null) return null;
-        return props.getProperty(key);
+        return getSnapshot(null).get(key);
+    }
+
+    /**
+     * 获取yml文件的只读快照，第一次访问时解析
+     */
+    public static Map<String, String> getSnapshot(String location) {
+        if (location == null) location = DEFAULT_LOCATION;
+        Map<String, String> snapshot = snapshots.get(location);
+        if (snapshot == null) {
+            snapshot = snapshots.computeIfAbsent(location, Utils_Yml::loadSnapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 重新解析文件并替换快照，内容有变化时通知监听；解析出错或没有任何配置(文件正在写入、被删除)时保留原快照
+     *
+     * @return 内容是否有变化
+     */
+    public static boolean reload(String location) {
+        if (location == null) location = DEFAULT_LOCATION;
+        Map<String, String> snapshot;
+        try {
+            snapshot = loadSnapshot(location);
+        } catch (RuntimeException ex) {
+            logger.error("Reload " + location + " failure, keep the previous snapshot. ", ex);
+            return false;
+        }
+        Map<String, String> old = snapshots.get(location);
+        if (snapshot.isEmpty() && old != null && !old.isEmpty()) {
+            logger.warn("Reload {} got no keys, keep the previous snapshot", location);
+            return false;
+        }
+        snapshots.put(location, snapshot);
+        if (snapshot.equals(old)) return false;
+        logger.info("Reload {}", location);
+        for (Consumer<String> listener : listeners) {
+            try {
+                listener.accept(location);
+            } catch (Exception ex) {
+                logger.error("Reload listener failure. ", ex);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 添加快照重新加载的监听
+     */
+    public static void addReloadListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 监视yml文件变化，变化时自动重新加载(文件在jar包内时不监视)
+     */
+    public static void watch(String location) {
+        if (location == null) location = DEFAULT_LOCATION;
+        final String path = location;
+        final File file;
+        try {
+            Resource resource = Utils_Resource.getResource(location);
+            if (!resource.exists() || !resource.isFile()) return;
+            file = resource.getFile();
+        } catch (IOException ex) {
+            return;
+        }
+        watchers.computeIfAbsent(path, key -> {
+            Thread thread = new Thread(() -> watchFile(path, file), "yml-watch-" + file.getName());
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        });
+    }
+
+    private static void watchFile(String location, File file) {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            Path dir = file.getParentFile().toPath();
+            dir.register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (context != null && file.getName().equals(context.toString())) changed = true;
+                }
+                if (!key.reset()) break;
+                if (changed) {
+                    Thread.sleep(SETTLE_MILLIS);
+                    WatchKey more;
+                    while ((more = service.poll()) != null) {
+                        more.pollEvents();
+                        if (!more.reset()) break;
+                    }
+                    reload(location);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            logger.error("Watch " + location + " failure. ", ex);
+        } finally {
+            watchers.remove(location);
+        }
+    }
+
+    private static Map<String, String> loadSnapshot(String location) {
+        Properties props = getYmlByFileName(location);
+        Map<String, String> map = new HashMap<>();
+        if (props != null) {
+            for (String key : props.stringPropertyNames()) {
+                map.put(key, props.getProperty(key));
+            }
+        }
+        return Collections.unmodifiableMap(map);
     }
 
     /**
@@ -0,0 +1,195 @@
+package com.xinsite.dal.datasource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 只读副本路由：轮流使用副本、不可用的副本停用且通过验证查询后才恢复、都不可用及事务中走主库
+ */
+public class ReplicaRouterTest {
+    private static final String DB_KEY = "master";
+
+    private FakeDataSource primary;
+    private FakeDataSource replica1;
+    private FakeDataSource replica2;
+    private DynamicDataSource dataSource;
+
+    /**
+     * 模拟数据源：连接的toString为数据源名称，down时获取连接失败，invalid时能获取连接但查询失败
+     */
+    private static class FakeDataSource {
+        final String name;
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger queries = new AtomicInteger();
+        volatile boolean down;
+        volatile boolean invalid;
+
+        FakeDataSource(String name) {
+            this.name = name;
+        }
+
+        DataSource proxy() {
+            return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DataSource.class}, (p, method, args) -> {
+                if (method.getName().equals("getConnection")) {
+                    if (down) throw new SQLException(name + " down");
+                    connections.incrementAndGet();
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, (c, m, a) -> {
+                        if (m.getName().equals("toString")) return name;
+                        if (m.getName().equals("createStatement")) return statement();
+                        return null;
+                    });
+                }
+                if (method.getName().equals("toString")) return name;
+                return null;
+            });
+        }
+
+        Statement statement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Statement.class}, (p, method, args) -> {
+                if (method.getName().equals("execute")) {
+                    assertEquals("select 1", args[0]);
+                    queries.incrementAndGet();
+                    if (invalid) throw new SQLException(name + " invalid");
+                    return true;
+                }
+                return null;
+            });
+        }
+    }
+
+    @Before
+    public void setup() {
+        ReplicaRouter.clear();
+        primary = new FakeDataSource("primary");
+        replica1 = new FakeDataSource("replica1");
+        replica2 = new FakeDataSource("replica2");
+        ReplicaRouter.addReplica(DB_KEY, "replica1", replica1.proxy());
+        ReplicaRouter.addReplica(DB_KEY, "replica2", replica2.proxy());
+        ReplicaRouter.addReplica(DB_KEY, "replica1", new FakeDataSource("duplicate").proxy());
+        DataSource master = primary.proxy();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DB_KEY, master);
+        dataSource = new DynamicDataSource(master, targets);
+    }
+
+    @After
+    public void tearDown() {
+        ReplicaRouter.clear();
+    }
+
+    private String connect() throws SQLException {
+        return dataSource.getConnection().toString();
+    }
+
+    @Test
+    public void roundRobin() throws SQLException {
+        assertTrue(ReplicaRouter.hasReplicas(DB_KEY));
+        assertFalse(ReplicaRouter.hasReplicas("other"));
+        try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) {
+            for (int i = 0; i < 6; i++) assertTrue(connect().startsWith("replica"));
+        }
+        assertEquals(3, replica1.connections.get());
+        assertEquals(3, replica2.connections.get());
+        assertEquals(0, primary.connections.get());
+    }
+
+    @Test
+    public void primaryOutsideReadOnly() throws SQLException {
+        assertEquals("primary", connect());
+        try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) {
+            try (DataSourceHolder.Scope inner = DataSourceHolder.primary()) {
+                assertEquals("primary", connect());
+            }
+            assertTrue(connect().startsWith("replica"));
+        }
+        assertEquals("primary", connect());
+    }
+
+    @Test
+    public void primaryInTransaction() throws SQLException {
+        try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) {
+            DataSourceHolder.beginTransaction();
+            DataSourceHolder.beginTransaction();
+            assertEquals("primary", connect());
+            DataSourceHolder.endTransaction();
+            assertEquals("primary", connect());
+            DataSourceHolder.endTransaction();
+            assertTrue(connect().startsWith("replica"));
+        }
+    }
+
+    /**
+     * 副本获取连接失败时停用，真实查询不再尝试；恢复后通过验证才重新参与轮流
+     */
+    @Test
+    public void failoverAndFailback() throws SQLException {
+        replica1.down = true;
+        try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) {
+            for (int i = 0; i < 4; i++) assertEquals("replica2", connect());
+
+            //恢复后未验证前不使用replica1
+            replica1.down = false;
+            for (int i = 0; i < 4; i++) assertEquals("replica2", connect());
+            assertEquals(0, replica1.connections.get());
+
+            //验证查询不通过时仍停用
+            replica1.invalid = true;
+            assertEquals(1, ReplicaRouter.check());
+            for (int i = 0; i < 4; i++) assertEquals("replica2", connect());
+            assertEquals(1, replica1.connections.get());
+
+            replica1.invalid = false;
+            assertEquals(2, ReplicaRouter.check());
+            int before = replica1.connections.get();
+            for (int i = 0; i < 4; i++) connect();
+            assertEquals(before + 2, replica1.connections.get());
+        }
+    }
+
+    /**
+     * 能获取连接但验证查询失败的副本(如复制中断)由定时验证停用，不等真实查询失败
+     */
+    @Test
+    public void checkMarksInvalidDown() throws SQLException {
+        replica2.invalid = true;
+        assertEquals(1, ReplicaRouter.check());
+        assertEquals(1, replica1.queries.get());
+        assertEquals(1, replica2.queries.get());
+        try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) {
+            for (int i = 0; i < 4; i++) assertEquals("replica1", connect());
+        }
+        replica2.invalid = false;
+        assertEquals(2, ReplicaRouter.check());
+        try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) {
+            assertNotEquals(connect(), connect());
+        }
+    }
+
+    @Test
+    public void allReplicasDown() throws SQLException {
+        replica1.down = true;
+        replica2.down = true;
+        try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) {
+            assertEquals("primary", connect());
+            assertEquals("primary", connect());
+        }
+        assertNull(ReplicaRouter.getConnection(DB_KEY));
+
+        replica2.down = false;
+        assertNull(ReplicaRouter.getConnection(DB_KEY));
+        assertEquals(1, ReplicaRouter.check());
+        assertEquals("replica2", ReplicaRouter.getConnection(DB_KEY).toString());
+    }
+}
@@ -0,0 +1,65 @@
+package com.xinsite.dal.dbhelper;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * DBFunction.afterCommit，内存数据库H2(config/application-druid.yml)：
+ * 事务提交后执行、回滚时丢弃、不在事务中立即执行
+ */
+public class DBFunctionTest {
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists test_commit");
+        DBFunction.executeNonQuery("create table test_commit(id int primary key)");
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists test_commit");
+    }
+
+    @Test
+    public void runAfterCommit() throws Exception {
+        List<String> actions = new ArrayList<>();
+        DBFunction.startTransaction();
+        DBFunction.executeNonQuery("insert into test_commit(id) values (1)");
+        DBFunction.afterCommit(() -> actions.add("first"));
+        DBFunction.afterCommit(() -> {
+            throw new IllegalStateException("ignored");
+        });
+        DBFunction.afterCommit(() -> actions.add("second"));
+        assertTrue(actions.isEmpty());
+        DBFunction.commit();
+        assertEquals("[first, second]", actions.toString());
+        assertEquals(1, DBFunction.getTableCount("select count(1) from test_commit where id=1"));
+    }
+
+    @Test
+    public void discardOnRollback() throws Exception {
+        List<String> actions = new ArrayList<>();
+        DBFunction.startTransaction();
+        DBFunction.executeNonQuery("insert into test_commit(id) values (2)");
+        DBFunction.afterCommit(() -> actions.add("rollback"));
+        DBFunction.rollback();
+        assertEquals(0, DBFunction.getTableCount("select count(1) from test_commit where id=2"));
+
+        DBFunction.startTransaction();
+        DBFunction.commit();
+        assertTrue(actions.isEmpty());
+    }
+
+    @Test
+    public void runImmediatelyWithoutTransaction() {
+        List<String> actions = new ArrayList<>();
+        DBFunction.afterCommit(() -> actions.add("now"));
+        assertEquals("[now]", actions.toString());
+    }
+}
@@ -0,0 +1,158 @@
+package com.xinsite.dal.dbhelper;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.xinsite.dal.bean.DBParameter;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * DBPager分页，内存数据库H2(MySQL兼容模式，config/application-druid.yml)：
+ * 键集分页与偏移量分页结果一致，子查询、group by、having、多表同名列不受影响；
+ * 深页的分页语句在数据库端分页，执行后只返回一页的行数
+ */
+public class DBPagerTest {
+    private static final int ROWS = 95;
+    private static final int PAGE = 10;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists test_pager");
+        DBFunction.executeNonQuery("drop table if exists test_pager_dept");
+        DBFunction.executeNonQuery("create table test_pager(id int primary key,name varchar(50),dept_id int,isdel int)");
+        DBFunction.executeNonQuery("create table test_pager_dept(id int primary key,name varchar(50),isdel int)");
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("name", "用户" + i);
+            row.put("dept_id", i % 7);
+            row.put("isdel", i % 10 == 0 ? 1 : 0);
+            list.add(row);
+        }
+        DBFunction.insertBatch(list, "test_pager", "id", "name", "dept_id", "isdel");
+        for (int i = 0; i < 7; i++) {
+            DBFunction.executeNonQuery("insert into test_pager_dept(id,name,isdel) values (" + i + ",'部门" + i + "',0)");
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists test_pager");
+        DBFunction.executeNonQuery("drop table if exists test_pager_dept");
+    }
+
+    private static final String JOIN_SQL = "a1.id,a1.name,a1.dept_id,a2.name dept_name," +
+            "(select count(1) from test_pager a3 where a3.dept_id=a1.dept_id) dept_count" +
+            " from test_pager a1 left join test_pager_dept a2 on a1.dept_id=a2.id where a1.isdel=0";
+
+    /**
+     * 逐页翻页，键集分页每页用上一页末行的值，与偏移量分页逐页比较
+     */
+    private void assertSeekEqualsOffset(String sql, String seekColumn, String seekKey, boolean desc) throws Exception {
+        String order = (seekColumn.equals(seekKey) ? seekKey : seekColumn + (desc ? " desc," : ",") + seekKey) + (desc ? " desc" : "");
+        String seekLabel = seekColumn.substring(seekColumn.indexOf('.') + 1);
+        String keyLabel = seekKey.substring(seekKey.indexOf('.') + 1);
+        JsonArray prev = null;
+        int total = 0;
+        for (int start = 0; ; start += PAGE) {
+            JsonArray offset = new DBPager(sql, order, start, PAGE).getCurPageArray();
+            DBPager seek = new DBPager(sql, order, start, PAGE);
+            if (prev != null) {
+                JsonObject last = prev.get(prev.size() - 1).getAsJsonObject();
+                seek.setSeek(seekColumn, seekKey, desc, getValue(last, seekLabel), getValue(last, keyLabel));
+                assertTrue(seek.isSeek());
+            }
+            assertEquals("start=" + start, offset, seek.getCurPageArray());
+            total += offset.size();
+            if (offset.size() < PAGE) break;
+            prev = offset;
+        }
+        assertEquals(DBFunction.getTableCount("select count(1) from test_pager where isdel=0"), total);
+    }
+
+    /**
+     * H2的列名为大写，按列名不区分大小写取值
+     */
+    private static String getValue(JsonObject row, String label) {
+        for (Map.Entry<String, JsonElement> entry : row.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(label)) return entry.getValue().getAsString();
+        }
+        return null;
+    }
+
+    @Test
+    public void seekByKey() throws Exception {
+        assertSeekEqualsOffset(JOIN_SQL, "a1.id", "a1.id", false);
+        assertSeekEqualsOffset(JOIN_SQL, "a1.id", "a1.id", true);
+    }
+
+    @Test
+    public void seekByColumnAndKey() throws Exception {
+        assertSeekEqualsOffset(JOIN_SQL, "a1.dept_id", "a1.id", false);
+        assertSeekEqualsOffset(JOIN_SQL, "a1.dept_id", "a1.id", true);
+    }
+
+    @Test
+    public void seekGroupByHaving() throws Exception {
+        String sql = "dept_id id,count(1) cnt from test_pager where isdel=0 group by dept_id having count(1)>1";
+        DBPager seek = new DBPager(sql, "dept_id", 0, 3);
+        seek.setSeek("id", "id", false, null, 2);
+        JsonArray array = seek.getCurPageArray();
+        assertEquals(3, array.size());
+        assertEquals("3", getValue(array.get(0).getAsJsonObject(), "id"));
+    }
+
+    @Test
+    public void seekWithoutValueFallsBackToOffset() throws Exception {
+        DBPager seek = new DBPager(JOIN_SQL, "a1.dept_id,a1.id", 20, PAGE);
+        seek.setSeek("a1.dept_id", "a1.id", false, null, 5);
+        assertFalse(seek.isSeek());
+        assertEquals(new DBPager(JOIN_SQL, "a1.dept_id,a1.id", 20, PAGE).getCurPageArray(), seek.getCurPageArray());
+    }
+
+    /**
+     * 深页：偏移量分页及键集分页的语句本身只返回pageSize行(不靠客户端跳行、setMaxRows截断)
+     */
+    @Test
+    public void deepPageFetchesOnlyLimitRows() throws Exception {
+        DBDialect dialect = DBDialect.get(DruidUtils.getConnection());
+        DruidUtils.close();
+        assertEquals(DBDialect.LIMIT_OFFSET, dialect);
+
+        int start = 80;
+        DBPager offset = new DBPager("id,name from test_pager", "id", start, PAGE);
+        String sql = offset.getPageSql(dialect);
+        assertTrue(sql, sql.endsWith("limit " + PAGE + " offset " + start));
+        JsonArray rows = DBFunction.executeJsonArray(sql);
+        assertEquals(PAGE, rows.size());
+        assertEquals(offset.getCurPageArray(), rows);
+
+        DBPager seek = new DBPager("id,name from test_pager", "id", start, PAGE);
+        seek.setSeek("id", "id", false, null, start);
+        sql = seek.getPageSql(dialect);
+        assertTrue(sql, sql.endsWith("limit " + PAGE + " offset 0"));
+        rows = DBFunction.executeJsonArray(sql, new DBParameter("seek_key", start));
+        assertEquals(PAGE, rows.size());
+        assertEquals(String.valueOf(start + 1), getValue(rows.get(0).getAsJsonObject(), "id"));
+        assertEquals(seek.getCurPageArray(), rows);
+    }
+
+    @Test
+    public void offsetFetchOrder() {
+        DBPager pager = new DBPager("id from test_pager", "", 20, PAGE);
+        assertFalse(pager.getPageSql(DBDialect.OFFSET_FETCH).contains("(select 0)"));
+        assertTrue(pager.getPageSql(DBDialect.SQLSERVER).contains("order by (select 0)"));
+        pager = new DBPager("id from test_pager", "id", 20, PAGE);
+        assertEquals("select id from test_pager order by id offset 20 rows fetch next 10 rows only", pager.getPageSql(DBDialect.OFFSET_FETCH));
+    }
+}
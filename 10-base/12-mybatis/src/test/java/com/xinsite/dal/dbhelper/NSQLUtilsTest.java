@@ -0,0 +1,130 @@
+package com.xinsite.dal.dbhelper;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * NSQLUtils：常量折叠(引号内转义、@、负数、标识符中的数字)，折叠后绑定回原语句，
+ * 多线程解析时缓存不超过容量、命中统计准确
+ */
+public class NSQLUtilsTest {
+
+    @After
+    public void restore() {
+        NSQLUtils.setCacheSize(2048);
+    }
+
+    private static List<String> literals(String sql) {
+        List<String> literals = new ArrayList<>();
+        NSQLUtils.normalize(sql, literals);
+        return literals;
+    }
+
+    @Test
+    public void quotedLiterals() {
+        String sql = "select * from t where a='it''s @x' and b=\"x\\\"y\" and c='a\\'@b' and d=@d";
+        assertEquals(Arrays.asList("'it''s @x'", "\"x\\\"y\"", "'a\\'@b'"), literals(sql));
+
+        NSQLUtils dbsql = NSQLUtils.get(sql);
+        //引号中的@不是参数
+        assertTrue(dbsql.hasName());
+        assertEquals("select * from t where a='it''s @x' and b=\"x\\\"y\" and c='a\\'@b' and d=?", dbsql.getSql());
+        assertEquals(sql, dbsql.getNamingSql());
+        assertEquals("select * from t where a=? and b=? and c=? and d=@d", dbsql.getFingerprint());
+    }
+
+    @Test
+    public void unclosedQuoteNotFolded() {
+        String sql = "select * from t where a=1 and b='abc";
+        List<String> literals = new ArrayList<>();
+        String key = NSQLUtils.normalize(sql, literals);
+        assertEquals(Arrays.asList("1"), literals);
+        assertTrue(key.endsWith("and b='abc"));
+        assertEquals(sql, NSQLUtils.get(sql).getSql());
+    }
+
+    @Test
+    public void negativeNumbers() {
+        String sql = "select * from t where a=-5 and b>-3.25 and c between -1 and 10";
+        assertEquals(Arrays.asList("5", "3.25", "1", "10"), literals(sql));
+        NSQLUtils dbsql = NSQLUtils.get(sql);
+        assertEquals(sql, dbsql.getSql());
+        assertEquals("select * from t where a=-? and b>-? and c between -? and ?", dbsql.getFingerprint());
+        //只是常量不同的语句共用一个解析结果
+        assertEquals(dbsql.getFingerprint(), NSQLUtils.get("select * from t where a=-7 and b>-0.5 and c between -2 and 3").getFingerprint());
+    }
+
+    @Test
+    public void literalsInsideIdentifiers() {
+        String sql = "select t2.col1,tb_2019.x,`3d` from tb_info_store12 t2,tb_2019 where t2.user_id=@user_id1 and x1y=12 and 1abc=2";
+        assertEquals(Arrays.asList("12", "2"), literals(sql));
+        NSQLUtils dbsql = NSQLUtils.get(sql);
+        assertEquals("select t2.col1,tb_2019.x,`3d` from tb_info_store12 t2,tb_2019 where t2.user_id=? and x1y=12 and 1abc=2", dbsql.getSql());
+        assertEquals("select t2.col1,tb_2019.x,`3d` from tb_info_store12 t2,tb_2019 where t2.user_id=@user_id1 and x1y=? and 1abc=?", dbsql.getFingerprint());
+    }
+
+    @Test
+    public void inListFolded() {
+        NSQLUtils dbsql = NSQLUtils.get("select * from t where id in(1, 2,3) and name in('a','b')");
+        assertEquals("select * from t where id in(?) and name in(?)", dbsql.getFingerprint());
+        assertEquals("select * from t where id in(1, 2,3) and name in('a','b')", dbsql.getSql());
+    }
+
+    /**
+     * 多线程解析不同语句：每次都绑定回原语句，缓存不超过容量，命中+未命中等于调用次数
+     */
+    @Test
+    public void concurrentCacheBounded() throws Exception {
+        int capacity = 64, threads = 8, calls = 5000, shapes = 400;
+        NSQLUtils.setCacheSize(capacity);
+        Map<String, Object> before = NSQLUtils.getCacheStats();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int maxSize = 0;
+                for (int i = 0; i < calls; i++) {
+                    //热点语句与长尾语句混合
+                    int shape = random.nextInt(4) == 0 ? random.nextInt(shapes) : random.nextInt(8);
+                    String sql = "select * from tb_shape_" + shape + " where id=" + (thread * calls + i) + " and name='n''" + i + "' and user_id=@user_id";
+                    NSQLUtils dbsql = NSQLUtils.get(sql);
+                    assertEquals("select * from tb_shape_" + shape + " where id=" + (thread * calls + i) + " and name='n''" + i + "' and user_id=?", dbsql.getSql());
+                    assertEquals("select * from tb_shape_" + shape + " where id=? and name=? and user_id=@user_id", dbsql.getFingerprint());
+                    maxSize = Math.max(maxSize, (Integer) NSQLUtils.getCacheStats().get("size"));
+                }
+                return maxSize;
+            }));
+        }
+        start.countDown();
+        int maxSize = 0;
+        for (Future<Integer> future : futures) maxSize = Math.max(maxSize, future.get(60, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        //正在淘汰时其它线程的put不等待，超出容量1/8以上才等待
+        assertTrue("max size " + maxSize, maxSize <= capacity + capacity / 8 + threads);
+        NSQLUtils.get("select * from tb_shape_final where id=1");
+        Map<String, Object> after = NSQLUtils.getCacheStats();
+        assertTrue("size " + after.get("size"), (Integer) after.get("size") <= capacity);
+
+        long lookups = diff(after, before, "hits") + diff(after, before, "misses");
+        assertEquals((long) threads * calls + 1, lookups);
+        assertTrue(diff(after, before, "hits") > 0);
+        assertTrue(diff(after, before, "evictions") > 0);
+    }
+
+    private static long diff(Map<String, Object> after, Map<String, Object> before, String name) {
+        return (Long) after.get(name) - (Long) before.get(name);
+    }
+}
@@ -0,0 +1,149 @@
+package com.xinsite.dal.dbhelper;
+
+import com.xinsite.dal.bean.DBParameter;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * SqlStats：慢SQL参数中密码、盐值、令牌等不显示参数值；
+ * 慢SQL只记折叠常量后的语句，内存数据库H2(config/application-druid.yml)执行拼接密码的语句后不留密码
+ */
+public class SqlStatsTest {
+    private static final String SALT = "9f3c2a7be1d04c55";
+    private static final String PASSWORD = "e10adc3949ba59abbe56e057f20f883e";
+
+    private long slowNanos;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists test_stats_user");
+        DBFunction.executeNonQuery("create table test_stats_user(user_id int primary key,login_name varchar(50),pwd_salt varchar(50),password varchar(50))");
+        DBFunction.executeNonQuery("insert into test_stats_user(user_id,login_name) values (1,'admin')");
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists test_stats_user");
+    }
+
+    @Before
+    public void slowAll() {
+        slowNanos = SqlStats.slowNanos;
+        SqlStats.slowNanos = 0;  //每条语句都记慢SQL
+        SqlStats.reset();
+    }
+
+    @After
+    public void restore() {
+        SqlStats.slowNanos = slowNanos;
+        SqlStats.reset();
+    }
+
+    @Test
+    public void maskSensitiveParams() {
+        String params = SqlStats.getParams(new DBParameter[]{
+                new DBParameter("@user_id", 12),
+                new DBParameter("@password", "e10adc3949ba59abbe56e057f20f883e"),
+                new DBParameter("@pwd_salt", "a1b2c3"),
+                new DBParameter("@Token", "t-123"),
+                new DBParameter("@api_key", "k-456")
+        });
+        assertEquals("@user_id=12, @password=***, @pwd_salt=***, @Token=***, @api_key=***", params);
+    }
+
+    @Test
+    public void emptyParams() {
+        assertEquals("", SqlStats.getParams(null));
+        assertEquals("", SqlStats.getParams(new DBParameter[0]));
+        assertFalse(SqlStats.isSensitive(null));
+        assertFalse(SqlStats.isSensitive("@login_name"));
+    }
+
+    /**
+     * 同BLL_PassWord.initPassword：密码、盐值拼接在语句中
+     */
+    @Test
+    public void slowSqlKeepsNoLiterals() throws Exception {
+        DBFunction.executeNonQuery("update test_stats_user set pwd_salt='" + SALT + "',password='" + PASSWORD + "' where user_id=1;");
+        assertEquals(PASSWORD, DBFunction.executeScalar("select password from test_stats_user where user_id=1"));
+
+        Map<String, Object> slow = find(SqlStats.getSlowStatements(), "update test_stats_user");
+        assertEquals("update test_stats_user set pwd_salt=?,password=? where user_id=?;", slow.get("sql"));
+        assertFalse(slow.toString().contains(SALT));
+        assertFalse(slow.toString().contains(PASSWORD));
+
+        //汇总与慢SQL是同一语句
+        assertEquals(1L, find(SqlStats.getStatements(0), "update test_stats_user").get("count"));
+    }
+
+    @Test
+    public void slowSqlMasksParams() throws Exception {
+        DBFunction.executeNonQuery("update test_stats_user set password=@password where login_name=@login_name",
+                new DBParameter("@password", PASSWORD), new DBParameter("@login_name", "admin"));
+        Map<String, Object> slow = find(SqlStats.getSlowStatements(), "update test_stats_user");
+        assertEquals("update test_stats_user set password=@password where login_name=@login_name", slow.get("sql"));
+        assertEquals("@password=***, @login_name=admin", slow.get("params"));
+        assertFalse(slow.toString().contains(PASSWORD));
+    }
+
+    /**
+     * in列表折叠为一个占位符，不同长度的列表是同一语句
+     */
+    @Test
+    public void slowSqlFoldsInList() throws Exception {
+        DBFunction.executeJsonArray("select user_id from test_stats_user where user_id in(1,2,3) and login_name='admin'");
+        DBFunction.executeJsonArray("select user_id from test_stats_user where user_id in(4) and login_name='root'");
+        List<Map<String, Object>> slows = SqlStats.getSlowStatements();
+        assertEquals(2, slows.size());
+        for (Map<String, Object> slow : slows) {
+            assertEquals("select user_id from test_stats_user where user_id in(?) and login_name=?", slow.get("sql"));
+        }
+        assertEquals(2L, find(SqlStats.getStatements(0), "select user_id from test_stats_user").get("count"));
+    }
+
+    /**
+     * 保留耗时最长的N条(config.sql_slow_size默认100)，不是最近的N条：按随机顺序记录1~150毫秒
+     */
+    @Test
+    public void keepSlowest() {
+        List<Integer> millis = new ArrayList<>();
+        for (int i = 1; i <= 150; i++) millis.add(i);
+        Collections.shuffle(millis, new Random(3));
+        for (int ms : millis) {
+            SqlStats.record(null, "select user_id from test_stats_user where user_id=" + ms, null, System.nanoTime() - ms * 1000000L, false);
+        }
+        List<Map<String, Object>> slows = SqlStats.getSlowStatements();
+        assertEquals(100, slows.size());
+        assertEquals(100, SqlStats.getSummary().get("slow_size"));
+        double last = Double.MAX_VALUE;
+        for (Map<String, Object> slow : slows) {
+            double ms = (Double) slow.get("millis");
+            assertTrue(ms <= last);
+            assertTrue(String.valueOf(ms), ms >= 51);
+            last = ms;
+        }
+        assertTrue((Double) slows.get(0).get("millis") >= 150);
+        assertTrue(last < 52);
+
+        //更快的语句不替换
+        SqlStats.record(null, "select 1", null, System.nanoTime() - 10 * 1000000L, false);
+        assertTrue(last <= (Double) SqlStats.getSlowStatements().get(99).get("millis"));
+        SqlStats.reset();
+        assertTrue(SqlStats.getSlowStatements().isEmpty());
+    }
+
+    private static Map<String, Object> find(List<Map<String, Object>> list, String prefix) {
+        for (Map<String, Object> map : list) {
+            if (String.valueOf(map.get("sql")).startsWith(prefix)) return map;
+        }
+        fail("没有语句：" + prefix + " " + list);
+        return null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.xinsite.dal.uitls;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.*;
+
+/**
+ * LruCache：超出容量时淘汰最久未访问的条目，命中统计，多线程读写时容量有界、统计准确
+ */
+public class LruCacheTest {
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        LruCache<Integer, String> cache = new LruCache<>(8);
+        for (int i = 0; i < 8; i++) cache.put(i, "v" + i);
+        Thread.sleep(5);
+        for (int i = 0; i < 4; i++) assertEquals("v" + i, cache.get(i));
+        Thread.sleep(5);
+        cache.put(8, "v8");
+
+        assertEquals(7, cache.size());
+        for (int i = 0; i < 4; i++) assertNotNull("recently used " + i, cache.get(i));
+        assertNotNull(cache.get(8));
+        assertEquals(2L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    public void stats() {
+        LruCache<String, String> cache = new LruCache<>(4);
+        cache.put("a", "1");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        assertEquals(2L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+
+    /**
+     * 多线程put各自不同的key并随机get：大小不超过容量的9/8加线程数，
+     * 命中+未命中等于get次数，淘汰数等于put数减去最后的大小
+     */
+    @Test
+    public void concurrentBoundedStats() throws Exception {
+        int capacity = 256, threads = 8, puts = 20000;
+        LruCache<Integer, Integer> cache = new LruCache<>(capacity);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        LongAdder gets = new LongAdder();
+        LongAdder found = new LongAdder();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int base = t * puts;
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int maxSize = 0;
+                for (int i = 0; i < puts; i++) {
+                    cache.put(base + i, base + i);
+                    for (int k = 0; k < 3; k++) {
+                        int key = base + Math.max(0, i - random.nextInt(capacity * 2));
+                        Integer value = cache.get(key);
+                        gets.increment();
+                        if (value != null) {
+                            found.increment();
+                            assertEquals(key, value.intValue());
+                        }
+                    }
+                    maxSize = Math.max(maxSize, cache.size());
+                }
+                return maxSize;
+            }));
+        }
+        start.countDown();
+        int maxSize = 0;
+        for (Future<Integer> future : futures) maxSize = Math.max(maxSize, future.get(60, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertTrue("max size " + maxSize, maxSize <= capacity + capacity / 8 + threads);
+        assertEquals(gets.sum(), (long) cache.getStats().get("hits") + (long) cache.getStats().get("misses"));
+        assertEquals(found.sum(), cache.getStats().get("hits"));
+        assertEquals((long) threads * puts - cache.size(), cache.getStats().get("evictions"));
+
+        //没有并发时一次put就回到容量以内
+        cache.put(-1, -1);
+        assertTrue("size " + cache.size(), cache.size() <= capacity);
+        assertEquals((long) threads * puts + 1 - cache.size(), cache.getStats().get("evictions"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new LruCache<String, String>(0);
+    }
+}
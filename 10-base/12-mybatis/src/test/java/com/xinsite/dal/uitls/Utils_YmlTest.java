@@ -0,0 +1,83 @@
+package com.xinsite.dal.uitls;
+
+import com.xinsite.dal.datasource.DataSourceHolder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Utils_Yml快照：重新加载后DataSourceHolder不重启即使用新的主数据源；
+ * 文件正在写入(解析出错)、为空或被删除时保留原快照，主数据源不变
+ */
+public class Utils_YmlTest {
+    private static File file;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        //测试类路径下的config/application.yml(默认位置)
+        File dir = Utils_Resource.getResource("config/application-druid.yml").getFile().getParentFile();
+        file = new File(dir, "application.yml");
+        DataSourceHolder.getMasterKey();  //注册重新加载的监听
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        write("config:\n    master_database: master\n");
+        Utils_Yml.reload(null);
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static void write(String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void reloadChangesMasterKey() throws Exception {
+        write("config:\n    master_database: viceone\n    sys_name: 测试\n");
+        Utils_Yml.reload(null);
+        assertEquals("viceone", DataSourceHolder.getMasterKey());
+        assertEquals("viceone", DataSourceHolder.getDBKey());
+        assertEquals("测试", Utils_Yml.getValue("config.sys_name"));
+
+        write("config:\n    master_database: vicetwo\n    sys_name: 测试\n");
+        assertTrue(Utils_Yml.reload(null));
+        assertEquals("vicetwo", DataSourceHolder.getMasterKey());
+        //内容没变化时不通知
+        assertFalse(Utils_Yml.reload(null));
+    }
+
+    @Test
+    public void keepSnapshotOnBrokenFile() throws Exception {
+        write("config:\n    master_database: viceone\n");
+        Utils_Yml.reload(null);
+        assertEquals("viceone", DataSourceHolder.getMasterKey());
+
+        String[] broken = {
+                "",                                        //刚清空
+                "config:\n",                               //只写了第一行
+                "config:\n    master_database: [vice",     //写到一半
+                "config:\n    master_database: 'vice",     //引号没写完
+                "config"                                   //不是map
+        };
+        for (String content : broken) {
+            write(content);
+            assertFalse(content, Utils_Yml.reload(null));
+            assertEquals(content, "viceone", DataSourceHolder.getMasterKey());
+            assertEquals(content, "viceone", Utils_Yml.getValue("config.master_database"));
+        }
+
+        Files.delete(file.toPath());
+        assertFalse(Utils_Yml.reload(null));
+        assertEquals("viceone", DataSourceHolder.getMasterKey());
+
+        write("config:\n    master_database: master\n");
+        assertTrue(Utils_Yml.reload(null));
+        assertEquals("master", DataSourceHolder.getMasterKey());
+    }
+}
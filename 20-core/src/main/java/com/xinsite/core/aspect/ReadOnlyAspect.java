@@ -0,0 +1,22 @@
+package com.xinsite.core.aspect;
+
+import com.xinsite.dal.datasource.DataSourceHolder;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * 有@ReadOnly注解的方法在只读范围内执行，查询走只读副本
+ */
+@Aspect
+@Component
+public class ReadOnlyAspect {
+
+    @Around("@annotation(com.xinsite.common.annotation.ReadOnly) || @within(com.xinsite.common.annotation.ReadOnly)")
+    public Object around(ProceedingJoinPoint pjp) throws Throwable {
+        try (DataSourceHolder.Scope scope = DataSourceHolder.readOnly()) {
+            return pjp.proceed();
+        }
+    }
+}
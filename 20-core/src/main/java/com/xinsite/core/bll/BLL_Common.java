@@ -9,8 +9,8 @@ import com.xinsite.core.bll.design.BLL_Design;
 import com.xinsite.core.bll.system.BLL_DataSource;
 import com.xinsite.core.bll.system.BLL_Dept;
 import com.xinsite.core.bll.system.BLL_User;
+import com.xinsite.core.cache.CodeDictionary;
 import com.xinsite.core.utils.CommUtils;
-import com.xinsite.dal.bean.DBParameter;
 import com.xinsite.dal.dbhelper.DBFunction;
 
 /**
@@ -82,29 +82,17 @@ public class BLL_Common {
         if (array == null || array.size() == 0) return;
         if (StringUtils.isEmpty(data_key)) return;
         if (!CommUtils.columnsExists(array, field_name)) return;
-        String sql = "select a1.id,a1.text,a1.value from sys_code a1,sys_codetype b1" +
-                " where a1.codetype_id=b1.id and data_key=@data_key order by a1.serialcode";
-        JsonArray code = DBFunction.executeJsonArray(sql, new DBParameter("@data_key", data_key));
-
         String add_field = field_name + "_text";
-        String id = "value";
-        if (xtype.equalsIgnoreCase("treepicker")) id = "id";
+        boolean byId = xtype.equalsIgnoreCase("treepicker");
         for (int i = 0; i < array.size(); i++) {
             JsonObject dr = GsonUtils.getObject(array, i);
             String value = StringUtils.sqlFilter(GsonUtils.tryParse(dr, field_name, ""));
             if (StringUtils.isEmpty(value)) continue;
-            JsonArray drs = GsonUtils.getWhereArrayByIds(code, id, value);
-
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < drs.size(); j++) {
-                JsonObject r = GsonUtils.getObject(drs, j);
-                if (sb.length() != 0) sb.append(",");
-                sb.append(r.get("text").getAsString());
-            }
-            if (StringUtils.isEmpty(sb.toString()))
+            String text = CodeDictionary.getText(data_key, value, byId);
+            if (StringUtils.isEmpty(text))
                 dr.addProperty(add_field, value);
             else
-                dr.addProperty(add_field, sb.toString());
+                dr.addProperty(add_field, text);
         }
     }
 
@@ -191,28 +179,16 @@ public class BLL_Common {
         field_name = CommUtils.getColumnsName(array, field_name);
         if (!CommUtils.columnsExists(array, field_name)) return;
 
-        String sql = "select a1.id,a1.text,a1.value from sys_code a1,sys_codetype b1" +
-                " where a1.codetype_id=b1.id and data_key=@data_key order by a1.serialcode";
-        JsonArray code = DBFunction.executeJsonArray(sql, new DBParameter("@data_key", data_key));
-
-        String id = "value";
-        if (xtype.equalsIgnoreCase("treepicker")) id = "id";
+        boolean byId = xtype.equalsIgnoreCase("treepicker");
         for (int i = 0; i < array.size(); i++) {
             JsonObject dr = GsonUtils.getObject(array, i);
             String value = StringUtils.sqlFilter(GsonUtils.tryParse(dr, field_name, ""));
             if (StringUtils.isEmpty(value)) continue;
-            JsonArray drs = GsonUtils.getWhereArrayByIds(code, id, value);
-
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < drs.size(); j++) {
-                JsonObject r = GsonUtils.getObject(drs, j);
-                if (sb.length() != 0) sb.append(",");
-                sb.append(GsonUtils.tryParse(r, "text", ""));
-            }
-            if (StringUtils.isEmpty(sb.toString()))
+            String text = CodeDictionary.getText(data_key, value, byId);
+            if (StringUtils.isEmpty(text))
                 dr.addProperty(field_name, value);
             else
-                dr.addProperty(field_name, sb.toString());
+                dr.addProperty(field_name, text);
         }
     }
 
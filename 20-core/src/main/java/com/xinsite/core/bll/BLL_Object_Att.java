@@ -1,8 +1,13 @@
 package com.xinsite.core.bll;
 
+import com.xinsite.common.uitls.lang.DateUtils;
+import com.xinsite.core.model.UploadModel;
 import com.xinsite.dal.dbhelper.DBFunction;
 import com.xinsite.common.uitls.lang.StringUtils;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 附件管理
  * create by zhangxiaxin
@@ -22,5 +27,21 @@ public class BLL_Object_Att {
         }
         DBFunction.executeNonQuery(sb.toString());
     }
-}
 
+    /**
+     * 新增附件记录，返回attach_id
+     */
+    public static int addObjectAtt(int item_id, int idleaf, UploadModel fileUpload) throws Exception {
+        Map ht = new HashMap();
+        ht.put("item_id", item_id);
+        ht.put("idleaf", idleaf);
+        ht.put("serialcode", 200000);
+
+        ht.put("attach_name", fileUpload.fileName);
+        ht.put("attach_add", fileUpload.visualPath.replace("\\", "/"));
+        ht.put("attach_size", fileUpload.fileSize);
+        ht.put("attach_type", fileUpload.extName);
+        ht.put("create_time", DateUtils.getDateTime());
+        return DBFunction.insertByTbName(ht, "tb_object_att");
+    }
+}
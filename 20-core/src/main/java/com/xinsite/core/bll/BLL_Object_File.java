@@ -0,0 +1,99 @@
+package com.xinsite.core.bll;
+
+import com.xinsite.common.uitls.io.FileUtils;
+import com.xinsite.common.uitls.lang.DateUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.dbhelper.DBFunction;
+
+import java.io.File;
+
+/**
+ * 已上传文件登记(按内容MD5+大小)：相同内容的文件再次上传时直接引用已保存的文件；
+ * 同时登记完整上传过该文件的用户，秒传(不上传内容)只限这些用户，其他用户须上传内容
+ * create by zhangxiaxin
+ */
+public class BLL_Object_File {
+    private static final String TABLE_NAME = "tb_object_file";
+    private static final String USER_TABLE = "tb_object_file_user";
+    private static volatile boolean checked = false;
+
+    /**
+     * 登记表不存在时新建
+     */
+    private static void checkTable() throws Exception {
+        if (checked) return;
+        synchronized (BLL_Object_File.class) {
+            if (checked) return;
+            if (!BLL_Common.isExistTableName(TABLE_NAME)) {
+                String create_table = "create table if not exists `%s` (\n" +
+                        "  `file_md5` varchar(32) not null,\n" +
+                        "  `file_size` bigint(20) not null,\n" +
+                        "  `attach_add` varchar(400) not null,\n" +
+                        "  `create_time` datetime default null,\n" +
+                        "  primary key (`file_md5`,`file_size`)\n" +
+                        ") engine=innodb default charset=utf8;";
+                DBFunction.executeNonQuery(String.format(create_table, TABLE_NAME));
+            }
+            if (!BLL_Common.isExistTableName(USER_TABLE)) {
+                String create_table = "create table if not exists `%s` (\n" +
+                        "  `file_md5` varchar(32) not null,\n" +
+                        "  `file_size` bigint(20) not null,\n" +
+                        "  `user_id` int(11) not null,\n" +
+                        "  `create_time` datetime default null,\n" +
+                        "  primary key (`file_md5`,`file_size`,`user_id`)\n" +
+                        ") engine=innodb default charset=utf8;";
+                DBFunction.executeNonQuery(String.format(create_table, USER_TABLE));
+            }
+            checked = true;
+        }
+    }
+
+    /**
+     * 内容相同的已保存文件地址，没有(或文件已不存在)时返回空
+     */
+    public static String getAttachAdd(String file_md5, long file_size) throws Exception {
+        if (StringUtils.isEmpty(file_md5)) return "";
+        checkTable();
+        DBParameter[] params = new DBParameter[]{new DBParameter("file_md5", file_md5.toLowerCase()), new DBParameter("file_size", file_size)};
+        String attach_add = DBFunction.executeScalar("select attach_add from " + TABLE_NAME + " where file_md5=@file_md5 and file_size=@file_size", params);
+        if (StringUtils.isEmpty(attach_add)) return "";
+        File file = new File(FileUtils.getUploadFildPath() + attach_add);
+        if (file.isFile() && file.length() == file_size) return attach_add;
+        DBFunction.executeNonQuery("delete from " + TABLE_NAME + " where file_md5=@file_md5 and file_size=@file_size", params);
+        return "";
+    }
+
+    /**
+     * 秒传：该用户完整上传过的内容相同的文件地址，没有时返回空
+     */
+    public static String getUserAttachAdd(String file_md5, long file_size, int user_id) throws Exception {
+        if (StringUtils.isEmpty(file_md5) || user_id <= 0) return "";
+        checkTable();
+        String sql = "select count(1) from " + USER_TABLE + " where file_md5=@file_md5 and file_size=@file_size and user_id=@user_id";
+        if (DBFunction.getTableCount(sql, new DBParameter("file_md5", file_md5.toLowerCase()), new DBParameter("file_size", file_size),
+                new DBParameter("user_id", user_id)) == 0) return "";
+        return getAttachAdd(file_md5, file_size);
+    }
+
+    /**
+     * 登记完整上传过该文件的用户，已登记时不变
+     */
+    public static void addUser(String file_md5, long file_size, int user_id) throws Exception {
+        if (user_id <= 0) return;
+        checkTable();
+        String sql = "insert ignore into " + USER_TABLE + " (file_md5,file_size,user_id,create_time) values(@file_md5,@file_size,@user_id,@create_time)";
+        DBFunction.executeNonQuery(sql, new DBParameter("file_md5", file_md5.toLowerCase()), new DBParameter("file_size", file_size),
+                new DBParameter("user_id", user_id), new DBParameter("create_time", DateUtils.getDateTime()));
+    }
+
+    /**
+     * 登记已保存的文件(内容已校验)，已登记时不变
+     */
+    public static void addFile(String file_md5, long file_size, String attach_add) throws Exception {
+        checkTable();
+        String sql = "insert ignore into " + TABLE_NAME + " (file_md5,file_size,attach_add,create_time) values(@file_md5,@file_size,@attach_add,@create_time)";
+        DBFunction.executeNonQuery(sql, new DBParameter("file_md5", file_md5.toLowerCase()), new DBParameter("file_size", file_size),
+                new DBParameter("attach_add", attach_add.replace("\\", "/")), new DBParameter("create_time", DateUtils.getDateTime()));
+    }
+}
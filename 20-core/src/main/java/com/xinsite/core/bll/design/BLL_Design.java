@@ -8,17 +8,20 @@ import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.NumberUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.common.enums.system.ItemEnum;
+import com.xinsite.core.cache.DesignCache;
 import com.xinsite.core.model.design.ConfigTableModel;
 import com.xinsite.core.utils.log.LogError;
 import com.xinsite.dal.bean.DBParameter;
 import com.xinsite.dal.dbhelper.DBFunction;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
 
 /**
- * 设计表相关
+ * 设计表相关：数据对象(按oid)、数据表及字段(按tid)编译成DesignCache的ObjectMeta、TableMeta后缓存，
+ * 返回的JsonArray、JsonObject是副本
  * create by zhangxiaxin
  */
 public class BLL_Design {
@@ -35,19 +38,19 @@ public class BLL_Design {
     /**
      * 获取对象类型
      */
-    public static String getObjectType(int oid) {
-        String querySql = "select object_type from tb_gen_object where oid=@oid";
-        Object obj = DBFunction.executeScalar(querySql, new DBParameter("@oid", oid));
-        return obj == null ? "" : obj.toString();
+    public static String getObjectType(int oid) throws Exception {
+        return getObjectMeta(oid).objectType;
     }
 
     /**
      * 获取数据对象Id
      */
     public static int getObjectId(String table_key) {
-        String querySql = "select max(oid) from tb_gen_table where table_key=@table_key";
-        Object obj = DBFunction.executeScalar(querySql, new DBParameter("@table_key", table_key));
-        return NumberUtils.strToInt(obj);
+        return DesignCache.getScalar("oid:" + table_key, () -> {
+            String querySql = "select max(oid) from tb_gen_table where table_key=@table_key";
+            Object obj = DBFunction.executeScalar(querySql, new DBParameter("@table_key", table_key));
+            return NumberUtils.strToInt(obj);
+        });
     }
 
     /**
@@ -62,10 +65,8 @@ public class BLL_Design {
     /**
      * 获取数据库表Id
      */
-    public static int getTableId(int oid) {
-        String querySql = "select max(tid) tid from tb_gen_table where oid=@oid and tb_relation='主表'";
-        Object obj = DBFunction.executeScalar(querySql, new DBParameter("@oid", oid));
-        return NumberUtils.strToInt(obj);
+    public static int getTableId(int oid) throws Exception {
+        return getObjectMeta(oid).mainTid;
     }
 
     /**
@@ -81,19 +82,45 @@ public class BLL_Design {
      * 获取数据库表名
      */
     public static String getTableName(String table_key) {
-        String querySql = "select max(table_name) table_name from tb_gen_table where table_key=@table_key";
-        Object obj = DBFunction.executeScalar(querySql, new DBParameter("@table_key", table_key));
-        return obj == null ? "" : obj.toString();
+        return DesignCache.getScalar("table_name:" + table_key, () -> {
+            String querySql = "select max(table_name) table_name from tb_gen_table where table_key=@table_key";
+            Object obj = DBFunction.executeScalar(querySql, new DBParameter("@table_key", table_key));
+            return obj == null ? "" : obj.toString();
+        });
+    }
+
+    /**
+     * 数据对象：对象记录及所属数据表
+     */
+    private static DesignCache.ObjectMeta getObjectMeta(int oid) throws Exception {
+        return DesignCache.getObject(oid, () -> {
+            String querySql = "select * from tb_gen_object where oid=@oid";
+            JsonArray array = DBFunction.executeJsonArray(querySql, new DBParameter("@oid", oid));
+            JsonObject object = array.size() > 0 ? GsonUtils.getObject(array, 0) : null;
+            querySql = "select tid id,pid,table_explain text,table_name,tb_relation,extend_name,table_key,layout_type from tb_gen_table where oid={0}";
+            return new DesignCache.ObjectMeta(oid, object, DBFunction.executeJsonArray(StringUtils.format(querySql, oid)));
+        });
+    }
+
+    /**
+     * 数据表：表记录及全部字段
+     */
+    private static DesignCache.TableMeta getTableMeta(int tid) throws Exception {
+        return DesignCache.getTable(tid, () -> {
+            String querySql = "select * from tb_gen_table where tid=@tid";
+            JsonArray array = DBFunction.executeJsonArray(querySql, new DBParameter("@tid", tid));
+            JsonObject table = array.size() > 0 ? GsonUtils.getObject(array, 0) : null;
+            querySql = "select fid,field_name,field_explain,xtype,field_tag,extend_suf,isdefine,save_value,data_key,store_datas,store_type " +
+                    "from tb_gen_field where tid={0} order by serialcode,fid";
+            return new DesignCache.TableMeta(tid, table, DBFunction.executeJsonArray(StringUtils.format(querySql, tid)));
+        });
     }
 
     /**
      * 获取数据对象
      */
     public static JsonObject getObjectInfo(int oid) throws Exception {
-        String querySql = "select * from tb_gen_object where oid=@oid";
-        JsonArray array = DBFunction.executeJsonArray(querySql, new DBParameter("@oid", oid));
-        if (array.size() > 0) return GsonUtils.getObject(array, 0);
-        return null;
+        return getObjectMeta(oid).getObject();
     }
 
     public static String getObjectField(int oid, String field) throws Exception {
@@ -106,19 +133,14 @@ public class BLL_Design {
      * 获取数据库表名
      */
     public static JsonObject getTableInfo(int tid) throws Exception {
-        String querySql = "select * from tb_gen_table where tid=@tid";
-        JsonArray array = DBFunction.executeJsonArray(querySql, new DBParameter("@tid", tid));
-        if (array.size() > 0) return GsonUtils.getObject(array, 0);
-        return null;
+        return getTableMeta(tid).getTable();
     }
 
     /**
      * 获取数据库表特定字段
      */
-    public static String getFieldName(int tid, String field_tag, String default_) {
-        String querySql = "select field_name from tb_gen_field where field_tag=@field_tag and tid=" + tid;
-        Object obj = DBFunction.executeScalar(querySql, new DBParameter("@field_tag", field_tag));
-        String field_name = obj == null ? "" : obj.toString();
+    public static String getFieldName(int tid, String field_tag, String default_) throws Exception {
+        String field_name = getTableMeta(tid).getFieldName(field_tag);
         if (StringUtils.isEmpty(field_name)) field_name = default_;
         return field_name;
     }
@@ -127,8 +149,29 @@ public class BLL_Design {
      * 获取该栏目的所有表单
      */
     public static JsonArray getDesignTable(int oid) throws Exception {
-        String querySql = "select tid id,pid,table_explain text,table_name,tb_relation,extend_name,table_key,layout_type from tb_gen_table where oid={0}";
-        return DBFunction.executeJsonArray(StringUtils.format(querySql, oid));
+        return getObjectMeta(oid).getTables();
+    }
+
+    /**
+     * 预加载全部数据对象、数据表及字段到设计缓存，返回数据表数
+     */
+    public static int preload() throws Exception {
+        int count = 0;
+        JsonArray objects = DBFunction.executeJsonArray("select oid from tb_gen_object");
+        for (int i = 0; i < objects.size(); i++) {
+            int oid = GsonUtils.tryParse(GsonUtils.getObject(objects, i), "oid", 0);
+            getObjectInfo(oid);
+            JsonArray tables = getDesignTable(oid);
+            for (int k = 0; k < tables.size(); k++) {
+                JsonObject dr = GsonUtils.getObject(tables, k);
+                int tid = GsonUtils.tryParse(dr, "id", 0);
+                getTableInfo(tid);
+                getTableFields(tid);
+                getTableFields(GsonUtils.tryParse(dr, "table_name", ""));
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -144,20 +187,21 @@ public class BLL_Design {
      * 获取数据表所有字段
      */
     public static JsonArray getTableFields(String table_name) throws Exception {
-        String querySql = "select a1.oid,a1.tid,b1.fid,b1.field_name,b1.field_tag,b1.extend_suf from tb_gen_table a1,tb_gen_field b1 " +
-                "where a1.tid=b1.tid and a1.table_name=@table_name";
-
-        List<DBParameter> parms = new ArrayList<>();
-        parms.add(new DBParameter("@table_name", table_name));
-        return DBFunction.executeJsonArray(querySql, DBParameter.getParameter(parms));
+        List<Integer> tids = DesignCache.get("table_tids:" + table_name, () -> {
+            String querySql = "select tid from tb_gen_table where table_name=@table_name";
+            JsonArray array = DBFunction.executeJsonArray(querySql, new DBParameter("@table_name", table_name));
+            return Collections.unmodifiableList(ArrayUtils.listByField(array, "tid", 0));
+        });
+        JsonArray fields = new JsonArray();
+        for (int tid : tids) fields.addAll(getTableMeta(tid).getFields());
+        return fields;
     }
 
     /**
      * 获取数据表所有字段
      */
     public static JsonArray getTableFields(int tid) throws Exception {
-        String sql = "select field_name id,field_explain name,xtype from tb_gen_field where tid={0} and isdefine=1 order by serialcode";
-        return DBFunction.executeJsonArray(StringUtils.format(sql, tid));
+        return getTableMeta(tid).getDefineFields();
     }
 
     /**
@@ -246,9 +290,9 @@ public class BLL_Design {
      * 获取只存值的列表
      */
     public static JsonArray getColumnsCodeValue(int oid) throws Exception {
-        String querySql = "select a.save_value,a.field_name,a.xtype,a.save_value,a.data_key,a.store_datas,a.store_type\n" +
-                " from tb_gen_field a,tb_gen_table b where a.tid=b.tid and b.oid={0} and a.save_value=1";
-        return DBFunction.executeJsonArray(StringUtils.format(querySql, oid));
+        JsonArray array = new JsonArray();
+        for (int tid : getObjectMeta(oid).getTids()) array.addAll(getTableMeta(tid).getCodeValues());
+        return array;
     }
 
     /**
@@ -257,8 +301,10 @@ public class BLL_Design {
     public static void setGridObjectNames(JsonArray dt, String field_name) throws Exception {
         if (dt == null) return;
         if (!GsonUtils.getArrayFields(dt).contains(field_name)) return;
-        String querySql = "select oid,object_name,serialcode from tb_gen_object order by serialcode";
-        JsonArray code = DBFunction.executeJsonArray(querySql);
+        JsonArray code = DesignCache.get("object_names", () -> {
+            String querySql = "select oid,object_name,serialcode from tb_gen_object order by serialcode";
+            return DBFunction.executeJsonArray(querySql);
+        });
 
         String add_field = field_name + "_text";
         for (int i = 0; i < dt.size(); i++) {
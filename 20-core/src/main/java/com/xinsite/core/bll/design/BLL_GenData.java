@@ -4,16 +4,19 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.xinsite.common.enums.LogEnum;
 import com.xinsite.common.exception.AppException;
+import com.xinsite.common.uitls.collect.ArrayUtils;
 import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.DateUtils;
 import com.xinsite.common.uitls.lang.NumberUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.cache.DesignCache;
 import com.xinsite.core.utils.log.LogError;
 import com.xinsite.core.utils.user.UserUtils;
 import com.xinsite.dal.bean.DBParameter;
 import com.xinsite.dal.dbhelper.DBFunction;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,12 +46,50 @@ public class BLL_GenData {
         StringBuilder sb = new StringBuilder();
         String sql = "update tb_gen_field set {2}={0} where fid={1};";
         String[] Items = sortVal.split(";");
+        List<Integer> fids = new ArrayList<>();
         for (String item : Items) {
             String[] arr = item.split(":");
-            if (arr.length == 2)
+            if (arr.length == 2) {
                 sb.append(StringUtils.format(sql, arr[1], arr[0], Field));
+                fids.add(NumberUtils.strToInt(arr[0]));
+            }
         }
         DBFunction.executeNonQuery(sb.toString());
+        invalidateFields(getFieldTids(fids));
+    }
+
+    /**
+     * 字段所在的数据表tid
+     */
+    private static List<Integer> getFieldTids(List<Integer> fids) throws Exception {
+        if (fids.isEmpty()) return new ArrayList<>();
+        String sql = "select distinct tid from tb_gen_field where fid in({0})";
+        return ArrayUtils.listByField(DBFunction.executeJsonArray(StringUtils.format(sql, StringUtils.joinAsList(fids))), "tid", 0);
+    }
+
+    /**
+     * 字段修改后清除所在数据表的设计缓存
+     */
+    private static void invalidateFields(List<Integer> tids) {
+        for (int tid : tids) DesignCache.invalidateFields(tid);
+    }
+
+    /**
+     * 修改数据对象
+     */
+    public static void updateObject(int oid, Map ht) throws Exception {
+        DBFunction.updateByTbName(ht, "tb_gen_object", "oid=" + oid);
+        DesignCache.invalidateObject(oid);
+    }
+
+    /**
+     * 修改数据表字段(单元格编辑)
+     */
+    public static void updateField(int fid, Map ht) throws Exception {
+        List<Integer> tids = getFieldTids(Collections.singletonList(fid));
+        DBFunction.updateByTbName(ht, "tb_gen_field", "fid=" + fid);
+        if (ht.containsKey("tid")) tids.add(NumberUtils.strToInt(ht.get("tid")));  //改到其它数据表
+        invalidateFields(tids);
     }
 
     /**
@@ -99,6 +140,7 @@ public class BLL_GenData {
                 "                    delete from tb_gen_table where oid in({0});\n" +
                 "                    delete from tb_gen_object where oid in({0});";
         DBFunction.executeNonQuery(StringUtils.format(sql, oid));
+        DesignCache.invalidateObject(oid);
     }
 
     /**
@@ -136,6 +178,7 @@ public class BLL_GenData {
                     map.put("create_uid", UserUtils.getUserId());
                     DBFunction.insertByTbName(map, "tb_gen_object");
                 }
+                DesignCache.invalidateObject(oid);  //每条导入后清除，部分导入失败时已导入的数据也已修改
             }
         }
     }
@@ -175,6 +218,7 @@ public class BLL_GenData {
                     map.put("create_uid", UserUtils.getUserId());
                     DBFunction.insertByTbName(map, "tb_gen_table");
                 }
+                DesignCache.invalidateTable(tid, NumberUtils.strToInt(map.get("oid")));  //每条导入后清除，部分导入失败时已导入的数据也已修改
             }
         }
     }
@@ -210,6 +254,8 @@ public class BLL_GenData {
                 map.put("build_type", GsonUtils.tryParse(json, "build_type", ""));
                 map.put("is_form_input", GsonUtils.tryParse(json, "is_form_input", 0));
 
+                List<Integer> tids = getFieldTids(Collections.singletonList(fid));  //原数据表
+                tids.add(NumberUtils.strToInt(map.get("tid")));
                 if (BLL_GenData.isExistData(fid, "tb_gen_field", "fid")) {
                     DBFunction.updateByTbName(map, "tb_gen_field", "fid=" + fid);
                 } else {
@@ -218,6 +264,7 @@ public class BLL_GenData {
                     map.put("create_uid", UserUtils.getUserId());
                     DBFunction.insertByTbName(map, "tb_gen_field");
                 }
+                invalidateFields(tids);  //每条导入后清除，部分导入失败时已导入的数据也已修改
             }
         }
     }
@@ -243,9 +290,11 @@ public class BLL_GenData {
                     if (m.find()) ht.put("xtype", m.group(1));
                 }
             }
+            List<Integer> tids = getFieldTids(Collections.singletonList(fid));
             DBFunction.updateByTbName(ht, "tb_gen_field", "fid=" + fid);
 
             DBFunction.commit();
+            invalidateFields(tids);
         } catch (Exception ex) {
             DBFunction.rollback();
             LogError.write(LogEnum.Error, ex.toString());
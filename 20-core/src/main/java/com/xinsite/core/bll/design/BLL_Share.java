@@ -352,6 +352,15 @@ public class BLL_Share {
         DBFunction.updateByTbName(map, "tb_info_share", new DBParameter("@share_uuid", "=", share_uuid));
     }
 
+    /**
+     * 新增、删除历史记录后增减共享信息修改记录次数(不再按分表重新统计)
+     */
+    public static void addModRecords(String share_uuid, int count) throws Exception {
+        String sql = "update tb_info_share set modify_time=@modify_time,modify_records=ifnull(modify_records,0)+@count where share_uuid=@share_uuid";
+        DBFunction.executeNonQuery(sql, new DBParameter("@modify_time", DateUtils.getDateTime()),
+                new DBParameter("@count", count), new DBParameter("@share_uuid", share_uuid));
+    }
+
 }
 
 
@@ -11,8 +11,8 @@ import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.DateUtils;
 import com.xinsite.common.uitls.lang.NumberUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
-import com.xinsite.core.bll.BLL_Common;
-import com.xinsite.core.cache.SysConfigCache;
+import com.xinsite.common.uitls.text.PatchUtils;
+import com.xinsite.core.cache.StoreShardCache;
 import com.xinsite.core.enums.FieldTagEnum;
 import com.xinsite.core.model.design.ConfigTableModel;
 import com.xinsite.core.utils.CommUtils;
@@ -25,9 +25,16 @@ import java.util.*;
 
 /**
  * 历史操作信息存储
+ * store_data每KEYFRAME_INTERVAL个版本存一次完整内容(关键帧)，中间版本存与上一版本的补丁(PatchUtils)；
+ * 补丁以store_id排在前面的一条为基准，写入前锁定tb_info_share记录(select ... for update)，同一信息的历史记录依次写入，
+ * 读上一版本时用加锁读取(读最新提交的内容)，补丁链不会分叉
  * create by zhangxiaxin
  */
 public class BLL_Store {
+    /**
+     * 关键帧间隔(版本数)
+     */
+    public static final int KEYFRAME_INTERVAL = 20;
 
     /**
      * 新增历史记录信息
@@ -35,7 +42,7 @@ public class BLL_Store {
     public static boolean addHistoryRecord(String store_data, int item_id, long idleaf, int create_uid, String opertype) throws Exception {
         if (item_id > 0 && idleaf > 0) {
             //if (!BLL_Menu.isHistoryItem(item_id)) return true; //不记录历史记录
-            String sql = "select * from tb_info_share where item_id={0} and idleaf={1}";
+            String sql = "select * from tb_info_share where item_id={0} and idleaf={1} for update"; //同一信息的历史记录依次写入
             JsonArray array = DBFunction.executeJsonArray(StringUtils.format(sql, item_id, idleaf));
             if (array != null && array.size() > 0) {
                 JsonObject object = GsonUtils.getObject(array, 0);
@@ -61,23 +68,33 @@ public class BLL_Store {
                 store.put("opertype", opertype);
                 store.put("user_id", create_uid);
 
-                int store_id = 0;
+                int store_id = 0, last_id = 0;
                 if (GsonUtils.tryParse(object, "sub_table_num", 0) > 0) {
-                    sql = "select * from tb_info_store%d where share_uuid='%s' order by store_id desc limit 0,1"; //当天修改的最后一条记录
+                    sql = "select * from tb_info_store%d where share_uuid='%s' order by store_id desc limit 0,1 for update"; //当天修改的最后一条记录
                     array = DBFunction.executeJsonArray(String.format(sql, sub_table_num, share_uuid));
                     if (array != null && array.size() > 0) {
                         JsonObject obj = GsonUtils.getObject(array, 0);
+                        last_id = GsonUtils.tryParse(obj, "store_id", 0);
                         Date create_time = DateUtils.parseDate(GsonUtils.tryParse(obj, "create_time", DateUtils.getDateTime()));
                         long Minutes = DateUtils.pastMinutes(create_time);
                         String oper_type = GsonUtils.tryParse(obj, "opertype", "");
                         if (Minutes < 2 && oper_type.equals("修改") && create_uid == GsonUtils.tryParse(obj, "user_id", 0)) {
-                            store_id = GsonUtils.tryParse(obj, "store_id", 0); //同一个人2分钟内做的修改不新增历史记录
+                            store_id = last_id; //同一个人2分钟内做的修改不新增历史记录
+                            int prev_id = getPrevStoreId(share_uuid, store_id, sub_table_num);
+                            store.put("store_data", encodeStoreData(store_data, share_uuid, prev_id, sub_table_num));
                             DBFunction.updateByTbName(store, store_table, "store_id=" + store_id);
                         }
                     }
                 }
-                if (store_id == 0) DBFunction.insertByTbName(store, store_table);
-                BLL_Share.updateModRecords(share_uuid, sub_table_num);
+                int add_records = 0;
+                if (store_id == 0) {
+                    store.put("store_data", encodeStoreData(store_data, share_uuid, last_id, sub_table_num));
+                    DBFunction.insertByTbName(store, store_table);
+                    add_records = 1;
+                }
+                BLL_Share.addModRecords(share_uuid, add_records);
+                final int shard_num = sub_table_num, rows = add_records;
+                DBFunction.afterCommit(() -> StoreShardCache.addRows(shard_num, rows)); //调用方的事务提交后计数
             } else {
                 return false;
             }
@@ -151,37 +168,174 @@ public class BLL_Store {
     }
 
     /**
-     * 获取历史记录表当前活动表号
+     * 还原某个历史版本的完整内容：从不晚于该版本的最近关键帧起依次应用补丁
      */
-    public static int getSubTableNum() throws Exception {
-        int table_num = 1;
-        for (int i = 1; i < 10000; i++) {
-            table_num = i;
-            if (!BLL_Common.isExistTableName("tb_info_store" + i)) {
+    public static String restoreVersionData(int store_id, int sub_table_num) throws Exception {
+        return restoreVersionData(store_id, sub_table_num, false);
+    }
+
+    /**
+     * 加锁读取还原某个历史版本的完整内容(不受事务快照影响，读最新提交的内容)
+     */
+    private static String loadVersionForUpdate(int store_id, int sub_table_num) throws Exception {
+        return restoreVersionData(store_id, sub_table_num, true);
+    }
+
+    /**
+     * 从不晚于该版本的最近关键帧起依次应用补丁，lock时加锁读取
+     */
+    private static String restoreVersionData(int store_id, int sub_table_num, boolean lock) throws Exception {
+        String table_name = "tb_info_store" + sub_table_num;
+        String for_update = lock ? " for update" : "";
+        String sql = String.format("select share_uuid,store_data from %s where store_id=%d", table_name, store_id) + for_update;
+        JsonArray array = DBFunction.executeJsonArray(sql);
+        if (array == null || array.size() == 0) return StringUtils.EMPTY;
+        String store_data = GsonUtils.getObjectValue(array, 0, "store_data");
+        if (!PatchUtils.isPatch(store_data)) return store_data;
+
+        String share_uuid = GsonUtils.getObjectValue(array, 0, "share_uuid");
+        DBParameter uuid = new DBParameter("@share_uuid", share_uuid);
+        sql = String.format("select store_id from %s where share_uuid=@share_uuid and store_id<%d and store_data not like @patch order by store_id desc limit 0,1", table_name, store_id);
+        int key_id = NumberUtils.strToInt(DBFunction.executeScalar(sql + for_update, uuid, new DBParameter("@patch", PatchUtils.PATCH_PREFIX + "%")));
+        sql = String.format("select store_data from %s where share_uuid=@share_uuid and store_id>=%d and store_id<=%d order by store_id", table_name, key_id, store_id);
+        array = DBFunction.executeJsonArray(sql + for_update, uuid);
+        String text = null;
+        for (int i = 0; i < array.size() && key_id > 0; i++) {
+            text = PatchUtils.applyPatch(text, GsonUtils.getObjectValue(array, i, "store_data"));
+        }
+        if (text == null) {
+            LogError.write(LogEnum.Error, String.format("历史记录%s(store_id=%d)补丁链不完整，无法还原", table_name, store_id));
+            return StringUtils.EMPTY;
+        }
+        return text;
+    }
+
+    /**
+     * 存储内容编码：距上一关键帧不足KEYFRAME_INTERVAL个版本时存与上一版本(prev_id)的补丁，否则存完整内容；
+     * 调用前已锁定tb_info_share记录，上一版本加锁读取，读不出上一版本时存完整内容
+     */
+    private static String encodeStoreData(String store_data, String share_uuid, int prev_id, int sub_table_num) throws Exception {
+        if (prev_id == 0 || StringUtils.isEmpty(store_data)) return store_data;
+        String sql = String.format("select case when store_data like @patch then 1 else 0 end is_patch from tb_info_store%d where share_uuid=@share_uuid and store_id<=%d order by store_id desc limit 0,%d for update",
+                sub_table_num, prev_id, KEYFRAME_INTERVAL - 1);
+        JsonArray array = DBFunction.executeJsonArray(sql, new DBParameter("@share_uuid", share_uuid),
+                new DBParameter("@patch", PatchUtils.PATCH_PREFIX + "%"));
+        boolean need_keyframe = true; //最近KEYFRAME_INTERVAL-1个版本内没有关键帧时存完整内容
+        for (int i = 0; i < array.size(); i++) {
+            if (GsonUtils.tryParse(GsonUtils.getObject(array, i), "is_patch", 0) == 0) {
+                need_keyframe = false;
                 break;
-            } else {
-                String sql = "select count(1) from tb_info_store{0}";
-                long count = NumberUtils.strToLong(DBFunction.executeScalar(StringUtils.format(sql, i)));
-                int subtable_records = SysConfigCache.getSubTableRecords();
-                if (subtable_records == 0) subtable_records = 100;
-                if (count < subtable_records * 10000) break;
             }
         }
-        String table_name = "tb_info_store" + table_num;
-        if (!BLL_Common.isExistTableName(table_name)) {
-            //新增一个历史记录表
-            String create_table = "create table `%s` (\n" +
-                    "  `store_id` int(11) not null auto_increment,\n" +
-                    "  `share_uuid` varchar(50) default null,\n" +
-                    "  `store_data` longtext,\n" +
-                    "  `create_time` datetime not null default current_timestamp,\n" +
-                    "  `opertype` varchar(50) default null,\n" +
-                    "  `user_id` int(11) default null,\n" +
-                    "  primary key (`store_id`)\n" +
-                    ") engine=innodb default charset=utf8;";
-            DBFunction.executeNonQuery(String.format(create_table, table_name));
+        if (need_keyframe) return store_data;
+        String prev_data = loadVersionForUpdate(prev_id, sub_table_num);
+        if (StringUtils.isEmpty(prev_data)) return store_data;
+        String patch = PatchUtils.makePatch(prev_data, store_data);
+        return patch == null ? store_data : patch;
+    }
+
+    /**
+     * 锁定信息的tb_info_share记录到事务结束，同一信息的历史记录依次写入
+     */
+    private static void lockShare(String share_uuid) throws Exception {
+        DBFunction.executeJsonArray("select share_uuid from tb_info_share where share_uuid=@share_uuid for update", new DBParameter("@share_uuid", share_uuid));
+    }
+
+    /**
+     * 同一信息的上一版本store_id(加锁读取)，没有返回0
+     */
+    private static int getPrevStoreId(String share_uuid, int store_id, int sub_table_num) throws Exception {
+        String sql = String.format("select store_id from tb_info_store%d where share_uuid=@share_uuid and store_id<%d order by store_id desc limit 0,1 for update", sub_table_num, store_id);
+        return NumberUtils.strToInt(DBFunction.executeScalar(sql, new DBParameter("@share_uuid", share_uuid)));
+    }
+
+    /**
+     * 补丁版本存成完整内容(删除其前面的版本之前调用)
+     */
+    private static void saveKeyframe(int store_id, int sub_table_num) throws Exception {
+        String table_name = "tb_info_store" + sub_table_num;
+        String sql = String.format("select store_data from %s where store_id=%d for update", table_name, store_id);
+        if (!PatchUtils.isPatch(DBFunction.executeScalar(sql))) return;
+        String store_data = loadVersionForUpdate(store_id, sub_table_num);
+        if (StringUtils.isEmpty(store_data)) return;
+        Map map = new HashMap();
+        map.put("store_data", store_data);
+        DBFunction.updateByTbName(map, table_name, "store_id=" + store_id);
+    }
+
+    /**
+     * 历史记录转换为关键帧+补丁存储(已有的完整内容版本)，返回转换的记录数
+     */
+    public static int compressHistoryRecords() {
+        int count = 0;
+        List<Integer> shard_nums;
+        try {
+            shard_nums = StoreShardCache.getShardNums();
+        } catch (Exception ex) {
+            LogError.write(LogEnum.Error, ex.toString());
+            return count;
+        }
+        for (int i : shard_nums) {
+            String table_name = "tb_info_store" + i;
+            JsonArray uuids;
+            try {
+                uuids = DBFunction.executeJsonArray("select distinct share_uuid from " + table_name);
+            } catch (Exception ex) {
+                LogError.write(LogEnum.Error, ex.toString());
+                continue;
+            }
+            for (int j = 0; j < uuids.size(); j++) {
+                try {
+                    count += compressHistoryRecords(GsonUtils.getObjectValue(uuids, j, "share_uuid"), i);
+                } catch (Exception ex) {
+                    LogError.write(LogEnum.Error, ex.toString());
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 某条信息的历史记录转换为关键帧+补丁存储
+     */
+    private static int compressHistoryRecords(String share_uuid, int sub_table_num) throws Exception {
+        String table_name = "tb_info_store" + sub_table_num;
+        int count = 0, version = 0;
+        String prev = null;
+        DBFunction.startTransaction();
+        try {
+            lockShare(share_uuid);
+            String sql = String.format("select store_id,store_data from %s where share_uuid=@share_uuid order by store_id for update", table_name);
+            JsonArray array = DBFunction.executeJsonArray(sql, new DBParameter("@share_uuid", share_uuid));
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject dr = GsonUtils.getObject(array, i);
+                String store_data = GsonUtils.tryParse(dr, "store_data", "");
+                String text = PatchUtils.applyPatch(prev, store_data);
+                if (text == null) throw new IllegalStateException(table_name + "补丁链不完整：" + share_uuid);
+                String patch = version % KEYFRAME_INTERVAL == 0 ? null : PatchUtils.makePatch(prev, text);
+                String save = patch == null ? text : patch;
+                version = patch == null ? 1 : version + 1;
+                if (!save.equals(store_data)) {
+                    Map map = new HashMap();
+                    map.put("store_data", save);
+                    DBFunction.updateByTbName(map, table_name, "store_id=" + GsonUtils.tryParse(dr, "store_id", 0));
+                    count++;
+                }
+                prev = text;
+            }
+            DBFunction.commit();
+        } catch (Exception ex) {
+            DBFunction.rollback();
+            throw ex;
         }
-        return table_num;
+        return count;
+    }
+
+    /**
+     * 获取历史记录表当前活动表号(分表登记StoreShardCache，写满时新建下一个分表)
+     */
+    public static int getSubTableNum() throws Exception {
+        return StoreShardCache.getActiveShardNum();
     }
 
     /**
@@ -189,14 +343,11 @@ public class BLL_Store {
      */
     public static Hashtable restoreInfoConfig(int store_id, String share_uuid, int sub_table_num) throws Exception {
         Hashtable ht = new Hashtable();
-        String store_data = ""; //待恢复的数据
-        String sql = "select * from tb_info_store{0} where store_id=" + store_id; //当天修改的最后一条记录
-        JsonArray dt1 = DBFunction.executeJsonArray(StringUtils.format(sql, sub_table_num));
-        if (dt1 != null && dt1.size() > 0) store_data = GsonUtils.getObjectValue(dt1, 0, "store_data");
+        String store_data = restoreVersionData(store_id, sub_table_num); //待恢复的数据
         if (StringUtils.isEmpty(store_data)) return null;
 
         int tid = 0, idleaf = 0;
-        sql = "select * from tb_info_share where share_uuid=@share_uuid";
+        String sql = "select * from tb_info_share where share_uuid=@share_uuid";
         JsonArray dt2 = DBFunction.executeJsonArray(sql, new DBParameter("@share_uuid", "=", share_uuid));
         if (dt2 != null && dt2.size() > 0) {
             JsonObject object = GsonUtils.getObject(dt2, 0);
@@ -230,14 +381,12 @@ public class BLL_Store {
     public static boolean restoreHistoryInfo(int create_uid, int store_id, String share_uuid, int sub_table_num) {
         DBFunction.startTransaction();
         try {
-            String store_data = ""; //待恢复的数据
-            String sql = "select * from tb_info_store{0} where store_id=" + store_id;
-            JsonArray dt1 = DBFunction.executeJsonArray(StringUtils.format(sql, sub_table_num));
-            if (dt1 != null && dt1.size() > 0) store_data = GsonUtils.getObjectValue(dt1, 0, "store_data");
+            lockShare(share_uuid);
+            String store_data = loadVersionForUpdate(store_id, sub_table_num); //待恢复的数据
             if (StringUtils.isEmpty(store_data)) return false;
 
             int tid = 0, item_id = 0, idleaf = 0;
-            sql = "select * from tb_info_share a1 where a1.share_uuid=@share_uuid";
+            String sql = "select * from tb_info_share a1 where a1.share_uuid=@share_uuid";
             JsonArray dt2 = DBFunction.executeJsonArray(sql, new DBParameter("@share_uuid", "=", share_uuid));
             if (dt2 != null && dt2.size() > 0) {
                 JsonObject object = GsonUtils.getObject(dt2, 0);
@@ -381,14 +530,16 @@ public class BLL_Store {
                 String table_name = "tb_info_store" + sub_table_num;
                 Hashtable history = new Hashtable();
                 history.put("share_uuid", share_uuid);
-                history.put("store_data", store_data);
+                int last_id = getPrevStoreId(share_uuid, Integer.MAX_VALUE, sub_table_num);
+                history.put("store_data", encodeStoreData(store_data, share_uuid, last_id, sub_table_num));
                 history.put("create_time", DateUtils.getDateTime());
                 history.put("opertype", "还原");
                 history.put("user_id", create_uid);
                 DBFunction.insertByTbName(history, table_name); //新增操作历史记录
 
-                BLL_Share.updateModRecords(share_uuid, sub_table_num);
+                BLL_Share.addModRecords(share_uuid, 1);
                 DBFunction.commit();
+                StoreShardCache.addRows(sub_table_num, 1);
             } else {
                 DBFunction.rollback();
             }
@@ -418,12 +569,17 @@ public class BLL_Store {
         DBFunction.startTransaction();
         try {
             String share_uuid = BLL_Store.getShareUUID(store_id, sub_table_num);
+            lockShare(share_uuid);
             String table_name = "tb_info_store" + sub_table_num;
+            String sql = String.format("select store_id from %s where share_uuid=@share_uuid and store_id>%d order by store_id limit 0,1 for update", table_name, store_id);
+            int next_id = NumberUtils.strToInt(DBFunction.executeScalar(sql, new DBParameter("@share_uuid", share_uuid)));
+            if (next_id > 0) saveKeyframe(next_id, sub_table_num); //下一版本是补丁时先存成完整内容
             String strSql = StringUtils.format("delete from {0} where store_id={1}", table_name, store_id);
-            DBFunction.executeNonQuery(strSql);
+            int count = DBFunction.executeNonQuery(strSql);
 
-            BLL_Share.updateModRecords(share_uuid, sub_table_num);
+            BLL_Share.addModRecords(share_uuid, -count);
             DBFunction.commit();
+            StoreShardCache.addRows(sub_table_num, -count);
         } catch (Exception ex) {
             DBFunction.rollback();
             LogError.write(LogEnum.Error, ex.toString());
@@ -441,15 +597,23 @@ public class BLL_Store {
             if (days == 0) days = -1;
             String strSql = "delete from tb_info_store{0} where DATEDIFF(now(), create_time)>{1}";
             String updateSql = "update tb_info_share a1 set a1.modify_records=(select count(1) from tb_info_store{0} b1 where b1.share_uuid=a1.share_uuid) where a1.sub_table_num={0}";
-            for (int i = 1; i < 10000; i++) {
-                if (BLL_Common.isExistTableName("tb_info_store" + i)) {
-                    DBFunction.executeNonQuery(StringUtils.format(strSql, i, days));
+            //保留的最早版本是补丁时先存成完整内容
+            String keepSql = "select a.store_id from tb_info_store{0} a where a.store_data like @patch and DATEDIFF(now(), a.create_time)<={1}" +
+                    " and not exists (select 1 from tb_info_store{0} b where b.share_uuid=a.share_uuid and b.store_id<a.store_id and DATEDIFF(now(), b.create_time)<={1})";
+            List<Integer> shard_nums = StoreShardCache.getShardNums();
+            for (int i : shard_nums) {
+                JsonArray keeps = DBFunction.executeJsonArray(StringUtils.format(keepSql, i, days),
+                        new DBParameter("@patch", PatchUtils.PATCH_PREFIX + "%"));
+                for (int j = 0; j < keeps.size(); j++) {
+                    saveKeyframe(NumberUtils.strToInt(GsonUtils.getObjectValue(keeps, j, "store_id")), i);
+                }
+                if (DBFunction.executeNonQuery(StringUtils.format(strSql, i, days)) > 0) {
                     DBFunction.executeNonQuery(StringUtils.format(updateSql, i));
-                } else {
-                    break;
+                    StoreShardCache.setDirty(i);
                 }
             }
             DBFunction.commit();
+            StoreShardCache.reconcile();
         } catch (Exception ex) {
             DBFunction.rollback();
             LogError.write(LogEnum.Error, ex.toString());
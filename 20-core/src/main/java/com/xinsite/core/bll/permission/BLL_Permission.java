@@ -1,43 +1,236 @@
 package com.xinsite.core.bll.permission;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.xinsite.common.enums.system.PerEnum;
 import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.DateUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.common.uitls.lang.ValueUtils;
+import com.xinsite.core.cache.PermissionSnapshot;
 import com.xinsite.core.model.system.PowerSaveModel;
 import com.xinsite.dal.bean.DBParameter;
 import com.xinsite.dal.dbhelper.DBFunction;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * 权限管理新增、修改、删除
+ * 栏目、功能权限保存时先一次读出对象已有的sys_power_menu、sys_power_fun，在内存中算出目标状态，
+ * 只对有变化的行批量新增、修改、删除
  * create by zhangxiaxin
  */
 public class BLL_Permission {
 
+    /**
+     * 对象的某栏目权限(sys_power_menu一行及其功能)
+     */
+    private static class PowerMenu {
+        int pm_id;
+        int item_id;
+        int isdel;
+        int data_per = -1;      //-1为null
+        String data_ids;
+        Set<Integer> fun_ids = new LinkedHashSet<>();
+        Set<Integer> saved_fun_ids = Collections.emptySet();  //pm_id行在sys_power_fun中已有的功能
+        List<Integer> dup_ids = new ArrayList<>();  //同一栏目重复的sys_power_menu行，保存时删除
+
+        PowerMenu copy() {
+            PowerMenu en = new PowerMenu();
+            en.pm_id = pm_id;
+            en.item_id = item_id;
+            en.isdel = isdel;
+            en.data_per = data_per;
+            en.data_ids = data_ids;
+            en.fun_ids = new LinkedHashSet<>(fun_ids);
+            return en;
+        }
+
+        /**
+         * 删除栏目权限：isdel=1，清空数据权限、功能权限
+         */
+        void delete() {
+            isdel = 1;
+            data_per = -1;
+            data_ids = null;
+            fun_ids.clear();
+        }
+    }
+
     /**
      * 保存栏目功能权限
      */
     public static void savePermissionFun(int pm_id, String funids) throws Exception {
         if (pm_id > 0) {
-            String del_sql = "delete from sys_power_fun where pm_id=" + pm_id;
-            DBFunction.executeNonQuery(del_sql);  //删除该对象所有功能
-            List<Integer> fun_ids = StringUtils.splitToList(funids);
-            for (int fun_id : fun_ids) {
-                Map ht = new HashMap();
+            Set<Integer> fun_ids = new HashSet<>();
+            JsonArray dt = DBFunction.executeJsonArray("select fun_id from sys_power_fun where pm_id=" + pm_id);
+            for (int i = 0; i < dt.size(); i++) {
+                fun_ids.add(GsonUtils.tryParse(GsonUtils.getObject(dt, i), "fun_id", 0));
+            }
+            List<DBParameter[]> deletes = new ArrayList<>();
+            List<Map<String, Object>> inserts = new ArrayList<>();
+            diffPermissionFun(pm_id, fun_ids, new LinkedHashSet<>(StringUtils.splitToList(funids)), deletes, inserts);
+            savePermissionFun(deletes, inserts);
+        }
+    }
+
+    /**
+     * 比较某栏目权限已有功能与目标功能，得到要删除、新增的行
+     */
+    private static void diffPermissionFun(int pm_id, Set<Integer> fun_ids, Set<Integer> target_ids,
+                                          List<DBParameter[]> deletes, List<Map<String, Object>> inserts) {
+        for (int fun_id : fun_ids) {
+            if (!target_ids.contains(fun_id))
+                deletes.add(new DBParameter[]{new DBParameter("pm_id", pm_id), new DBParameter("fun_id", fun_id)});
+        }
+        for (int fun_id : target_ids) {
+            if (!fun_ids.contains(fun_id)) {
+                Map<String, Object> ht = new HashMap<>();
                 ht.put("pm_id", pm_id);
                 ht.put("fun_id", fun_id);
-                DBFunction.insertByTbName(ht, "sys_power_fun");
+                inserts.add(ht);
             }
         }
     }
 
+    /**
+     * 批量删除、新增栏目功能权限
+     */
+    private static void savePermissionFun(List<DBParameter[]> deletes, List<Map<String, Object>> inserts) throws Exception {
+        DBFunction.executeBatch("delete from sys_power_fun where pm_id=@pm_id and fun_id=@fun_id", deletes);
+        DBFunction.insertBatch(inserts, "sys_power_fun", "pm_id", "fun_id");
+    }
+
+    /**
+     * 对象已有的栏目权限(含已删除的)及其功能，一次查询，按item_id索引；
+     * 同一栏目有多行时保留pm_id最小的有效行(isdel=0，都已删除时取pm_id最小的一行)，
+     * 其它有效行的功能并入保留行，其余行记入dup_ids
+     */
+    private static Map<Integer, PowerMenu> getPowerMenus(int tb_type, int tb_id) throws Exception {
+        String sql = "select a1.pm_id,a1.item_id,a1.isdel,a1.data_per,a1.data_ids,b1.fun_id from sys_power_menu a1 " +
+                "left join sys_power_fun b1 on a1.pm_id=b1.pm_id where a1.tb_id={0} and a1.tb_type={1} order by a1.pm_id";
+        JsonArray dt = DBFunction.executeJsonArray(StringUtils.format(sql, tb_id, tb_type));
+        Map<Integer, PowerMenu> rows = new LinkedHashMap<>();
+        for (int i = 0; i < dt.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(dt, i);
+            int pm_id = GsonUtils.tryParse(dr, "pm_id", 0);
+            PowerMenu en = rows.get(pm_id);
+            if (en == null) {
+                en = new PowerMenu();
+                en.pm_id = pm_id;
+                en.item_id = GsonUtils.tryParse(dr, "item_id", 0);
+                en.isdel = GsonUtils.tryParse(dr, "isdel", 0);
+                en.data_per = GsonUtils.tryParse(dr, "data_per", -1);
+                en.data_ids = getString(dr, "data_ids");
+                rows.put(pm_id, en);
+            }
+            if (getString(dr, "fun_id") != null) en.fun_ids.add(GsonUtils.tryParse(dr, "fun_id", 0));
+        }
+
+        Map<Integer, PowerMenu> menus = new LinkedHashMap<>();
+        for (PowerMenu row : rows.values()) {
+            PowerMenu en = menus.get(row.item_id);
+            if (en == null || (en.isdel != 0 && row.isdel == 0)) {
+                if (en != null) { //已删除的行让位给有效行
+                    row.dup_ids.addAll(en.dup_ids);
+                    row.dup_ids.add(en.pm_id);
+                }
+                row.saved_fun_ids = new HashSet<>(row.fun_ids);
+                menus.put(row.item_id, row);
+            } else {
+                en.dup_ids.add(row.pm_id);
+                if (row.isdel == 0) en.fun_ids.addAll(row.fun_ids);
+            }
+        }
+        return menus;
+    }
+
+    private static String getString(JsonObject dr, String key) {
+        JsonElement element = dr.get(key);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private static Map<Integer, PowerMenu> copyPowerMenus(Map<Integer, PowerMenu> menus) {
+        Map<Integer, PowerMenu> target = new LinkedHashMap<>();
+        for (PowerMenu en : menus.values()) target.put(en.item_id, en.copy());
+        return target;
+    }
+
+    /**
+     * 目标栏目权限，没有时新增(pm_id=0)
+     */
+    private static PowerMenu getTargetMenu(Map<Integer, PowerMenu> target, int item_id) {
+        PowerMenu en = target.get(item_id);
+        if (en == null) {
+            en = new PowerMenu();
+            en.item_id = item_id;
+            target.put(item_id, en);
+        }
+        return en;
+    }
+
+    /**
+     * 比较已有与目标栏目权限，批量执行有变化的新增、修改、删除；
+     * 重新授权(isdel由1改为0)及新增的栏目权限更新create_time，同一栏目重复的行连同其功能删除；
+     * 功能按保留行在sys_power_fun中已有的行比较，并入的重复行功能写到保留行
+     */
+    private static void savePowerMenus(int tb_type, int tb_id, Map<Integer, PowerMenu> menus, Map<Integer, PowerMenu> target) throws Exception {
+        String create_time = DateUtils.getDateTime();
+        List<DBParameter[]> duplicates = new ArrayList<>();
+        for (PowerMenu old : menus.values()) {
+            for (int pm_id : old.dup_ids) duplicates.add(new DBParameter[]{new DBParameter("pm_id", pm_id)});
+        }
+        DBFunction.executeBatch("delete from sys_power_fun where pm_id=@pm_id", duplicates);
+        DBFunction.executeBatch("delete from sys_power_menu where pm_id=@pm_id", duplicates);
+
+        List<DBParameter[]> updates = new ArrayList<>();
+        List<DBParameter[]> grants = new ArrayList<>();
+        List<Map<String, Object>> inserts = new ArrayList<>();
+        for (PowerMenu en : target.values()) {
+            PowerMenu old = menus.get(en.item_id);
+            if (old == null) {
+                Map<String, Object> ht = new HashMap<>();
+                ht.put("tb_type", tb_type);
+                ht.put("tb_id", tb_id);
+                ht.put("item_id", en.item_id);
+                ht.put("isdel", en.isdel);
+                ht.put("data_per", en.data_per < 0 ? null : en.data_per);
+                ht.put("data_ids", en.data_ids);
+                ht.put("create_time", create_time);
+                inserts.add(ht);
+            } else if (old.isdel != en.isdel || old.data_per != en.data_per || !Objects.equals(old.data_ids, en.data_ids)) {
+                DBParameter[] params = new DBParameter[]{new DBParameter("pm_id", en.pm_id), new DBParameter("isdel", en.isdel),
+                        new DBParameter("data_per", en.data_per < 0 ? null : en.data_per), new DBParameter("data_ids", en.data_ids),
+                        new DBParameter("create_time", create_time)};
+                if (old.isdel != 0 && en.isdel == 0) grants.add(params);
+                else updates.add(params);
+            }
+        }
+        DBFunction.executeBatch("update sys_power_menu set isdel=@isdel,data_per=@data_per,data_ids=@data_ids where pm_id=@pm_id", updates);
+        DBFunction.executeBatch("update sys_power_menu set isdel=@isdel,data_per=@data_per,data_ids=@data_ids,create_time=@create_time where pm_id=@pm_id", grants);
+        if (inserts.size() > 0) {
+            DBFunction.insertBatch(inserts, "sys_power_menu", "tb_type", "tb_id", "item_id", "isdel", "data_per", "data_ids", "create_time");
+            List<Integer> item_ids = new ArrayList<>();
+            for (Map<String, Object> ht : inserts) item_ids.add((Integer) ht.get("item_id"));
+            String sql = "select pm_id,item_id from sys_power_menu where tb_id={0} and tb_type={1} and item_id in({2})";
+            JsonArray dt = DBFunction.executeJsonArray(StringUtils.format(sql, tb_id, tb_type, StringUtils.join(item_ids, ",")));
+            for (int i = 0; i < dt.size(); i++) {
+                JsonObject dr = GsonUtils.getObject(dt, i);
+                target.get(GsonUtils.tryParse(dr, "item_id", 0)).pm_id = GsonUtils.tryParse(dr, "pm_id", 0);
+            }
+        }
+
+        List<DBParameter[]> fun_deletes = new ArrayList<>();
+        List<Map<String, Object>> fun_inserts = new ArrayList<>();
+        for (PowerMenu en : target.values()) {
+            PowerMenu old = menus.get(en.item_id);
+            Set<Integer> fun_ids = old == null ? Collections.emptySet() : old.saved_fun_ids;
+            if (en.pm_id > 0) diffPermissionFun(en.pm_id, fun_ids, en.fun_ids, fun_deletes, fun_inserts);
+        }
+        savePermissionFun(fun_deletes, fun_inserts);
+    }
+
     /**
      * 删除栏目功能权限
      */
@@ -62,31 +255,20 @@ public class BLL_Permission {
     public static boolean saveRealPermission(int tb_type, int tb_id, List<PowerSaveModel> list) {
         DBFunction.startTransaction();
         try {
+            Map<Integer, PowerMenu> menus = BLL_Permission.getPowerMenus(tb_type, tb_id);
+            Map<Integer, PowerMenu> target = BLL_Permission.copyPowerMenus(menus);
             for (PowerSaveModel en : list) {
                 if (en.check.equalsIgnoreCase("true")) { //新增或者修改
-                    int pm_id = BLL_PowerInfo.getPowerMenuId(tb_type, tb_id, en.item_id);
-                    if (pm_id > 0) { //修改
-                        Map ht = new HashMap();
-                        ht.put("isdel", 0);
-                        ht.put("create_time", DateUtils.getDateTime());
-                        DBFunction.updateByTbName(ht, "sys_power_menu", "pm_id=" + pm_id);
-                        BLL_Permission.savePermissionFun(pm_id, en.fun_ids);
-                    } else { //新增
-                        Map ht = new HashMap();
-                        ht.put("tb_type", tb_type);
-                        ht.put("tb_id", tb_id);
-                        ht.put("item_id", en.item_id);
-                        ht.put("create_time", DateUtils.getDateTime());
-                        pm_id = DBFunction.insertByTbName(ht, "sys_power_menu");
-                        BLL_Permission.savePermissionFun(pm_id, en.fun_ids);
-                    }
-                } else { //删除
-                    BLL_Permission.deletePermissionFun(tb_type, tb_id, en.item_id);
-                    String del_sql = "update sys_power_menu set isdel=1,data_per=null,data_ids=null where tb_id={0} and tb_type={1} and item_id={2}";
-                    DBFunction.executeNonQuery(StringUtils.format(del_sql, tb_id, tb_type, en.item_id));
+                    PowerMenu menu = BLL_Permission.getTargetMenu(target, en.item_id);
+                    menu.isdel = 0;
+                    menu.fun_ids = new LinkedHashSet<>(StringUtils.splitToList(en.fun_ids));
+                } else if (target.containsKey(en.item_id)) { //删除
+                    target.get(en.item_id).delete();
                 }
             }
+            BLL_Permission.savePowerMenus(tb_type, tb_id, menus, target);
             DBFunction.commit();
+            PermissionSnapshot.invalidate();
         } catch (Exception ex) {
             DBFunction.rollback();
             return false;
@@ -100,37 +282,26 @@ public class BLL_Permission {
     public static boolean saveBtnPermission(int tb_type, int tb_id, List<PowerSaveModel> list, String item_ids) {
         DBFunction.startTransaction();
         try {
-            item_ids = StringUtils.joinAsFilter(item_ids);
-            if (!StringUtils.isEmpty(item_ids)) {
-                BLL_Permission.deletePermissionFun(tb_type, tb_id, item_ids);
-
-                String sql_del = "update sys_power_menu set isdel=1,data_per=null,data_ids=null where tb_id={0} and tb_type={1} and item_id in({2})";
-                DBFunction.executeNonQuery(StringUtils.format(sql_del, tb_id, tb_type, item_ids));
+            Map<Integer, PowerMenu> menus = BLL_Permission.getPowerMenus(tb_type, tb_id);
+            Map<Integer, PowerMenu> target = BLL_Permission.copyPowerMenus(menus);
+            for (int item_id : StringUtils.splitToList(item_ids)) { //先删除本次保存范围内的栏目权限
+                if (target.containsKey(item_id)) target.get(item_id).delete();
             }
-            JsonArray dt = BLL_PowerInfo.getMenuPermission(tb_type, tb_id);
             for (PowerSaveModel en : list) {
                 if (en.check.equalsIgnoreCase("true")) { //新增
-                    Map ht = new HashMap();
-                    ht.put("tb_id", tb_id);
-                    ht.put("tb_type", tb_type);
-                    ht.put("item_id", en.item_id);
-                    ht.put("isdel", 0);
-                    ht.put("create_time", DateUtils.getDateTime());
-                    JsonArray drs = GsonUtils.getWhereArray(dt, "item_id", en.item_id);
-                    if (drs.size() > 0) {
-                        JsonObject object = GsonUtils.getObject(drs, 0);
-                        int pm_id = GsonUtils.tryParse(object, "pm_id", 0);
-                        DBFunction.updateByTbName(ht, "sys_power_menu", "pm_id=" + pm_id);
-                        BLL_Permission.savePermissionFun(pm_id, en.fun_ids);
-                    } else {
-                        ht.put("data_per", en.dataPer);
-                        ht.put("data_ids", en.data_ids);
-                        int pm_id = DBFunction.insertByTbName(ht, "sys_power_menu");
-                        BLL_Permission.savePermissionFun(pm_id, en.fun_ids);
+                    PowerMenu menu = target.get(en.item_id);
+                    if (menu == null) {
+                        menu = BLL_Permission.getTargetMenu(target, en.item_id);
+                        menu.data_per = en.dataPer;
+                        menu.data_ids = en.data_ids;
                     }
+                    menu.isdel = 0;
+                    menu.fun_ids = new LinkedHashSet<>(StringUtils.splitToList(en.fun_ids));
                 }
             }
+            BLL_Permission.savePowerMenus(tb_type, tb_id, menus, target);
             DBFunction.commit();
+            PermissionSnapshot.invalidate();
         } catch (Exception ex) {
             DBFunction.rollback();
             return false;
@@ -152,6 +323,7 @@ public class BLL_Permission {
             DBFunction.executeNonQuery(StringUtils.format(del_sql, tb_id, tb_type));
 
             DBFunction.commit();
+            PermissionSnapshot.invalidate();
         } catch (Exception ex) {
             DBFunction.rollback();
             return false;
@@ -171,6 +343,7 @@ public class BLL_Permission {
             DBFunction.executeNonQuery(StringUtils.format(del_sql, tb_id, tb_type, item_id));
 
             DBFunction.commit();
+            PermissionSnapshot.invalidate();
         } catch (Exception ex) {
             DBFunction.rollback();
             return false;
@@ -184,33 +357,24 @@ public class BLL_Permission {
     public static boolean saveDataPermission(int tb_type, int tb_id, int data_per, String data_ids, List<PowerSaveModel> list) {
         DBFunction.startTransaction();
         try {
-            JsonArray dt = BLL_PowerInfo.getMenuPermission(tb_type, tb_id);
+            Map<Integer, PowerMenu> menus = BLL_Permission.getPowerMenus(tb_type, tb_id);
+            Map<Integer, PowerMenu> target = BLL_Permission.copyPowerMenus(menus);
             for (PowerSaveModel en : list) {
                 if (en.check.equalsIgnoreCase("true")) { //新增或者修改
-                    Map ht = new HashMap();
-                    ht.put("isdel", 0);
+                    PowerMenu menu = BLL_Permission.getTargetMenu(target, en.item_id);
+                    menu.isdel = 0;
                     if (en.isdataper == 1) {
-                        ht.put("data_per", data_per);
-                        ht.put("data_ids", data_ids);
+                        menu.data_per = data_per;
+                        menu.data_ids = data_ids;
                     } else {
-                        ht.put("data_per", 0);
-                        ht.put("data_ids", "");
-                    }
-                    JsonArray drs = GsonUtils.getWhereArray(dt, "item_id", en.item_id);
-                    if (drs.size() > 0) { //决定修改
-                        JsonObject object = GsonUtils.getObject(drs, 0);
-                        int pm_id = GsonUtils.tryParse(object, "pm_id", 0);
-                        DBFunction.updateByTbName(ht, "sys_power_menu", "pm_id=" + pm_id);
-                    } else { //决定新增
-                        ht.put("tb_id", tb_id);
-                        ht.put("tb_type", tb_type);
-                        ht.put("item_id", en.item_id);
-                        ht.put("create_time", DateUtils.getDateTime());
-                        DBFunction.insertByTbName(ht, "sys_power_menu");
+                        menu.data_per = 0;
+                        menu.data_ids = "";
                     }
                 }
             }
+            BLL_Permission.savePowerMenus(tb_type, tb_id, menus, target);
             DBFunction.commit();
+            PermissionSnapshot.invalidate();
         } catch (Exception ex) {
             DBFunction.rollback();
             return false;
@@ -246,6 +410,7 @@ public class BLL_Permission {
                 }
             }
             DBFunction.commit();
+            PermissionSnapshot.invalidate();
         } catch (Exception ex) {
             DBFunction.rollback();
             return false;
@@ -272,6 +437,7 @@ public class BLL_Permission {
             }
 
             DBFunction.commit();
+            PermissionSnapshot.invalidate();
         } catch (Exception ex) {
             DBFunction.rollback();
             return false;
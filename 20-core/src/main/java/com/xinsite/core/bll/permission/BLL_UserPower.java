@@ -11,6 +11,7 @@ import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.core.model.user.LoginUser;
 import com.xinsite.core.model.system.PowerSearchModel;
 import com.xinsite.core.bll.system.BLL_User;
+import com.xinsite.core.cache.PermissionSnapshot;
 import com.xinsite.core.shiro.service.UserCacheService;
 import com.xinsite.core.utils.user.UserUtils;
 import com.xinsite.dal.bean.DBParameter;
@@ -238,12 +239,12 @@ public class BLL_UserPower {
             return DBFunction.executeJsonArray(sql);
         } else {
             sql = "select a.item_id id,a.item_name text,a.item_method action,a.item_type,a.iconCls,a.expanded expand,a.isdataper,\n" +
-                    " case when (select count(1) from sys_menu c where c.isdel=0 and c.isused=1 and c.pid=a.item_id and c.pid=b.item_id)>0 then 'false' else 'true' end leaf\n" +
-                    " from sys_menu a,({0}) b where a.item_id=b.item_id and a.isdel=0 and a.isused=1 {1} order by a.item_sort";
-            String item_id_sql = BLL_UserPower.getUserItemIdSql(loginUser);
+                    " case when (select count(1) from sys_menu c where c.isdel=0 and c.isused=1 and c.pid=a.item_id)>0 then 'false' else 'true' end leaf\n" +
+                    " from sys_menu a where a.item_id in({0}) and a.isdel=0 and a.isused=1 {1} order by a.item_sort";
+            String item_ids = PermissionSnapshot.get(loginUser).getItemIds(); //用户实际栏目取权限快照
             condition = BLL_UserPower.addSuperItems(condition, "a");
 
-            sql = StringUtils.format(sql, item_id_sql, condition);
+            sql = StringUtils.format(sql, item_ids, condition);
             return DBFunction.executeJsonArray(sql);
         }
     }
@@ -256,23 +257,32 @@ public class BLL_UserPower {
     }
 
     /**
-     * 登录用户栏目功能信息（用户权限+角色权限+剔除权限）
+     * 登录用户栏目功能信息（用户权限+角色权限+剔除权限），取权限快照
      */
     public static JsonArray getLoginItemPower(String item_ids, LoginUser loginUser) throws Exception {
-        String sql = "select b1.item_id,group_concat(distinct a1.itemid separator ',') all_item_ids,\n" +
+        return PermissionSnapshot.get(loginUser).getItemPowers(item_ids);
+    }
+
+    /**
+     * 查询登录用户栏目功能信息（用户权限+角色权限+剔除权限），item_ids为空时查询全部栏目，供编译权限快照
+     */
+    public static JsonArray queryLoginItemPower(String item_ids, LoginUser loginUser) throws Exception {
+        //栏目全部功能用子查询，不按栏目分组(非聚合列分组只有mysql支持)
+        String sql = "select b1.item_id,\n" +
+                "(select group_concat(distinct a1.itemid separator ',') from sys_menu_fun a1 where a1.item_id=b1.item_id and a1.isdel=0) all_item_ids,\n" +
                 "(select group_concat(distinct c1.itemid separator ',')  from sys_menu_fun c1,sys_power_fun d1\n" +
                 " where c1.isdel=0 and c1.fun_id=d1.fun_id and (d1.pm_id=u.pm_id or d1.pm_id=r.pm_id)\n" +
                 " and not exists(select 1 from sys_power_fun df where df.pm_id=d.pm_id and df.fun_id=c1.fun_id)) item_ids, \n" +
                 "case when u.data_per>0 then u.data_per else r.data_per end data_per, \n" +
                 "case when u.data_per>0 then u.data_ids else r.data_ids end data_ids \n" +
-                "from sys_menu b1 left join sys_menu_fun a1 on a1.item_id=b1.item_id and a1.isdel=0 \n" +
+                "from sys_menu b1 \n" +
                 "left join sys_power_menu u on b1.item_id=u.item_id and u.isdel=0 and u.tb_type=@tb_type1 and u.tb_id=@user_id %s\n" +
                 "left join sys_power_menu r on b1.item_id=r.item_id and r.isdel=0 and r.tb_type=@tb_type2 and r.tb_id=@role_id %s\n" +
                 "left join sys_power_menu d on b1.item_id=d.item_id and d.isdel=0 and d.tb_type=@tb_type3 and d.tb_id=@user_id\n" +
-                "where (b1.item_id=u.item_id or b1.item_id=r.item_id) %s group by b1.item_id";
+                "where (b1.item_id=u.item_id or b1.item_id=r.item_id) %s";
 
-        if (UserUtils.isSuperAdminer()) {
-            sql = "select a1.item_id,group_concat(distinct b1.itemid separator ',') item_all_ids,\n" +
+        if (loginUser.isSuperAdminer()) {
+            sql = "select a1.item_id,group_concat(distinct b1.itemid separator ',') all_item_ids,\n" +
                     "group_concat(distinct b1.itemid separator ',') item_ids,4 data_per,'' data_ids\n" +
                     "from sys_menu a1 left join sys_menu_fun b1 on a1.item_id=b1.item_id and b1.isdel=0\n" +
                     " where a1.isdel=0 and a1.isused=1 %s group by a1.item_id";
@@ -7,12 +7,11 @@ import com.xinsite.common.enums.system.DataTypeEnum;
 import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.NumberUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.cache.CodeDictionary;
 import com.xinsite.core.utils.log.LogError;
 import com.xinsite.dal.bean.DBParameter;
 import com.xinsite.dal.dbhelper.DBFunction;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -65,7 +64,9 @@ public class BLL_Code {
         for (Map ht : list) {
             sb.append(StringUtils.format(sql, ht.get("pid"), ht.get("index"), ht.get("id")));
         }
-        return DBFunction.executeNonQuery(sb.toString()) > 0;
+        boolean success = DBFunction.executeNonQuery(sb.toString()) > 0;
+        if (success) CodeDictionary.invalidate();
+        return success;
     }
 
     public static String getComboBoxText(String Ids) throws Exception {
@@ -83,26 +84,7 @@ public class BLL_Code {
     }
 
     public static String getComboBoxTextByVals(String data_key, String values) throws Exception {
-        if (StringUtils.isEmpty(data_key) || StringUtils.isEmpty(values)) return "";
-        List<DBParameter> ls = new ArrayList<>();
-        ls.add(new DBParameter("@data_key", data_key));
-        String[] strs = values.split(",");
-        String invalue = "";
-        for (int i = 0; i < strs.length; i++) {
-            ls.add(new DBParameter("@Value" + i, strs[i]));
-            if (invalue.equals("")) invalue = "@Value" + i;
-            else invalue += "," + ("@Value" + i);
-        }
-        String sql = "select a1.id,a1.text from sys_code a1,sys_codetype b1 where a1.codetype_id=b1.id" +
-                " and data_key=@data_key and value in({0}) order by a1.serialcode";
-        JsonArray array = DBFunction.executeJsonArray(StringUtils.format(sql, invalue), DBParameter.getParameter(ls));
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < array.size(); i++) {
-            JsonObject dr = GsonUtils.getObject(array, i);
-            if (sb.length() != 0) sb.append(",");
-            sb.append(dr.get("text").getAsString());
-        }
-        return sb.toString();
+        return CodeDictionary.getText(data_key, values, false);
     }
 
     public static JsonArray getCodeTree(List<DBParameter> ls, String Condition) throws Exception {
@@ -159,6 +141,7 @@ public class BLL_Code {
             ds_id = BLL_DataShow.save(DataTypeEnum.编码表.getValue(), data_key, id, "isshow", isshow);
             BLL_DataShow.delete(ds_id, disabled, isshow);
             DBFunction.commit();
+            CodeDictionary.invalidate();
         } catch (Exception ex) {
             DBFunction.rollback();
             LogError.write(LogEnum.Error, ex.toString());
@@ -167,23 +150,20 @@ public class BLL_Code {
         return id;
     }
 
+    /**
+     * 树形编码的路径名称(上级/下级)，由CodeDictionary按data_key缓存
+     */
     public static String getTreeCodePathName(int code_id) throws Exception {
-        String path_name = "";
-        List<String> names = new ArrayList<>();
-        String sql = "select id,pid,text from sys_code where id=";
-        while (true) {
-            JsonArray array = DBFunction.executeJsonArray(sql + code_id);
-            if (array == null || array.size() == 0) break;
-            JsonObject object = GsonUtils.getObject(array, 0);
-            names.add(GsonUtils.tryParse(object, "text", ""));
-            code_id = GsonUtils.tryParse(object, "pid", 0);
-            if (code_id == 0) break;
-        }
-        if (names.size() > 0) {
-            Collections.reverse(names);
-            path_name = StringUtils.joinAsList(names, "/");
-        }
-        return path_name;
+        String sql = "select b1.data_key from sys_code a1,sys_codetype b1 where a1.codetype_id=b1.id and a1.id=" + code_id;
+        Object obj = DBFunction.executeScalar(sql);
+        return obj == null ? "" : getTreeCodePathName(obj.toString(), code_id);
+    }
+
+    /**
+     * 已知编码类型时不查询数据库(缓存已加载)
+     */
+    public static String getTreeCodePathName(String data_key, int code_id) throws Exception {
+        return CodeDictionary.getPathName(data_key, String.valueOf(code_id));
     }
 }
 
@@ -81,6 +81,7 @@ public class BLL_Config {
                     "            select {0},field_explain,config_key,config_value,config_text,config_editor,serialcode from sys_config where org_id=0";
 
             DBFunction.executeNonQuery(StringUtils.format(sql, org_id));
+            SysConfigCache.changed(org_id);
         }
     }
 
@@ -88,24 +89,36 @@ public class BLL_Config {
      * 修改系统参数配置
      */
     public static boolean setConfigValue(Map<String, Object> ht, int id, String config_key) throws Exception {
-        if (ht.containsKey("config_value"))
-            SysConfigCache.setConfigValue(config_key, ht.get("config_value").toString());
-        return DBFunction.updateByTbName(ht, "sys_config", new DBParameter("Id", id));  //修改失败说明没记录
+        boolean success = DBFunction.updateByTbName(ht, "sys_config", new DBParameter("Id", id));  //修改失败说明没记录
+        if (success) SysConfigCache.changed(getOrgIdById(id));
+        return success;
     }
 
     /**
      * 永久删除
      */
     public static boolean deleteById(int id) throws Exception {
+        int org_id = getOrgIdById(id);
         String strSql = StringUtils.format("delete from sys_config where issys=0 and id={0}", id);
-        return DBFunction.executeNonQuery(strSql) > 0;
+        boolean success = DBFunction.executeNonQuery(strSql) > 0;
+        if (success) SysConfigCache.changed(org_id);
+        return success;
     }
 
     /**
      * 新增系统参数配置
      */
     public static int insert(Map<String, Object> ht) throws Exception {
-        return DBFunction.insertByTbName(ht, "sys_config");
+        int id = DBFunction.insertByTbName(ht, "sys_config");
+        if (id > 0) SysConfigCache.changed(getOrgIdById(id));
+        return id;
+    }
+
+    /**
+     * 配置记录所属机构
+     */
+    public static int getOrgIdById(int id) {
+        return NumberUtils.strToInt(DBFunction.executeScalar("select org_id from sys_config where id=" + id));
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.xinsite.core.bll.system;
 
 import com.xinsite.common.uitls.lang.NumberUtils;
+import com.xinsite.core.cache.NameDictionary;
 import com.xinsite.dal.dbhelper.DBFunction;
 import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.DateUtils;
@@ -69,23 +70,12 @@ public class BLL_Dept {
     public static void setGridDeptText(JsonArray array, String field_name) throws Exception {
         if (array == null || array.size() == 0) return;
         if (!GsonUtils.getArrayFields(array).contains(field_name)) return;
-        String sql = "select dept_id,dept_name,serialcode from sys_dept order by serialcode";
-        JsonArray code = DBFunction.executeJsonArray(sql);
-
         String add_field = field_name + "_text";
         for (int i = 0; i < array.size(); i++) {
             JsonObject dr = GsonUtils.getObject(array, i);
             String values = StringUtils.joinAsFilter(GsonUtils.tryParse(dr, field_name, ""));
             if (StringUtils.isEmpty(values)) continue;
-
-            JsonArray drs = GsonUtils.getWhereArrayByIds(code, "dept_id", values);
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < drs.size(); j++) {
-                JsonObject r = GsonUtils.getObject(drs, j);
-                if (sb.length() != 0) sb.append(",");
-                sb.append(GsonUtils.tryParse(r, "dept_name", ""));
-            }
-            dr.addProperty(add_field, sb.toString());
+            dr.addProperty(add_field, NameDictionary.getNames(NameDictionary.Type.dept, values));
         }
     }
 
@@ -95,22 +85,11 @@ public class BLL_Dept {
     public static void setExcelCodeText(JsonArray array, String field_name) throws Exception {
         if (array == null || array.size() == 0) return;
         if (!GsonUtils.getArrayFields(array).contains(field_name)) return;
-        String sql = "select dept_id,dept_name,serialcode from sys_dept order by serialcode";
-        JsonArray code = DBFunction.executeJsonArray(sql);
-
         for (int i = 0; i < array.size(); i++) {
             JsonObject dr = GsonUtils.getObject(array, i);
             String values = StringUtils.joinAsFilter(GsonUtils.tryParse(dr, field_name, ""));
             if (StringUtils.isEmpty(values)) continue;
-
-            JsonArray drs = GsonUtils.getWhereArrayByIds(code, "dept_id", values);
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < drs.size(); j++) {
-                JsonObject r = GsonUtils.getObject(drs, j);
-                if (sb.length() != 0) sb.append(",");
-                sb.append(GsonUtils.tryParse(r, "dept_name", ""));
-            }
-            dr.addProperty(field_name, sb.toString());
+            dr.addProperty(field_name, NameDictionary.getNames(NameDictionary.Type.dept, values));
         }
     }
 
@@ -15,6 +15,7 @@ import com.xinsite.common.uitls.lang.ValueUtils;
 import com.xinsite.core.utils.user.ShiroUtils;
 import com.xinsite.core.utils.user.UserUtils;
 import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.core.cache.NameDictionary;
 import com.xinsite.dal.dbhelper.DBFunction;
 
 import java.util.ArrayList;
@@ -109,23 +110,12 @@ public class BLL_User {
     public static void setGridUserNames(JsonArray array, String field_name) throws Exception {
         if (array == null) return;
         if (!GsonUtils.getArrayFields(array).contains(field_name)) return;
-        String sql = "select user_id,user_name,serialcode from sys_user order by serialcode";
-        JsonArray code = DBFunction.executeJsonArray(sql);
-
         String add_field = field_name + "_text";
         for (int i = 0; i < array.size(); i++) {
             JsonObject dr = GsonUtils.getObject(array, i);
             String values = StringUtils.joinAsFilter(GsonUtils.tryParse(dr, field_name, ""));
             if (StringUtils.isEmpty(values)) continue;
-
-            JsonArray drs = GsonUtils.getWhereArrayByIds(code, "user_id", values);
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < drs.size(); j++) {
-                JsonObject r = GsonUtils.getObject(drs, j);
-                if (sb.length() != 0) sb.append(",");
-                sb.append(GsonUtils.tryParse(r, "user_name", ""));
-            }
-            dr.addProperty(add_field, sb.toString());
+            dr.addProperty(add_field, NameDictionary.getNames(NameDictionary.Type.user, values));
         }
     }
 
@@ -136,9 +126,6 @@ public class BLL_User {
         if (dt == null) return;
         if (!GsonUtils.getArrayFields(dt).contains(field_task_userid)) return;
         if (!GsonUtils.getArrayFields(dt).contains(field_trial_userid)) return;
-        String sql = "select user_id,user_name,head_photo,serialcode from sys_user";
-        JsonArray code = DBFunction.executeJsonArray(sql);
-
         for (int i = 0; i < dt.size(); i++) {
             JsonObject dr = GsonUtils.getObject(dt, i);
             int task_userid = GsonUtils.tryParse(dr, field_task_userid, 0);
@@ -146,11 +133,10 @@ public class BLL_User {
             int user_id = task_userid;
             if (trial_userid > 0) user_id = trial_userid;
 
-            JsonArray drs = GsonUtils.getWhereArray(code, "user_id", user_id);
-            if (drs.size() == 1) {
-                JsonObject r = GsonUtils.getObject(drs, 0);
-                dr.addProperty("operator_user", GsonUtils.tryParse(r, "user_name", ""));
-                dr.addProperty("head_photo", GsonUtils.tryParse(r, "head_photo", ""));
+            NameDictionary.Entry entry = NameDictionary.get(NameDictionary.Type.user, user_id);
+            if (entry != null) {
+                dr.addProperty("operator_user", entry.name);
+                dr.addProperty("head_photo", entry.photo);
             }
         }
     }
@@ -161,22 +147,11 @@ public class BLL_User {
     public static void setExcelCodeText(JsonArray dt, String field_name) throws Exception {
         if (dt == null) return;
         if (!GsonUtils.getArrayFields(dt).contains(field_name)) return;
-        String sql = "select user_id,user_name,serialcode from sys_user order by serialcode";
-        JsonArray code = DBFunction.executeJsonArray(sql);
-
         for (int i = 0; i < dt.size(); i++) {
             JsonObject dr = GsonUtils.getObject(dt, i);
             String values = StringUtils.joinAsFilter(GsonUtils.tryParse(dr, field_name, ""));
             if (StringUtils.isEmpty(values)) continue;
-
-            JsonArray drs = GsonUtils.getWhereArrayByIds(code, "user_id", values);
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < drs.size(); j++) {
-                JsonObject r = GsonUtils.getObject(drs, j);
-                if (sb.length() != 0) sb.append(",");
-                sb.append(GsonUtils.tryParse(r, "user_name", ""));
-            }
-            dr.addProperty(field_name, sb.toString());
+            dr.addProperty(field_name, NameDictionary.getNames(NameDictionary.Type.user, values));
         }
     }
 
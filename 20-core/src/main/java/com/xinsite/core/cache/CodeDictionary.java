@@ -0,0 +1,164 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.dbhelper.DBFunction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 编码表(sys_code)字典：按data_key缓存 值-文本、id-文本、id-路径名称(树形编码) 只读快照，
+ * 编码保存、删除、排序及编码类型修改后调用invalidate
+ */
+public class CodeDictionary {
+
+    /**
+     * 编码项，rank为serialcode排序的位置
+     */
+    public static class Code {
+        public final String id;
+        public final int pid;
+        public final String text;
+        public final String value;
+        final int rank;
+
+        Code(String id, int pid, String text, String value, int rank) {
+            this.id = id;
+            this.pid = pid;
+            this.text = text;
+            this.value = value;
+            this.rank = rank;
+        }
+    }
+
+    private static class Codes {
+        final long version;
+        final Map<String, List<Code>> values;
+        final Map<String, Code> ids;
+        final Map<String, String> paths;
+
+        Codes(long version, Map<String, List<Code>> values, Map<String, Code> ids, Map<String, String> paths) {
+            this.version = version;
+            this.values = values;
+            this.ids = ids;
+            this.paths = paths;
+        }
+    }
+
+    private static final AtomicLong version = new AtomicLong();
+    private static final Map<String, Codes> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 编码数据变更后清空，下次访问时重新加载
+     */
+    public static void invalidate() {
+        version.incrementAndGet();
+        caches.clear();
+    }
+
+    public static long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * 预加载全部编码类型，返回加载的类型数
+     */
+    public static int preload() throws Exception {
+        JsonArray array = DBFunction.executeJsonArray("select distinct data_key from sys_codetype where data_key is not null");
+        for (int i = 0; i < array.size(); i++) {
+            getCodes(GsonUtils.tryParse(GsonUtils.getObject(array, i), "data_key", ""));
+        }
+        return array.size();
+    }
+
+    /**
+     * 逗号分隔的编码值转文本，按serialcode排序拼接，未找到时返回空串
+     *
+     * @param byId:true按编码id(树形下拉)，false按编码值
+     */
+    public static String getText(String data_key, String values, boolean byId) throws Exception {
+        if (StringUtils.isEmpty(data_key) || StringUtils.isEmpty(values)) return StringUtils.EMPTY;
+        Codes codes = getCodes(data_key);
+        String[] arr = values.split(",");
+        if (arr.length == 1) {
+            if (byId) {
+                Code code = codes.ids.get(arr[0]);
+                return code == null ? StringUtils.EMPTY : code.text;
+            }
+            List<Code> list = codes.values.get(arr[0]);
+            if (list != null && list.size() == 1) return list.get(0).text;
+        }
+        List<Code> list = new ArrayList<>();
+        for (String str : arr) {
+            if (byId) {
+                Code code = codes.ids.get(str);
+                if (code != null && !list.contains(code)) list.add(code);
+            } else {
+                for (Code code : codes.values.getOrDefault(str, Collections.emptyList())) {
+                    if (!list.contains(code)) list.add(code);
+                }
+            }
+        }
+        list.sort(Comparator.comparingInt(code -> code.rank));
+        StringBuilder sb = new StringBuilder();
+        for (Code code : list) {
+            if (sb.length() != 0) sb.append(",");
+            sb.append(code.text);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 树形编码的路径名称，如：上级/下级，未找到时返回空串
+     */
+    public static String getPathName(String data_key, String id) throws Exception {
+        if (StringUtils.isEmpty(data_key) || StringUtils.isEmpty(id)) return StringUtils.EMPTY;
+        return getCodes(data_key).paths.getOrDefault(id, StringUtils.EMPTY);
+    }
+
+    private static Codes getCodes(String data_key) throws Exception {
+        long ver = version.get();
+        Codes codes = caches.get(data_key);
+        if (codes == null || codes.version != ver) {
+            codes = load(data_key, ver);
+            //加载期间有变更时不放入缓存，下次重新加载
+            if (ver == version.get()) caches.put(data_key, codes);
+        }
+        return codes;
+    }
+
+    private static Codes load(String data_key, long ver) throws Exception {
+        String sql = "select a1.id,a1.pid,a1.text,a1.value from sys_code a1,sys_codetype b1" +
+                " where a1.codetype_id=b1.id and data_key=@data_key order by a1.serialcode";
+        JsonArray array = DBFunction.executeJsonArray(sql, new DBParameter("@data_key", data_key));
+        Map<String, List<Code>> values = new HashMap<>(array.size() * 2);
+        Map<String, Code> ids = new HashMap<>(array.size() * 2);
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(array, i);
+            Code code = new Code(GsonUtils.tryParse(dr, "id", ""), GsonUtils.tryParse(dr, "pid", 0),
+                    GsonUtils.tryParse(dr, "text", ""), GsonUtils.tryParse(dr, "value", ""), i);
+            ids.put(code.id, code);
+            values.computeIfAbsent(code.value, k -> new ArrayList<>(1)).add(code);
+        }
+        Map<String, String> paths = new HashMap<>(ids.size() * 2);
+        for (Code code : ids.values()) paths.put(code.id, getPathName(ids, code));
+        return new Codes(ver, Collections.unmodifiableMap(values), Collections.unmodifiableMap(ids), Collections.unmodifiableMap(paths));
+    }
+
+    /**
+     * 按pid逐级向上拼接，pid有循环时最多取编码个数层
+     */
+    private static String getPathName(Map<String, Code> ids, Code code) {
+        LinkedList<String> names = new LinkedList<>();
+        while (code != null && names.size() < ids.size()) {
+            names.addFirst(code.text);
+            code = code.pid == 0 ? null : ids.get(String.valueOf(code.pid));
+        }
+        return StringUtils.joinAsList(names, "/");
+    }
+}
@@ -0,0 +1,279 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.Global;
+import com.xinsite.common.uitls.gson.GsonUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 设计表元数据缓存：数据对象(tb_gen_object及所属数据表)按oid编译成ObjectMeta，数据表(tb_gen_table及字段tb_gen_field)
+ * 按tid编译成TableMeta，都是只读对象，返回的JsonElement是副本；table_key、table_name等查找结果按键缓存。
+ * 设计数据修改后按oid、tid清除：invalidateObject、invalidateTable、invalidateFields，其它数据对象、数据表的缓存不变；
+ * 数据对象、数据表变更时按键缓存的查找全部清空(改名可能涉及其它表)；
+ * 多个应用实例时其它实例的缓存按config.design_cache_seconds过期(默认600秒，0不缓存)
+ */
+public class DesignCache {
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    /**
+     * 数据对象：对象记录(不存在时为null)、所属数据表(tid id,pid,text,table_name,tb_relation,extend_name,table_key,layout_type)
+     */
+    public static final class ObjectMeta {
+        public final int oid;
+        public final String objectType;
+        public final int mainTid;
+        private final JsonObject object;
+        private final JsonArray tables;
+        private final List<Integer> tids;
+
+        public ObjectMeta(int oid, JsonObject object, JsonArray tables) {
+            this.oid = oid;
+            this.object = object == null ? null : object.deepCopy();
+            this.tables = tables.deepCopy();
+            this.objectType = object == null ? "" : GsonUtils.tryParse(object, "object_type", "");
+            List<Integer> list = new ArrayList<>(tables.size());
+            int main_tid = 0;
+            for (int i = 0; i < tables.size(); i++) {
+                JsonObject dr = GsonUtils.getObject(tables, i);
+                int tid = GsonUtils.tryParse(dr, "id", 0);
+                list.add(tid);
+                if ("主表".equals(GsonUtils.tryParse(dr, "tb_relation", ""))) main_tid = Math.max(main_tid, tid);
+            }
+            this.mainTid = main_tid;
+            this.tids = Collections.unmodifiableList(list);
+        }
+
+        public JsonObject getObject() {
+            return object == null ? null : object.deepCopy();
+        }
+
+        public JsonArray getTables() {
+            return tables.deepCopy();
+        }
+
+        public List<Integer> getTids() {
+            return tids;
+        }
+    }
+
+    /**
+     * 数据表：表记录(不存在时为null)、按serialcode排序的字段(fid,field_name,field_explain,xtype,field_tag,extend_suf,
+     * isdefine,save_value,data_key,store_datas,store_type)，编译出字段列表、表单字段、存值字段及字段标记
+     */
+    public static final class TableMeta {
+        public final int tid;
+        public final int oid;
+        private final JsonObject table;
+        private final JsonArray fields;         //oid,tid,fid,field_name,field_tag,extend_suf，表记录不存在时为空
+        private final JsonArray defineFields;   //isdefine=1：id,name,xtype
+        private final JsonArray codeValues;     //save_value=1：save_value,field_name,xtype,data_key,store_datas,store_type
+        private final Map<String, String> fieldTags;
+
+        public TableMeta(int tid, JsonObject table, JsonArray rows) {
+            this.tid = tid;
+            this.table = table == null ? null : table.deepCopy();
+            this.oid = table == null ? 0 : GsonUtils.tryParse(table, "oid", 0);
+            this.fields = new JsonArray();
+            this.defineFields = new JsonArray();
+            this.codeValues = new JsonArray();
+            Map<String, String> tags = new HashMap<>();
+            for (int i = 0; i < rows.size(); i++) {
+                JsonObject dr = GsonUtils.getObject(rows, i);
+                if (table != null) {
+                    JsonObject field = new JsonObject();
+                    field.add("oid", table.get("oid"));
+                    field.add("tid", table.get("tid"));
+                    copy(dr, field, "fid", "field_name", "field_tag", "extend_suf");
+                    fields.add(field);
+                }
+                if (GsonUtils.tryParse(dr, "isdefine", 0) == 1) {
+                    JsonObject field = new JsonObject();
+                    field.add("id", copy(dr.get("field_name")));
+                    field.add("name", copy(dr.get("field_explain")));
+                    field.add("xtype", copy(dr.get("xtype")));
+                    defineFields.add(field);
+                }
+                if (GsonUtils.tryParse(dr, "save_value", 0) == 1) {
+                    JsonObject field = new JsonObject();
+                    copy(dr, field, "save_value", "field_name", "xtype", "data_key", "store_datas", "store_type");
+                    codeValues.add(field);
+                }
+                String field_tag = GsonUtils.tryParse(dr, "field_tag", "");
+                if (!field_tag.isEmpty()) tags.putIfAbsent(field_tag, GsonUtils.tryParse(dr, "field_name", ""));
+            }
+            this.fieldTags = Collections.unmodifiableMap(tags);
+        }
+
+        private static JsonElement copy(JsonElement element) {
+            return element == null ? null : element.deepCopy();
+        }
+
+        private static void copy(JsonObject from, JsonObject to, String... keys) {
+            for (String key : keys) to.add(key, copy(from.get(key)));
+        }
+
+        public JsonObject getTable() {
+            return table == null ? null : table.deepCopy();
+        }
+
+        public JsonArray getFields() {
+            return fields.deepCopy();
+        }
+
+        public JsonArray getDefineFields() {
+            return defineFields.deepCopy();
+        }
+
+        public JsonArray getCodeValues() {
+            return codeValues.deepCopy();
+        }
+
+        /**
+         * 字段标记对应的字段名称，没有时返回空串
+         */
+        public String getFieldName(String field_tag) {
+            return fieldTags.getOrDefault(field_tag, "");
+        }
+    }
+
+    private static class Entry {
+        final long time;
+        final Object value;
+
+        Entry(long time, Object value) {
+            this.time = time;
+            this.value = value;
+        }
+    }
+
+    private static final AtomicLong version = new AtomicLong();
+    private static final Map<Integer, Entry> objects = new ConcurrentHashMap<>();
+    private static final Map<Integer, Entry> tables = new ConcurrentHashMap<>();
+    private static final Map<String, Entry> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 清空全部缓存，下次访问时重新查询
+     */
+    public static void invalidate() {
+        version.incrementAndGet();
+        objects.clear();
+        tables.clear();
+        caches.clear();
+    }
+
+    /**
+     * 数据对象修改、删除后：清除该对象及其数据表
+     */
+    public static void invalidateObject(int oid) {
+        version.incrementAndGet();
+        objects.remove(oid);
+        tables.values().removeIf(entry -> ((TableMeta) entry.value).oid == oid);
+        caches.clear();
+    }
+
+    /**
+     * 数据表修改后：清除该表、原所属及oid(新所属，0时忽略)数据对象
+     */
+    public static void invalidateTable(int tid, int oid) {
+        version.incrementAndGet();
+        Entry entry = tables.remove(tid);
+        if (entry != null) objects.remove(((TableMeta) entry.value).oid);
+        if (oid > 0) objects.remove(oid);
+        objects.values().removeIf(e -> ((ObjectMeta) e.value).tids.contains(tid));
+        caches.clear();
+    }
+
+    /**
+     * 字段修改、排序后：清除所在数据表(数据对象的存值字段从数据表取，不用清除)
+     */
+    public static void invalidateFields(int tid) {
+        version.incrementAndGet();
+        tables.remove(tid);
+    }
+
+    /**
+     * 缓存过期毫秒数
+     */
+    private static long getExpireMillis() {
+        String seconds = Global.getConfig("config.design_cache_seconds");
+        if (seconds == null || seconds.trim().isEmpty()) return 600 * 1000L;
+        try {
+            return Long.parseLong(seconds.trim()) * 1000L;
+        } catch (NumberFormatException ex) {
+            return 600 * 1000L;
+        }
+    }
+
+    /**
+     * 数据对象，没有、已清除或过期时调用loader编译
+     */
+    public static ObjectMeta getObject(int oid, Loader<ObjectMeta> loader) throws Exception {
+        return get(objects, oid, loader, Objects::nonNull);
+    }
+
+    /**
+     * 数据表，没有、已清除或过期时调用loader编译
+     */
+    public static TableMeta getTable(int tid, Loader<TableMeta> loader) throws Exception {
+        return get(tables, tid, loader, Objects::nonNull);
+    }
+
+    /**
+     * 按键缓存的查找，没有、已清除或过期时调用loader查询后缓存(包括null)；
+     * 缓存的对象由调用者共用，不能修改
+     */
+    public static <T> T get(String key, Loader<T> loader) throws Exception {
+        return get(caches, key, loader, value -> true);
+    }
+
+    /**
+     * 查询期间有修改(版本号变化)时结果不缓存
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, T> T get(Map<K, Entry> map, K key, Loader<T> loader, Predicate<T> cacheable) throws Exception {
+        long expire = getExpireMillis();
+        if (expire <= 0) return loader.load();
+        long current = version.get();
+        long now = System.currentTimeMillis();
+        Entry entry = map.get(key);
+        if (entry != null && now - entry.time < expire) return (T) entry.value;
+        T value = loader.load();
+        if (version.get() == current && cacheable.test(value)) map.put(key, new Entry(now, value));
+        return value;
+    }
+
+    /**
+     * 单个值(DBFunction.executeScalar)：查询出错时executeScalar返回空，所以null、空字符串、0不缓存，下次重新查询
+     */
+    public static <T> T getScalar(String key, Supplier<T> loader) {
+        try {
+            return get(caches, key, loader::get, DesignCache::isCacheable);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static boolean isCacheable(Object value) {
+        if (value == null) return false;
+        if (value instanceof String) return !((String) value).isEmpty();
+        if (value instanceof Number) return ((Number) value).longValue() != 0;
+        return true;
+    }
+
+    public static int size() {
+        return objects.size() + tables.size() + caches.size();
+    }
+}
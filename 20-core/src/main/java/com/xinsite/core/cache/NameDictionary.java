@@ -0,0 +1,149 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.NumberUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.dal.dbhelper.DBFunction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户、部门、机构名称字典：id-名称(头像)只读快照，按版本号延迟重新加载，
+ * 对应表保存、删除、排序后调用invalidate
+ */
+public class NameDictionary {
+
+    public enum Type {
+        user("select user_id id,user_name name,head_photo photo,org_id from sys_user order by serialcode"),
+        dept("select dept_id id,dept_name name,'' photo,org_id from sys_dept order by serialcode"),
+        organize("select org_id id,company_name name,'' photo,org_id from sys_organize order by serialcode");
+
+        private final String sql;
+
+        Type(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * 字典项，rank为表中serialcode排序的位置，多个id拼接名称时按此排序
+     */
+    public static class Entry {
+        public final int id;
+        public final String name;
+        public final String photo;
+        public final int org_id;
+        final int rank;
+
+        Entry(int id, String name, String photo, int org_id, int rank) {
+            this.id = id;
+            this.name = name;
+            this.photo = photo;
+            this.org_id = org_id;
+            this.rank = rank;
+        }
+    }
+
+    private static class Snapshot {
+        final long version;
+        final Map<Integer, Entry> map;
+
+        Snapshot(long version, Map<Integer, Entry> map) {
+            this.version = version;
+            this.map = map;
+        }
+    }
+
+    private static final Map<Type, AtomicLong> versions = new EnumMap<>(Type.class);
+    private static final Map<Type, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private static final Map<Type, Object> locks = new EnumMap<>(Type.class);   //各类型重新加载的锁
+
+    static {
+        for (Type type : Type.values()) {
+            versions.put(type, new AtomicLong());
+            locks.put(type, new Object());
+        }
+    }
+
+    /**
+     * 数据变更后，版本号加1，下次访问时重新加载
+     */
+    public static void invalidate(Type type) {
+        versions.get(type).incrementAndGet();
+    }
+
+    public static long getVersion(Type type) {
+        return versions.get(type).get();
+    }
+
+    /**
+     * 预加载，返回条数
+     */
+    public static int preload(Type type) throws Exception {
+        return getSnapshot(type).map.size();
+    }
+
+    /**
+     * 根据id获取字典项
+     */
+    public static Entry get(Type type, int id) throws Exception {
+        return getSnapshot(type).map.get(id);
+    }
+
+    /**
+     * 逗号分隔的id转名称，按表中排序拼接，重复及不存在的id忽略
+     */
+    public static String getNames(Type type, String ids) throws Exception {
+        if (StringUtils.isEmpty(ids)) return StringUtils.EMPTY;
+        Map<Integer, Entry> map = getSnapshot(type).map;
+        String[] arr = ids.split(",");
+        if (arr.length == 1) {
+            Entry entry = map.get(NumberUtils.strToInt(arr[0].trim()));
+            return entry == null ? StringUtils.EMPTY : entry.name;
+        }
+        Set<Entry> set = new LinkedHashSet<>(arr.length * 2);
+        for (String str : arr) {
+            Entry entry = map.get(NumberUtils.strToInt(str.trim()));
+            if (entry != null) set.add(entry);
+        }
+        List<Entry> list = new ArrayList<>(set);
+        list.sort(Comparator.comparingInt(entry -> entry.rank));
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : list) {
+            if (sb.length() != 0) sb.append(",");
+            sb.append(entry.name);
+        }
+        return sb.toString();
+    }
+
+    private static Snapshot getSnapshot(Type type) throws Exception {
+        long version = versions.get(type).get();
+        Snapshot snapshot = snapshots.get(type);
+        if (snapshot == null || snapshot.version != version) {
+            synchronized (locks.get(type)) {
+                snapshot = snapshots.get(type);
+                if (snapshot == null || snapshot.version != version) {
+                    snapshot = load(type, version);
+                    snapshots.put(type, snapshot);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private static Snapshot load(Type type, long version) throws Exception {
+        JsonArray array = DBFunction.executeJsonArray(type.sql);
+        Map<Integer, Entry> map = new HashMap<>(array.size() * 2);
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(array, i);
+            int id = GsonUtils.tryParse(dr, "id", 0);
+            map.put(id, new Entry(id, GsonUtils.tryParse(dr, "name", ""),
+                    GsonUtils.tryParse(dr, "photo", ""), GsonUtils.tryParse(dr, "org_id", 0), i));
+        }
+        return new Snapshot(version, Collections.unmodifiableMap(map));
+    }
+}
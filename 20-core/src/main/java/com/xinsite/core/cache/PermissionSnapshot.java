@@ -0,0 +1,214 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.Global;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.NumberUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.bll.permission.BLL_UserPower;
+import com.xinsite.core.model.user.LoginUser;
+import com.xinsite.dal.dbhelper.DBFunction;
+import com.xinsite.dal.uitls.LruCache;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户权限快照：登录用户的栏目(位集)、栏目功能及数据权限、控制器权限值编译成只读快照，按用户id缓存，
+ * 权限保存、角色及成员变更、栏目功能变更后调用invalidate(全局版本号)，下次访问时重新编译；
+ * 用户退出、会话过期时remove，缓存最多MAX_USERS个用户(近似LRU淘汰)
+ */
+public class PermissionSnapshot {
+
+    /**
+     * 用户某栏目的功能及数据权限，对应getLoginItemPower的一行
+     */
+    public static class ItemPower {
+        public final int item_id;
+        public final String all_item_ids;
+        public final String item_ids;
+        public final int data_per;
+        public final String data_ids;
+
+        ItemPower(int item_id, String all_item_ids, String item_ids, int data_per, String data_ids) {
+            this.item_id = item_id;
+            this.all_item_ids = all_item_ids;
+            this.item_ids = item_ids;
+            this.data_per = data_per;
+            this.data_ids = data_ids;
+        }
+
+        JsonObject toJson() {
+            JsonObject dr = new JsonObject();
+            dr.addProperty("item_id", item_id);
+            dr.addProperty("all_item_ids", all_item_ids);
+            dr.addProperty("item_ids", item_ids);
+            dr.addProperty("data_per", data_per < 0 ? null : Integer.valueOf(data_per));
+            dr.addProperty("data_ids", data_ids);
+            return dr;
+        }
+    }
+
+    /**
+     * 某用户的权限快照(只读)
+     */
+    public static class Snapshot {
+        final long version;
+        final int role_id;
+        final boolean super_adminer;
+        final BitSet items;
+        final Map<Integer, ItemPower> powers;
+        final Set<String> rolePermissions;
+        final Set<String> funPermissions;
+
+        Snapshot(long version, int role_id, boolean super_adminer, Map<Integer, ItemPower> powers,
+                 Set<String> rolePermissions, Set<String> funPermissions) {
+            this.version = version;
+            this.role_id = role_id;
+            this.super_adminer = super_adminer;
+            this.powers = powers;
+            this.rolePermissions = rolePermissions;
+            this.funPermissions = funPermissions;
+            this.items = new BitSet();
+            for (int item_id : powers.keySet()) {
+                if (item_id >= 0) items.set(item_id);
+            }
+        }
+
+        /**
+         * 是否有该栏目权限
+         */
+        public boolean hasItem(int item_id) {
+            return item_id >= 0 && items.get(item_id);
+        }
+
+        /**
+         * 有权限的栏目ids，逗号分隔，没有时返回0
+         */
+        public String getItemIds() {
+            if (items.isEmpty()) return "0";
+            StringBuilder sb = new StringBuilder();
+            for (int i = items.nextSetBit(0); i >= 0; i = items.nextSetBit(i + 1)) {
+                if (sb.length() > 0) sb.append(",");
+                sb.append(i);
+            }
+            return sb.toString();
+        }
+
+        /**
+         * 某栏目的功能及数据权限，没有权限时返回null
+         */
+        public ItemPower getItemPower(int item_id) {
+            return powers.get(item_id);
+        }
+
+        /**
+         * 栏目功能信息，格式同getLoginItemPower，item_ids为空时返回全部栏目
+         */
+        public JsonArray getItemPowers(String item_ids) {
+            JsonArray array = new JsonArray();
+            if (StringUtils.isEmpty(item_ids)) {
+                for (ItemPower power : powers.values()) array.add(power.toJson());
+            } else {
+                Set<Integer> ids = new TreeSet<>();
+                for (String id : StringUtils.stringToList(item_ids)) ids.add(NumberUtils.strToInt(id));
+                for (int item_id : ids) {
+                    ItemPower power = powers.get(item_id);
+                    if (power != null) array.add(power.toJson());
+                }
+            }
+            return array;
+        }
+
+        public Set<String> getRolePermissions() {
+            return rolePermissions;
+        }
+
+        public Set<String> getFunPermissions() {
+            return funPermissions;
+        }
+    }
+
+    private static final AtomicLong version = new AtomicLong();
+    private static final int MAX_USERS = 10000;
+    private static final int PRELOAD_USERS = 500;
+    private static final LruCache<Integer, Snapshot> caches = new LruCache<>(MAX_USERS);
+
+    /**
+     * 权限变更后清空，下次访问时重新编译
+     */
+    public static void invalidate() {
+        version.incrementAndGet();
+        caches.clear();
+    }
+
+    /**
+     * 用户退出、会话过期时移除
+     */
+    public static void remove(int user_id) {
+        caches.remove(user_id);
+    }
+
+    /**
+     * 缓存的用户数
+     */
+    public static int size() {
+        return caches.size();
+    }
+
+    /**
+     * 预热：在线用户(sys_user_online)的权限快照，最多PRELOAD_USERS个，返回编译的用户数
+     */
+    public static int preload() throws Exception {
+        String sql = "select distinct b.user_id,b.role_id from sys_user_online a inner join sys_user b on a.user_id=b.user_id"
+                + " where a.status='on_line' and b.isdel=0 and b.user_state=1 limit " + PRELOAD_USERS;
+        JsonArray array = DBFunction.executeJsonArray(sql);
+        int super_role = Global.getInt("config.super_role");
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(array, i);
+            LoginUser loginUser = new LoginUser();
+            loginUser.setUserId(GsonUtils.tryParse(dr, "user_id", 0));
+            loginUser.setRoleId(GsonUtils.tryParse(dr, "role_id", 0));
+            loginUser.setSuperAdminer(loginUser.getRoleId() == super_role);
+            get(loginUser);
+        }
+        return array.size();
+    }
+
+    /**
+     * 登录用户的权限快照，版本或用户角色变化时重新编译
+     */
+    public static Snapshot get(LoginUser loginUser) throws Exception {
+        long current = version.get();
+        Snapshot snapshot = caches.get(loginUser.getUserId());
+        if (snapshot != null && snapshot.version == current && snapshot.role_id == loginUser.getRoleId()
+                && snapshot.super_adminer == loginUser.isSuperAdminer())
+            return snapshot;
+        snapshot = compile(current, loginUser);
+        if (version.get() == current) caches.put(loginUser.getUserId(), snapshot);
+        return snapshot;
+    }
+
+    private static Snapshot compile(long current, LoginUser loginUser) throws Exception {
+        Map<Integer, ItemPower> powers = new TreeMap<>();
+        JsonArray array = BLL_UserPower.queryLoginItemPower("", loginUser);
+        if (array != null) {
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject dr = GsonUtils.getObject(array, i);
+                int item_id = GsonUtils.tryParse(dr, "item_id", 0);
+                String all_item_ids = GsonUtils.tryParse(dr, "all_item_ids", GsonUtils.tryParse(dr, "item_all_ids", ""));
+                powers.put(item_id, new ItemPower(item_id, all_item_ids, GsonUtils.tryParse(dr, "item_ids", ""),
+                        GsonUtils.tryParse(dr, "data_per", -1), GsonUtils.tryParse(dr, "data_ids", "")));
+            }
+        }
+        Set<String> rolePermissions = Collections.emptySet();
+        Set<String> funPermissions = Collections.emptySet();
+        if (!loginUser.isSuperAdminer()) {
+            rolePermissions = Collections.unmodifiableSet(BLL_UserPower.getUserRolePermissions(loginUser.getRoleId()));
+            funPermissions = Collections.unmodifiableSet(BLL_UserPower.getUserFunPermissions(loginUser));
+        }
+        return new Snapshot(current, loginUser.getRoleId(), loginUser.isSuperAdminer(),
+                Collections.unmodifiableMap(powers), rolePermissions, funPermissions);
+    }
+}
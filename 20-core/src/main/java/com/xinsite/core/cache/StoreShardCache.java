@@ -0,0 +1,367 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.enums.LogEnum;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.DateUtils;
+import com.xinsite.common.uitls.lang.NumberUtils;
+import com.xinsite.core.utils.log.LogError;
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.dbhelper.BuildHelper;
+import com.xinsite.dal.dbhelper.DBFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 历史记录分表(tb_info_store{N})登记：分表号、记录数、容量、状态保存在tb_info_store_shard，启动时载入内存，
+ * 新增、删除历史记录时内存中计数，当前分表写满时新建下一个分表；后台定时按实际记录数校正并写回登记表。
+ * 多个应用实例时，分表状态按登记表中的原状态条件更新、新分表不存在登记时才插入，以登记表为准；
+ * 登记表的更新、新建分表在单独的自动提交连接上执行(保存信息的事务中启用新分表，事务回滚时登记与内存仍一致)
+ * create by zhangxiaxin
+ */
+public class StoreShardCache {
+    public static final String TABLE_PREFIX = "tb_info_store";
+    private static final String SHARD_TABLE = "tb_info_store_shard";
+    private static final String SHARE_INDEX = "idx_share_uuid_"; //加分表号，索引名在H2、PostgreSQL中整个schema唯一
+
+    /**
+     * 分表状态：0可写入；1已写满
+     */
+    public static final int STATUS_ACTIVE = 0;
+    public static final int STATUS_FULL = 1;
+
+    /**
+     * 某历史记录分表
+     */
+    public static class Shard {
+        public final int shard_num;
+        final AtomicLong rows;
+        volatile long capacity;
+        volatile int status;
+        volatile boolean dirty;   //计数有变化，校正时重新统计
+
+        Shard(int shard_num, long rows, long capacity, int status) {
+            this.shard_num = shard_num;
+            this.rows = new AtomicLong(rows);
+            this.capacity = capacity;
+            this.status = status;
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getCapacity() {
+            return capacity;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        boolean isFull() {
+            return rows.get() >= capacity;
+        }
+    }
+
+    private static final ConcurrentSkipListMap<Integer, Shard> shards = new ConcurrentSkipListMap<>();
+    private static volatile Shard active;
+    private static volatile boolean loaded = false;
+    private static final ReentrantLock rolloverLock = new ReentrantLock();
+
+    /**
+     * 分表容量(条)，大于0时不取系统参数(测试用)
+     */
+    static volatile long fixedCapacity = 0;
+
+    /**
+     * 分表容量(条)：系统参数分表记录数(万条)，默认100万；后台线程没有登录用户时取默认机构
+     */
+    private static long getConfigCapacity() {
+        if (fixedCapacity > 0) return fixedCapacity;
+        int records;
+        try {
+            records = SysConfigCache.getSubTableRecords();
+        } catch (Exception ex) {
+            records = SysConfigCache.getSysConfigBean(1).getSubTableRecords();
+        }
+        if (records == 0) records = 100;
+        return records * 10000L;
+    }
+
+    /**
+     * 载入分表登记，登记表不存在时新建；第一次使用时按已有的分表统计后登记
+     */
+    public static synchronized void load() throws Exception {
+        if (loaded) return;
+        DBFunction.executeAutoCommit(() -> {
+            loadShards();
+            return null;
+        });
+        loaded = true;
+    }
+
+    /**
+     * 清空内存中的登记，下次使用时重新载入(测试用)
+     */
+    static synchronized void unload() {
+        loaded = false;
+        active = null;
+        shards.clear();
+    }
+
+    private static void loadShards() throws Exception {
+        if (!isExistTable(SHARD_TABLE)) {
+            String create_table = "create table `%s` (\n" +
+                    "  `shard_num` int(11) not null,\n" +
+                    "  `row_count` bigint(20) not null default 0,\n" +
+                    "  `capacity` bigint(20) not null default 0,\n" +
+                    "  `status` int(11) not null default 0,\n" +
+                    "  `modify_time` datetime default null,\n" +
+                    "  primary key (`shard_num`)\n" +
+                    ") engine=innodb default charset=utf8;";
+            DBFunction.executeNonQuery(String.format(create_table, SHARD_TABLE));
+        }
+        shards.clear();
+        refresh();
+        //未登记的分表(升级前已有、或登记未提交)按实际记录数补登记
+        int shard_num = shards.isEmpty() ? 1 : shards.lastKey() + 1;
+        while (isExistTable(TABLE_PREFIX + shard_num)) {
+            Shard shard = new Shard(shard_num, countRows(shard_num), getConfigCapacity(), STATUS_ACTIVE);
+            if (shard.isFull()) shard.status = STATUS_FULL;
+            if (insertShard(shard)) shards.put(shard_num, shard);
+            else refresh(); //其它实例已登记
+            shard_num++;
+        }
+        for (int num : shards.keySet()) addShareIndex(num);
+        active = null;
+        for (Shard shard : shards.values()) {
+            if (shard.status == STATUS_ACTIVE && !shard.isFull()) {
+                active = shard;
+                break;
+            }
+        }
+    }
+
+    /**
+     * 从登记表读取分表：新的分表加入，已有分表取登记的状态，记录数取较大值(其它实例的新增在校正前只计入登记表)
+     */
+    private static void refresh() throws Exception {
+        JsonArray array = DBFunction.executeJsonArray("select shard_num,row_count,capacity,status from " + SHARD_TABLE + " order by shard_num");
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(array, i);
+            int shard_num = GsonUtils.tryParse(dr, "shard_num", 0);
+            long rows = GsonUtils.tryParse(dr, "row_count", 0L);
+            int status = GsonUtils.tryParse(dr, "status", STATUS_ACTIVE);
+            Shard shard = shards.get(shard_num);
+            if (shard == null) {
+                shards.put(shard_num, new Shard(shard_num, rows, GsonUtils.tryParse(dr, "capacity", 0L), status));
+            } else {
+                shard.status = status;
+                if (rows > shard.rows.get()) shard.rows.set(rows);
+            }
+        }
+    }
+
+    /**
+     * 历史记录当前写入的分表号，写满时新建下一个分表
+     */
+    public static int getActiveShardNum() throws Exception {
+        if (!loaded) load();
+        Shard shard = active;
+        long capacity = getConfigCapacity();
+        if (shard != null && shard.capacity != capacity) {
+            shard.capacity = capacity;
+            shard.dirty = true;
+        }
+        if (shard != null && !shard.isFull()) return shard.shard_num;
+        if (shard == null) {
+            rolloverLock.lock();
+        } else if (!rolloverLock.tryLock()) {
+            //其它线程正在启用新分表，先写入当前分表(容量是大约的)，不持有事务连接等待
+            return shard.shard_num;
+        }
+        try {
+            return rollover(shard);
+        } finally {
+            rolloverLock.unlock();
+        }
+    }
+
+    /**
+     * 当前分表已写满(或没有可写分表)时启用下一个分表，本实例并发时只新建一次；
+     * 先按登记表刷新，其它实例已启用的分表直接使用
+     */
+    private static int rollover(Shard full) throws Exception {
+        Shard shard = active;
+        if (shard != full && shard != null && !shard.isFull()) return shard.shard_num;
+        return DBFunction.executeAutoCommit(() -> activate(full));
+    }
+
+    private static int activate(Shard full) throws Exception {
+        Shard shard;
+        if (full != null) {
+            full.status = STATUS_FULL;
+            updateStatus(full, STATUS_ACTIVE);
+        }
+        refresh();
+        for (Shard item : shards.values()) {  //清空历史记录后前面的分表可能又有空间
+            if (item.isFull()) continue;
+            if (item.status != STATUS_ACTIVE) {
+                item.rows.set(countRows(item.shard_num)); //已写满的分表按实际记录数判断
+                if (item.isFull()) continue;
+                item.status = STATUS_ACTIVE;
+                updateStatus(item, STATUS_FULL);
+            }
+            active = item;
+            return item.shard_num;
+        }
+        int shard_num = shards.isEmpty() ? 1 : shards.lastKey() + 1;
+        String table_name = TABLE_PREFIX + shard_num;
+        if (!isExistTable(table_name)) {
+            //新增一个历史记录表(其它实例可能同时新建)
+            String create_table = "create table if not exists `%s` (\n" +
+                    "  `store_id` int(11) not null auto_increment,\n" +
+                    "  `share_uuid` varchar(50) default null,\n" +
+                    "  `store_data` longtext,\n" +
+                    "  `create_time` datetime not null default current_timestamp,\n" +
+                    "  `opertype` varchar(50) default null,\n" +
+                    "  `user_id` int(11) default null,\n" +
+                    "  primary key (`store_id`),\n" +
+                    "  key `" + SHARE_INDEX + shard_num + "` (`share_uuid`,`store_id`)\n" +
+                    ") engine=innodb default charset=utf8;";
+            DBFunction.executeNonQuery(String.format(create_table, table_name));
+        } else {
+            addShareIndex(shard_num);
+        }
+        shard = new Shard(shard_num, countRows(shard_num), getConfigCapacity(), STATUS_ACTIVE);
+        if (insertShard(shard)) {
+            shards.put(shard_num, shard);
+        } else {
+            refresh(); //其它实例已登记，用登记表中的
+            shard = shards.get(shard_num);
+        }
+        active = shard;
+        return shard_num;
+    }
+
+    /**
+     * 分表新增、删除历史记录后计数
+     */
+    public static void addRows(int shard_num, long count) {
+        Shard shard = shards.get(shard_num);
+        if (shard != null && count != 0) {
+            shard.rows.addAndGet(count);
+            shard.dirty = true;
+        }
+    }
+
+    /**
+     * 分表批量删除等无法计数的操作后，下次校正时重新统计
+     */
+    public static void setDirty(int shard_num) {
+        Shard shard = shards.get(shard_num);
+        if (shard != null) shard.dirty = true;
+    }
+
+    /**
+     * 已登记的分表号(从小到大)
+     */
+    public static List<Integer> getShardNums() throws Exception {
+        if (!loaded) load();
+        return new ArrayList<>(shards.keySet());
+    }
+
+    public static Shard getShard(int shard_num) {
+        return shards.get(shard_num);
+    }
+
+    /**
+     * 校正：有变化的分表按实际记录数更新计数、状态并写回登记表，返回校正的分表数
+     */
+    public static int reconcile() {
+        int count = 0;
+        try {
+            if (!loaded) load();
+            for (Shard shard : shards.values()) {
+                if (!shard.dirty) continue;
+                shard.dirty = false;
+                long rows = countRows(shard.shard_num);
+                shard.rows.set(rows);
+                shard.status = shard.isFull() ? STATUS_FULL : STATUS_ACTIVE;
+                updateShard(shard);
+                count++;
+            }
+        } catch (Exception ex) {
+            LogError.write("历史记录分表校正", LogEnum.Error, ex.toString());
+        }
+        return count;
+    }
+
+    /**
+     * 升级前建的分表补建share_uuid索引(按信息取历史记录、关键帧时用)
+     */
+    private static void addShareIndex(int shard_num) {
+        String table_name = TABLE_PREFIX + shard_num;
+        try {
+            if (!isExistTable(table_name)) return;
+            if (BuildHelper.isIndexedColumn(table_name, "share_uuid")) return;
+            DBFunction.executeNonQuery(String.format("create index %s%d on %s (share_uuid,store_id)", SHARE_INDEX, shard_num, table_name));
+        } catch (Exception ex) {
+            LogError.write("历史记录分表索引", LogEnum.Error, ex.toString());
+        }
+    }
+
+    private static boolean isExistTable(String table_name) throws Exception {
+        return BuildHelper.isExistTable(table_name);
+    }
+
+    private static long countRows(int shard_num) {
+        return NumberUtils.strToLong(DBFunction.executeScalar("select count(1) from " + TABLE_PREFIX + shard_num));
+    }
+
+    /**
+     * 登记分表，已登记(其它实例先登记)时返回false
+     */
+    private static boolean insertShard(Shard shard) throws Exception {
+        if (DBFunction.getTableCount("select count(1) from " + SHARD_TABLE + " where shard_num=" + shard.shard_num) > 0) return false;
+        String sql = "insert into " + SHARD_TABLE + " (shard_num,row_count,capacity,status,modify_time) " +
+                "values (@shard_num,@row_count,@capacity,@status,@modify_time)";
+        try {
+            return DBFunction.executeNonQuery(sql, getParameters(shard)) > 0;
+        } catch (Exception ex) {
+            //其它实例同时插入时主键冲突(自动提交连接，不影响调用方的事务)
+            if (DBFunction.getTableCount("select count(1) from " + SHARD_TABLE + " where shard_num=" + shard.shard_num) > 0) return false;
+            throw ex;
+        }
+    }
+
+    /**
+     * 按登记表中的原状态条件更新状态，原状态已被其它实例修改时不更新
+     */
+    private static void updateStatus(Shard shard, int from_status) throws Exception {
+        String sql = "update " + SHARD_TABLE + " set row_count=@row_count,capacity=@capacity,status=@status," +
+                "modify_time=@modify_time where shard_num=@shard_num and status=@from_status";
+        List<DBParameter> params = new ArrayList<>(Arrays.asList(getParameters(shard)));
+        params.add(new DBParameter("from_status", from_status));
+        DBFunction.executeNonQuery(sql, params.toArray(new DBParameter[0]));
+    }
+
+    private static void updateShard(Shard shard) throws Exception {
+        String sql = "update " + SHARD_TABLE + " set row_count=@row_count,capacity=@capacity,status=@status," +
+                "modify_time=@modify_time where shard_num=@shard_num";
+        DBFunction.executeNonQuery(sql, getParameters(shard));
+    }
+
+    private static DBParameter[] getParameters(Shard shard) {
+        return new DBParameter[]{new DBParameter("shard_num", shard.shard_num), new DBParameter("row_count", shard.rows.get()),
+                new DBParameter("capacity", shard.capacity), new DBParameter("status", shard.status),
+                new DBParameter("modify_time", DateUtils.getDateTime())};
+    }
+}
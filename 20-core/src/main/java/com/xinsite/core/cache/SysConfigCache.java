@@ -1,35 +1,178 @@
 package com.xinsite.core.cache;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.enums.LogEnum;
+import com.xinsite.common.uitls.Global;
+import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.ValueUtils;
 import com.xinsite.core.model.system.SysConfigModel;
+import com.xinsite.core.utils.log.LogError;
 import com.xinsite.core.utils.user.UserUtils;
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.dbhelper.DBFunction;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 系统参数配置缓存：各机构sys_config(config.itemid栏目)的只读快照，启动时批量加载，
+ * 配置修改后changed(版本号加1并重新加载)；多个应用实例时poll按config.sys_config_poll_seconds(默认5秒，0不检查)
+ * 比较sys_config_version的版本号，其它实例修改的机构重新加载；版本号查询出错(如表不存在)时暂停同步，
+ * VERSION_RETRY_MILLIS后再试
+ */
 public class SysConfigCache {
+
     /**
-     * 模拟数据库
+     * 版本号查询出错后暂停多实例同步的毫秒数
      */
-    private static final Map<Integer, SysConfigModel> config = new HashMap();
+    private static final long VERSION_RETRY_MILLIS = 60 * 1000L;
+
+    private static final Map<Integer, SysConfigModel> config = new ConcurrentHashMap<>();
+    private static volatile long lastPollTime;
+    private static volatile long versionRetryTime;   //出错后的重试时间，0为正常
 
     /**
-     * 初始化数据
+     * 当前时间(毫秒)，测试时替换
      */
-    static {
-        config.put(1, new SysConfigModel(1));
-    }
+    static LongSupplier clock = System::currentTimeMillis;
 
     public static SysConfigModel getSysConfigBean(int org_id) {
-        if (!config.containsKey(org_id)) config.put(org_id, new SysConfigModel(org_id));
-        return config.get(org_id);
+        SysConfigModel model = config.get(org_id);
+        if (model == null) model = reload(org_id);
+        return model;
     }
 
     public static SysConfigModel getSysConfigBean() {
-        int org_id = UserUtils.getOrgId();
-        if (!config.containsKey(org_id)) config.put(org_id, new SysConfigModel(org_id));
-        return config.get(org_id);
+        return getSysConfigBean(UserUtils.getOrgId());
+    }
+
+    /**
+     * 批量加载全部机构的配置，返回机构数
+     */
+    public static int preload() throws Exception {
+        Map<Integer, Long> versions = getVersions("");
+        if (versions == null) versions = new HashMap<>();
+        Map<Integer, Map<String, String>> values = new HashMap<>();
+        JsonArray orgs = DBFunction.executeJsonArray("select org_id from sys_organize");
+        for (int i = 0; i < orgs.size(); i++) {
+            values.put(GsonUtils.tryParse(GsonUtils.getObject(orgs, i), "org_id", 0), new HashMap<>());
+        }
+        String sql = "select org_id,config_key,config_value from sys_config where item_id=@itemid";
+        JsonArray array = DBFunction.executeJsonArray(sql, new DBParameter("@itemid", Global.getInt("config.itemid")));
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(array, i);
+            values.computeIfAbsent(GsonUtils.tryParse(dr, "org_id", 0), k -> new HashMap<>())
+                    .put(GsonUtils.tryParse(dr, "config_key", ""), GsonUtils.tryParse(dr, "config_value", ""));
+        }
+        for (Map.Entry<Integer, Map<String, String>> entry : values.entrySet()) {
+            put(new SysConfigModel(entry.getKey(), versions.getOrDefault(entry.getKey(), 0L), entry.getValue()));
+        }
+        return config.size();
+    }
+
+    /**
+     * 从数据库重新加载某机构的配置，先取版本号再取配置，加载期间有修改时下次poll会再加载；
+     * 版本号取不到时沿用原快照的版本号；查询配置出错时返回原快照，没有时返回默认值(不缓存，下次访问再加载)
+     */
+    public static SysConfigModel reload(int org_id) {
+        try {
+            Map<Integer, Long> versions = getVersions(" where org_id=" + org_id);
+            SysConfigModel old = config.get(org_id);
+            long version = versions != null ? versions.getOrDefault(org_id, 0L) : old == null ? 0L : old.getVersion();
+            String sql = "select config_key,config_value from sys_config where org_id=" + org_id + " and item_id=@itemid";
+            JsonArray array = DBFunction.executeJsonArray(sql, new DBParameter("@itemid", Global.getInt("config.itemid")));
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject dr = GsonUtils.getObject(array, i);
+                values.put(GsonUtils.tryParse(dr, "config_key", ""), GsonUtils.tryParse(dr, "config_value", ""));
+            }
+            return put(new SysConfigModel(org_id, version, values));
+        } catch (Exception ex) {
+            LogError.write(LogEnum.Error, "系统参数配置加载：" + ex.toString());  //可能在定时任务线程，不取登录用户
+            SysConfigModel old = config.get(org_id);
+            return old != null ? old : new SysConfigModel(org_id);
+        }
+    }
+
+    /**
+     * 替换快照，已有更新版本的快照时保留
+     */
+    private static SysConfigModel put(SysConfigModel model) {
+        return config.compute(model.getOrgId(), (key, old) -> old != null && old.getVersion() > model.getVersion() ? old : model);
+    }
+
+    /**
+     * 配置修改后调用：版本号加1(同步暂停时也尝试，成功后恢复同步)，重新加载本机构配置
+     */
+    public static void changed(int org_id) {
+        try {
+            String sql = "update sys_config_version set version=version+1,modify_time=now() where org_id=" + org_id;
+            if (DBFunction.executeNonQuery(sql) == 0) {
+                try {
+                    DBFunction.executeNonQuery("insert into sys_config_version (org_id,version,modify_time) values (" + org_id + ",1,now())");
+                } catch (Exception ex) {
+                    DBFunction.executeNonQuery(sql);  //其它实例已插入
+                }
+            }
+            versionRetryTime = 0;
+        } catch (Exception ex) {
+            versionFailed(ex);
+        }
+        reload(org_id);
+    }
+
+    /**
+     * 检查其它实例的修改(定时任务每秒调用，按config.sys_config_poll_seconds间隔查询)，返回重新加载的机构数
+     */
+    public static int poll() {
+        long interval = ValueUtils.tryParse(Global.getConfig("config.sys_config_poll_seconds"), 5) * 1000L;
+        long now = clock.getAsLong();
+        if (interval <= 0 || now - lastPollTime < interval || config.isEmpty()) return 0;
+        lastPollTime = now;
+        int count = 0;
+        Map<Integer, Long> versions = getVersions("");
+        if (versions == null) return 0;
+        for (SysConfigModel model : config.values()) {
+            Long version = versions.get(model.getOrgId());
+            if (version != null && version != model.getVersion()) {
+                reload(model.getOrgId());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 各机构的配置版本号；出错或暂停同步期间返回null
+     */
+    private static Map<Integer, Long> getVersions(String where) {
+        if (versionRetryTime > clock.getAsLong()) return null;
+        try {
+            Map<Integer, Long> map = new HashMap<>();
+            JsonArray array = DBFunction.executeJsonArray("select org_id,version from sys_config_version" + where);
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject dr = GsonUtils.getObject(array, i);
+                map.put(GsonUtils.tryParse(dr, "org_id", 0), GsonUtils.tryParse(dr, "version", 0L));
+            }
+            versionRetryTime = 0;
+            return map;
+        } catch (Exception ex) {
+            versionFailed(ex);
+            return null;
+        }
+    }
+
+    /**
+     * 版本号读写出错(如sys_config_version表不存在)：暂停同步VERSION_RETRY_MILLIS后再试，连续出错只记录一次日志
+     */
+    private static void versionFailed(Exception ex) {
+        boolean first = versionRetryTime == 0;
+        versionRetryTime = clock.getAsLong() + VERSION_RETRY_MILLIS;
+        if (first) LogError.write(LogEnum.Error, "系统参数配置版本：" + ex.toString());
     }
 
     public static int getMaxSession() {
@@ -71,27 +214,4 @@ public class SysConfigCache {
     public static int getSubTableRecords() {
         return getSysConfigBean().getSubTableRecords();
     }
-
-    public static void setConfigValue(String config_key, String value) {
-        SysConfigModel configBean = getSysConfigBean();
-        if (config_key.equalsIgnoreCase("login_locked")) {
-            configBean.setLoginLocked(ValueUtils.tryParse(value, 0, 30));
-        } else if (config_key.equalsIgnoreCase("login_errors")) {
-            configBean.setLoginErrors(ValueUtils.tryParse(value, 0, 5));
-        } else if (config_key.equalsIgnoreCase("page_size")) {
-            configBean.setPageSize(ValueUtils.tryParse(value, 0, 40));
-        } else if (config_key.equalsIgnoreCase("excel_max_count")) {
-            configBean.setExcelMaxCount(ValueUtils.tryParse(value, 0, 10000));
-        } else if (config_key.equalsIgnoreCase("max_fixed_tabs")) {
-            configBean.setMaxFixedTabs(ValueUtils.tryParse(value, 0, 3));
-        } else if (config_key.equalsIgnoreCase("max_session")) {
-            configBean.setMaxSession(ValueUtils.tryParse(value, 0, 0));
-        } else if (config_key.equalsIgnoreCase("file_load_version")) {
-            configBean.setFileLoadVersion(ValueUtils.tryParse(value, 0, 0));
-        } else if (config_key.equalsIgnoreCase("bar_remind_items")) {
-            configBean.setRemindItems(value);
-        } else if (config_key.equalsIgnoreCase("subtable_records")) {
-            configBean.setSubTableRecords(ValueUtils.tryParse(value, 0, 100));
-        }
-    }
 }
@@ -5,8 +5,10 @@ import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceBuilder;
 import com.alibaba.druid.spring.boot.autoconfigure.properties.DruidStatProperties;
 import com.alibaba.druid.util.Utils;
 import com.xinsite.dal.datasource.DynamicDataSource;
+import com.xinsite.dal.datasource.DynamicTransactionManager;
 import com.xinsite.mybatis.enums.Enums_DBKey;
 import com.xinsite.dal.properties.DruidProperties;
+import com.xinsite.dal.properties.ReadProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -16,7 +18,6 @@ import org.springframework.context.annotation.AnnotationBeanNameGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
-import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.servlet.*;
@@ -24,6 +25,7 @@ import javax.sql.DataSource;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 
 /**
  * druid 配置多数据源
@@ -64,13 +66,19 @@ public class DruidConfig {
         targetDataSources.put(Enums_DBKey.master.name(), masterDataSource());
         targetDataSources.put(Enums_DBKey.viceone.name(), vice01DataSource());
         targetDataSources.put(Enums_DBKey.sqlserver.name(), vice02DataSource());
+
+        // 各数据源下配置的只读副本(replicas)，只读范围内的查询轮流使用
+        Properties conf = ReadProperties.getProperties();
+        for (Object db_key : targetDataSources.keySet()) {
+            if (targetDataSources.get(db_key) != null) ReadProperties.addReplicas(db_key.toString(), conf);
+        }
         return new DynamicDataSource(masterDataSource(), targetDataSources);
     }
 
     @Bean
     public PlatformTransactionManager transactionManager() {
-        // 配置事务管理, 使用事务时在方法头部添加@Transactional注解即可
-        return new DataSourceTransactionManager(dynamicDataSource());
+        // 配置事务管理, 使用事务时在方法头部添加@Transactional注解即可，事务中都走主库
+        return new DynamicTransactionManager(dynamicDataSource());
     }
 
     //注解创建bean时,自定义bean名称，解决Mybatis多数据源出现的相同mapper名称
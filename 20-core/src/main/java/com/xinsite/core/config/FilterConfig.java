@@ -1,18 +1,21 @@
 package com.xinsite.core.config;
 
 import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.common.uitls.metrics.ResponseSizeFilter;
 import com.xinsite.common.xss.XssFilter;
+import com.xinsite.core.utils.WarmUpFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 
 import javax.servlet.DispatcherType;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * XssFilter配置加载
+ * XssFilter、WarmUpFilter、ResponseSizeFilter配置加载
  */
 @Configuration
 public class FilterConfig {
@@ -41,4 +44,32 @@ public class FilterConfig {
         return registration;
     }
 
+    /**
+     * 启动预热拦截，排在Shiro过滤器之前
+     */
+    @Bean
+    public FilterRegistrationBean<WarmUpFilter> warmUpFilterRegistration() {
+        FilterRegistrationBean<WarmUpFilter> registration = new FilterRegistrationBean<>();
+        registration.setDispatcherTypes(DispatcherType.REQUEST);
+        registration.setFilter(new WarmUpFilter());
+        registration.addUrlPatterns("/*");
+        registration.setName("warmUpFilter");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * 请求统计的响应字节数(LogInterceptor)，排在预热拦截之后
+     */
+    @Bean
+    public FilterRegistrationBean<ResponseSizeFilter> responseSizeFilterRegistration() {
+        FilterRegistrationBean<ResponseSizeFilter> registration = new FilterRegistrationBean<>();
+        registration.setDispatcherTypes(DispatcherType.REQUEST);
+        registration.setFilter(new ResponseSizeFilter());
+        registration.addUrlPatterns("/*");
+        registration.setName("responseSizeFilter");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
 }
@@ -0,0 +1,29 @@
+package com.xinsite.core.model;
+
+import java.util.BitSet;
+
+/**
+ * 分片上传的Model：各字段保存到分片目录的{upload_id}.json，已收到的分片记在{upload_id}.map
+ * create by zhangxiaxin
+ */
+public class ChunkUploadModel {
+    public String uploadId;    //上传标识
+    public String fileName;    //文件名
+    public String extName;     //扩展名
+    public long fileSize;      //文件大小
+    public String fileMd5;     //客户端计算的文件MD5，可以为空
+    public int chunkSize;      //分片大小
+    public int chunkCount;     //分片数
+    public int userId;         //上传用户
+    public long createTime;    //开始上传时间
+
+    public transient BitSet received;  //已收到的分片
+
+    /**
+     * 分片的长度(最后一片可能较短)
+     */
+    public long getChunkLength(int index) {
+        long start = (long) index * chunkSize;
+        return Math.min(chunkSize, fileSize - start);
+    }
+}
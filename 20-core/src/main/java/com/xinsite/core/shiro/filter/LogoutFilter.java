@@ -1,5 +1,6 @@
 package com.xinsite.core.shiro.filter;
 
+import com.xinsite.core.cache.PermissionSnapshot;
 import com.xinsite.core.model.user.LoginUser;
 import com.xinsite.common.constant.ShiroConstant;
 import com.xinsite.common.uitls.lang.StringUtils;
@@ -55,6 +56,7 @@ public class LogoutFilter extends org.apache.shiro.web.filter.authc.LogoutFilter
                     String loginIp = IpUtils.getRemoteAddr(ServletUtils.getRequest());
                     LogUtils.addLogByLogin("退出", loginUser.getLoginName(), loginIp);
                     cache.remove(loginUser.getUserId() + ""); // 清理缓存
+                    PermissionSnapshot.remove(loginUser.getUserId());
                 }
 
                 subject.logout(); // 退出登录
@@ -1,14 +1,17 @@
 package com.xinsite.core.shiro.realm;
 
+import com.xinsite.common.enums.LogEnum;
 import com.xinsite.common.uitls.MessageUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.core.bll.permission.BLL_UserPower;
+import com.xinsite.core.cache.PermissionSnapshot;
 import com.xinsite.core.model.user.LoginUser;
 import com.xinsite.core.enums.OnlineStatus;
 import com.xinsite.core.shiro.service.PasswordService;
 import com.xinsite.core.shiro.session.OnlineSession;
 import com.xinsite.core.shiro.session.OnlineSessionDAO;
 import com.xinsite.core.shiro.verify.CredentialsMatcher;
+import com.xinsite.core.utils.log.LogError;
 import com.xinsite.core.utils.log.LogUtils;
 import com.xinsite.core.utils.user.ShiroUtils;
 import com.xinsite.core.utils.user.UserUtils;
@@ -26,6 +29,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -52,8 +56,15 @@ public class UserRealm extends AuthorizingRealm {
             autho.addRole("admin"); // 超级管理员拥有所有权限
             autho.addStringPermission("*:*:*");
         } else {
-            autho.setRoles(BLL_UserPower.getUserRolePermissions(loginUser.getRoleId()));
-            autho.setStringPermissions(BLL_UserPower.getUserFunPermissions(loginUser));
+            try {
+                PermissionSnapshot.Snapshot snapshot = PermissionSnapshot.get(loginUser);
+                autho.setRoles(new HashSet<>(snapshot.getRolePermissions()));
+                autho.setStringPermissions(new HashSet<>(snapshot.getFunPermissions()));
+            } catch (Exception ex) {
+                LogError.write("用户权限快照", LogEnum.Error, ex.toString());
+                autho.setRoles(BLL_UserPower.getUserRolePermissions(loginUser.getRoleId()));
+                autho.setStringPermissions(BLL_UserPower.getUserFunPermissions(loginUser));
+            }
         }
 //        autho.addRole("admin"); // 超级管理员拥有所有权限
 //        autho.addStringPermission("*:*:*");
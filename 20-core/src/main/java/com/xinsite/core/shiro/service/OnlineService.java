@@ -63,10 +63,10 @@ public class OnlineService {
     }
 
     /**
-     * 同步session到数据库在线用户
+     * 同步session到数据库在线用户，同一session按顺序同步(执行时读取session当前值，最后一次同步写入最新状态)
      */
     public void insertOnline(OnlineSession session) {
-        TaskUtils.getInstance().execute(new TimerTask() {
+        TaskUtils.getInstance().execute("online:" + session.getId(), new TimerTask() {
             @Override
             public void run() {
                 SysUserOnline online = new SysUserOnline();
@@ -1,6 +1,7 @@
 package com.xinsite.core.shiro.session;
 
 import com.xinsite.common.constant.ShiroConstant;
+import com.xinsite.core.cache.PermissionSnapshot;
 import com.xinsite.core.shiro.service.OnlineService;
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.UnknownSessionException;
@@ -73,6 +74,7 @@ public class OnlineSessionDAO extends EnterpriseCacheSessionDAO {
     protected void doDelete(Session session) {
         OnlineSession onlineSession = (OnlineSession) session;
         if (onlineSession == null) return;
+        if (onlineSession.getUserId() > 0) PermissionSnapshot.remove(onlineSession.getUserId());
         onlineService.deleteOnline(onlineSession);
     }
 
@@ -0,0 +1,256 @@
+package com.xinsite.core.utils;
+
+import com.xinsite.common.enums.LogEnum;
+import com.xinsite.common.uitls.Global;
+import com.xinsite.common.uitls.codec.Md5Utils;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.idgen.IdGenerate;
+import com.xinsite.common.uitls.io.ChunkFileUtils;
+import com.xinsite.common.uitls.io.FileUtils;
+import com.xinsite.common.uitls.lang.ByteUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.bll.BLL_Object_File;
+import com.xinsite.core.model.ChunkUploadModel;
+import com.xinsite.core.model.UploadModel;
+import com.xinsite.core.utils.log.LogError;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 分片上传：init登记上传(预分配文件)，各分片校验MD5后按偏移直接写入(可乱序、重复、并行)，complete校验整个文件后保存；
+ * 上传状态保存在分片目录，中断(或服务重启)后按已收到的分片续传；内容相同的文件已保存过时直接引用，
+ * 不上传内容的秒传只限完整上传过该文件的用户(只凭MD5、大小不能取得其他用户的文件)
+ * create by zhangxiaxin
+ */
+public class ChunkUploadUtils {
+    private static final String CHUNK_DIR = "chunks";
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final long EXPIRE_MILLIS = 24 * 3600 * 1000L;   //未完成的上传保留24小时
+    private static final long CLEAR_INTERVAL = 3600 * 1000L;
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-zA-Z]{1,64}");
+
+    private static final Map<String, ChunkUploadModel> uploads = new ConcurrentHashMap<>();
+    private static volatile long lastClearTime = 0;
+
+    /**
+     * 分片上传的文件最大字节数：config.upload_chunk_max_size，默认2GB
+     */
+    public static long getMaxFileSize() {
+        long size = ByteUtils.getByteSize(StringUtils.defaultIfEmpty(Global.getConfig("config.upload_chunk_max_size"), "2GB"));
+        return size > 0 ? size : Global.getMaxFileSize();
+    }
+
+    /**
+     * 默认分片大小：config.upload_chunk_size，不能超过单个上传文件大小
+     */
+    public static int getChunkSize(int chunk_size) {
+        if (chunk_size <= 0)
+            chunk_size = (int) ByteUtils.getByteSize(StringUtils.defaultIfEmpty(Global.getConfig("config.upload_chunk_size"), "2MB"));
+        long max_size = Global.getMaxFileSize();
+        if (max_size > 0 && chunk_size > max_size) chunk_size = (int) max_size;
+        return Math.max(chunk_size, MIN_CHUNK_SIZE);
+    }
+
+    private static String getChunkPath() {
+        return FileUtils.getUploadFildPath(CHUNK_DIR);
+    }
+
+    private static File getFile(String upload_id, String suffix) {
+        return new File(getChunkPath() + upload_id + suffix);
+    }
+
+    /**
+     * 检查文件大小、类型，返回扩展名
+     */
+    private static String checkFile(String file_name, long file_size, String allow_filetype) throws Exception {
+        if (StringUtils.isEmpty(file_name)) throw new Exception("请选择文件");
+        if (file_size < 0 || file_size > getMaxFileSize()) throw new Exception("文件上传失败，文件太大");
+        String ext_name = FileUtils.getFileExtName(file_name);
+        if (allow_filetype.indexOf(ext_name) == -1) throw new Exception("文件上传失败，文件类型不对");
+        return ext_name;
+    }
+
+    /**
+     * 该用户完整上传过内容相同(MD5、大小)的文件时返回该文件(秒传)，否则返回null
+     */
+    public static UploadModel getExistFile(String file_name, long file_size, String file_md5, int user_id, String allow_filetype) throws Exception {
+        String ext_name = checkFile(file_name, file_size, allow_filetype);
+        String attach_add = BLL_Object_File.getUserAttachAdd(file_md5, file_size, user_id);
+        if (StringUtils.isEmpty(attach_add)) return null;
+        UploadModel fileUpload = new UploadModel();
+        fileUpload.fileName = file_name;
+        fileUpload.extName = ext_name;
+        fileUpload.fileSize = file_size;
+        fileUpload.visualPath = attach_add;
+        return fileUpload;
+    }
+
+    /**
+     * 开始(或继续)上传：有文件MD5时同一用户同一文件的上传标识不变，可以续传
+     */
+    public static synchronized ChunkUploadModel init(String file_name, long file_size, String file_md5, int chunk_size, int user_id, String allow_filetype) throws Exception {
+        clearExpired(false);
+        String ext_name = checkFile(file_name, file_size, allow_filetype);
+        chunk_size = getChunkSize(chunk_size);
+        file_md5 = StringUtils.isEmpty(file_md5) ? "" : file_md5.toLowerCase();
+
+        String upload_id = StringUtils.isEmpty(file_md5) ? IdGenerate.buildUUID() :
+                Md5Utils.md5(user_id + "|" + file_md5 + "|" + file_size + "|" + chunk_size);
+        ChunkUploadModel upload = getUpload(upload_id);
+        if (upload != null) return upload;
+
+        upload = new ChunkUploadModel();
+        upload.uploadId = upload_id;
+        upload.fileName = file_name;
+        upload.extName = ext_name;
+        upload.fileSize = file_size;
+        upload.fileMd5 = file_md5;
+        upload.chunkSize = chunk_size;
+        upload.chunkCount = (int) ((file_size + chunk_size - 1) / chunk_size);
+        upload.userId = user_id;
+        upload.createTime = System.currentTimeMillis();
+        upload.received = new BitSet(upload.chunkCount);
+
+        ChunkFileUtils.preallocate(getFile(upload_id, ".part"), file_size);
+        ChunkFileUtils.preallocate(getFile(upload_id, ".map"), upload.chunkCount);
+        Files.write(getFile(upload_id, ".json").toPath(), GsonUtils.toJson(upload).getBytes(StandardCharsets.UTF_8));
+        uploads.put(upload_id, upload);
+        return upload;
+    }
+
+    /**
+     * 上传中的文件，内存中没有时从分片目录载入(服务重启后续传)，不存在返回null
+     */
+    public static ChunkUploadModel getUpload(String upload_id) throws IOException {
+        if (StringUtils.isEmpty(upload_id) || !UPLOAD_ID.matcher(upload_id).matches()) return null;
+        ChunkUploadModel upload = uploads.get(upload_id);
+        if (upload != null) return upload;
+        synchronized (ChunkUploadUtils.class) {
+            upload = uploads.get(upload_id);
+            if (upload != null) return upload;
+            File meta = getFile(upload_id, ".json");
+            File map = getFile(upload_id, ".map");
+            if (!meta.isFile() || !map.isFile() || !getFile(upload_id, ".part").isFile()) return null;
+            upload = GsonUtils.getBean(new String(Files.readAllBytes(meta.toPath()), StandardCharsets.UTF_8), ChunkUploadModel.class);
+            byte[] flags = Files.readAllBytes(map.toPath());
+            upload.received = new BitSet(upload.chunkCount);
+            for (int i = 0; i < upload.chunkCount && i < flags.length; i++) {
+                if (flags[i] != 0) upload.received.set(i);
+            }
+            uploads.put(upload_id, upload);
+            return upload;
+        }
+    }
+
+    /**
+     * 已收到的分片序号
+     */
+    public static List<Integer> getReceived(ChunkUploadModel upload) {
+        List<Integer> list = new ArrayList<>();
+        synchronized (upload) {
+            for (int i = upload.received.nextSetBit(0); i >= 0; i = upload.received.nextSetBit(i + 1)) list.add(i);
+        }
+        return list;
+    }
+
+    /**
+     * 写入一个分片：长度必须正确，有chunk_md5时校验内容；重复上传的分片覆盖写入
+     */
+    public static void uploadChunk(ChunkUploadModel upload, int index, InputStream in, String chunk_md5) throws Exception {
+        if (index < 0 || index >= upload.chunkCount) throw new Exception("分片序号不对：" + index);
+        long length = upload.getChunkLength(index);
+        synchronized (upload) {
+            if (upload.received.get(index)) markChunk(upload, index, false);  //重新上传的分片校验通过后再标记
+        }
+        String md5 = ChunkFileUtils.writeChunk(getFile(upload.uploadId, ".part"), (long) index * upload.chunkSize, in, length);
+        if (!StringUtils.isEmpty(chunk_md5) && !md5.equalsIgnoreCase(chunk_md5)) throw new Exception("分片校验失败：" + index);
+        synchronized (upload) {
+            markChunk(upload, index, true);
+        }
+    }
+
+    private static void markChunk(ChunkUploadModel upload, int index, boolean received) throws IOException {
+        try (FileChannel channel = FileChannel.open(getFile(upload.uploadId, ".map").toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (received ? 1 : 0)}), index);
+        }
+        upload.received.set(index, received);
+    }
+
+    /**
+     * 全部分片收到后校验并保存文件，返回保存的文件；内容相同的文件已保存过时引用已有文件
+     */
+    public static UploadModel complete(ChunkUploadModel upload) throws Exception {
+        synchronized (upload) {
+            if (!uploads.containsKey(upload.uploadId)) throw new Exception("上传已完成或已取消");
+            int missing = upload.chunkCount - upload.received.cardinality();
+            if (missing > 0) throw new Exception("还有" + missing + "个分片未上传");
+
+            File part = getFile(upload.uploadId, ".part");
+            String file_md5 = ChunkFileUtils.md5Hex(part);
+            if (!StringUtils.isEmpty(upload.fileMd5) && !file_md5.equals(upload.fileMd5)) {
+                remove(upload.uploadId);
+                throw new Exception("文件校验失败，请重新上传");
+            }
+
+            UploadModel fileUpload = new UploadModel();
+            fileUpload.fileName = upload.fileName;
+            fileUpload.extName = upload.extName;
+            fileUpload.fileSize = upload.fileSize;
+            fileUpload.visualPath = BLL_Object_File.getAttachAdd(file_md5, upload.fileSize);
+            if (StringUtils.isEmpty(fileUpload.visualPath)) {
+                String savePath = FileUtils.getUploadFildPath();
+                fileUpload.visualPath = FileUtils.getVisualPath(savePath, upload.fileName);
+                Files.move(part.toPath(), new File(savePath + fileUpload.visualPath).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                BLL_Object_File.addFile(file_md5, upload.fileSize, fileUpload.visualPath);
+            }
+            BLL_Object_File.addUser(file_md5, upload.fileSize, upload.userId);
+            remove(upload.uploadId);
+            return fileUpload;
+        }
+    }
+
+    /**
+     * 取消上传，删除已收到的分片
+     */
+    public static void remove(String upload_id) {
+        uploads.remove(upload_id);
+        getFile(upload_id, ".part").delete();
+        getFile(upload_id, ".map").delete();
+        getFile(upload_id, ".json").delete();
+    }
+
+    /**
+     * 删除超过24小时没有新分片的上传，force为false时每小时最多清理一次
+     */
+    public static void clearExpired(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastClearTime < CLEAR_INTERVAL) return;
+        lastClearTime = now;
+        try {
+            File[] files = new File(getChunkPath()).listFiles((dir, name) -> name.endsWith(".json"));
+            if (files == null) return;
+            for (File meta : files) {
+                String upload_id = meta.getName().substring(0, meta.getName().length() - 5);
+                File map = getFile(upload_id, ".map");
+                long last_time = Math.max(meta.lastModified(), map.lastModified());
+                if (now - last_time > EXPIRE_MILLIS) remove(upload_id);
+            }
+        } catch (Exception ex) {
+            LogError.write("清理分片上传", LogEnum.Error, ex.toString());
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package com.xinsite.core.utils;
 
 import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.metadata.Sheet;
 import com.alibaba.excel.metadata.Table;
 import com.alibaba.excel.support.ExcelTypeEnum;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.io.FileUtils;
+import com.xinsite.core.bll.BLL_Common;
+import com.xinsite.core.utils.search.PageHelper;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.File;
@@ -20,6 +23,11 @@ import java.util.List;
  */
 public class ExcelUtils {
 
+    /**
+     * 流式导出每批读取、翻译、写入的行数
+     */
+    public static final int EXCEL_BATCH_SIZE = 1000;
+
     public static ExcelWriter getExcelWriter(String MapUrl) throws Exception {
         FileOutputStream out = new FileOutputStream(MapUrl);
         ExcelWriter writer = new ExcelWriter(out, ExcelTypeEnum.XLSX, true);
@@ -56,4 +64,35 @@ public class ExcelUtils {
         if (!tmpFile.exists()) tmpFile.mkdir();
         return MapUrl;
     }
+
+    /**
+     * 列表流式导出Excel：游标分批读取，每批下拉框、用户、部门转文本后写入，内存占用与总行数无关
+     *
+     * @param fields:导出列(字段名)
+     * @param oid:设计对象Id，下拉框存值转文本
+     */
+    public static long writeGrid(ExcelWriter writer, Sheet sheet, Table table, PageHelper pager, List<String> fields, int oid, String... sorter) throws Exception {
+        long count = pager.getAllGrid(EXCEL_BATCH_SIZE, rows -> {
+            BLL_Common.setExcelCodeText(rows, pager.showColumns, oid);
+            writer.write0(getRows(rows, fields), sheet, table);
+        }, sorter);
+        if (count == 0) writer.write0(new ArrayList<>(), sheet, table); //无数据时只写表头
+        return count;
+    }
+
+    /**
+     * 按导出列取行数据
+     */
+    public static List<List<String>> getRows(JsonArray array, List<String> fields) {
+        List<List<String>> data = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(array, i);
+            List<String> item = new ArrayList<>(fields.size());
+            for (String field : fields) {
+                item.add(GsonUtils.tryParse(dr, field.toLowerCase(), ""));
+            }
+            data.add(item);
+        }
+        return data;
+    }
 }
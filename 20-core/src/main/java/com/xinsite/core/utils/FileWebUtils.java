@@ -4,6 +4,7 @@ import com.xinsite.common.enums.LogEnum;
 import com.xinsite.common.exception.AppException;
 import com.xinsite.common.uitls.io.FileUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.common.uitls.web.http.FileDownloadUtils;
 import com.xinsite.core.model.UploadModel;
 import com.xinsite.core.utils.log.LogError;
 import org.apache.commons.fileupload.FileItem;
@@ -43,18 +44,7 @@ public class FileWebUtils {
 
             try {
                 visualPath = FileUtils.getVisualPath(savePath, filename);//得到文件的保存目录
-                InputStream in = mf.getInputStream();//获取item中的上传文件的输入流
-                FileOutputStream out = new FileOutputStream(savePath + visualPath);//创建一个文件输出流
-                byte buffer[] = new byte[1024];//创建一个缓冲区
-                //判断输入流中的数据是否已经读完的标识
-                int len = 0;
-                while ((len = in.read(buffer)) > 0) {
-                    //使用FileOutputStream输出流将缓冲区的数据写入到指定的目录(savePath + "\\" + filename)当中
-                    out.write(buffer, 0, len);
-                }
-                in.close();//关闭输入流
-                out.close();//关闭输出流
-                //item.delete(); //删除处理文件上传时生成的临时文件
+                mf.transferTo(new File(savePath + visualPath));//临时文件直接移动(或复制)到保存目录
                 break;
 
             } catch (IOException e) {
@@ -98,19 +88,8 @@ public class FileWebUtils {
             if (AllowUploadFileType.indexOf(fileUpload.extName) == -1) {
                 throw new Exception("文件上传失败，文件类型不对");
             }
-            InputStream in = mf.getInputStream();//获取item中的上传文件的输入流
             fileUpload.visualPath = FileUtils.getVisualPath(savePath, filename);//得到文件的保存目录
-            FileOutputStream out = new FileOutputStream(savePath + fileUpload.visualPath);//创建一个文件输出流
-            byte buffer[] = new byte[1024];//创建一个缓冲区
-            //判断输入流中的数据是否已经读完的标识
-            int len = 0;
-            while ((len = in.read(buffer)) > 0) {
-                //使用FileOutputStream输出流将缓冲区的数据写入到指定的目录(savePath + "\\" + filename)当中
-                out.write(buffer, 0, len);
-            }
-            in.close();//关闭输入流
-            out.close();//关闭输出流
-            //item.delete(); //删除处理文件上传时生成的临时文件
+            mf.transferTo(new File(savePath + fileUpload.visualPath));//临时文件直接移动(或复制)到保存目录
             break;
         }
 
@@ -181,18 +160,8 @@ public class FileWebUtils {
             if (AllowUploadFileType.indexOf(fileUpload.extName) == -1) {
                 throw new AppException("文件上传失败，文件类型不对");
             }
-            InputStream in = item.getInputStream();//获取item中的上传文件的输入流
             fileUpload.visualPath = FileUtils.getVisualPath(savePath, filename);//得到文件的保存目录
-            FileOutputStream out = new FileOutputStream(savePath + fileUpload.visualPath);//创建一个文件输出流
-            byte buffer[] = new byte[1024];//创建一个缓冲区
-            //判断输入流中的数据是否已经读完的标识
-            int len = 0;
-            while ((len = in.read(buffer)) > 0) {
-                //使用FileOutputStream输出流将缓冲区的数据写入到指定的目录(savePath + "\\" + filename)当中
-                out.write(buffer, 0, len);
-            }
-            in.close();//关闭输入流
-            out.close();//关闭输出流
+            item.write(new File(savePath + fileUpload.visualPath));//临时文件直接移动(或复制)到保存目录
         }
         if (StringUtils.isEmpty(fileUpload.visualPath)) {
             throw new Exception("请选择文件");
@@ -210,34 +179,29 @@ public class FileWebUtils {
         return MapUrl;
     }
 
+    /**
+     * 下载文件：支持断点续传(Range)及缓存验证(ETag、Last-Modified)，文件内容零拷贝输出
+     * 返回空字符串表示已处理响应(sendfile时由容器在请求结束后发送)，调用者不能再写响应体；否则返回出错信息
+     */
     public static String fileDownLoad(HttpServletRequest request, HttpServletResponse response, String filepath, String filename, String fileType) throws Exception {
         try {
             File my_file = new File(filepath);
-            if (!my_file.exists()) {
+            if (!my_file.isFile()) {
                 return "文件不存在";
             }
 //            String fileType = "application/ms-excel";
-            if (!StringUtils.isEmpty(fileType)) response.setContentType(fileType);
+            if (StringUtils.isEmpty(fileType)) fileType = request.getServletContext().getMimeType(filename);
 
             String userAgent = request.getHeader("User-Agent");
             // 针对IE或者以IE为内核的浏览器：
-            if (userAgent.contains("MSIE") || userAgent.contains("Trident")) {
+            if (userAgent != null && (userAgent.contains("MSIE") || userAgent.contains("Trident"))) {
                 filename = java.net.URLEncoder.encode(filename, "UTF-8");
             } else {
                 // 非IE浏览器的处理：
                 filename = new String(filename.getBytes("UTF-8"), "ISO-8859-1");
             }
             response.setHeader("Content-disposition", String.format("attachment; filename=\"%s\"", filename));
-            OutputStream out = response.getOutputStream();
-            FileInputStream in = new FileInputStream(my_file);
-            response.setHeader("Content-Length", String.valueOf(in.available()));
-            byte[] buffer = new byte[4096];
-            int length;
-            while ((length = in.read(buffer)) > 0) {
-                out.write(buffer, 0, length);
-            }
-            in.close();
-            out.flush();
+            FileDownloadUtils.download(request, response, my_file, fileType);
             return "";
         } catch (Exception ex) {
             LogError.write("下载文件", LogEnum.Error, ex.toString());
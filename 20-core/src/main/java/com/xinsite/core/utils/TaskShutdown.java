@@ -0,0 +1,20 @@
+package com.xinsite.core.utils;
+
+import com.xinsite.common.uitls.TaskUtils;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * 应用关闭时执行完已提交的异步任务(在日志写入线程关闭之前，任务中的日志也能写入)
+ */
+@Component
+@DependsOn("logWriterShutdown")
+public class TaskShutdown {
+
+    @PreDestroy
+    public void destroy() {
+        TaskUtils.getInstance().shutdown();
+    }
+}
@@ -0,0 +1,248 @@
+package com.xinsite.core.utils;
+
+import com.xinsite.common.uitls.Global;
+import com.xinsite.common.uitls.TaskUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 启动预热：注册的预热任务按阶段(stage从小到大)执行，同一阶段的任务在各自线程池中并行，每个任务有超时时间，
+ * 某个任务失败或超时不影响其它任务；全部阶段结束后状态为ready(有失败时degraded为true)，
+ * 健康检查和WarmUpFilter按isReady判断；config.warmup为false时不预热，直接ready
+ */
+public class WarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(WarmUp.class);
+
+    public enum State {
+        starting, warming, ready
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * 预热，返回加载的条数等说明(可为null)
+         */
+        Object load() throws Exception;
+    }
+
+    /**
+     * 预热任务及执行结果
+     */
+    private static class Task {
+        final String name;
+        final int stage;
+        final long timeoutMillis;
+        final TaskUtils.Pool pool;
+        final Loader loader;
+
+        volatile String status = "waiting";   //waiting、running、success、failure、timeout
+        volatile long started;   //开始执行时间，0为还在线程池中排队
+        volatile long millis;
+
+        Task(String name, int stage, long timeoutMillis, TaskUtils.Pool pool, Loader loader) {
+            this.name = name;
+            this.stage = stage;
+            this.timeoutMillis = timeoutMillis;
+            this.pool = pool;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * 等待排队中的任务开始执行时的检查间隔
+     */
+    private static final long QUEUE_POLL_MILLIS = 100;
+
+    private static final List<Task> tasks = new ArrayList<>();
+    private static volatile State state = State.starting;
+    private static volatile boolean degraded = false;
+    private static volatile long startTime;
+    private static volatile long endTime;
+
+    /**
+     * 注册预热任务
+     *
+     * @param stage          阶段，小的先执行
+     * @param timeoutSeconds 超时秒数，从任务开始执行时算起(在线程池中排队的时间不算)
+     * @param pool           执行的线程池(数据库查询用db，计算用cpu)
+     */
+    public static synchronized void register(String name, int stage, int timeoutSeconds, TaskUtils.Pool pool, Loader loader) {
+        if (state != State.starting) throw new IllegalStateException("WarmUp already started");
+        tasks.add(new Task(name, stage, timeoutSeconds * 1000L, pool, loader));
+    }
+
+    public static boolean isReady() {
+        return state == State.ready;
+    }
+
+    /**
+     * 未预热完成时是否拒绝请求(config.warmup_gate，默认开启)
+     */
+    public static boolean isGateEnabled() {
+        return !"false".equalsIgnoreCase(Global.getConfig("config.warmup_gate"));
+    }
+
+    /**
+     * 清空任务及状态(测试用)
+     */
+    static synchronized void reset() {
+        tasks.clear();
+        state = State.starting;
+        degraded = false;
+        startTime = 0;
+        endTime = 0;
+    }
+
+    /**
+     * 执行全部预热任务，结束后状态为ready
+     */
+    public static void run() {
+        List<Task> list;
+        synchronized (WarmUp.class) {
+            if (state != State.starting) return;
+            state = State.warming;
+            list = new ArrayList<>(tasks);
+        }
+        startTime = System.currentTimeMillis();
+        try {
+            if ("false".equalsIgnoreCase(Global.getConfig("config.warmup"))) {
+                for (Task task : list) task.status = "skipped";
+                return;
+            }
+            list.sort(Comparator.comparingInt(task -> task.stage));
+            for (int i = 0; i < list.size(); ) {
+                int stage = list.get(i).stage;
+                int j = i;
+                while (j < list.size() && list.get(j).stage == stage) j++;
+                runStage(list.subList(i, j));
+                i = j;
+            }
+        } finally {
+            endTime = System.currentTimeMillis();
+            for (Task task : list) {
+                if (!"success".equals(task.status) && !"skipped".equals(task.status)) degraded = true;
+            }
+            state = State.ready;
+            logger.info("WarmUp finished in {} ms{}", endTime - startTime, degraded ? " (degraded)" : "");
+        }
+    }
+
+    /**
+     * 同一阶段的任务并行执行，逐个等待到各自的超时时间；任务数多于线程池线程数时后面的任务要排队，
+     * 超时从任务开始执行时算起，一直未能开始的任务最多排队本阶段全部任务超时时间之和(即逐个执行的时间)
+     */
+    private static void runStage(List<Task> stageTasks) {
+        long stageStart = System.currentTimeMillis();
+        long queueDeadline = stageStart;
+        for (Task task : stageTasks) queueDeadline += task.timeoutMillis;
+        List<Future<?>> futures = new ArrayList<>();
+        for (Task task : stageTasks) {
+            try {
+                futures.add(TaskUtils.getInstance().submit(task.pool, () -> execute(task)));
+            } catch (Exception ex) {
+                futures.add(null);
+                finish(task, "failure", 0, ex.toString());
+            }
+        }
+        for (int k = 0; k < stageTasks.size(); k++) {
+            Task task = stageTasks.get(k);
+            Future<?> future = futures.get(k);
+            if (future == null) continue;
+            while (true) {
+                long now = System.currentTimeMillis();
+                long started = task.started;
+                long wait = started == 0 ? Math.min(queueDeadline - now, QUEUE_POLL_MILLIS) : started + task.timeoutMillis - now;
+                try {
+                    future.get(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ex) {
+                    if (task.started == 0 && System.currentTimeMillis() < queueDeadline) continue;  //还在排队
+                    if (!timeout(task, stageStart, queueDeadline)) continue;
+                    future.cancel(true);
+                } catch (InterruptedException ex) {
+                    future.cancel(true);
+                    finish(task, "failure", System.currentTimeMillis() - stageStart, ex.toString());
+                    Thread.currentThread().interrupt();
+                } catch (Exception ex) {
+                    //execute内部已处理异常
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * 记录超时：一直排队未执行，或执行超过超时时间；等待期间刚开始执行的返回false，按开始时间继续等待
+     */
+    private static synchronized boolean timeout(Task task, long stageStart, long queueDeadline) {
+        long now = System.currentTimeMillis();
+        if (task.started == 0)
+            finish(task, "timeout", now - stageStart, "排队超过" + (queueDeadline - stageStart) / 1000 + "秒未执行");
+        else if (now >= task.started + task.timeoutMillis)
+            finish(task, "timeout", now - task.started, "超过" + task.timeoutMillis / 1000 + "秒");
+        else
+            return false;
+        return true;
+    }
+
+    private static Object execute(Task task) {
+        synchronized (WarmUp.class) {
+            if (!"waiting".equals(task.status)) return null;  //已超时
+            task.status = "running";
+            task.started = System.currentTimeMillis();
+        }
+        long start = task.started;
+        try {
+            Object result = task.loader.load();
+            finish(task, "success", System.currentTimeMillis() - start, result == null ? "" : result.toString());
+        } catch (Throwable ex) {
+            finish(task, "failure", System.currentTimeMillis() - start, ex.toString());
+        }
+        return null;
+    }
+
+    /**
+     * 记录任务结果，已超时的任务之后执行完也不再改变结果
+     */
+    private static synchronized void finish(Task task, String status, long millis, String message) {
+        if ("timeout".equals(task.status) || "failure".equals(task.status) || "success".equals(task.status)) return;
+        task.status = status;
+        task.millis = millis;
+        if ("success".equals(status)) logger.info("WarmUp {} {} ms {}", task.name, millis, message);
+        else logger.warn("WarmUp {} {} after {} ms: {}", task.name, status, millis, message);
+    }
+
+    /**
+     * 预热状态及各任务结果(只含状态和耗时，失败原因只记录日志，健康检查可匿名访问)
+     */
+    public static synchronized Map<String, Object> getStatus() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("ready", isReady());
+        map.put("state", state.name());
+        map.put("degraded", degraded);
+        map.put("start_time", format(startTime));
+        map.put("end_time", format(endTime));
+        map.put("millis", startTime == 0 ? 0 : (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime);
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Task task : tasks) {
+            Map<String, Object> dr = new LinkedHashMap<>();
+            dr.put("name", task.name);
+            dr.put("stage", task.stage);
+            dr.put("status", task.status);
+            dr.put("millis", task.millis);
+            list.add(dr);
+        }
+        map.put("tasks", list);
+        return map;
+    }
+
+    private static String format(long time) {
+        if (time == 0) return "";
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(time));
+    }
+}
@@ -0,0 +1,51 @@
+package com.xinsite.core.utils;
+
+import com.xinsite.common.response.ReturnMap;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 启动预热未完成时返回503(在Shiro过滤器之前，登录、匿名接口同样拦截)，
+ * 只放行健康检查及静态资源；config.warmup_gate为false时不拦截
+ */
+public class WarmUpFilter implements Filter {
+
+    /**
+     * 预热期间放行的路径(servletPath前缀)
+     */
+    private static final String[] EXCLUDES = {"/anon/health", "/images/", "/javascript/", "/styles/", "/favicon.ico"};
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (WarmUp.isReady() || isExclude((HttpServletRequest) request) || !WarmUp.isGateEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        httpResponse.setHeader("Retry-After", "5");
+        httpResponse.setContentType("application/json;charset=UTF-8");
+        httpResponse.getWriter().print(ReturnMap.getStarting());
+    }
+
+    static boolean isExclude(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if (request.getPathInfo() != null) path += request.getPathInfo();
+        for (String exclude : EXCLUDES) {
+            if (path.startsWith(exclude)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
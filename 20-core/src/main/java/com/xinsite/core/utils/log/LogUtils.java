@@ -3,15 +3,8 @@ package com.xinsite.core.utils.log;
 import com.xinsite.common.uitls.Global;
 import com.xinsite.core.model.user.LoginUser;
 import com.xinsite.common.enums.system.LogTypeEnum;
-import com.xinsite.common.uitls.PropsUtils;
 import com.xinsite.common.uitls.lang.DateUtils;
-import com.xinsite.common.uitls.lang.NumberUtils;
-import com.xinsite.common.uitls.lang.StringUtils;
-import com.xinsite.dal.bean.Keys;
-import com.xinsite.dal.dbhelper.DBFunction;
 import com.xinsite.core.utils.user.UserUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -38,7 +31,7 @@ public class LogUtils {
         ht.put("log_result", "用户名".equals(log_message) ? "成功" : "失败");
         ht.put("log_message", String.format("%s[%s]", log_message, username));
 
-        new SaveLogThread(loginUser, ht).start();
+        LogUtils.saveLog(loginUser, ht, 0);
     }
 
     /**
@@ -57,7 +50,7 @@ public class LogUtils {
         ht.put("log_type", LogTypeEnum.访问日志.getIndex());
         ht.put("action_type", "访问");  //操作类型
         ht.put("log_result", "成功");
-        new SaveLogThread(loginUser, ht, new Keys("ItemId", item_id)).start();
+        LogUtils.saveLog(loginUser, ht, item_id);
     }
 
     /**
@@ -99,7 +92,7 @@ public class LogUtils {
         ht.put("action_type", "操作");  //操作类型
         ht.put("log_result", Result);   //成功、失败
         ht.put("log_message", log_message);
-        new SaveLogThread(loginUser, ht, new Keys("item_id", item_id)).start();
+        LogUtils.saveLog(loginUser, ht, item_id);
     }
 
     /**
@@ -121,7 +114,7 @@ public class LogUtils {
         ht.put("action_type", "操作");  //操作类型
         ht.put("log_result", log_result);
         ht.put("log_message", log_message);
-        new SaveLogThread(loginUser, ht).start();
+        LogUtils.saveLog(loginUser, ht, 0);
     }
 
     /**
@@ -136,80 +129,26 @@ public class LogUtils {
         ht.put("log_result", "失败");
         ht.put("log_message", log_message);  //异常说明
 
-        new SaveLogThread(loginUser, ht).start();
+        LogUtils.saveLog(loginUser, ht, 0);
     }
 
     /**
      * 获取栏目名
      */
     public static String getItemName(int item_id) {
-        String QuerySql = "select item_name from sys_menu where item_id=" + item_id;
-        Object obj = DBFunction.executeScalar(QuerySql);
-        return obj == null ? "" : obj.toString();
+        return LogWriter.getInstance().getItemName(item_id);
     }
 
     /**
-     * 保存日志线程
+     * 保存日志：补充用户信息后进入异步批量写入队列
      */
-    public static class SaveLogThread extends Thread {
-        private static final Logger log = LoggerFactory.getLogger(SaveLogThread.class);
-
-        private LoginUser loginUser;
-        private Map<String, Object> map;
-        private Keys[] keys;
-
-        //异步保存日志
-        public SaveLogThread(LoginUser loginUser, Map<String, Object> map, Keys... keys) {
-            this.loginUser = loginUser;
-            this.map = map;
-            this.keys = keys;
-            if (keys == null) {
-                keys = new Keys[]{};
-            }
-        }
-
-        @Override
-        public void run() {
-            if (!Global.getConfig("config.is_write_log").equals("true")) return;
-            try {
-                int log_type = NumberUtils.strToInt(map.get("log_type"));
-                if (log_type == LogTypeEnum.访问日志.getIndex()) {
-                    if (keys.length > 0) {
-                        int item_id = NumberUtils.strToInt(keys[0].value);
-                        if (item_id > 0) {
-                            map.put("log_fun", "栏目访问");
-                            map.put("log_message", LogUtils.getItemName(item_id));
-                        }
-                    }
-                } else if (log_type == LogTypeEnum.操作日志.getIndex()) {
-                    for (Keys key : keys) {
-                        if (key.key.equalsIgnoreCase("item_id")) {
-                            int item_id = NumberUtils.strToInt(key.value);
-                            if (item_id > 0) {
-                                String log_message = "";
-                                if (map.containsKey("log_message")) log_message = map.get("log_message").toString();
-                                String item_name = LogUtils.getItemName(item_id);
-                                if (!StringUtils.isEmpty(log_message)) log_message += ",";
-                                if (!StringUtils.isEmpty(item_name)) {
-                                    log_message += "栏目：" + item_name;
-                                } else {
-//                                    String VisitPosition = LogUtils.GetVisitPosition(item_id);
-//                                    log_message += "访问地址：" + VisitPosition;
-                                }
-                                map.put("log_message", log_message);
-                            }
-                        }
-                    }
-                }
-                map.put("org_id", loginUser.getOrgId());
-                map.put("log_ip", loginUser.getLoginIp());
-                map.put("user_id", loginUser.getUserId());
-                map.put("dept_id", loginUser.getDeptId());
-                map.put("create_time", DateUtils.getDateTime());
-                DBFunction.insertByTbName(map, "sys_log");
-            } catch (Exception ex) {
-                log.error("访问日志写入出错：", ex);
-            }
-        }
+    private static void saveLog(LoginUser loginUser, Map<String, Object> map, int item_id) {
+        if (!"true".equals(Global.getConfig("config.is_write_log"))) return;
+        map.put("org_id", loginUser.getOrgId());
+        map.put("log_ip", loginUser.getLoginIp());
+        map.put("user_id", loginUser.getUserId());
+        map.put("dept_id", loginUser.getDeptId());
+        map.put("create_time", DateUtils.getDateTime());
+        LogWriter.getInstance().add(map, item_id);
     }
 }
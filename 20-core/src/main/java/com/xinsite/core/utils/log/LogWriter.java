@@ -0,0 +1,319 @@
+package com.xinsite.core.utils.log;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.enums.system.LogTypeEnum;
+import com.xinsite.common.uitls.Global;
+import com.xinsite.common.uitls.lang.NumberUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * sys_log异步批量写入：日志先进有界队列，由一个写线程按批次(条数或间隔)批量插入
+ * 配置：config.log_queue_size、config.log_batch_size、config.log_flush_millis、
+ * config.log_overflow(block:阻塞等待，drop_oldest:丢弃最早，drop_newest:丢弃最新)；
+ * 文本字段入队前按sys_log字段长度截断，批量插入失败时逐条插入，一条出错不影响同批的其它日志
+ */
+public class LogWriter {
+    private static final Logger log = LoggerFactory.getLogger(LogWriter.class);
+
+    /**
+     * sys_log写入字段
+     */
+    private static final String[] FIELDS = {"org_id", "log_ip", "log_type", "log_fun", "log_result", "log_message",
+            "action_type", "create_time", "user_id", "login_name", "dept_id"};
+
+    /**
+     * sys_log文本字段长度(varchar)
+     */
+    private static final Map<String, Integer> WIDTHS = new HashMap<>();
+
+    static {
+        WIDTHS.put("log_ip", 50);
+        WIDTHS.put("log_fun", 200);
+        WIDTHS.put("log_result", 30);
+        WIDTHS.put("log_message", 1000);
+        WIDTHS.put("action_type", 30);
+        WIDTHS.put("login_name", 100);
+    }
+
+    /**
+     * 批量插入，测试时可替换
+     */
+    interface Inserter {
+        void insert(List<Map<String, Object>> rows) throws Exception;
+    }
+
+    /**
+     * 栏目名称缓存的刷新间隔
+     */
+    private static final long ITEM_REFRESH_MILLIS = 60 * 1000;
+
+    public enum Overflow {
+        block, drop_oldest, drop_newest
+    }
+
+    private static LogWriter writer = null;
+    private static boolean closed = false;   //应用关闭后不再创建实例，之后的日志只计入dropped
+
+    private final BlockingQueue<LogEntry> queue;
+    private final int batchSize;
+    private final long flushMillis;
+    private final Overflow overflow;
+    private final Inserter inserter;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile Map<Integer, String> itemNames = Collections.emptyMap();
+    private volatile long itemLoadTime = 0;
+
+    /**
+     * 待写入的日志，栏目名称在写线程中解析
+     */
+    private static class LogEntry {
+        final Map<String, Object> map;
+        final int item_id;
+
+        LogEntry(Map<String, Object> map, int item_id) {
+            this.map = map;
+            this.item_id = item_id;
+        }
+    }
+
+    public LogWriter(int queueSize, int batchSize, long flushMillis, Overflow overflow) {
+        this(queueSize, batchSize, flushMillis, overflow, rows -> DBFunction.insertBatch(rows, "sys_log", FIELDS));
+    }
+
+    LogWriter(int queueSize, int batchSize, long flushMillis, Overflow overflow, Inserter inserter) {
+        this.inserter = inserter;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, 1));
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushMillis = Math.max(flushMillis, 10);
+        this.overflow = overflow;
+        this.thread = new Thread(this::drain, "sys-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 获取当前对象实例
+     */
+    public static synchronized LogWriter getInstance() {
+        if (writer == null) {
+            int queueSize = Global.getInt("config.log_queue_size");
+            int batchSize = Global.getInt("config.log_batch_size");
+            int flushMillis = Global.getInt("config.log_flush_millis");
+            Overflow overflow = Overflow.block;
+            try {
+                String str = Global.getConfig("config.log_overflow");
+                if (!StringUtils.isEmpty(str)) overflow = Overflow.valueOf(str.trim().toLowerCase());
+            } catch (Exception ex) {
+                log.error("config.log_overflow配置有误：", ex);
+            }
+            writer = new LogWriter(queueSize > 0 ? queueSize : 10000, batchSize > 0 ? batchSize : 200,
+                    flushMillis > 0 ? flushMillis : 1000, overflow);
+            if (closed) writer.shutdown(1000);
+        }
+        return writer;
+    }
+
+    /**
+     * 日志入队，item_id大于0时按栏目名称补充日志信息
+     */
+    public void add(Map<String, Object> map, int item_id) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return;
+        }
+        truncate(map);
+        LogEntry entry = new LogEntry(map, item_id);
+        switch (overflow) {
+            case drop_newest:
+                if (!queue.offer(entry)) dropped.incrementAndGet();
+                break;
+            case drop_oldest:
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) dropped.incrementAndGet();
+                }
+                break;
+            default:
+                try {
+                    //队列满时等待，写线程停止后不再等待
+                    while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            dropped.incrementAndGet();
+                            return;
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    dropped.incrementAndGet();
+                    Thread.currentThread().interrupt();
+                }
+        }
+    }
+
+    /**
+     * 停止写线程，写完队列中剩余的日志；写线程结束后才入队的日志计入dropped
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive()) {
+            int count = 0;
+            while (queue.poll() != null) count++;
+            dropped.addAndGet(count);
+        }
+    }
+
+    /**
+     * 停止当前实例(应用关闭时)，之后调用getInstance返回已停止的实例，不再启动写线程
+     */
+    public static synchronized void shutdownInstance() {
+        closed = true;
+        if (writer != null) writer.shutdown(10 * 1000);
+    }
+
+    /**
+     * 写入统计：queued、written、dropped、failed
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private void drain() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                long deadline = System.currentTimeMillis() + flushMillis;
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) break;
+                    LogEntry entry = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (entry == null) break;
+                    batch.add(entry);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException ex) {
+                //关闭时中断，继续写完剩余日志
+            }
+            if (!running) queue.drainTo(batch);
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<LogEntry> batch) {
+        if (batch.isEmpty()) return;
+        List<Map<String, Object>> rows = new ArrayList<>(batch.size());
+        for (LogEntry entry : batch) {
+            if (entry.item_id > 0) {
+                setItemMessage(entry);
+                truncate(entry.map);
+            }
+            rows.add(entry.map);
+        }
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Map<String, Object>> list = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            try {
+                inserter.insert(list);
+                written.addAndGet(list.size());
+            } catch (Exception ex) {
+                log.error("访问日志批量写入出错，改为逐条写入：", ex);
+                insertEach(list);
+            }
+        }
+    }
+
+    /**
+     * 批量插入失败时逐条插入，只丢弃出错的日志
+     */
+    private void insertEach(List<Map<String, Object>> list) {
+        for (Map<String, Object> row : list) {
+            try {
+                inserter.insert(Collections.singletonList(row));
+                written.incrementAndGet();
+            } catch (Exception ex) {
+                failed.incrementAndGet();
+                log.error("访问日志写入出错：" + row, ex);
+            }
+        }
+    }
+
+    /**
+     * 文本字段按sys_log字段长度截断
+     */
+    static void truncate(Map<String, Object> map) {
+        for (Map.Entry<String, Integer> width : WIDTHS.entrySet()) {
+            Object value = map.get(width.getKey());
+            if (value != null && value.toString().length() > width.getValue()) {
+                map.put(width.getKey(), value.toString().substring(0, width.getValue()));
+            }
+        }
+    }
+
+    private void setItemMessage(LogEntry entry) {
+        Map<String, Object> map = entry.map;
+        String item_name = getItemName(entry.item_id);
+        int log_type = NumberUtils.strToInt(map.get("log_type"));
+        if (log_type == LogTypeEnum.访问日志.getIndex()) {
+            map.put("log_fun", "栏目访问");
+            map.put("log_message", item_name);
+        } else if (log_type == LogTypeEnum.操作日志.getIndex()) {
+            String log_message = "";
+            if (map.get("log_message") != null) log_message = map.get("log_message").toString();
+            if (!StringUtils.isEmpty(log_message)) log_message += ",";
+            if (!StringUtils.isEmpty(item_name)) log_message += "栏目：" + item_name;
+            map.put("log_message", log_message);
+        }
+    }
+
+    /**
+     * 栏目名称，从缓存的id-名称表中取，未找到时(超过刷新间隔)重新加载
+     */
+    public String getItemName(int item_id) {
+        String item_name = itemNames.get(item_id);
+        if (item_name == null && System.currentTimeMillis() - itemLoadTime > ITEM_REFRESH_MILLIS) {
+            loadItemNames();
+            item_name = itemNames.get(item_id);
+        }
+        return item_name == null ? "" : item_name;
+    }
+
+    private void loadItemNames() {
+        itemLoadTime = System.currentTimeMillis();
+        try {
+            JsonArray array = DBFunction.executeJsonArray("select item_id,item_name from sys_menu");
+            Map<Integer, String> map = new HashMap<>(array.size() * 2);
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject dr = array.get(i).getAsJsonObject();
+                if (dr.get("item_name") == null || dr.get("item_name").isJsonNull()) continue;
+                map.put(NumberUtils.strToInt(dr.get("item_id").getAsString()), dr.get("item_name").getAsString());
+            }
+            itemNames = map;
+        } catch (Exception ex) {
+            log.error("栏目名称加载出错：", ex);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.xinsite.core.utils.log;
+
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * 应用关闭时写完队列中的日志
+ */
+@Component
+public class LogWriterShutdown {
+
+    @PreDestroy
+    public void destroy() {
+        LogWriter.shutdownInstance();
+    }
+}
@@ -7,7 +7,7 @@ import com.xinsite.core.bll.design.BLL_Design;
 import com.xinsite.core.enums.FieldTagEnum;
 import com.xinsite.core.model.search.SearchDataModel;
 import com.xinsite.core.model.search.SearchModel;
-import com.xinsite.core.bll.permission.BLL_UserPower;
+import com.xinsite.core.cache.PermissionSnapshot;
 import com.xinsite.core.cache.SysConfigCache;
 import com.xinsite.dal.bean.DBParameter;
 import com.xinsite.core.model.user.LoginUser;
@@ -15,7 +15,6 @@ import com.xinsite.common.enums.ErrorEnum;
 import com.xinsite.common.enums.LogEnum;
 import com.xinsite.common.enums.system.DataPerEnum;
 import com.xinsite.common.exception.AppException;
-import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.NumberUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.core.utils.user.UserUtils;
@@ -24,6 +23,7 @@ import com.xinsite.common.uitls.web.http.ServletUtils;
 import com.xinsite.core.bll.system.*;
 import com.xinsite.core.utils.CommUtils;
 import com.xinsite.dal.bean.Keys;
+import com.xinsite.dal.dbhelper.BatchHandler;
 import com.xinsite.dal.dbhelper.DBFunction;
 import com.xinsite.dal.dbhelper.DBPager;
 import com.xinsite.core.utils.log.LogError;
@@ -52,6 +52,7 @@ public class PageHelper {
     public boolean isDataPer = true; //列表数据权限开关，默认打开，特殊情况自定义
     public String dataPerWhere;      //数据权限的where条件，栏目有数据权限的
     public String primaryKey;        //主表主键字段
+    public String seekKey;           //键集分页主键(如a1.log_id，须在显示列中)，设置后页面下一页时按上一页末行(seek_value、seek_id)翻页
     public HttpServletRequest request;
 
     public long recordCount;        //查询记录总数
@@ -150,6 +151,7 @@ public class PageHelper {
         DBPager pagerUtils = new DBPager(sql, orderBy, pageStart, pageSize);
         try {
             pagerUtils.setParams(ls);
+            setPagerSeek(pagerUtils);
             recordCount = getAllCount();
             array = pagerUtils.getCurPageArray();
         } catch (Exception ex) {
@@ -157,27 +159,30 @@ public class PageHelper {
         }
     }
 
+    /**
+     * 键集分页：只支持按单列排序(或只按主键)，页面传上一页末行的排序值seek_value及主键值seek_id(common.js的setGridSeek)，
+     * 多列排序或排序值为空时按偏移量分页
+     */
+    private void setPagerSeek(DBPager pagerUtils) {
+        if (StringUtils.isEmpty(seekKey) || request == null) return;
+        String seek_id = RequestUtils.getParaValue(request, "seek_id", "");
+        if (StringUtils.isEmpty(seek_id)) return;
+
+        String order = orderBy.trim();
+        if (order.toLowerCase().indexOf("order by") == 0) order = order.substring(8).trim();
+        if (order.indexOf(",") >= 0) return;
+        String[] strs = order.split("\\s+");
+        boolean desc = strs.length > 1 && strs[1].equalsIgnoreCase("desc");
+        String seek_value = RequestUtils.getParaValue(request, "seek_value", "");
+        pagerUtils.setSeek(strs[0], seekKey, desc, StringUtils.isEmpty(seek_value) ? null : seek_value, seek_id);
+    }
+
     /**
      * 搜索查询全部
      */
     public JsonArray getAllGrid(String... sorter) {
         try {
-            joinQuerySql();
-            String sql = querySql + addDataPerWhere();
-            if (StringUtils.isEmpty(orderBy)) {
-                if (sorter.length > 0) {
-                    orderBy = sorter[0];
-                } else if ("".equals(orderBy)) {
-                    orderBy = "a1.serialcode desc,a1.create_time desc";
-                }
-            }
-
-            if (sql.toLowerCase().indexOf("order by") == -1) {
-                if (!StringUtils.isEmpty(orderBy)) {
-                    if (orderBy.toLowerCase().indexOf("order by") >= 0) sql += orderBy;
-                    else sql += " order by " + orderBy;
-                }
-            }
+            String sql = getAllSql(sorter);
             if (!StringUtils.isEmpty(sql)) {
                 array = DBFunction.executeJsonArray(sql, getParameter());
                 recordCount = array.size();
@@ -191,6 +196,40 @@ public class PageHelper {
         }
     }
 
+    /**
+     * 搜索查询全部，游标分批读取(不整体放入内存)，每batchSize行回调一次，返回总行数
+     */
+    public long getAllGrid(int batchSize, BatchHandler handler, String... sorter) throws Exception {
+        String sql = getAllSql(sorter);
+        recordCount = 0;
+        if (StringUtils.isEmpty(sql)) return 0;
+        recordCount = DBFunction.executeCursor(sql, batchSize, handler, getParameter());
+        return recordCount;
+    }
+
+    /**
+     * 查询全部的语句(加数据权限及排序)
+     */
+    private String getAllSql(String... sorter) throws Exception {
+        joinQuerySql();
+        String sql = querySql + addDataPerWhere();
+        if (StringUtils.isEmpty(orderBy)) {
+            if (sorter.length > 0) {
+                orderBy = sorter[0];
+            } else if ("".equals(orderBy)) {
+                orderBy = "a1.serialcode desc,a1.create_time desc";
+            }
+        }
+
+        if (sql.toLowerCase().indexOf("order by") == -1) {
+            if (!StringUtils.isEmpty(orderBy)) {
+                if (orderBy.toLowerCase().indexOf("order by") >= 0) sql += orderBy;
+                else sql += " order by " + orderBy;
+            }
+        }
+        return sql;
+    }
+
     /**
      * 通用记录总数
      */
@@ -319,10 +358,10 @@ public class PageHelper {
                 int data_per = RequestUtils.getParaValue(request, "data_per", -1);  //-1是首次加载数据列表，点击栏目时数据权限还没赋值
                 String data_ids = RequestUtils.getParaValue(request, "data_ids", "");
                 if (data_per == -1) {  //从数据库获取
-                    JsonArray dt = BLL_UserPower.getLoginItemPower(itemId, loginUser); //用户某栏目权限信息
-                    if (dt != null && dt.size() > 0) {
-                        data_per = NumberUtils.strToInt(GsonUtils.getObjectValue(dt, 0, "data_per"));
-                        data_ids = GsonUtils.getObjectValue(dt, 0, "data_ids");
+                    PermissionSnapshot.ItemPower power = PermissionSnapshot.get(loginUser).getItemPower(itemId); //用户某栏目权限信息
+                    if (power != null) {
+                        data_per = Math.max(power.data_per, 0);
+                        data_ids = power.data_ids;
                     }
                 }
                 if (CommUtils.enumDataPerContains(data_per)) {
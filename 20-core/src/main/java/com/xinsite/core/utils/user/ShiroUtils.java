@@ -2,6 +2,7 @@ package com.xinsite.core.utils.user;
 
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.common.uitls.web.CookieUtils;
+import com.xinsite.core.cache.PermissionSnapshot;
 import com.xinsite.core.model.user.LoginUser;
 import com.xinsite.core.shiro.realm.UserRealm;
 import com.xinsite.common.uitls.TaskUtils;
@@ -93,13 +94,13 @@ public class ShiroUtils {
     }
 
     /**
-     * 指定用户下线
+     * 指定用户下线(同一用户按提交顺序执行)
      */
     public static void kickoutUser(final int user_id, final String off_msg) {
         RealmSecurityManager rsm = (RealmSecurityManager) SecurityUtils.getSecurityManager();
         final UserRealm realm = (UserRealm) rsm.getRealms().iterator().next();
         final String sessionId = ShiroUtils.getSessionId();
-        TaskUtils.getInstance().execute(new TimerTask() {
+        TaskUtils.getInstance().execute("kickout:" + user_id, new TimerTask() {
             @Override
             public void run() {
                 realm.kickoutUser(user_id, off_msg, sessionId);
@@ -117,12 +118,13 @@ public class ShiroUtils {
     }
 
     /**
-     * 清空权限认证，重新查询
+     * 清空权限认证，重新查询(按提交顺序执行)
      */
     public static void clearCachedAuthorizationInfo(final String tb_type, final int tb_id) {
+        PermissionSnapshot.invalidate();
         RealmSecurityManager rsm = (RealmSecurityManager) SecurityUtils.getSecurityManager();
         final UserRealm realm = (UserRealm) rsm.getRealms().iterator().next();
-        TaskUtils.getInstance().execute(new TimerTask() {
+        TaskUtils.getInstance().execute("authorization", new TimerTask() {
             @Override
             public void run() {
                 if (tb_type.equals("user"))
@@ -0,0 +1,149 @@
+package com.xinsite.core.utils.web.domain;
+
+import com.xinsite.common.enums.LogEnum;
+import com.xinsite.common.uitls.Global;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.common.uitls.metrics.SampleFile;
+import com.xinsite.common.uitls.metrics.SampleHistory;
+import com.xinsite.core.utils.log.LogError;
+import oshi.SystemInfo;
+import oshi.hardware.CentralProcessor;
+import oshi.hardware.CentralProcessor.TickType;
+import oshi.hardware.GlobalMemory;
+import oshi.hardware.HardwareAbstractionLayer;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * 服务器监控历史：按config.server_sample_seconds(默认10秒，0不采样)采样CPU、内存、JVM、磁盘、线程数，
+ * 分级保存(10秒保留1小时、1分钟保留24小时、10分钟保留7天)，供监控页面画趋势图；
+ * config.server_history_file不为空时采样追加到该文件，重启后重放，历史不丢失
+ */
+public class ServerHistory {
+
+    /**
+     * 指标：CPU使用率、IO等待、内存使用率、JVM堆使用率、JVM已用(MB)、项目所在磁盘使用率、线程数
+     */
+    public static final String[] METRICS = {"cpu", "cpu_wait", "mem", "jvm", "jvm_used", "disk", "threads"};
+
+    private static final long[][] TIERS = {{10, 3600}, {60, 24 * 3600}, {600, 7 * 24 * 3600}};
+    private static final long RETENTION = 7 * 24 * 3600 * 1000L;
+
+    private static final SampleHistory history = new SampleHistory(METRICS, TIERS);
+    private static final double[] values = new double[METRICS.length];
+
+    private static HardwareAbstractionLayer hal;
+    private static long[] prevTicks;
+    private static long lastSampleTime;
+    private static SampleFile sampleFile;
+    private static boolean loaded = false;
+
+    /**
+     * 采样间隔(毫秒)，0不采样
+     */
+    public static long getIntervalMillis() {
+        String seconds = Global.getConfig("config.server_sample_seconds");
+        if (StringUtils.isEmpty(seconds)) return 10 * 1000L;
+        try {
+            return Math.max(Long.parseLong(seconds.trim()), 0) * 1000L;
+        } catch (NumberFormatException ex) {
+            return 10 * 1000L;
+        }
+    }
+
+    /**
+     * 到采样间隔时采样一次(定时任务每秒调用)
+     */
+    public static synchronized void sample() {
+        long interval = getIntervalMillis();
+        long now = System.currentTimeMillis();
+        if (interval <= 0 || now - lastSampleTime < interval) return;
+        lastSampleTime = now;
+        try {
+            if (!loaded) load(now);
+            read();
+            record(now, values);
+        } catch (Exception ex) {
+            LogError.write("服务器监控采样", LogEnum.Error, ex.toString());
+        }
+    }
+
+    /**
+     * 记录一次采样，有历史文件时同时追加
+     */
+    static synchronized void record(long time, double[] values) throws Exception {
+        history.record(time, values);
+        if (sampleFile != null) {
+            sampleFile.append(time, values);
+            long interval = Math.max(getIntervalMillis(), 1000);
+            if (sampleFile.size() > RETENTION / interval * 2) sampleFile.compact(time - RETENTION);
+        }
+    }
+
+    /**
+     * 首次采样时打开历史文件，重放保留时间内的记录
+     */
+    private static void load(long now) throws Exception {
+        loaded = true;
+        String path = Global.getConfig("config.server_history_file");
+        if (StringUtils.isEmpty(path)) return;
+        sampleFile = new SampleFile(new File(path.trim()), METRICS.length);
+        sampleFile.replay(now - RETENTION, history::record);
+    }
+
+    /**
+     * 读取当前指标到values，取不到的为NaN；CPU按与上次采样之间的时钟计数计算，不需要等待
+     */
+    private static void read() {
+        if (hal == null) hal = new SystemInfo().getHardware();
+        CentralProcessor processor = hal.getProcessor();
+        long[] ticks = processor.getSystemCpuLoadTicks();
+        values[0] = Double.NaN;
+        values[1] = Double.NaN;
+        if (prevTicks != null) {
+            long total = 0;
+            for (int i = 0; i < ticks.length; i++) total += ticks[i] - prevTicks[i];
+            if (total > 0) {
+                long idle = ticks[TickType.IDLE.getIndex()] - prevTicks[TickType.IDLE.getIndex()];
+                long wait = ticks[TickType.IOWAIT.getIndex()] - prevTicks[TickType.IOWAIT.getIndex()];
+                values[0] = 100.0 * (total - idle - wait) / total;
+                values[1] = 100.0 * wait / total;
+            }
+        }
+        prevTicks = ticks;
+
+        GlobalMemory memory = hal.getMemory();
+        values[2] = memory.getTotal() > 0 ? 100.0 * (memory.getTotal() - memory.getAvailable()) / memory.getTotal() : Double.NaN;
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        values[3] = 100.0 * used / runtime.maxMemory();
+        values[4] = used / 1024.0 / 1024.0;
+
+        File dir = new File(System.getProperty("user.dir"));
+        long total = dir.getTotalSpace();
+        values[5] = total > 0 ? 100.0 * (total - dir.getUsableSpace()) / total : Double.NaN;
+        values[6] = ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    /**
+     * 时间段历史(毫秒)，按时间段长短自动选择分级
+     */
+    public static Map<String, Object> getRange(long from, long to) {
+        return history.range(System.currentTimeMillis(), from, to);
+    }
+
+    /**
+     * 关闭历史文件
+     */
+    public static synchronized void close() {
+        try {
+            if (sampleFile != null) sampleFile.close();
+        } catch (Exception ex) {
+            LogError.write("服务器监控历史文件关闭", LogEnum.Error, ex.toString());
+        }
+        sampleFile = null;
+    }
+}
@@ -0,0 +1,59 @@
+package com.xinsite.core.bll;
+
+import com.xinsite.common.uitls.io.FileUtils;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * 已上传文件登记，内存数据库H2(config/application-druid.yml)：
+ * 秒传只限完整上传过该文件的用户，保存时按内容去重不受限制
+ */
+public class BLL_Object_FileTest {
+    private static final String MD5 = "0123456789ABCDEF0123456789ABCDEF";
+    private static final String ATTACH_ADD = "object_file_test.txt";
+    private static File file;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists tb_object_file");
+        DBFunction.executeNonQuery("drop table if exists tb_object_file_user");
+        file = new File(FileUtils.getUploadFildPath() + ATTACH_ADD);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void instantUploadOnlyForUploader() throws Exception {
+        long size = file.length();
+        assertEquals("", BLL_Object_File.getUserAttachAdd(MD5, size, 1));
+
+        BLL_Object_File.addFile(MD5, size, ATTACH_ADD);
+        BLL_Object_File.addUser(MD5, size, 1);
+        BLL_Object_File.addUser(MD5, size, 1);
+
+        assertEquals(ATTACH_ADD, BLL_Object_File.getUserAttachAdd(MD5, size, 1));
+        assertEquals(ATTACH_ADD, BLL_Object_File.getUserAttachAdd(MD5.toLowerCase(), size, 1));
+        assertEquals("", BLL_Object_File.getUserAttachAdd(MD5, size, 2));
+        assertEquals("", BLL_Object_File.getUserAttachAdd(MD5, size + 1, 1));
+        assertEquals("", BLL_Object_File.getUserAttachAdd(MD5, size, 0));
+
+        //上传完整内容后保存时仍按内容去重，之后该用户也可以秒传
+        assertEquals(ATTACH_ADD, BLL_Object_File.getAttachAdd(MD5, size));
+        BLL_Object_File.addUser(MD5, size, 2);
+        assertEquals(ATTACH_ADD, BLL_Object_File.getUserAttachAdd(MD5, size, 2));
+        assertEquals(2, DBFunction.getTableCount("select count(1) from tb_object_file_user"));
+    }
+}
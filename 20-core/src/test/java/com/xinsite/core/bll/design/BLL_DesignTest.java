@@ -0,0 +1,322 @@
+package com.xinsite.core.bll.design;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.core.cache.DesignCache;
+import com.xinsite.dal.dbhelper.DBFunction;
+import com.xinsite.dal.dbhelper.SqlStats;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 设计表元数据缓存，内存数据库H2(config/application-druid.yml)：按SqlStats统计查询次数，
+ * 命中缓存不查询，没有结果时不缓存，设计数据变更后重新查询；
+ * 缓存预热后表单生成不执行任何SQL，每个修改设计数据的入口修改后立即取到新值，其它数据对象(oid=30)的缓存不清除
+ */
+public class BLL_DesignTest {
+    private static final int OID = 10;
+    private static final int TID = 1;
+    private static final int OTHER_OID = 30;
+    private static final int OTHER_TID = 6;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists tb_gen_object");
+        DBFunction.executeNonQuery("drop table if exists tb_gen_table");
+        DBFunction.executeNonQuery("drop table if exists tb_gen_field");
+        DBFunction.executeNonQuery("create table tb_gen_object(oid int primary key,pid int not null default 0,object_type varchar(20),object_name varchar(100)," +
+                "object_key varchar(50),main_table varchar(50),is_attgrid int,layout_type varchar(20),item_method varchar(100),config_tables text," +
+                "expanded varchar(10),serialcode int,create_time datetime,create_uid int)");
+        DBFunction.executeNonQuery("create table tb_gen_table(tid int primary key,pid int,oid int,table_key varchar(50),table_name varchar(50)," +
+                "table_explain varchar(50),extend_name varchar(50),table_type varchar(20),tb_relation varchar(20),layout_type varchar(20)," +
+                "serialcode int,create_time datetime,create_uid int)");
+        DBFunction.executeNonQuery("create table tb_gen_field(fid int primary key,tid int,extend_suf varchar(10) not null default '',field_name varchar(50)," +
+                "data_type varchar(50),xtype varchar(50),field_tag varchar(30),field_explain varchar(50),serialcode int default 0,issearchfield int default 1," +
+                "iscolumns int,isdefine int default 1,save_value int default 0,default_value varchar(200),data_key varchar(50),store_datas text," +
+                "store_type varchar(100),field_type varchar(10),editor_search text,is_form_input int default 0,build_type varchar(50)," +
+                "create_time datetime,create_uid int)");
+    }
+
+    @Before
+    public void reset() throws Exception {
+        DBFunction.executeNonQuery("delete from tb_gen_object");
+        DBFunction.executeNonQuery("delete from tb_gen_table");
+        DBFunction.executeNonQuery("delete from tb_gen_field");
+        DBFunction.executeNonQuery("insert into tb_gen_object(oid,pid,object_type,object_name,layout_type,config_tables,serialcode) " +
+                "values (10,0,'表单','用户','tab','',1),(30,0,'表单','订单','card','',2)");
+        DBFunction.executeNonQuery("insert into tb_gen_table(tid,pid,oid,table_key,table_name,table_explain,tb_relation,serialcode) values " +
+                "(1,0,10,'user','tb_user','用户','主表',1),(3,1,10,'user_edu','tb_user_edu','学历','子表',2),(6,0,30,'order','tb_order','订单','主表',1)");
+        DBFunction.executeNonQuery("insert into tb_gen_field(fid,tid,field_name,xtype,field_explain,serialcode,save_value,data_key) values " +
+                "(101,1,'user_name','textfield','姓名',1,0,''),(102,1,'sex','combobox','性别',2,1,'sex')," +
+                "(103,1,'dept_id','combotree','部门',3,0,''),(104,3,'school','textfield','学校',1,0,'')," +
+                "(106,6,'pay_type','combobox','支付方式',1,1,'pay_type')");
+        DesignCache.invalidate();
+        SqlStats.reset();
+    }
+
+    /**
+     * tb_gen_table的查询次数
+     */
+    private static long getQueries() {
+        long count = 0;
+        for (Map<String, Object> stat : SqlStats.getStatements(0)) {
+            if (String.valueOf(stat.get("sql")).contains("from tb_gen_table")) count += (Long) stat.get("count");
+        }
+        return count;
+    }
+
+    /**
+     * 全部语句的执行次数
+     */
+    private static long getAllQueries() {
+        long count = 0;
+        for (Map<String, Object> stat : SqlStats.getStatements(0)) count += (Long) stat.get("count");
+        return count;
+    }
+
+    /**
+     * 生成表单用到的设计数据
+     */
+    private static String render() throws Exception {
+        Hashtable ht = BLL_Design.getDesignBuild(TID);
+        return ht.get("object_name") + "|" + ht.get("layout_type") + "|" + ht.get("table_count") + "|" + BLL_Design.getTableInfo(TID) + "|" +
+                BLL_Design.getDesignTable(OID) + "|" + BLL_Design.getTableFields(TID) + "|" + BLL_Design.getTableFields("tb_user") + "|" +
+                BLL_Design.getColumnsCodeValue(OID);
+    }
+
+    /**
+     * 其它数据对象按oid、tid取的设计数据
+     */
+    private static String renderOther() throws Exception {
+        Hashtable ht = BLL_Design.getDesignBuild(OTHER_TID);
+        return ht.get("object_name") + "|" + BLL_Design.getTableInfo(OTHER_TID) + "|" + BLL_Design.getDesignTable(OTHER_OID) + "|" +
+                BLL_Design.getTableFields(OTHER_TID) + "|" + BLL_Design.getColumnsCodeValue(OTHER_OID);
+    }
+
+    /**
+     * 先生成一次表单(预热缓存)，修改后其它数据对象仍命中缓存、不查询
+     */
+    private static void assertInvalidated(Callable change) throws Exception {
+        render();
+        String other = renderOther();
+        change.call();
+        SqlStats.reset();
+        assertEquals(other, renderOther());
+        assertEquals(0, getAllQueries());
+    }
+
+    private interface Callable {
+        void call() throws Exception;
+    }
+
+    private static List<String> getFieldValues(JsonArray array, String key) {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) list.add(GsonUtils.tryParse(GsonUtils.getObject(array, i), key, ""));
+        return list;
+    }
+
+    private static String getDefineField(String field_name, String key) throws Exception {
+        JsonArray array = GsonUtils.getWhereArray(BLL_Design.getTableFields(TID), "id", field_name);
+        return GsonUtils.getObjectValue(array, 0, key);
+    }
+
+    @Test
+    public void cachedScalars() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("tb_user", BLL_Design.getTableName("user"));
+            assertEquals(10, BLL_Design.getObjectId("user"));
+            assertEquals(1, BLL_Design.getTableId(10));
+        }
+        assertEquals(3, getQueries());
+
+        DesignCache.invalidate();
+        assertEquals("tb_user", BLL_Design.getTableName("user"));
+        assertEquals(4, getQueries());
+    }
+
+    @Test
+    public void emptyResultNotCached() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("", BLL_Design.getTableName("dept"));
+            assertEquals(0, BLL_Design.getObjectId("dept"));
+        }
+        assertEquals(6, getQueries());
+
+        //新增后不用等缓存过期
+        DBFunction.executeNonQuery("insert into tb_gen_table(tid,oid,table_key,table_name,tb_relation) values (2,20,'dept','tb_dept','主表')");
+        assertEquals("tb_dept", BLL_Design.getTableName("dept"));
+        assertEquals(20, BLL_Design.getObjectId("dept"));
+    }
+
+    /**
+     * 预热后生成表单(getDesignBuild、getTableFields、getColumnsCodeValue)不执行任何SQL；返回的是副本，调用方修改不影响缓存
+     */
+    @Test
+    public void warmRenderNoSql() throws Exception {
+        String cold = render();
+        assertTrue(getAllQueries() > 0);
+        Hashtable ht = BLL_Design.getDesignBuild(TID);
+        assertEquals("用户", ht.get("object_name"));
+        assertEquals("tab", ht.get("layout_type"));
+        assertEquals(2, ht.get("table_count"));
+        assertEquals(Arrays.asList("user_name", "sex", "dept_id"), getFieldValues(BLL_Design.getTableFields(TID), "id"));
+        assertEquals(Arrays.asList("sex"), getFieldValues(BLL_Design.getColumnsCodeValue(OID), "field_name"));
+
+        SqlStats.reset();
+        for (int i = 0; i < 3; i++) {
+            BLL_Design.getTableFields(TID).remove(0);
+            BLL_Design.getColumnsCodeValue(OID).get(0).getAsJsonObject().addProperty("field_name", "changed");
+            JsonObject table = BLL_Design.getTableInfo(TID);
+            table.addProperty("table_name", "changed");
+            assertEquals(cold, render());
+        }
+        assertEquals(0, getAllQueries());
+    }
+
+    /**
+     * GenDataController object/mod
+     */
+    @Test
+    public void invalidateByUpdateObject() throws Exception {
+        Map ht = new HashMap();
+        ht.put("object_name", "用户档案");
+        ht.put("item_method", "");
+        ht.put("expanded", "");
+        assertInvalidated(() -> BLL_GenData.updateObject(OID, ht));
+        assertEquals("用户档案", BLL_Design.getDesignBuild(TID).get("object_name"));
+        assertEquals("用户档案", GsonUtils.tryParse(BLL_Design.getObjectInfo(OID), "object_name", ""));
+    }
+
+    /**
+     * GenDataController field/editing
+     */
+    @Test
+    public void invalidateByUpdateField() throws Exception {
+        Map ht = new HashMap();
+        ht.put("field_explain", "登录名");
+        assertInvalidated(() -> BLL_GenData.updateField(101, ht));
+        assertEquals("登录名", getDefineField("user_name", "name"));
+    }
+
+    @Test
+    public void invalidateByImportObject() throws Exception {
+        JsonObject object = new JsonObject();
+        object.addProperty("oid", OID);
+        object.addProperty("object_name", "用户");
+        object.addProperty("layout_type", "card");
+        object.addProperty("serialcode", 1);
+        JsonArray array = new JsonArray();
+        array.add(object);
+        assertInvalidated(() -> BLL_GenData.importObject(array));
+        assertEquals("card", BLL_Design.getDesignBuild(TID).get("layout_type"));
+    }
+
+    @Test
+    public void invalidateByImportTable() throws Exception {
+        JsonObject table = new JsonObject();
+        table.addProperty("tid", TID);
+        table.addProperty("oid", OID);
+        table.addProperty("table_key", "user");
+        table.addProperty("table_name", "tb_member");
+        table.addProperty("table_explain", "会员");
+        table.addProperty("tb_relation", "主表");
+        JsonArray array = new JsonArray();
+        array.add(table);
+        assertInvalidated(() -> BLL_GenData.importTable(array));
+        assertEquals("tb_member", BLL_Design.getTableName("user"));
+        assertEquals("tb_member", GsonUtils.tryParse(BLL_Design.getTableInfo(TID), "table_name", ""));
+        assertEquals(Arrays.asList("会员", "学历"), getFieldValues(BLL_Design.getDesignTable(OID), "text"));
+        assertEquals(3, BLL_Design.getTableFields("tb_member").size());
+        assertEquals(0, BLL_Design.getTableFields("tb_user").size());
+    }
+
+    @Test
+    public void invalidateByImportField() throws Exception {
+        JsonObject field = new JsonObject();
+        field.addProperty("fid", 101);
+        field.addProperty("tid", TID);
+        field.addProperty("field_name", "user_name");
+        field.addProperty("xtype", "combobox");
+        field.addProperty("field_explain", "姓名");
+        field.addProperty("serialcode", 1);
+        field.addProperty("isdefine", 1);
+        field.addProperty("save_value", 1);
+        field.addProperty("data_key", "user");
+        JsonArray array = new JsonArray();
+        array.add(field);
+        assertInvalidated(() -> BLL_GenData.importField(array));
+        List<String> code_fields = getFieldValues(BLL_Design.getColumnsCodeValue(OID), "field_name");
+        Collections.sort(code_fields);
+        assertEquals(Arrays.asList("sex", "user_name"), code_fields);
+        assertEquals("combobox", getDefineField("user_name", "xtype"));
+    }
+
+    /**
+     * 导入中途出错，出错前已导入的数据也取到新值
+     */
+    @Test
+    public void invalidateByPartialImport() throws Exception {
+        JsonObject table = new JsonObject();
+        table.addProperty("tid", TID);
+        table.addProperty("oid", OID);
+        table.addProperty("table_key", "user");
+        table.addProperty("table_name", "tb_member");
+        table.addProperty("tb_relation", "主表");
+        JsonObject duplicate = new JsonObject();
+        duplicate.addProperty("tid", 3);
+        duplicate.addProperty("table_key", "user");  //与tid=1重复
+        JsonArray array = new JsonArray();
+        array.add(table);
+        array.add(duplicate);
+        render();
+        try {
+            BLL_GenData.importTable(array);
+            fail();
+        } catch (Exception ex) {
+            //expected
+        }
+        assertEquals("tb_member", BLL_Design.getTableName("user"));
+        assertEquals(3, BLL_Design.getTableFields("tb_member").size());
+    }
+
+    /**
+     * GenDataController field/sort
+     */
+    @Test
+    public void invalidateBySaveFieldSort() throws Exception {
+        assertInvalidated(() -> BLL_GenData.saveFieldSort("101:3;103:1", "serialcode"));
+        assertEquals(Arrays.asList("dept_id", "sex", "user_name"), getFieldValues(BLL_Design.getTableFields(TID), "id"));
+    }
+
+    /**
+     * GenDataController editor/save
+     */
+    @Test
+    public void invalidateBySaveFieldEditorSearch() throws Exception {
+        assertInvalidated(() -> assertTrue(BLL_GenData.saveFieldEditorSearch(102, "{xtype: 'radiogroup', name: 'sex'}")));
+        assertEquals("radiogroup", getDefineField("sex", "xtype"));
+        assertEquals("radiogroup", GsonUtils.getObjectValue(BLL_Design.getColumnsCodeValue(OID), 0, "xtype"));
+    }
+
+    /**
+     * GenDataController data/delete
+     */
+    @Test
+    public void invalidateByDeleteObject() throws Exception {
+        assertInvalidated(() -> BLL_GenData.deleteObject(OID));
+        assertTrue(BLL_Design.getDesignBuild(TID).isEmpty());
+        assertNull(BLL_Design.getObjectInfo(OID));
+        assertNull(BLL_Design.getTableInfo(TID));
+        assertEquals(0, BLL_Design.getDesignTable(OID).size());
+        assertEquals(0, BLL_Design.getTableFields(TID).size());
+        assertEquals(0, BLL_Design.getTableFields("tb_user").size());
+        assertEquals(0, BLL_Design.getColumnsCodeValue(OID).size());
+        assertEquals("", BLL_Design.getTableName("user"));
+    }
+}
@@ -0,0 +1,327 @@
+package com.xinsite.core.bll.design;
+
+import com.google.gson.JsonArray;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.text.PatchUtils;
+import com.xinsite.core.cache.StoreShardCache;
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 历史记录关键帧+补丁存储，内存数据库H2(config/application-druid.yml)：
+ * 各版本还原出保存时的内容(跨关键帧、2分钟内合并、删除中间版本、随机编辑序列)，并发保存同一信息时补丁链不分叉；
+ * 完整内容存储的历史记录转换(compressHistoryRecords)后各版本内容不变
+ */
+public class BLL_StoreTest {
+    private static final int ITEM_ID = 7;
+    private static final long IDLEAF = 70;
+    private static final String SHARE_UUID = "share-store-test";
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists tb_info_share");
+        DBFunction.executeNonQuery("drop table if exists tb_info_store1");
+        DBFunction.executeNonQuery("create table tb_info_share(share_uuid varchar(50),item_id int not null,idleaf bigint not null,title varchar(200)," +
+                "modify_time datetime,modify_records int,sub_table_num int)");
+        DBFunction.executeNonQuery("create table tb_info_store1(store_id bigint auto_increment primary key,share_uuid varchar(50),store_data longtext," +
+                "create_time datetime,opertype varchar(50),user_id int)");
+    }
+
+    @Before
+    public void clear() throws Exception {
+        DBFunction.executeNonQuery("delete from tb_info_share");
+        DBFunction.executeNonQuery("delete from tb_info_store1");
+        DBFunction.executeNonQuery("insert into tb_info_share(share_uuid,item_id,idleaf,sub_table_num) values ('" +
+                SHARE_UUID + "'," + ITEM_ID + "," + IDLEAF + ",1)");
+    }
+
+    /**
+     * 模拟表单内容：60行，第line行改为value
+     */
+    private static String content(int line, String value) {
+        StringBuilder sb = new StringBuilder("{\"success\":true,\"rows\":[\n");
+        for (int i = 0; i < 60; i++) {
+            sb.append("{\"field_").append(i).append("\":\"").append(i == line ? value : "原始内容" + i).append("\"},\n");
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * 随机编辑：改行、插入、删除、整段复制、交换、清空、追加多字节字符
+     */
+    private static void edit(List<String> lines, Random random, int version) {
+        int size = lines.size();
+        switch (random.nextInt(8)) {
+            case 0:
+            case 1:
+                if (size > 0) lines.set(random.nextInt(size), "{\"field\":\"改" + version + "-" + random.nextInt(1000) + "\"},");
+                else lines.add("{\"field\":\"" + version + "\"},");
+                break;
+            case 2:
+                for (int i = random.nextInt(5) + 1; i > 0; i--) {
+                    lines.add(random.nextInt(lines.size() + 1), "{\"insert_" + version + "\":\"新增\\n\\\"" + i + "\"},");
+                }
+                break;
+            case 3:
+                if (size > 0) {
+                    int from = random.nextInt(size);
+                    lines.subList(from, Math.min(size, from + random.nextInt(8) + 1)).clear();
+                }
+                break;
+            case 4:
+                if (size > 0) {
+                    int from = random.nextInt(size);
+                    lines.addAll(random.nextInt(size + 1), new ArrayList<>(lines.subList(from, Math.min(size, from + 10))));
+                }
+                break;
+            case 5:
+                if (size > 1) Collections.swap(lines, random.nextInt(size), random.nextInt(size));
+                break;
+            case 6:
+                if (random.nextInt(10) == 0) lines.clear();
+                break;
+            default:
+                lines.add("{\"emoji\":\"" + new String(Character.toChars(0x1F600 + random.nextInt(40))) + "中文é\\t" + version + "\"},");
+        }
+    }
+
+    private static String join(List<String> lines) {
+        return "{\"success\":true,\"rows\":[\n" + String.join("\n", lines) + "\n]}";
+    }
+
+    private static List<String> initLines(Random random) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0, n = 20 + random.nextInt(60); i < n; i++) lines.add("{\"field_" + i + "\":\"原始内容" + random.nextInt(10000) + "\"},");
+        return lines;
+    }
+
+    /**
+     * 同一信息两个关键帧之间最多的补丁数
+     */
+    private static int getMaxPatches() throws Exception {
+        JsonArray dt = DBFunction.executeJsonArray("select share_uuid,store_data from tb_info_store1 order by share_uuid,store_id");
+        int max = 0, patches = 0;
+        String share_uuid = null;
+        for (int i = 0; i < dt.size(); i++) {
+            String uuid = GsonUtils.getObjectValue(dt, i, "share_uuid");
+            if (!uuid.equals(share_uuid)) patches = 0;
+            share_uuid = uuid;
+            patches = PatchUtils.isPatch(GsonUtils.getObjectValue(dt, i, "store_data")) ? patches + 1 : 0;
+            max = Math.max(max, patches);
+        }
+        return max;
+    }
+
+    private static long getStoreLength() throws Exception {
+        return DBFunction.getTableCount("select sum(length(store_data)) from tb_info_store1");
+    }
+
+    private static void save(String store_data, int user_id) throws Exception {
+        DBFunction.startTransaction();
+        try {
+            assertTrue(BLL_Store.addHistoryRecord(store_data, ITEM_ID, IDLEAF, user_id, "修改"));
+            DBFunction.commit();
+        } catch (Exception ex) {
+            DBFunction.rollback();
+            throw ex;
+        }
+    }
+
+    private static List<Integer> getStoreIds() throws Exception {
+        JsonArray dt = DBFunction.executeJsonArray("select store_id from tb_info_store1 order by store_id");
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < dt.size(); i++) ids.add(GsonUtils.tryParse(GsonUtils.getObject(dt, i), "store_id", 0));
+        return ids;
+    }
+
+    private static long countKeyframes() throws Exception {
+        return DBFunction.getTableCount("select count(1) from tb_info_store1 where store_data not like '" + PatchUtils.PATCH_PREFIX + "%'");
+    }
+
+    @Test
+    public void versionsRoundTrip() throws Exception {
+        List<String> saved = new ArrayList<>();
+        for (int v = 0; v < 45; v++) {
+            String store_data = content(v % 60, "版本" + v);
+            save(store_data, 100 + v); //不同用户，不合并
+            saved.add(store_data);
+        }
+        List<Integer> ids = getStoreIds();
+        assertEquals(saved.size(), ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals("版本" + i, saved.get(i), BLL_Store.restoreVersionData(ids.get(i), 1));
+        }
+        //第1、21、41个版本是关键帧
+        assertEquals(3, countKeyframes());
+    }
+
+    /**
+     * 同一人2分钟内的修改合并到最后一个版本，合并后仍是与上一版本的补丁
+     */
+    @Test
+    public void mergeRecentChange() throws Exception {
+        save(content(1, "a"), 1);
+        save(content(2, "b"), 2);
+        save(content(3, "c"), 2);
+        List<Integer> ids = getStoreIds();
+        assertEquals(2, ids.size());
+        assertEquals(content(1, "a"), BLL_Store.restoreVersionData(ids.get(0), 1));
+        assertEquals(content(3, "c"), BLL_Store.restoreVersionData(ids.get(1), 1));
+        assertEquals(1, countKeyframes());
+    }
+
+    /**
+     * 删除某个版本后其它版本仍能还原(被删版本后面的补丁先存成完整内容)
+     */
+    @Test
+    public void deleteVersion() throws Exception {
+        List<String> saved = new ArrayList<>();
+        for (int v = 0; v < 10; v++) {
+            saved.add(content(v, "删除" + v));
+            save(saved.get(v), 200 + v);
+        }
+        List<Integer> ids = getStoreIds();
+        assertTrue(BLL_Store.deleteById(ids.get(4), 1));
+        assertTrue(BLL_Store.deleteById(ids.get(0), 1));
+        for (int i = 0; i < ids.size(); i++) {
+            if (i == 0 || i == 4) continue;
+            assertEquals("版本" + i, saved.get(i), BLL_Store.restoreVersionData(ids.get(i), 1));
+        }
+        save(content(59, "删除之后"), 300);
+        List<Integer> after = getStoreIds();
+        assertEquals(content(59, "删除之后"), BLL_Store.restoreVersionData(after.get(after.size() - 1), 1));
+    }
+
+    /**
+     * 随机编辑序列(固定种子，可重现)：不同用户新增版本、同一用户连续修改合并，每个版本还原出最后保存的内容
+     */
+    @Test
+    public void randomEditsRoundTrip() throws Exception {
+        for (long seed = 1; seed <= 5; seed++) {
+            clear();
+            Random random = new Random(seed);
+            List<String> lines = initLines(random);
+            List<String> saved = new ArrayList<>();
+            int user_id = 0;
+            for (int v = 0; v < 70; v++) {
+                for (int i = random.nextInt(3); i >= 0; i--) edit(lines, random, v);
+                String store_data = join(lines);
+                if (v > 0 && random.nextInt(4) == 0) {
+                    saved.set(saved.size() - 1, store_data); //同一用户2分钟内，合并到最后一个版本
+                } else {
+                    user_id++;
+                    saved.add(store_data);
+                }
+                save(store_data, user_id);
+            }
+            List<Integer> ids = getStoreIds();
+            assertEquals("seed=" + seed, saved.size(), ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals("seed=" + seed + "，版本" + i, saved.get(i), BLL_Store.restoreVersionData(ids.get(i), 1));
+            }
+            assertTrue("seed=" + seed, getMaxPatches() < BLL_Store.KEYFRAME_INTERVAL);
+        }
+    }
+
+    /**
+     * 升级前保存的完整内容转换为关键帧+补丁：各版本还原的内容不变，存储减少，再次转换不修改
+     */
+    @Test
+    public void compressFullSnapshots() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists tb_info_store_shard");
+        Method unload = StoreShardCache.class.getDeclaredMethod("unload");
+        unload.setAccessible(true);
+        unload.invoke(null);
+
+        Map<String, List<String>> saved = new LinkedHashMap<>();
+        Random random = new Random(42);
+        for (String share_uuid : new String[]{SHARE_UUID, "share-store-other"}) {
+            List<String> lines = initLines(random);
+            List<String> versions = new ArrayList<>();
+            for (int v = 0, n = share_uuid.equals(SHARE_UUID) ? 45 : 7; v < n; v++) {
+                edit(lines, random, v);
+                versions.add(join(lines));
+            }
+            saved.put(share_uuid, versions);
+        }
+        //两条信息的版本交替写入
+        for (int v = 0; v < 45; v++) {
+            for (Map.Entry<String, List<String>> entry : saved.entrySet()) {
+                if (v >= entry.getValue().size()) continue;
+                DBFunction.executeNonQuery("insert into tb_info_store1(share_uuid,store_data,opertype,user_id) values (@share_uuid,@store_data,'修改',1)",
+                        new DBParameter("@share_uuid", entry.getKey()), new DBParameter("@store_data", entry.getValue().get(v)));
+            }
+        }
+        assertEquals(52, countKeyframes());
+        long before = getStoreLength();
+
+        int count = BLL_Store.compressHistoryRecords();
+        assertTrue(count > 0);
+        assertTrue(count <= 52 - 4);  //第1、21、41个版本仍是完整内容
+        assertEquals(52 - count, countKeyframes());
+        assertTrue(getMaxPatches() < BLL_Store.KEYFRAME_INTERVAL);
+        assertTrue("转换后" + getStoreLength() + "，转换前" + before, getStoreLength() < before / 2);
+        for (Map.Entry<String, List<String>> entry : saved.entrySet()) {
+            JsonArray dt = DBFunction.executeJsonArray("select store_id from tb_info_store1 where share_uuid=@share_uuid order by store_id",
+                    new DBParameter("@share_uuid", entry.getKey()));
+            assertEquals(entry.getValue().size(), dt.size());
+            for (int i = 0; i < dt.size(); i++) {
+                int store_id = GsonUtils.tryParse(GsonUtils.getObject(dt, i), "store_id", 0);
+                assertEquals(entry.getKey() + "，版本" + i, entry.getValue().get(i), BLL_Store.restoreVersionData(store_id, 1));
+            }
+        }
+        assertEquals(0, BLL_Store.compressHistoryRecords());
+
+        //转换后继续保存，补丁接在转换后的版本上
+        String store_data = join(initLines(random));
+        save(store_data, 500);
+        List<Integer> ids = getStoreIds();
+        assertEquals(store_data, BLL_Store.restoreVersionData(ids.get(ids.size() - 1), 1));
+    }
+
+    /**
+     * 多个线程同时保存同一信息：每个版本都还原出某次保存的内容，且各不相同
+     */
+    @Test
+    public void concurrentSavesKeepChain() throws Exception {
+        int threads = 6, saves = 10;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<String> saved = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int v = 0; v < saves; v++) {
+                    String store_data = content((thread * saves + v) % 60, "线程" + thread + "-" + v);
+                    save(store_data, 1000 + thread * saves + v);
+                    saved.add(store_data);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        List<Integer> ids = getStoreIds();
+        assertEquals(threads * saves, ids.size());
+        Set<String> restored = new HashSet<>();
+        for (int store_id : ids) {
+            String store_data = BLL_Store.restoreVersionData(store_id, 1);
+            assertTrue("store_id=" + store_id + "还原的内容不是任何一次保存的内容", saved.contains(store_data));
+            restored.add(store_data);
+        }
+        assertEquals(saved, restored);
+    }
+}
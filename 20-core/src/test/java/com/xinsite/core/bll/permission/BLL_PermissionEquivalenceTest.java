@@ -0,0 +1,284 @@
+package com.xinsite.core.bll.permission;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.DateUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.model.system.PowerSaveModel;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 栏目、功能权限批量保存与原逐行保存的等价性，内存数据库H2(config/application-druid.yml)：
+ * 随机生成已有权限(含同一栏目重复的有效、已删除行)及保存请求，两种写法分别保存到不同对象，比较生效的权限。
+ * 生效的权限：栏目有有效行(isdel=0)，数据权限取pm_id最小的有效行，功能为各有效行功能的并集。
+ * 唯一不同：实时保存选中的栏目有重复行时，原写法只改其中一行，其它有效行的功能仍生效；
+ * 批量保存后只有所选功能，数据权限保留原有效行的
+ */
+public class BLL_PermissionEquivalenceTest {
+    private static final int TB_TYPE = 2;
+    private static final int TB_OLD = 101;
+    private static final int TB_NEW = 102;
+    private static final int ITEMS = 6;
+    private static final int FUNS = 5;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_power_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_power_fun");
+        DBFunction.executeNonQuery("create table sys_power_menu(pm_id int auto_increment primary key,tb_type int not null,tb_id int not null," +
+                "item_id int not null,del_item int,data_per int,data_ids varchar(1000),create_time datetime,isdel int default 0)");
+        DBFunction.executeNonQuery("create table sys_power_fun(pm_id int not null,fun_id int not null,primary key(pm_id,fun_id))");
+    }
+
+    /**
+     * 已有的一行栏目权限：已删除的行没有功能及数据权限(同删除时的处理)
+     */
+    private static class Row {
+        int item_id;
+        int isdel;
+        Integer data_per;
+        String data_ids;
+        List<Integer> fun_ids = new ArrayList<>();
+    }
+
+    private static List<Row> randomRows(Random random) {
+        List<Row> rows = new ArrayList<>();
+        for (int n = random.nextInt(ITEMS * 2); n > 0; n--) {
+            Row row = new Row();
+            row.item_id = 1 + random.nextInt(ITEMS);
+            row.isdel = random.nextInt(2);
+            if (row.isdel == 0) {
+                row.data_per = random.nextInt(4) == 0 ? null : random.nextInt(3);
+                row.data_ids = random.nextInt(3) == 0 ? null : String.valueOf(random.nextInt(9));
+                row.fun_ids = randomFuns(random);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<Integer> randomFuns(Random random) {
+        List<Integer> fun_ids = new ArrayList<>();
+        for (int fun_id = 1; fun_id <= FUNS; fun_id++) {
+            if (random.nextBoolean()) fun_ids.add(fun_id);
+        }
+        return fun_ids;
+    }
+
+    private static void insert(int tb_id, List<Row> rows) throws Exception {
+        for (Row row : rows) {
+            Map<String, Object> ht = new HashMap<>();
+            ht.put("tb_type", TB_TYPE);
+            ht.put("tb_id", tb_id);
+            ht.put("item_id", row.item_id);
+            ht.put("isdel", row.isdel);
+            ht.put("data_per", row.data_per);
+            ht.put("data_ids", row.data_ids);
+            ht.put("create_time", "2020-01-01 00:00:00");
+            int pm_id = DBFunction.insertByTbName(ht, "sys_power_menu");
+            for (int fun_id : row.fun_ids) {
+                DBFunction.executeNonQuery("insert into sys_power_fun(pm_id,fun_id) values (" + pm_id + "," + fun_id + ")");
+            }
+        }
+    }
+
+    /**
+     * 对象生效的权限：item_id -> 数据权限|自定义部门|功能
+     */
+    private static Map<Integer, String> effective(int tb_id) throws Exception {
+        JsonArray dt = DBFunction.executeJsonArray("select pm_id,item_id,data_per,data_ids from sys_power_menu where isdel=0 and tb_type=" +
+                TB_TYPE + " and tb_id=" + tb_id + " order by pm_id");
+        Map<Integer, String> data = new TreeMap<>();
+        Map<Integer, Set<Integer>> funs = new TreeMap<>();
+        for (int i = 0; i < dt.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(dt, i);
+            int item_id = GsonUtils.tryParse(dr, "item_id", 0);
+            if (!data.containsKey(item_id)) data.put(item_id, value(dr, "data_per") + "|" + value(dr, "data_ids"));
+            Set<Integer> set = funs.computeIfAbsent(item_id, k -> new TreeSet<>());
+            JsonArray fun = DBFunction.executeJsonArray("select fun_id from sys_power_fun where pm_id=" + GsonUtils.tryParse(dr, "pm_id", 0));
+            for (int k = 0; k < fun.size(); k++) set.add(GsonUtils.tryParse(GsonUtils.getObject(fun, k), "fun_id", 0));
+        }
+        Map<Integer, String> map = new TreeMap<>();
+        for (int item_id : data.keySet()) map.put(item_id, data.get(item_id) + "|" + funs.get(item_id));
+        return map;
+    }
+
+    private static String value(JsonObject dr, String key) {
+        return dr.get(key) == null || dr.get(key).isJsonNull() ? "null" : dr.get(key).getAsString();
+    }
+
+    private static PowerSaveModel model(Random random, int item_id) {
+        PowerSaveModel en = new PowerSaveModel();
+        en.item_id = item_id;
+        en.check = String.valueOf(random.nextInt(3) > 0);
+        en.fun_ids = StringUtils.join(randomFuns(random), ",");
+        en.isdataper = random.nextInt(2);
+        en.dataPer = random.nextInt(3);
+        en.data_ids = random.nextBoolean() ? "7,8" : "";
+        return en;
+    }
+
+    @Test
+    public void randomSavesMatchRowByRowSave() throws Exception {
+        for (long seed = 1; seed <= 300; seed++) {
+            Random random = new Random(seed);
+            DBFunction.executeNonQuery("delete from sys_power_fun");
+            DBFunction.executeNonQuery("delete from sys_power_menu");
+            List<Row> rows = randomRows(random);
+            insert(TB_OLD, rows);
+            insert(TB_NEW, rows);
+            Map<Integer, String> before = effective(TB_NEW);
+
+            //保存范围包括没有权限行的栏目(ITEMS+1)
+            List<Integer> item_ids = new ArrayList<>();
+            for (int item_id = 1; item_id <= ITEMS + 1; item_id++) {
+                if (random.nextInt(3) == 0) item_ids.add(item_id);
+            }
+            List<PowerSaveModel> list = new ArrayList<>();
+            for (int item_id : item_ids) list.add(model(random, item_id));
+            int data_per = random.nextInt(3);
+            String data_ids = random.nextBoolean() ? "5,6" : "";
+
+            Set<Integer> reassigned = new HashSet<>();
+            switch (random.nextInt(3)) {
+                case 0:
+                    oldSaveRealPermission(TB_OLD, list);
+                    assertTrue(BLL_Permission.saveRealPermission(TB_TYPE, TB_NEW, list));
+                    for (PowerSaveModel en : list) {
+                        if (en.check.equals("true") && countRows(rows, en.item_id) > 1) reassigned.add(en.item_id);
+                    }
+                    break;
+                case 1:
+                    String ids = StringUtils.join(item_ids, ",");
+                    oldSaveBtnPermission(TB_OLD, list, ids);
+                    assertTrue(BLL_Permission.saveBtnPermission(TB_TYPE, TB_NEW, list, ids));
+                    break;
+                default:
+                    oldSaveDataPermission(TB_OLD, data_per, data_ids, list);
+                    assertTrue(BLL_Permission.saveDataPermission(TB_TYPE, TB_NEW, data_per, data_ids, list));
+            }
+
+            Map<Integer, String> expected = effective(TB_OLD);
+            Map<Integer, String> actual = effective(TB_NEW);
+            for (PowerSaveModel en : list) {
+                if (!reassigned.contains(en.item_id)) continue;
+                String data = before.containsKey(en.item_id) ? before.get(en.item_id).substring(0, before.get(en.item_id).lastIndexOf('|')) : "null|null";
+                expected.put(en.item_id, data + "|" + new TreeSet<>(StringUtils.splitToList(en.fun_ids)));
+            }
+            assertEquals("seed=" + seed, expected, actual);
+            assertEquals("重复行已删除 seed=" + seed, DBFunction.getTableCount("select count(distinct item_id) from sys_power_menu where tb_id=" + TB_NEW),
+                    DBFunction.getTableCount("select count(1) from sys_power_menu where tb_id=" + TB_NEW));
+        }
+    }
+
+    private static int countRows(List<Row> rows, int item_id) {
+        int count = 0;
+        for (Row row : rows) if (row.item_id == item_id) count++;
+        return count;
+    }
+
+    //region 原逐行保存(批量保存之前的写法)
+    private static void oldSavePermissionFun(int pm_id, String funids) throws Exception {
+        if (pm_id > 0) {
+            DBFunction.executeNonQuery("delete from sys_power_fun where pm_id=" + pm_id);
+            for (int fun_id : StringUtils.splitToList(funids)) {
+                Map<String, Object> ht = new HashMap<>();
+                ht.put("pm_id", pm_id);
+                ht.put("fun_id", fun_id);
+                DBFunction.insertByTbName(ht, "sys_power_fun");
+            }
+        }
+    }
+
+    private static void oldSaveRealPermission(int tb_id, List<PowerSaveModel> list) throws Exception {
+        for (PowerSaveModel en : list) {
+            if (en.check.equalsIgnoreCase("true")) {
+                int pm_id = BLL_PowerInfo.getPowerMenuId(TB_TYPE, tb_id, en.item_id);
+                Map<String, Object> ht = new HashMap<>();
+                if (pm_id > 0) {
+                    ht.put("isdel", 0);
+                    ht.put("create_time", DateUtils.getDateTime());
+                    DBFunction.updateByTbName(ht, "sys_power_menu", "pm_id=" + pm_id);
+                } else {
+                    ht.put("tb_type", TB_TYPE);
+                    ht.put("tb_id", tb_id);
+                    ht.put("item_id", en.item_id);
+                    ht.put("create_time", DateUtils.getDateTime());
+                    pm_id = DBFunction.insertByTbName(ht, "sys_power_menu");
+                }
+                oldSavePermissionFun(pm_id, en.fun_ids);
+            } else {
+                BLL_Permission.deletePermissionFun(TB_TYPE, tb_id, en.item_id);
+                String del_sql = "update sys_power_menu set isdel=1,data_per=null,data_ids=null where tb_id={0} and tb_type={1} and item_id={2}";
+                DBFunction.executeNonQuery(StringUtils.format(del_sql, tb_id, TB_TYPE, en.item_id));
+            }
+        }
+    }
+
+    private static void oldSaveBtnPermission(int tb_id, List<PowerSaveModel> list, String item_ids) throws Exception {
+        item_ids = StringUtils.joinAsFilter(item_ids);
+        if (!StringUtils.isEmpty(item_ids)) {
+            BLL_Permission.deletePermissionFun(TB_TYPE, tb_id, item_ids);
+            String sql_del = "update sys_power_menu set isdel=1,data_per=null,data_ids=null where tb_id={0} and tb_type={1} and item_id in({2})";
+            DBFunction.executeNonQuery(StringUtils.format(sql_del, tb_id, TB_TYPE, item_ids));
+        }
+        JsonArray dt = BLL_PowerInfo.getMenuPermission(TB_TYPE, tb_id);
+        for (PowerSaveModel en : list) {
+            if (en.check.equalsIgnoreCase("true")) {
+                Map<String, Object> ht = new HashMap<>();
+                ht.put("tb_id", tb_id);
+                ht.put("tb_type", TB_TYPE);
+                ht.put("item_id", en.item_id);
+                ht.put("isdel", 0);
+                ht.put("create_time", DateUtils.getDateTime());
+                JsonArray drs = GsonUtils.getWhereArray(dt, "item_id", en.item_id);
+                int pm_id;
+                if (drs.size() > 0) {
+                    pm_id = GsonUtils.tryParse(GsonUtils.getObject(drs, 0), "pm_id", 0);
+                    DBFunction.updateByTbName(ht, "sys_power_menu", "pm_id=" + pm_id);
+                } else {
+                    ht.put("data_per", en.dataPer);
+                    ht.put("data_ids", en.data_ids);
+                    pm_id = DBFunction.insertByTbName(ht, "sys_power_menu");
+                }
+                oldSavePermissionFun(pm_id, en.fun_ids);
+            }
+        }
+    }
+
+    private static void oldSaveDataPermission(int tb_id, int data_per, String data_ids, List<PowerSaveModel> list) throws Exception {
+        JsonArray dt = BLL_PowerInfo.getMenuPermission(TB_TYPE, tb_id);
+        for (PowerSaveModel en : list) {
+            if (en.check.equalsIgnoreCase("true")) {
+                Map<String, Object> ht = new HashMap<>();
+                ht.put("isdel", 0);
+                if (en.isdataper == 1) {
+                    ht.put("data_per", data_per);
+                    ht.put("data_ids", data_ids);
+                } else {
+                    ht.put("data_per", 0);
+                    ht.put("data_ids", "");
+                }
+                JsonArray drs = GsonUtils.getWhereArray(dt, "item_id", en.item_id);
+                if (drs.size() > 0) {
+                    int pm_id = GsonUtils.tryParse(GsonUtils.getObject(drs, 0), "pm_id", 0);
+                    DBFunction.updateByTbName(ht, "sys_power_menu", "pm_id=" + pm_id);
+                } else {
+                    ht.put("tb_id", tb_id);
+                    ht.put("tb_type", TB_TYPE);
+                    ht.put("item_id", en.item_id);
+                    ht.put("create_time", DateUtils.getDateTime());
+                    DBFunction.insertByTbName(ht, "sys_power_menu");
+                }
+            }
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,189 @@
+package com.xinsite.core.bll.permission;
+
+import com.google.gson.JsonArray;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.core.model.system.PowerSaveModel;
+import com.xinsite.dal.dbhelper.DBFunction;
+import com.xinsite.dal.dbhelper.SqlStats;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 栏目、功能权限保存，内存数据库H2(config/application-druid.yml)：
+ * 只对有变化的行批量新增、修改、删除，同一栏目重复的sys_power_menu行删除
+ */
+public class BLL_PermissionTest {
+    private static final int TB_TYPE = 2;
+    private static final int TB_ID = 9;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_power_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_power_fun");
+        DBFunction.executeNonQuery("create table sys_power_menu(pm_id int auto_increment primary key,tb_type int not null,tb_id int not null," +
+                "item_id int not null,del_item int,data_per int,data_ids varchar(1000),create_time datetime,isdel int default 0)");
+        DBFunction.executeNonQuery("create table sys_power_fun(pm_id int not null,fun_id int not null,primary key(pm_id,fun_id))");
+    }
+
+    @Before
+    public void clear() throws Exception {
+        DBFunction.executeNonQuery("delete from sys_power_fun");
+        DBFunction.executeNonQuery("delete from sys_power_menu");
+    }
+
+    private static int addMenu(int item_id, int isdel, String create_time, int... fun_ids) throws Exception {
+        DBFunction.executeNonQuery("insert into sys_power_menu(tb_type,tb_id,item_id,isdel,create_time) values (" +
+                TB_TYPE + "," + TB_ID + "," + item_id + "," + isdel + ",'" + create_time + "')");
+        int pm_id = (int) DBFunction.getTableCount("select max(pm_id) from sys_power_menu");
+        for (int fun_id : fun_ids) {
+            DBFunction.executeNonQuery("insert into sys_power_fun(pm_id,fun_id) values (" + pm_id + "," + fun_id + ")");
+        }
+        return pm_id;
+    }
+
+    private static PowerSaveModel model(int item_id, boolean check, String fun_ids) {
+        PowerSaveModel en = new PowerSaveModel();
+        en.item_id = item_id;
+        en.check = String.valueOf(check);
+        en.fun_ids = fun_ids;
+        return en;
+    }
+
+    /**
+     * 某栏目的sys_power_menu行
+     */
+    private static JsonArray getMenus(int item_id) throws Exception {
+        return DBFunction.executeJsonArray("select pm_id,isdel,data_per,data_ids from sys_power_menu where tb_type=" +
+                TB_TYPE + " and tb_id=" + TB_ID + " and item_id=" + item_id);
+    }
+
+    private static int getInt(JsonArray rows, String key) {
+        return GsonUtils.tryParse(GsonUtils.getObject(rows, 0), key, -1);
+    }
+
+    /**
+     * create_time未改变
+     */
+    private static boolean isOriginalTime(int item_id) throws Exception {
+        return DBFunction.getTableCount("select count(1) from sys_power_menu where item_id=" + item_id +
+                " and create_time='2020-01-01 00:00:00'") == 1;
+    }
+
+    private static Set<Integer> getFuns(int pm_id) throws Exception {
+        Set<Integer> set = new TreeSet<>();
+        JsonArray dt = DBFunction.executeJsonArray("select fun_id from sys_power_fun where pm_id=" + pm_id);
+        for (int i = 0; i < dt.size(); i++) set.add(GsonUtils.tryParse(GsonUtils.getObject(dt, i), "fun_id", 0));
+        return set;
+    }
+
+    @Test
+    public void diffSave() throws Exception {
+        int keep = addMenu(11, 0, "2020-01-01 00:00:00", 1, 2);
+        int regrant = addMenu(12, 1, "2020-01-01 00:00:00");
+        int revoke = addMenu(13, 0, "2020-01-01 00:00:00", 5);
+
+        assertTrue(BLL_Permission.saveRealPermission(TB_TYPE, TB_ID, Arrays.asList(
+                model(11, true, "2,3"), model(12, true, "4"), model(13, false, ""), model(14, true, "6,7"))));
+
+        assertEquals(new TreeSet<>(Arrays.asList(2, 3)), getFuns(keep));
+        assertTrue(isOriginalTime(11));
+
+        assertEquals(0, getInt(getMenus(12), "isdel"));
+        assertFalse(isOriginalTime(12));
+        assertEquals(Collections.singleton(4), getFuns(regrant));
+
+        assertEquals(1, getInt(getMenus(13), "isdel"));
+        assertTrue(getFuns(revoke).isEmpty());
+
+        JsonArray added = getMenus(14);
+        assertEquals(1, added.size());
+        assertEquals(new TreeSet<>(Arrays.asList(6, 7)), getFuns(getInt(added, "pm_id")));
+    }
+
+    /**
+     * 目标状态与已有相同时不执行任何写操作
+     */
+    @Test
+    public void unchangedSaveWritesNothing() throws Exception {
+        addMenu(21, 0, "2020-01-01 00:00:00", 1, 2);
+        addMenu(22, 1, "2020-01-01 00:00:00");
+        SqlStats.reset();
+        assertTrue(BLL_Permission.saveRealPermission(TB_TYPE, TB_ID, Arrays.asList(model(21, true, "1,2"), model(22, false, ""))));
+        for (Map<String, Object> stat : SqlStats.getStatements(0)) {
+            String sql = String.valueOf(stat.get("sql")).trim().toLowerCase();
+            assertTrue(sql, sql.startsWith("select"));
+        }
+    }
+
+    /**
+     * 同一栏目重复的行连同其功能删除，保留pm_id最小的有效行
+     */
+    @Test
+    public void duplicateRowsDeleted() throws Exception {
+        int first = addMenu(31, 0, "2020-01-01 00:00:00", 1);
+        int second = addMenu(31, 0, "2020-01-01 00:00:00", 2, 3);
+        int third = addMenu(31, 1, "2020-01-01 00:00:00", 4);
+
+        assertTrue(BLL_Permission.saveRealPermission(TB_TYPE, TB_ID, Collections.singletonList(model(31, true, "1,5"))));
+
+        JsonArray rows = getMenus(31);
+        assertEquals(1, rows.size());
+        assertEquals(first, getInt(rows, "pm_id"));
+        assertEquals(new TreeSet<>(Arrays.asList(1, 5)), getFuns(first));
+        assertTrue(getFuns(second).isEmpty());
+        assertTrue(getFuns(third).isEmpty());
+    }
+
+    /**
+     * pm_id最小的行已删除时保留有效行：保存其它栏目不影响该栏目的权限
+     */
+    @Test
+    public void liveDuplicateKeptOverDeletedRow() throws Exception {
+        int deleted = addMenu(51, 1, "2020-01-01 00:00:00");
+        int live = addMenu(51, 0, "2020-01-01 00:00:00", 2, 3);
+
+        assertTrue(BLL_Permission.saveRealPermission(TB_TYPE, TB_ID, Collections.singletonList(model(52, true, "1"))));
+
+        JsonArray rows = getMenus(51);
+        assertEquals(1, rows.size());
+        assertEquals(live, getInt(rows, "pm_id"));
+        assertEquals(0, getInt(rows, "isdel"));
+        assertEquals(new TreeSet<>(Arrays.asList(2, 3)), getFuns(live));
+        assertTrue(getFuns(deleted).isEmpty());
+    }
+
+    /**
+     * 同一栏目有多个有效行时功能合并到保留行
+     */
+    @Test
+    public void liveDuplicateFunctionsMerged() throws Exception {
+        int first = addMenu(61, 0, "2020-01-01 00:00:00", 1);
+        int second = addMenu(61, 0, "2020-01-01 00:00:00", 2);
+
+        assertTrue(BLL_Permission.saveRealPermission(TB_TYPE, TB_ID, Collections.singletonList(model(62, true, "1"))));
+
+        JsonArray rows = getMenus(61);
+        assertEquals(1, rows.size());
+        assertEquals(first, getInt(rows, "pm_id"));
+        assertEquals(new TreeSet<>(Arrays.asList(1, 2)), getFuns(first));
+        assertTrue(getFuns(second).isEmpty());
+    }
+
+    @Test
+    public void dataPermission() throws Exception {
+        int pm_id = addMenu(41, 0, "2020-01-01 00:00:00", 1);
+        PowerSaveModel en = model(41, true, null);
+        en.isdataper = 1;
+        assertTrue(BLL_Permission.saveDataPermission(TB_TYPE, TB_ID, 5, "3,4", Collections.singletonList(en)));
+
+        JsonArray rows = getMenus(41);
+        assertEquals(5, getInt(rows, "data_per"));
+        assertEquals("3,4", GsonUtils.tryParse(GsonUtils.getObject(rows, 0), "data_ids", ""));
+        assertEquals(Collections.singleton(1), getFuns(pm_id));
+    }
+}
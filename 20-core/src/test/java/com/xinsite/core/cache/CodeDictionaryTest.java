@@ -0,0 +1,248 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.core.bll.BLL_Common;
+import com.xinsite.core.bll.system.BLL_Code;
+import com.xinsite.dal.dbhelper.DBFunction;
+import com.xinsite.dal.dbhelper.SqlStats;
+import com.xinsite.dal.uitls.Utils_Context;
+import com.xinsite.mybatis.datasource.master.entity.SysDatashow;
+import com.xinsite.mybatis.datasource.master.service.SysDatashowService;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 编码表字典，内存数据库H2(config/application-druid.yml)：缓存预热后列表、导出Excel的编码转文本不执行任何SQL，
+ * BLL_Code.saveCode、saveCodeSort之后重新加载
+ */
+public class CodeDictionaryTest {
+    private static final int OID = 31;
+    private static ApplicationContext previous;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_codetype");
+        DBFunction.executeNonQuery("drop table if exists sys_code");
+        DBFunction.executeNonQuery("drop table if exists sys_datashow");
+        DBFunction.executeNonQuery("drop table if exists tb_gen_table");
+        DBFunction.executeNonQuery("drop table if exists tb_gen_field");
+        DBFunction.executeNonQuery("create table sys_codetype(id int primary key,name varchar(50),data_key varchar(50))");
+        DBFunction.executeNonQuery("create table sys_code(id int auto_increment primary key,pid int,codetype_id int,text varchar(50)," +
+                "value varchar(50),serialcode int,isdel int default 0)");
+        DBFunction.executeNonQuery("create table sys_datashow(id bigint auto_increment primary key,data_type varchar(20),data_key varchar(50)," +
+                "data_id int,disabled varchar(20),isshow int)");
+        DBFunction.executeNonQuery("create table tb_gen_table(tid int primary key,oid int,table_key varchar(50),table_name varchar(50),tb_relation varchar(20))");
+        DBFunction.executeNonQuery("create table tb_gen_field(fid int auto_increment primary key,tid int,field_name varchar(50),xtype varchar(50)," +
+                "save_value int,data_key varchar(50),store_datas varchar(500),store_type varchar(50))");
+
+        //saveCode通过mybatis查询sys_datashow，测试时没有记录
+        previous = Utils_Context.getContext();
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("sysDatashowService", new SysDatashowService() {
+            @Override
+            public List<SysDatashow> getSysDatashowList(Map<String, Object> params) {
+                return Collections.emptyList();
+            }
+        });
+        context.refresh();
+        new Utils_Context().setApplicationContext(context);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        new Utils_Context().setApplicationContext(previous);
+        DBFunction.executeNonQuery("drop table if exists sys_codetype");
+        DBFunction.executeNonQuery("drop table if exists sys_code");
+        DBFunction.executeNonQuery("drop table if exists sys_datashow");
+        DBFunction.executeNonQuery("drop table if exists tb_gen_field");
+    }
+
+    @Before
+    public void clear() throws Exception {
+        DBFunction.executeNonQuery("delete from sys_codetype");
+        DBFunction.executeNonQuery("delete from sys_code");
+        DBFunction.executeNonQuery("delete from tb_gen_table");
+        DBFunction.executeNonQuery("delete from tb_gen_field");
+        DBFunction.executeNonQuery("insert into sys_codetype(id,name,data_key) values (1,'性别','sex'),(2,'地区','area')");
+        DBFunction.executeNonQuery("insert into sys_code(id,pid,codetype_id,text,value,serialcode) values " +
+                "(1,0,1,'男','1',1),(2,0,1,'女','2',2),(3,0,1,'未知','0',3)," +
+                "(11,0,2,'华东','hd',2),(12,11,2,'上海','sh',1),(13,11,2,'杭州','hz',3)");
+        DBFunction.executeNonQuery("alter table sys_code alter column id restart with 100");
+        DBFunction.executeNonQuery("insert into tb_gen_table values (31,31,'member','tb_member','主表')");
+        DBFunction.executeNonQuery("insert into tb_gen_field(tid,field_name,xtype,save_value,data_key) values " +
+                "(31,'sex','combobox',1,'sex'),(31,'area','treepicker',1,'area')");
+        CodeDictionary.invalidate();
+        DesignCache.invalidate();
+        SqlStats.reset();
+    }
+
+    private static JsonArray grid() {
+        String[][] rows = {{"1", "12"}, {"2", "12,13"}, {"1,2", "11"}, {"9", ""}, {"0", "99"}};
+        JsonArray array = new JsonArray();
+        for (String[] row : rows) {
+            JsonObject dr = new JsonObject();
+            dr.addProperty("id", array.size());
+            dr.addProperty("sex", row[0]);
+            dr.addProperty("area", row[1]);
+            array.add(dr);
+        }
+        return array;
+    }
+
+    private static String text(JsonArray array, int index, String field) {
+        return GsonUtils.tryParse(GsonUtils.getObject(array, index), field, "");
+    }
+
+    private static void assertNoSql() {
+        assertEquals(Collections.emptyList(), SqlStats.getStatements(0));
+    }
+
+    /**
+     * sys_code的查询次数
+     */
+    private static long countCodeQueries() {
+        long count = 0;
+        for (Map<String, Object> stat : SqlStats.getStatements(0)) {
+            String sql = String.valueOf(stat.get("sql"));
+            if (sql.startsWith("select") && sql.contains("from sys_code a1,sys_codetype b1")) count += (Long) stat.get("count");
+        }
+        return count;
+    }
+
+    @Test
+    public void gridListWarmCacheRunsNoSql() throws Exception {
+        BLL_Common.setGridListCodeText(grid(), "sex", "sex", "combobox");
+        BLL_Common.setGridListCodeText(grid(), "area", "area", "treepicker");
+        SqlStats.reset();
+
+        JsonArray array = grid();
+        BLL_Common.setGridListCodeText(array, "sex", "sex", "combobox");
+        BLL_Common.setGridListCodeText(array, "area", "area", "treepicker");
+        assertNoSql();
+        assertEquals("男", text(array, 0, "sex_text"));
+        assertEquals("男,女", text(array, 2, "sex_text"));
+        assertEquals("9", text(array, 3, "sex_text"));  //未找到时显示原值
+        assertEquals("未知", text(array, 4, "sex_text"));
+        //树形下拉按id，按serialcode排序
+        assertEquals("上海", text(array, 0, "area_text"));
+        assertEquals("上海,杭州", text(array, 1, "area_text"));
+        assertEquals("华东", text(array, 2, "area_text"));
+    }
+
+    @Test
+    public void excelWarmCacheRunsNoSql() throws Exception {
+        BLL_Common.setExcelCodeText(grid(), "sex", "sex", "combobox");
+        SqlStats.reset();
+
+        JsonArray array = grid();
+        BLL_Common.setExcelCodeText(array, "sex", "sex", "combobox");
+        assertNoSql();
+        assertEquals("男", text(array, 0, "sex"));
+        assertEquals("男,女", text(array, 2, "sex"));
+    }
+
+    /**
+     * 按表单设计的存值字段转文本：字段列表(DesignCache)和编码(CodeDictionary)都命中缓存
+     */
+    @Test
+    public void designFieldsWarmCacheRunsNoSql() throws Exception {
+        BLL_Common.setGridCodeText(grid(), "a1.sex,a1.area", OID);
+        BLL_Common.setExcelCodeText(grid(), "a1.sex,a1.area", OID);
+        SqlStats.reset();
+
+        JsonArray array = grid();
+        BLL_Common.setGridCodeText(array, "a1.sex,a1.area", OID);
+        assertNoSql();
+        assertEquals("女", text(array, 1, "sex_text"));
+        assertEquals("上海,杭州", text(array, 1, "area_text"));
+
+        JsonArray excel = grid();
+        BLL_Common.setExcelCodeText(excel, "a1.sex,a1.area", OID);
+        assertNoSql();
+        assertEquals("女", text(excel, 1, "sex"));
+        assertEquals("上海,杭州", text(excel, 1, "area"));
+    }
+
+    @Test
+    public void saveCodeInvalidates() throws Exception {
+        assertEquals("女", CodeDictionary.getText("sex", "2", false));
+        long version = CodeDictionary.getVersion();
+
+        Map<String, Object> ht = new HashMap<>();
+        ht.put("text", "女性");
+        assertEquals(2, BLL_Code.saveCode(ht, 2, "sex"));
+        assertTrue(CodeDictionary.getVersion() > version);
+        SqlStats.reset();
+        assertEquals("女性", CodeDictionary.getText("sex", "2", false));
+        assertEquals("男,女性", CodeDictionary.getText("sex", "2,1", false));
+        assertEquals(1, countCodeQueries());
+
+        //新增编码
+        ht = new HashMap<>();
+        ht.put("pid", 0);
+        ht.put("codetype_id", 1);
+        ht.put("text", "其它");
+        ht.put("value", "3");
+        ht.put("serialcode", 4);
+        int id = BLL_Code.saveCode(ht, 0, "sex");
+        assertTrue(id > 0);
+        assertEquals("其它", CodeDictionary.getText("sex", "3", false));
+        assertEquals("其它", CodeDictionary.getText("sex", String.valueOf(id), true));
+    }
+
+    @Test
+    public void saveCodeSortInvalidates() throws Exception {
+        assertEquals("男,女", CodeDictionary.getText("sex", "2,1", false));
+        List<Map> list = new ArrayList<>();
+        list.add(sort(2, 0, 1));
+        list.add(sort(1, 0, 2));
+        assertTrue(BLL_Code.saveCodeSort(list));
+        SqlStats.reset();
+        assertEquals("女,男", CodeDictionary.getText("sex", "2,1", false));
+        assertEquals(1, countCodeQueries());
+        //其它类型也重新加载
+        assertEquals("上海,杭州", CodeDictionary.getText("area", "13,12", true));
+        assertEquals(2, countCodeQueries());
+    }
+
+    /**
+     * 树形编码的路径名称：按data_key取时缓存预热后不执行SQL，按编码id取时只查编码类型；编码修改后路径更新
+     */
+    @Test
+    public void treeCodePathName() throws Exception {
+        DBFunction.executeNonQuery("insert into sys_code(id,pid,codetype_id,text,value,serialcode) values (14,12,2,'浦东','pd',4)");
+        assertEquals("华东/上海/浦东", BLL_Code.getTreeCodePathName(14));
+        SqlStats.reset();
+        assertEquals("华东/上海/浦东", BLL_Code.getTreeCodePathName("area", 14));
+        assertEquals("华东/杭州", CodeDictionary.getPathName("area", "13"));
+        assertEquals("华东", CodeDictionary.getPathName("area", "11"));
+        assertEquals("", CodeDictionary.getPathName("area", "99"));
+        assertEquals("", CodeDictionary.getPathName("sex", "12"));
+        assertNoSql();
+        assertEquals("", BLL_Code.getTreeCodePathName(99));
+        assertEquals(0, countCodeQueries());
+
+        Map<String, Object> ht = new HashMap<>();
+        ht.put("text", "上海市");
+        assertEquals(12, BLL_Code.saveCode(ht, 12, "area"));
+        assertEquals("华东/上海市/浦东", BLL_Code.getTreeCodePathName("area", 14));
+    }
+
+    private static Map<String, Object> sort(int id, int pid, int index) {
+        Map<String, Object> ht = new HashMap<>();
+        ht.put("id", id);
+        ht.put("pid", pid);
+        ht.put("index", index);
+        return ht;
+    }
+}
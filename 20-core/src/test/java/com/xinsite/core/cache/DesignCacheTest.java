@@ -0,0 +1,229 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * DesignCache：命中时不再查询，invalidate后重新查询；单个值为空、0或查询出错时不缓存；
+ * 按oid、tid清除时只清除相关的数据对象、数据表
+ */
+public class DesignCacheTest {
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Before
+    public void setup() {
+        DesignCache.invalidate();
+        queries.set(0);
+    }
+
+    @Test
+    public void cachedUntilInvalidate() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals("tb_user", DesignCache.get("table_name:user", () -> {
+                queries.incrementAndGet();
+                return "tb_user";
+            }));
+        }
+        assertEquals(1, queries.get());
+
+        DesignCache.invalidate();
+        assertEquals(0, DesignCache.size());
+        DesignCache.get("table_name:user", () -> {
+            queries.incrementAndGet();
+            return "tb_user";
+        });
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void nullRowCached() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertNull(DesignCache.get("object:404", () -> {
+                queries.incrementAndGet();
+                return null;
+            }));
+        }
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void emptyScalarNotCached() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("", DesignCache.getScalar("object_type:1", () -> {
+                queries.incrementAndGet();
+                return "";
+            }));
+            assertEquals(0, (int) DesignCache.getScalar("oid:user", () -> {
+                queries.incrementAndGet();
+                return 0;
+            }));
+        }
+        assertEquals(6, queries.get());
+        assertEquals(0, DesignCache.size());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(12, (int) DesignCache.getScalar("oid:user", () -> {
+                queries.incrementAndGet();
+                return 12;
+            }));
+        }
+        assertEquals(7, queries.get());
+    }
+
+    @Test
+    public void errorNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                DesignCache.get("tables:1", () -> {
+                    queries.incrementAndGet();
+                    throw new Exception("db error");
+                });
+                fail();
+            } catch (Exception ex) {
+                assertEquals("db error", ex.getMessage());
+            }
+        }
+        assertEquals(2, queries.get());
+        assertEquals(0, DesignCache.size());
+    }
+
+    /**
+     * 查询期间设计数据变更时，查询结果不缓存
+     */
+    @Test
+    public void invalidateDuringLoad() throws Exception {
+        DesignCache.get("fields:tb_user", () -> {
+            queries.incrementAndGet();
+            DesignCache.invalidate();
+            return "old";
+        });
+        assertEquals("new", DesignCache.get("fields:tb_user", () -> {
+            queries.incrementAndGet();
+            return "new";
+        }));
+        assertEquals(2, queries.get());
+    }
+
+    private DesignCache.ObjectMeta getObject(int oid, int... tids) throws Exception {
+        return DesignCache.getObject(oid, () -> {
+            queries.incrementAndGet();
+            JsonObject object = new JsonObject();
+            object.addProperty("oid", oid);
+            object.addProperty("object_type", "表单");
+            JsonArray tables = new JsonArray();
+            for (int tid : tids) {
+                JsonObject table = new JsonObject();
+                table.addProperty("id", tid);
+                table.addProperty("tb_relation", tables.size() == 0 ? "主表" : "子表");
+                tables.add(table);
+            }
+            return new DesignCache.ObjectMeta(oid, object, tables);
+        });
+    }
+
+    private DesignCache.TableMeta getTable(int tid, int oid) throws Exception {
+        return DesignCache.getTable(tid, () -> {
+            queries.incrementAndGet();
+            JsonObject table = new JsonObject();
+            table.addProperty("tid", tid);
+            table.addProperty("oid", oid);
+            JsonArray rows = new JsonArray();
+            JsonObject field = new JsonObject();
+            field.addProperty("fid", tid * 100);
+            field.addProperty("field_name", "name" + tid);
+            field.addProperty("field_tag", "title");
+            field.addProperty("isdefine", 1);
+            rows.add(field);
+            return new DesignCache.TableMeta(tid, table, rows);
+        });
+    }
+
+    /**
+     * 预热数据对象10(表1、3)、30(表6)
+     */
+    private void warm() throws Exception {
+        getObject(10, 1, 3);
+        getObject(30, 6);
+        getTable(1, 10);
+        getTable(3, 10);
+        getTable(6, 30);
+        queries.set(0);
+    }
+
+    @Test
+    public void compiledMeta() throws Exception {
+        DesignCache.ObjectMeta object = getObject(10, 1, 3);
+        assertEquals("表单", object.objectType);
+        assertEquals(1, object.mainTid);
+        assertEquals(2, object.getTables().size());
+        object.getTables().remove(0);
+        assertEquals(2, getObject(10, 1, 3).getTables().size());
+
+        DesignCache.TableMeta table = getTable(1, 10);
+        assertEquals(10, table.oid);
+        assertEquals("name1", table.getFieldName("title"));
+        assertEquals("", table.getFieldName("none"));
+        assertEquals(1, table.getFields().size());
+        assertEquals(1, table.getDefineFields().size());
+        assertEquals(0, table.getCodeValues().size());
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void invalidateFieldsKeepsObject() throws Exception {
+        warm();
+        DesignCache.invalidateFields(1);
+        getObject(10, 1, 3);
+        getTable(3, 10);
+        assertEquals(0, queries.get());
+        getTable(1, 10);
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void invalidateTableRemovesOwner() throws Exception {
+        warm();
+        DesignCache.invalidateTable(3, 0);
+        getTable(1, 10);
+        getObject(30, 6);
+        getTable(6, 30);
+        assertEquals(0, queries.get());
+        getObject(10, 1, 3);
+        getTable(3, 10);
+        assertEquals(2, queries.get());
+    }
+
+    /**
+     * 数据表改到其它数据对象：原所属、新所属都清除
+     */
+    @Test
+    public void invalidateTableMovedToObject() throws Exception {
+        warm();
+        DesignCache.invalidateTable(3, 30);
+        getTable(1, 10);
+        getTable(6, 30);
+        assertEquals(0, queries.get());
+        getObject(10, 1);
+        getObject(30, 6, 3);
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void invalidateObjectKeepsOthers() throws Exception {
+        warm();
+        DesignCache.invalidateObject(10);
+        getObject(30, 6);
+        getTable(6, 30);
+        assertEquals(0, queries.get());
+        getObject(10, 1, 3);
+        getTable(1, 10);
+        getTable(3, 10);
+        assertEquals(3, queries.get());
+    }
+}
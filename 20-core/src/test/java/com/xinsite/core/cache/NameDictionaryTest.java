@@ -0,0 +1,186 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.core.bll.system.BLL_Dept;
+import com.xinsite.core.bll.system.BLL_Organize;
+import com.xinsite.core.bll.system.BLL_User;
+import com.xinsite.dal.dbhelper.DBFunction;
+import com.xinsite.dal.dbhelper.SqlStats;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用户、部门、机构名称字典，内存数据库H2(config/application-druid.yml)：
+ * 多个id按表中排序拼接名称，缓存命中时不查询，invalidate后只重新加载对应类型一次(并发访问也只加载一次)
+ */
+public class NameDictionaryTest {
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_user");
+        DBFunction.executeNonQuery("drop table if exists sys_dept");
+        DBFunction.executeNonQuery("drop table if exists sys_organize");
+        DBFunction.executeNonQuery("create table sys_user(user_id int primary key,user_name varchar(50),head_photo varchar(200),org_id int,serialcode int)");
+        DBFunction.executeNonQuery("create table sys_dept(dept_id int primary key,dept_name varchar(50),org_id int,serialcode int)");
+        DBFunction.executeNonQuery("create table sys_organize(org_id int primary key,company_name varchar(50),serialcode int)");
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_user");
+        DBFunction.executeNonQuery("drop table if exists sys_dept");
+        DBFunction.executeNonQuery("drop table if exists sys_organize");
+    }
+
+    @Before
+    public void clear() throws Exception {
+        DBFunction.executeNonQuery("delete from sys_user");
+        DBFunction.executeNonQuery("delete from sys_dept");
+        DBFunction.executeNonQuery("delete from sys_organize");
+        for (int i = 1; i <= 20; i++) {
+            //serialcode与id顺序相反
+            DBFunction.executeNonQuery("insert into sys_user(user_id,user_name,head_photo,org_id,serialcode) values (" +
+                    i + ",'用户" + i + "','photo" + i + ".png',1," + (100 - i) + ")");
+        }
+        for (int i = 1; i <= 5; i++) {
+            DBFunction.executeNonQuery("insert into sys_dept(dept_id,dept_name,org_id,serialcode) values (" + i + ",'部门" + i + "',1," + i + ")");
+            DBFunction.executeNonQuery("insert into sys_organize(org_id,company_name,serialcode) values (" + i + ",'机构" + i + "'," + i + ")");
+        }
+        for (NameDictionary.Type type : NameDictionary.Type.values()) NameDictionary.invalidate(type);
+        SqlStats.reset();
+    }
+
+    /**
+     * 查询某表的语句执行次数
+     */
+    private static long countQueries(String table) {
+        long count = 0;
+        for (Map<String, Object> stat : SqlStats.getStatements(0)) {
+            if (String.valueOf(stat.get("sql")).contains("from " + table)) count += (Long) stat.get("count");
+        }
+        return count;
+    }
+
+    private static JsonArray grid(String field, String... values) {
+        JsonArray array = new JsonArray();
+        for (String value : values) {
+            JsonObject dr = new JsonObject();
+            dr.addProperty("id", array.size());
+            dr.addProperty(field, value);
+            array.add(dr);
+        }
+        return array;
+    }
+
+    private static String text(JsonArray array, int index, String field) {
+        return GsonUtils.tryParse(GsonUtils.getObject(array, index), field, "");
+    }
+
+    @Test
+    public void renderGridNames() throws Exception {
+        JsonArray users = grid("user_ids", "3", "1,3,3,99", "", "20,2");
+        BLL_User.setGridUserNames(users, "user_ids");
+        assertEquals("用户3", text(users, 0, "user_ids_text"));
+        //按serialcode排序，重复及不存在的id忽略
+        assertEquals("用户3,用户1", text(users, 1, "user_ids_text"));
+        assertEquals("", text(users, 2, "user_ids_text"));
+        assertEquals("用户20,用户2", text(users, 3, "user_ids_text"));
+
+        JsonArray depts = grid("dept_id", "2", "5,1");
+        BLL_Dept.setGridDeptText(depts, "dept_id");
+        assertEquals("部门2", text(depts, 0, "dept_id_text"));
+        assertEquals("部门1,部门5", text(depts, 1, "dept_id_text"));
+
+        JsonArray orgs = grid("org_id", "4");
+        BLL_Organize.setGridOrgText(orgs, "org_id");
+        assertEquals("机构4", text(orgs, 0, "org_id"));
+
+        JsonArray tasks = new JsonArray();
+        JsonObject dr = new JsonObject();
+        dr.addProperty("task_userid", 5);
+        dr.addProperty("trial_userid", 6);
+        tasks.add(dr);
+        BLL_User.setGridNamePhoto(tasks, "task_userid", "trial_userid");
+        assertEquals("用户6", text(tasks, 0, "operator_user"));
+        assertEquals("photo6.png", text(tasks, 0, "head_photo"));
+
+        //每个表只加载一次
+        assertEquals(1, countQueries("sys_user"));
+        assertEquals(1, countQueries("sys_dept"));
+        assertEquals(1, countQueries("sys_organize"));
+    }
+
+    @Test
+    public void warmCacheRunsNoSql() throws Exception {
+        NameDictionary.preload(NameDictionary.Type.user);
+        SqlStats.reset();
+        String[] values = new String[1000];
+        for (int i = 0; i < values.length; i++) values[i] = (i % 20 + 1) + "," + ((i * 7) % 20 + 1);
+        JsonArray users = grid("user_ids", values);
+        BLL_User.setGridUserNames(users, "user_ids");
+        assertTrue(SqlStats.getStatements(0).isEmpty());
+        assertEquals("用户1", text(users, 0, "user_ids_text"));
+    }
+
+    /**
+     * 修改后没有invalidate仍是原名称，invalidate后重新加载，其它类型不重新加载
+     */
+    @Test
+    public void invalidateReloads() throws Exception {
+        assertEquals("用户7", NameDictionary.getNames(NameDictionary.Type.user, "7"));
+        assertEquals("部门1", NameDictionary.getNames(NameDictionary.Type.dept, "1"));
+        DBFunction.executeNonQuery("update sys_user set user_name='改名7' where user_id=7");
+        DBFunction.executeNonQuery("insert into sys_user(user_id,user_name,org_id,serialcode) values (21,'用户21',1,1)");
+        DBFunction.executeNonQuery("update sys_dept set dept_name='改名1' where dept_id=1");
+        assertEquals("用户7", NameDictionary.getNames(NameDictionary.Type.user, "7"));
+
+        long version = NameDictionary.getVersion(NameDictionary.Type.user);
+        NameDictionary.invalidate(NameDictionary.Type.user);
+        assertEquals(version + 1, NameDictionary.getVersion(NameDictionary.Type.user));
+        assertEquals("改名7", NameDictionary.getNames(NameDictionary.Type.user, "7"));
+        assertEquals("用户21,改名7", NameDictionary.getNames(NameDictionary.Type.user, "7,21"));
+        assertEquals("部门1", NameDictionary.getNames(NameDictionary.Type.dept, "1"));
+        assertEquals(2, countQueries("sys_user"));
+        assertEquals(1, countQueries("sys_dept"));
+
+        //删除后不再显示
+        DBFunction.executeNonQuery("delete from sys_user where user_id=21");
+        NameDictionary.invalidate(NameDictionary.Type.user);
+        assertNull(NameDictionary.get(NameDictionary.Type.user, 21));
+        assertEquals("改名7", NameDictionary.getNames(NameDictionary.Type.user, "7,21"));
+    }
+
+    /**
+     * invalidate后多个线程同时访问只重新加载一次，都看到新名称
+     */
+    @Test
+    public void concurrentReloadOnce() throws Exception {
+        NameDictionary.preload(NameDictionary.Type.user);
+        DBFunction.executeNonQuery("update sys_user set user_name='并发' where user_id=9");
+        NameDictionary.invalidate(NameDictionary.Type.user);
+        SqlStats.reset();
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                barrier.await();
+                return NameDictionary.getNames(NameDictionary.Type.user, "9");
+            }));
+        }
+        for (Future<String> future : futures) assertEquals("并发", future.get(30, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertEquals(1, countQueries("sys_user"));
+    }
+}
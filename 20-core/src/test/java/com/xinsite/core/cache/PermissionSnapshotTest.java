@@ -0,0 +1,238 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.enums.system.PerEnum;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.bll.permission.BLL_UserPower;
+import com.xinsite.core.model.user.LoginUser;
+import com.xinsite.core.shiro.service.UserCacheService;
+import com.xinsite.dal.dbhelper.DBFunction;
+import com.xinsite.dal.uitls.Utils_Context;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用户权限快照与直接查询的等价性，内存数据库H2(config/application-druid.yml)：
+ * 随机生成栏目(含已删除、未使用的栏目)及功能(含已删除的功能)、角色、用户、剔除权限，
+ * 比较快照的栏目功能、控制器权限值与queryLoginItemPower、getUserFunPermissions、getUserRolePermissions；
+ * 权限变更后未invalidate时仍为原快照，invalidate后与新数据一致
+ */
+public class PermissionSnapshotTest {
+    private static final int ITEMS = 40;
+    private static final int ROLES = 5;
+    private static final int USERS = 30;
+    private static ApplicationContext previous;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop view if exists view_menu_fun");
+        DBFunction.executeNonQuery("drop view if exists view_power_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_menu_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_power_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_power_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_role");
+        DBFunction.executeNonQuery("create table sys_menu(item_id int primary key,pid int,item_name varchar(100),per_value varchar(50)," +
+                "isdel int default 0,isused int default 1)");
+        DBFunction.executeNonQuery("create table sys_menu_fun(fun_id int primary key,item_id int,name varchar(100),itemid varchar(30)," +
+                "per_value varchar(50),isdel int default 0)");
+        DBFunction.executeNonQuery("create table sys_power_menu(pm_id int auto_increment primary key,tb_type int not null,tb_id int not null," +
+                "item_id int not null,del_item int,data_per int,data_ids varchar(1000),create_time datetime,isdel int default 0)");
+        DBFunction.executeNonQuery("create table sys_power_fun(pm_id int not null,fun_id int not null,primary key(pm_id,fun_id))");
+        DBFunction.executeNonQuery("create table sys_role(role_id int primary key,role_name varchar(100),role_per_value varchar(50))");
+        DBFunction.executeNonQuery("create view view_menu_fun as select a1.item_id,b1.fun_id,b1.itemid,b1.name fun_name," +
+                "a1.per_value grid_per_value,b1.per_value from sys_menu a1 left join sys_menu_fun b1 on a1.item_id=b1.item_id and b1.isdel=0" +
+                " where a1.isdel=0 and a1.isused=1");
+        DBFunction.executeNonQuery("create view view_power_fun as select a1.tb_type,a1.tb_id,a1.item_id,a1.del_item,a1.data_per,a1.data_ids," +
+                "b1.fun_id from sys_power_menu a1 left join sys_power_fun b1 on a1.pm_id=b1.pm_id where a1.isdel=0");
+
+        //剔除的栏目每次查询，不经shiro缓存
+        previous = Utils_Context.getContext();
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("userCacheService", new UserCacheService() {
+            @Override
+            public String getCacheRemoveItemIds(int user_id) {
+                return StringUtils.joinAsFilter(BLL_UserPower.getUserRemoveItemIds(user_id));
+            }
+        });
+        context.refresh();
+        new Utils_Context().setApplicationContext(context);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        new Utils_Context().setApplicationContext(previous);
+        PermissionSnapshot.invalidate();
+        DBFunction.executeNonQuery("drop view if exists view_menu_fun");
+        DBFunction.executeNonQuery("drop view if exists view_power_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_menu_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_role");
+    }
+
+    /**
+     * 随机权限数据：每个用户、角色的同一栏目最多一行有效权限(同saveRealPermission)
+     */
+    private static void randomData(Random random) throws Exception {
+        DBFunction.executeNonQuery("delete from sys_menu");
+        DBFunction.executeNonQuery("delete from sys_menu_fun");
+        DBFunction.executeNonQuery("delete from sys_power_menu");
+        DBFunction.executeNonQuery("delete from sys_power_fun");
+        DBFunction.executeNonQuery("delete from sys_role");
+        int fun_id = 0;
+        for (int item_id = 1; item_id <= ITEMS; item_id++) {
+            String per_value = random.nextInt(3) == 0 ? "null" : "'item" + item_id + ":grid'";
+            int isdel = random.nextInt(8) == 0 ? 1 : 0;
+            int isused = random.nextInt(8) == 0 ? 0 : 1;
+            DBFunction.executeNonQuery(String.format("insert into sys_menu values (%d,0,'栏目%d',%s,%d,%d)", item_id, item_id, per_value, isdel, isused));
+            for (int n = random.nextInt(4); n > 0; n--) {
+                fun_id++;
+                DBFunction.executeNonQuery(String.format("insert into sys_menu_fun values (%d,%d,'功能%d','btn_%d','item%d:fun%d',%d)",
+                        fun_id, item_id, fun_id, fun_id % 6, item_id, fun_id, random.nextInt(6) == 0 ? 1 : 0));
+            }
+        }
+        for (int role_id = 1; role_id <= ROLES; role_id++) {
+            String per_value = random.nextInt(4) == 0 ? "null" : "'role" + role_id + "'";
+            DBFunction.executeNonQuery(String.format("insert into sys_role values (%d,'角色%d',%s)", role_id, role_id, per_value));
+            addPowers(random, PerEnum.角色权限.getIndex(), role_id, fun_id, false);
+        }
+        for (int user_id = 1; user_id <= USERS; user_id++) {
+            addPowers(random, PerEnum.用户权限.getIndex(), user_id, fun_id, false);
+            addPowers(random, PerEnum.剔除权限.getIndex(), user_id, fun_id, true);
+        }
+    }
+
+    private static void addPowers(Random random, int tb_type, int tb_id, int funs, boolean remove) throws Exception {
+        for (int item_id = 1; item_id <= ITEMS; item_id++) {
+            int kind = random.nextInt(remove ? 8 : 3);
+            if (kind > 1) continue;
+            //已删除的行(kind=1)不生效
+            int isdel = kind == 1 ? 1 : 0;
+            int del_item = remove && random.nextBoolean() ? 1 : 0;
+            String data_per = remove || random.nextInt(3) == 0 ? "null" : String.valueOf(random.nextInt(5));
+            String data_ids = random.nextBoolean() ? "null" : "'" + random.nextInt(20) + "," + random.nextInt(20) + "'";
+            DBFunction.executeNonQuery(String.format("insert into sys_power_menu(tb_type,tb_id,item_id,del_item,data_per,data_ids,isdel)" +
+                    " values (%d,%d,%d,%d,%s,%s,%d)", tb_type, tb_id, item_id, del_item, data_per, data_ids, isdel));
+            if (del_item == 1 || funs == 0) continue;
+            int pm_id = (int) DBFunction.getTableCount("select max(pm_id) from sys_power_menu");
+            Set<Integer> fun_ids = new TreeSet<>();
+            for (int n = random.nextInt(4); n > 0; n--) fun_ids.add(1 + random.nextInt(funs));
+            for (int fun_id : fun_ids) {
+                DBFunction.executeNonQuery(String.format("insert into sys_power_fun(pm_id,fun_id) values (%d,%d)", pm_id, fun_id));
+            }
+        }
+    }
+
+    private static List<LoginUser> randomUsers(Random random) {
+        List<LoginUser> users = new ArrayList<>();
+        for (int user_id = 1; user_id <= USERS; user_id++) {
+            LoginUser loginUser = new LoginUser();
+            loginUser.setUserId(user_id);
+            loginUser.setRoleId(random.nextInt(ROLES + 1));
+            loginUser.setSuperAdminer(user_id == 1);
+            users.add(loginUser);
+        }
+        return users;
+    }
+
+    /**
+     * 栏目功能信息按栏目id：功能itemid逗号分隔的顺序不同视为相同
+     */
+    private static Map<Integer, List<String>> normalize(JsonArray array) {
+        Map<Integer, List<String>> map = new TreeMap<>();
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(array, i);
+            map.put(GsonUtils.tryParse(dr, "item_id", 0), Arrays.asList(
+                    sorted(GsonUtils.tryParse(dr, "all_item_ids", "")),
+                    sorted(GsonUtils.tryParse(dr, "item_ids", "")),
+                    GsonUtils.tryParse(dr, "data_per", ""),
+                    GsonUtils.tryParse(dr, "data_ids", "")));
+        }
+        return map;
+    }
+
+    private static String sorted(String ids) {
+        if (StringUtils.isEmpty(ids)) return "";
+        return String.join(",", new TreeSet<>(Arrays.asList(ids.split(","))));
+    }
+
+    /**
+     * 返回有功能权限的用户数，避免查询出错时两边都为空
+     */
+    private static int assertSameAsQuery(List<LoginUser> users) throws Exception {
+        int granted = 0;
+        for (LoginUser loginUser : users) {
+            String message = "user_id=" + loginUser.getUserId() + ",role_id=" + loginUser.getRoleId();
+            PermissionSnapshot.Snapshot snapshot = PermissionSnapshot.get(loginUser);
+            Map<Integer, List<String>> expected = normalize(BLL_UserPower.queryLoginItemPower("", loginUser));
+            assertEquals(message, expected, normalize(snapshot.getItemPowers("")));
+
+            //指定栏目
+            String item_ids = "3,1,7,99";
+            assertEquals(message, normalize(BLL_UserPower.queryLoginItemPower(item_ids, loginUser)), normalize(snapshot.getItemPowers(item_ids)));
+            for (int item_id = 0; item_id <= ITEMS + 1; item_id++) {
+                assertEquals(message + ",item_id=" + item_id, expected.containsKey(item_id), snapshot.hasItem(item_id));
+            }
+            if (!loginUser.isSuperAdminer()) {
+                assertEquals(message, BLL_UserPower.getUserRolePermissions(loginUser.getRoleId()), snapshot.getRolePermissions());
+                assertEquals(message, BLL_UserPower.getUserFunPermissions(loginUser), snapshot.getFunPermissions());
+                if (!snapshot.getItemPowers("").isEmpty() && snapshot.getFunPermissions().size() > 1) granted++;
+            }
+        }
+        return granted;
+    }
+
+    @Test
+    public void sameAsQuery() throws Exception {
+        Random random = new Random(10);
+        for (int round = 0; round < 3; round++) {
+            randomData(random);
+            PermissionSnapshot.invalidate();
+            List<LoginUser> users = randomUsers(random);
+            assertTrue(assertSameAsQuery(users) > USERS / 2);
+            //命中缓存
+            assertSameAsQuery(users);
+        }
+    }
+
+    @Test
+    public void invalidateAfterChange() throws Exception {
+        Random random = new Random(20);
+        randomData(random);
+        PermissionSnapshot.invalidate();
+        List<LoginUser> users = randomUsers(random);
+        Map<Integer, Map<Integer, List<String>>> before = new HashMap<>();
+        for (LoginUser loginUser : users) {
+            before.put(loginUser.getUserId(), normalize(PermissionSnapshot.get(loginUser).getItemPowers("")));
+        }
+
+        //删除栏目、功能，撤销、新增权限
+        DBFunction.executeNonQuery("update sys_menu set isdel=1 where mod(item_id,5)=0");
+        DBFunction.executeNonQuery("update sys_menu_fun set isdel=1 where mod(fun_id,4)=0");
+        DBFunction.executeNonQuery("update sys_power_menu set isdel=1 where mod(pm_id,3)=0");
+        DBFunction.executeNonQuery("update sys_role set role_per_value='changed' where role_id=2");
+        DBFunction.executeNonQuery("delete from sys_power_menu where tb_type=" + PerEnum.用户权限.getIndex() + " and tb_id=2");
+        addPowers(random, PerEnum.用户权限.getIndex(), 2, 10, false);
+
+        //未invalidate时仍为原快照
+        for (LoginUser loginUser : users) {
+            assertEquals(before.get(loginUser.getUserId()), normalize(PermissionSnapshot.get(loginUser).getItemPowers("")));
+        }
+        PermissionSnapshot.invalidate();
+        assertSameAsQuery(users);
+
+        //角色变化时重新编译
+        LoginUser loginUser = users.get(5);
+        loginUser.setRoleId(loginUser.getRoleId() % ROLES + 1);
+        assertSameAsQuery(Collections.singletonList(loginUser));
+    }
+}
@@ -0,0 +1,208 @@
+package com.xinsite.core.cache;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.core.bll.design.BLL_Store;
+import com.xinsite.dal.dbhelper.BuildHelper;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 历史记录分表登记，内存数据库H2(config/application-druid.yml)，分表容量CAPACITY条：
+ * 多线程同时保存不同信息时启用新分表，登记表、内存计数与各分表实际记录数一致；
+ * 保存的事务中启用新分表后回滚，新分表的登记已提交(与内存一致)，调用方的修改全部回滚
+ */
+public class StoreShardCacheTest {
+    private static final int ITEM_ID = 8;
+    private static final int CAPACITY = 5;
+    private static final int MAX_SHARDS = 60;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        dropTables();
+        DBFunction.executeNonQuery("create table tb_info_share(share_uuid varchar(50),item_id int not null,idleaf bigint not null,title varchar(200)," +
+                "modify_time datetime,modify_records int,sub_table_num int)");
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        dropTables();
+        StoreShardCache.unload();
+        StoreShardCache.fixedCapacity = 0;
+    }
+
+    @Before
+    public void clear() throws Exception {
+        dropShards();
+        DBFunction.executeNonQuery("delete from tb_info_share");
+        StoreShardCache.unload();
+        StoreShardCache.fixedCapacity = CAPACITY;
+    }
+
+    private static void dropTables() throws Exception {
+        dropShards();
+        DBFunction.executeNonQuery("drop table if exists tb_info_share");
+    }
+
+    private static void dropShards() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists tb_info_store_shard");
+        for (int i = 1; i <= MAX_SHARDS; i++) DBFunction.executeNonQuery("drop table if exists tb_info_store" + i);
+    }
+
+    private static void addInfo(long idleaf) throws Exception {
+        DBFunction.executeNonQuery("insert into tb_info_share(share_uuid,item_id,idleaf,sub_table_num) values ('shard-" +
+                idleaf + "'," + ITEM_ID + "," + idleaf + ",0)");
+    }
+
+    /**
+     * 新增一个版本(新增不合并)，同BLL_Share.addInfoShare在保存信息的事务中
+     */
+    private static void save(long idleaf, int user_id) throws Exception {
+        DBFunction.startTransaction();
+        try {
+            assertTrue(BLL_Store.addHistoryRecord("{\"idleaf\":" + idleaf + ",\"user_id\":" + user_id + "}", ITEM_ID, idleaf, user_id, "新增"));
+            DBFunction.commit();
+        } catch (Exception ex) {
+            DBFunction.rollback();
+            throw ex;
+        }
+    }
+
+    private static JsonObject getInfo(long idleaf) throws Exception {
+        return GsonUtils.getObject(DBFunction.executeJsonArray("select * from tb_info_share where idleaf=" + idleaf), 0);
+    }
+
+    private static long countRows(int shard_num) {
+        return DBFunction.getTableCount("select count(1) from tb_info_store" + shard_num);
+    }
+
+    /**
+     * 登记表中的分表号(从小到大)
+     */
+    private static List<Integer> getRegistered() throws Exception {
+        JsonArray array = DBFunction.executeJsonArray("select shard_num from tb_info_store_shard order by shard_num");
+        List<Integer> nums = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) nums.add(GsonUtils.tryParse(GsonUtils.getObject(array, i), "shard_num", 0));
+        return nums;
+    }
+
+    private static int getRegisteredStatus(int shard_num) {
+        return (int) DBFunction.getTableCount("select status from tb_info_store_shard where shard_num=" + shard_num);
+    }
+
+    /**
+     * 多个线程同时保存不同的信息(每条信息第一次保存时取当前分表)：
+     * 分表号连续且都已建表，登记、内存计数与实际记录数一致，除最后一个分表外都已写满
+     */
+    @Test
+    public void concurrentSavesRollover() throws Exception {
+        int threads = 8, infos = 64, saves = 2;
+        for (int idleaf = 1; idleaf <= infos; idleaf++) addInfo(idleaf);
+        //先启用第一个分表：还没有分表时各事务都等待建表，连接池(maxActive=8)不够8个事务再加一个建表连接
+        assertEquals(1, StoreShardCache.getActiveShardNum());
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int idleaf = thread + 1; idleaf <= infos; idleaf += threads) {
+                    for (int v = 0; v < saves; v++) save(idleaf, 1 + v);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        List<Integer> nums = StoreShardCache.getShardNums();
+        assertTrue("没有启用新分表：" + nums, nums.size() > 1);
+        assertEquals(nums, getRegistered());
+        long total = 0;
+        for (int i = 0; i < nums.size(); i++) {
+            int shard_num = nums.get(i);
+            assertEquals(i + 1, shard_num);
+            assertTrue(BuildHelper.isExistTable("tb_info_store" + shard_num));
+            long rows = countRows(shard_num);
+            assertEquals("分表" + shard_num + "内存计数", rows, StoreShardCache.getShard(shard_num).getRows());
+            if (i < nums.size() - 1) assertTrue("分表" + shard_num + "未写满就启用了下一个分表", rows >= CAPACITY);
+            total += rows;
+        }
+        assertEquals(infos * saves, total);
+
+        //每条信息的历史记录都在登记的分表中
+        for (int idleaf = 1; idleaf <= infos; idleaf++) {
+            JsonObject info = getInfo(idleaf);
+            int sub_table_num = GsonUtils.tryParse(info, "sub_table_num", 0);
+            assertTrue(nums.contains(sub_table_num));
+            assertEquals(saves, DBFunction.getTableCount("select count(1) from tb_info_store" + sub_table_num +
+                    " where share_uuid='shard-" + idleaf + "'"));
+            assertEquals(saves, (int) GsonUtils.tryParse(info, "modify_records", 0));
+        }
+
+        //校正后登记表的记录数、状态与实际一致
+        StoreShardCache.reconcile();
+        for (int shard_num : nums) {
+            long rows = countRows(shard_num);
+            assertEquals(rows, DBFunction.getTableCount("select row_count from tb_info_store_shard where shard_num=" + shard_num));
+            int status = rows >= CAPACITY ? StoreShardCache.STATUS_FULL : StoreShardCache.STATUS_ACTIVE;
+            assertEquals(status, getRegisteredStatus(shard_num));
+            assertEquals(status, StoreShardCache.getShard(shard_num).getStatus());
+        }
+    }
+
+    /**
+     * 保存信息的事务中当前分表已满、启用新分表后回滚：新分表的建表与登记已提交，与内存一致；
+     * 调用方在同一事务中的修改(分表号、历史记录、修改次数)全部回滚，建表没有隐式提交调用方的事务
+     */
+    @Test
+    public void rollbackAfterRollover() throws Exception {
+        StoreShardCache.fixedCapacity = 1;
+        addInfo(1);
+        save(1, 1);
+        assertEquals(Arrays.asList(1), StoreShardCache.getShardNums());
+        assertEquals(1, StoreShardCache.getShard(1).getRows());
+
+        addInfo(2);
+        DBFunction.startTransaction();
+        try {
+            assertTrue(BLL_Store.addHistoryRecord("{\"idleaf\":2}", ITEM_ID, 2, 2, "新增"));
+        } finally {
+            DBFunction.rollback();
+        }
+
+        JsonObject info = getInfo(2);
+        assertEquals(0, (int) GsonUtils.tryParse(info, "sub_table_num", 0));
+        assertEquals(0, (int) GsonUtils.tryParse(info, "modify_records", 0));
+        assertTrue(BuildHelper.isExistTable("tb_info_store2"));
+        assertEquals(0, countRows(2));
+
+        assertEquals(Arrays.asList(1, 2), getRegistered());
+        assertEquals(Arrays.asList(1, 2), StoreShardCache.getShardNums());
+        assertEquals(StoreShardCache.STATUS_FULL, getRegisteredStatus(1));
+        assertEquals(StoreShardCache.STATUS_FULL, StoreShardCache.getShard(1).getStatus());
+        assertEquals(StoreShardCache.STATUS_ACTIVE, getRegisteredStatus(2));
+        assertEquals(0, StoreShardCache.getShard(2).getRows()); //回滚的记录不计数
+
+        //再次保存使用已启用的分表
+        save(2, 2);
+        assertEquals(2, (int) GsonUtils.tryParse(getInfo(2), "sub_table_num", 0));
+        assertEquals(1, countRows(2));
+        assertEquals(1, StoreShardCache.getShard(2).getRows());
+        assertEquals(Arrays.asList(1, 2), getRegistered());
+    }
+}
@@ -0,0 +1,237 @@
+package com.xinsite.core.cache;
+
+import com.xinsite.common.uitls.Global;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * 系统参数配置缓存，内存数据库H2(config/application-druid.yml)：
+ * 并发修改及读取、版本号表出错后暂停再恢复、出错时的默认值不缓存、两个应用实例通过版本号同步
+ */
+public class SysConfigCacheTest {
+    private static final AtomicLong now = new AtomicLong(System.currentTimeMillis());
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_config");
+        DBFunction.executeNonQuery("drop table if exists sys_config_version");
+        DBFunction.executeNonQuery("create table sys_config(id int auto_increment primary key,org_id int,item_id int," +
+                "config_key varchar(50),config_value varchar(1000))");
+        createVersionTable();
+        SysConfigCache.clock = now::get;
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        SysConfigCache.clock = System::currentTimeMillis;
+    }
+
+    /**
+     * 每个用例开始时跳过poll间隔及出错后的暂停时间
+     */
+    @Before
+    public void advance() {
+        now.addAndGet(10 * 60 * 1000L);
+    }
+
+    private static void createVersionTable() throws Exception {
+        DBFunction.executeNonQuery("create table if not exists sys_config_version(org_id int primary key,version bigint not null default 0," +
+                "modify_time datetime not null default current_timestamp)");
+    }
+
+    private static void setPageSize(int org_id, int page_size) throws Exception {
+        DBFunction.executeNonQuery("delete from sys_config where org_id=" + org_id + " and config_key='page_size'");
+        DBFunction.executeNonQuery("insert into sys_config(org_id,item_id,config_key,config_value) values (" + org_id + "," +
+                Global.getInt("config.itemid") + ",'page_size','" + page_size + "')");
+    }
+
+    private static long getVersion(int org_id) {
+        return DBFunction.getTableCount("select version from sys_config_version where org_id=" + org_id);
+    }
+
+    /**
+     * 多线程同时修改、读取：读到的版本号不回退，结束后缓存与数据库一致
+     */
+    @Test
+    public void concurrentChanges() throws Exception {
+        int org_id = 11;
+        setPageSize(org_id, 1);
+        SysConfigCache.changed(org_id);
+        int writers = 4, readers = 4, rounds = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong done = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < rounds; i++) {
+                    synchronized (SysConfigCacheTest.class) {   //同一机构的修改由保存配置的事务串行
+                        setPageSize(org_id, writer * 1000 + i);
+                    }
+                    SysConfigCache.changed(org_id);
+                }
+                done.incrementAndGet();
+                return null;
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                long last = 0;
+                while (done.get() < writers) {
+                    long version = SysConfigCache.getSysConfigBean(org_id).getVersion();
+                    assertTrue(version + " < " + last, version >= last);
+                    last = version;
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(1 + writers * rounds, getVersion(org_id));
+        assertEquals(getVersion(org_id), SysConfigCache.getSysConfigBean(org_id).getVersion());
+        long page_size = DBFunction.getTableCount("select config_value from sys_config where org_id=" + org_id + " and config_key='page_size'");
+        assertEquals(page_size, (long) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+    }
+
+    /**
+     * sys_config_version出错时本实例照常使用，暂停同步，之后恢复(不永久关闭)
+     */
+    @Test
+    public void versionTableBackOff() throws Exception {
+        int org_id = 12;
+        setPageSize(org_id, 20);
+        assertEquals(20, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+
+        DBFunction.executeNonQuery("drop table sys_config_version");
+        setPageSize(org_id, 25);
+        SysConfigCache.changed(org_id);
+        assertEquals(25, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+
+        createVersionTable();
+        DBFunction.executeNonQuery("insert into sys_config_version(org_id,version) values (" + org_id + ",100)");
+        setPageSize(org_id, 30);
+        now.addAndGet(10 * 1000L);   //超过poll间隔，未到重试时间
+        assertEquals(0, SysConfigCache.poll());
+        assertEquals(25, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+
+        now.addAndGet(60 * 1000L);
+        assertTrue(SysConfigCache.poll() >= 1);
+        assertEquals(100, SysConfigCache.getSysConfigBean(org_id).getVersion());
+        assertEquals(30, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+    }
+
+    /**
+     * 查询配置出错时返回默认值，但不缓存，恢复后下次访问从数据库加载
+     */
+    @Test
+    public void fallbackNotCached() throws Exception {
+        int org_id = 13;
+        DBFunction.executeNonQuery("alter table sys_config rename to sys_config_bak");
+        try {
+            assertEquals(40, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+        } finally {
+            DBFunction.executeNonQuery("alter table sys_config_bak rename to sys_config");
+        }
+        setPageSize(org_id, 15);
+        assertEquals(15, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+    }
+
+    /**
+     * 两个应用实例(各自的类加载器，各有一份静态缓存，共用同一个H2库)：一个修改，另一个poll后看到
+     */
+    @Test
+    public void crossNodeRefresh() throws Exception {
+        int org_id = 14;
+        setPageSize(org_id, 20);
+        Node other = new Node(now);
+        assertEquals(20, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+        assertEquals(20, other.getPageSize(org_id));
+
+        setPageSize(org_id, 50);
+        SysConfigCache.changed(org_id);
+        assertEquals(50, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+        assertEquals(20, other.getPageSize(org_id));   //poll之前仍为旧值
+        now.addAndGet(10 * 1000L);
+        assertEquals(1, other.poll());
+        assertEquals(50, other.getPageSize(org_id));
+
+        setPageSize(org_id, 60);
+        other.changed(org_id);
+        assertEquals(60, other.getPageSize(org_id));
+        now.addAndGet(10 * 1000L);
+        assertEquals(1, SysConfigCache.poll());
+        assertEquals(60, (int) SysConfigCache.getSysConfigBean(org_id).getPageSize());
+    }
+
+    /**
+     * 另一个应用实例：com.xinsite的类由独立的类加载器加载，其它类(H2驱动等)与本实例共用
+     */
+    private static class Node {
+        final Class<?> cache;
+
+        Node(AtomicLong now) throws Exception {
+            URL[] urls = {location(SysConfigCache.class), location(Global.class), location(DBFunction.class)};
+            ClassLoader loader = new URLClassLoader(urls, SysConfigCacheTest.class.getClassLoader()) {
+                @Override
+                protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                    if (!name.startsWith("com.xinsite.")) return super.loadClass(name, resolve);
+                    synchronized (getClassLoadingLock(name)) {
+                        Class<?> c = findLoadedClass(name);
+                        if (c == null) {
+                            try {
+                                c = findClass(name);
+                            } catch (ClassNotFoundException ex) {
+                                return super.loadClass(name, resolve);
+                            }
+                        }
+                        if (resolve) resolveClass(c);
+                        return c;
+                    }
+                }
+            };
+            cache = Class.forName(SysConfigCache.class.getName(), true, loader);
+            assertNotSame(SysConfigCache.class, cache);
+            Field clock = cache.getDeclaredField("clock");
+            clock.setAccessible(true);
+            clock.set(null, (LongSupplier) now::get);
+        }
+
+        private static URL location(Class<?> type) {
+            return type.getProtectionDomain().getCodeSource().getLocation();
+        }
+
+        int getPageSize(int org_id) throws Exception {
+            Object model = cache.getMethod("getSysConfigBean", int.class).invoke(null, org_id);
+            Method method = model.getClass().getMethod("getPageSize");
+            return (Integer) method.invoke(model);
+        }
+
+        int poll() throws Exception {
+            return (Integer) cache.getMethod("poll").invoke(null);
+        }
+
+        void changed(int org_id) throws Exception {
+            cache.getMethod("changed", int.class).invoke(null, org_id);
+        }
+    }
+}
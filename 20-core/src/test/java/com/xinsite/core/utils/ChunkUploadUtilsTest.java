@@ -0,0 +1,260 @@
+package com.xinsite.core.utils;
+
+import com.xinsite.common.uitls.io.FileUtils;
+import com.xinsite.core.bll.BLL_Object_File;
+import com.xinsite.core.model.ChunkUploadModel;
+import com.xinsite.core.model.UploadModel;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分片上传，内存数据库H2(config/application-druid.yml)：分片乱序、重复、损坏后完成上传，内容与原文件一致；
+ * 清空内存中的上传(服务重启)后从分片目录的.json、.map续传；内容相同的文件引用已保存的文件并删除分片文件
+ */
+public class ChunkUploadUtilsTest {
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int FILE_SIZE = CHUNK_SIZE * 4 + 1000;  //5个分片，最后一片1000字节
+    private static final String ALLOW = "bin,txt";
+
+    private final List<String> saved = new ArrayList<>();
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        dropTables();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        dropTables();
+    }
+
+    /**
+     * 删除登记表，由BLL_Object_File重新建表
+     */
+    private static void dropTables() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists tb_object_file");
+        DBFunction.executeNonQuery("drop table if exists tb_object_file_user");
+        Field checked = BLL_Object_File.class.getDeclaredField("checked");
+        checked.setAccessible(true);
+        checked.setBoolean(null, false);
+    }
+
+    @After
+    public void clear() {
+        for (String visual_path : saved) new File(FileUtils.getUploadFildPath() + visual_path).delete();
+    }
+
+    private static byte[] content(long seed) {
+        byte[] data = new byte[FILE_SIZE];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static String md5(byte[] data, int offset, int length) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        digest.update(data, offset, length);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) sb.append(String.format("%02x", b & 0xFF));
+        return sb.toString();
+    }
+
+    private static void upload(ChunkUploadModel upload, byte[] data, int index) throws Exception {
+        int offset = index * CHUNK_SIZE;
+        int length = (int) upload.getChunkLength(index);
+        ChunkUploadUtils.uploadChunk(upload, index, new ByteArrayInputStream(data, offset, length), md5(data, offset, length));
+    }
+
+    /**
+     * 分片内容改一个字节，按原内容的MD5校验
+     */
+    private static void uploadCorrupted(ChunkUploadModel upload, byte[] data, int index, boolean check) throws Exception {
+        int offset = index * CHUNK_SIZE;
+        int length = (int) upload.getChunkLength(index);
+        byte[] bytes = Arrays.copyOfRange(data, offset, offset + length);
+        bytes[length / 2] ^= 0x5A;
+        ChunkUploadUtils.uploadChunk(upload, index, new ByteArrayInputStream(bytes), check ? md5(data, offset, length) : "");
+    }
+
+    private static void assertFails(String message, Callable callable) {
+        try {
+            callable.call();
+            fail("应失败：" + message);
+        } catch (Exception ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains(message));
+        }
+    }
+
+    private interface Callable {
+        void call() throws Exception;
+    }
+
+    private static File getChunkFile(String upload_id, String suffix) {
+        return new File(FileUtils.getUploadFildPath("chunks") + upload_id + suffix);
+    }
+
+    private static void assertRemoved(String upload_id) throws Exception {
+        assertFalse(getChunkFile(upload_id, ".part").exists());
+        assertFalse(getChunkFile(upload_id, ".map").exists());
+        assertFalse(getChunkFile(upload_id, ".json").exists());
+        assertNull(ChunkUploadUtils.getUpload(upload_id));
+    }
+
+    private byte[] readSaved(UploadModel model) throws Exception {
+        saved.add(model.visualPath);
+        return Files.readAllBytes(new File(FileUtils.getUploadFildPath() + model.visualPath).toPath());
+    }
+
+    /**
+     * 服务重启：内存中的上传清空
+     */
+    @SuppressWarnings("unchecked")
+    private static void restart() throws Exception {
+        Field field = ChunkUploadUtils.class.getDeclaredField("uploads");
+        field.setAccessible(true);
+        ((Map<String, ChunkUploadModel>) field.get(null)).clear();
+    }
+
+    @Test
+    public void shuffledDuplicateCorruptChunks() throws Exception {
+        byte[] data = content(1);
+        String file_md5 = md5(data, 0, FILE_SIZE);
+        ChunkUploadModel upload = ChunkUploadUtils.init("乱序.bin", FILE_SIZE, file_md5.toUpperCase(), CHUNK_SIZE, 11, ALLOW);
+        assertEquals(5, upload.chunkCount);
+        assertEquals(file_md5, upload.fileMd5);
+        assertTrue(ChunkUploadUtils.getReceived(upload).isEmpty());
+
+        //损坏的分片校验不通过，不标记为已收到
+        assertFails("分片校验失败", () -> uploadCorrupted(upload, data, 3, true));
+        upload(upload, data, 4);
+        upload(upload, data, 0);
+        upload(upload, data, 0);  //重复
+        assertEquals(Arrays.asList(0, 4), ChunkUploadUtils.getReceived(upload));
+
+        //已收到的分片重新上传时损坏：取消标记，须再次上传
+        assertFails("分片校验失败", () -> uploadCorrupted(upload, data, 4, true));
+        assertEquals(Arrays.asList(0), ChunkUploadUtils.getReceived(upload));
+        //长度不对、序号不对
+        assertFails("缺少", () -> ChunkUploadUtils.uploadChunk(upload, 1, new ByteArrayInputStream(data, CHUNK_SIZE, 100), ""));
+        assertFails("超出", () -> ChunkUploadUtils.uploadChunk(upload, 4, new ByteArrayInputStream(data, 0, CHUNK_SIZE), ""));
+        assertFails("分片序号不对", () -> upload(upload, data, 5));
+        assertFails("还有4个分片未上传", () -> ChunkUploadUtils.complete(upload));
+
+        for (int index : new int[]{2, 4, 3, 1}) upload(upload, data, index);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), ChunkUploadUtils.getReceived(upload));
+        UploadModel model = ChunkUploadUtils.complete(upload);
+        assertEquals("乱序.bin", model.fileName);
+        assertEquals("bin", model.extName);
+        assertEquals(FILE_SIZE, model.fileSize);
+        assertArrayEquals(data, readSaved(model));
+        assertRemoved(upload.uploadId);
+        assertFails("上传已完成或已取消", () -> ChunkUploadUtils.complete(upload));
+
+        //完整上传过的用户可以秒传
+        assertEquals(model.visualPath, ChunkUploadUtils.getExistFile("乱序.bin", FILE_SIZE, file_md5, 11, ALLOW).visualPath);
+    }
+
+    /**
+     * 没有分片MD5时损坏的分片在完成时按整个文件的MD5校验出来，删除已收到的分片
+     */
+    @Test
+    public void corruptedWithoutChunkMd5() throws Exception {
+        byte[] data = content(2);
+        String file_md5 = md5(data, 0, FILE_SIZE);
+        ChunkUploadModel upload = ChunkUploadUtils.init("损坏.bin", FILE_SIZE, file_md5, CHUNK_SIZE, 12, ALLOW);
+        for (int index = 0; index < upload.chunkCount; index++) {
+            if (index == 2) uploadCorrupted(upload, data, index, false);
+            else upload(upload, data, index);
+        }
+        assertFails("文件校验失败", () -> ChunkUploadUtils.complete(upload));
+        assertRemoved(upload.uploadId);
+        assertEquals("", BLL_Object_File.getAttachAdd(file_md5, FILE_SIZE));
+    }
+
+    /**
+     * 清空内存后按.json、.map续传，再次init返回同一上传及已收到的分片
+     */
+    @Test
+    public void resumeAfterRestart() throws Exception {
+        byte[] data = content(3);
+        String file_md5 = md5(data, 0, FILE_SIZE);
+        ChunkUploadModel upload = ChunkUploadUtils.init("续传.bin", FILE_SIZE, file_md5, CHUNK_SIZE, 13, ALLOW);
+        upload(upload, data, 3);
+        upload(upload, data, 1);
+        assertFails("分片校验失败", () -> uploadCorrupted(upload, data, 1, true));  //重新上传损坏后也记到.map
+        upload(upload, data, 4);
+
+        restart();
+        ChunkUploadModel loaded = ChunkUploadUtils.getUpload(upload.uploadId);
+        assertNotSame(upload, loaded);
+        assertEquals(Arrays.asList(3, 4), ChunkUploadUtils.getReceived(loaded));
+        assertEquals("续传.bin", loaded.fileName);
+        assertEquals(FILE_SIZE, loaded.fileSize);
+        assertEquals(file_md5, loaded.fileMd5);
+        assertEquals(CHUNK_SIZE, loaded.chunkSize);
+        assertEquals(5, loaded.chunkCount);
+        assertEquals(13, loaded.userId);
+
+        restart();
+        ChunkUploadModel resumed = ChunkUploadUtils.init("续传.bin", FILE_SIZE, file_md5, CHUNK_SIZE, 13, ALLOW);
+        assertEquals(upload.uploadId, resumed.uploadId);
+        assertEquals(Arrays.asList(3, 4), ChunkUploadUtils.getReceived(resumed));
+        for (int index : new int[]{2, 0, 1}) upload(resumed, data, index);
+        assertArrayEquals(data, readSaved(ChunkUploadUtils.complete(resumed)));
+        assertRemoved(upload.uploadId);
+
+        //没有文件MD5时上传标识随机，重启后同样按标识续传
+        ChunkUploadModel anonymous = ChunkUploadUtils.init("无MD5.bin", FILE_SIZE, "", CHUNK_SIZE, 13, ALLOW);
+        assertNotEquals(upload.uploadId, anonymous.uploadId);
+        upload(anonymous, data, 0);
+        restart();
+        ChunkUploadModel reloaded = ChunkUploadUtils.getUpload(anonymous.uploadId);
+        assertEquals(Arrays.asList(0), ChunkUploadUtils.getReceived(reloaded));
+        for (int index = 1; index < reloaded.chunkCount; index++) upload(reloaded, data, index);
+        assertArrayEquals(data, readSaved(ChunkUploadUtils.complete(reloaded)));
+
+        assertNull(ChunkUploadUtils.getUpload("../" + upload.uploadId));
+        assertNull(ChunkUploadUtils.getUpload("not-exist"));
+    }
+
+    /**
+     * 其他用户上传内容相同的文件：不能秒传，须上传内容；完成后引用已保存的文件，删除分片文件
+     */
+    @Test
+    public void dedupLinksExistingFile() throws Exception {
+        byte[] data = content(4);
+        String file_md5 = md5(data, 0, FILE_SIZE);
+        ChunkUploadModel first = ChunkUploadUtils.init("原文件.bin", FILE_SIZE, file_md5, CHUNK_SIZE, 14, ALLOW);
+        for (int index = 0; index < first.chunkCount; index++) upload(first, data, index);
+        UploadModel original = ChunkUploadUtils.complete(first);
+        assertArrayEquals(data, readSaved(original));
+
+        assertNull(ChunkUploadUtils.getExistFile("副本.bin", FILE_SIZE, file_md5, 15, ALLOW));
+        ChunkUploadModel second = ChunkUploadUtils.init("副本.bin", FILE_SIZE, file_md5, CHUNK_SIZE, 15, ALLOW);
+        assertNotEquals(first.uploadId, second.uploadId);
+        for (int index = second.chunkCount - 1; index >= 0; index--) upload(second, data, index);
+        File part = getChunkFile(second.uploadId, ".part");
+        assertTrue(part.isFile());
+        UploadModel copy = ChunkUploadUtils.complete(second);
+
+        assertEquals(original.visualPath, copy.visualPath);
+        assertEquals("副本.bin", copy.fileName);
+        assertFalse(part.exists());
+        assertRemoved(second.uploadId);
+        assertEquals(1, DBFunction.getTableCount("select count(1) from tb_object_file where file_md5='" + file_md5 + "'"));
+        assertArrayEquals(data, readSaved(copy));
+        //上传过内容后也可以秒传
+        assertEquals(original.visualPath, ChunkUploadUtils.getExistFile("副本.bin", FILE_SIZE, file_md5, 15, ALLOW).visualPath);
+    }
+}
@@ -0,0 +1,298 @@
+package com.xinsite.core.utils;
+
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.metadata.Sheet;
+import com.alibaba.excel.metadata.Table;
+import com.alibaba.excel.support.ExcelTypeEnum;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.core.bll.BLL_Common;
+import com.xinsite.core.cache.CodeDictionary;
+import com.xinsite.core.cache.DesignCache;
+import com.xinsite.core.utils.search.PageHelper;
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 列表流式导出Excel，内存数据库H2(config/application-druid.yml)：
+ * executeCursor分批读取与一次性查询结果一致；writeGrid与原导出(getAllGrid整体读取后写入)的文件内容一致；
+ * 100万行在小堆(-Xmx64m)的子进程中导出不会内存溢出
+ */
+public class ExcelUtilsTest {
+    private static final int OID = 41;
+    private static final int ROWS = 2500;
+    private static final String[] SEXES = {"1", "2", "0", "1,2", "9", ""};
+    private static final List<String> FIELDS = Arrays.asList("id", "name", "sex", "serialcode");
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        createCodes();
+        DBFunction.executeNonQuery("drop table if exists tb_export");
+        DBFunction.executeNonQuery("create table tb_export(id int primary key,name varchar(50),sex varchar(10),serialcode int)");
+        Random random = new Random(5);
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int id = 1; id <= ROWS; id++) {
+            Map<String, Object> ht = new HashMap<>();
+            ht.put("id", id);
+            ht.put("name", "姓名\"" + id + "\"");
+            ht.put("sex", SEXES[random.nextInt(SEXES.length)]);
+            ht.put("serialcode", random.nextInt(100));
+            list.add(ht);
+        }
+        DBFunction.insertBatch(list, "tb_export", "id", "name", "sex", "serialcode");
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists tb_export");
+        DBFunction.executeNonQuery("drop table if exists tb_gen_field");
+        CodeDictionary.invalidate();
+        DesignCache.invalidate();
+    }
+
+    /**
+     * 性别编码及设计对象的存值字段(sex按编码表转文本)
+     */
+    private static void createCodes() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_codetype");
+        DBFunction.executeNonQuery("drop table if exists sys_code");
+        DBFunction.executeNonQuery("drop table if exists tb_gen_table");
+        DBFunction.executeNonQuery("drop table if exists tb_gen_field");
+        DBFunction.executeNonQuery("create table sys_codetype(id int primary key,name varchar(50),data_key varchar(50))");
+        DBFunction.executeNonQuery("create table sys_code(id int primary key,pid int,codetype_id int,text varchar(50),value varchar(50),serialcode int)");
+        DBFunction.executeNonQuery("create table tb_gen_table(tid int primary key,oid int,table_key varchar(50),table_name varchar(50),tb_relation varchar(20))");
+        DBFunction.executeNonQuery("create table tb_gen_field(fid int auto_increment primary key,tid int,field_name varchar(50),xtype varchar(50)," +
+                "save_value int,data_key varchar(50),store_datas varchar(500),store_type varchar(50))");
+        DBFunction.executeNonQuery("insert into sys_codetype(id,name,data_key) values (1,'性别','sex')");
+        DBFunction.executeNonQuery("insert into sys_code(id,pid,codetype_id,text,value,serialcode) values " +
+                "(1,0,1,'男','1',1),(2,0,1,'女','2',2),(3,0,1,'未知','0',3)");
+        DBFunction.executeNonQuery("insert into tb_gen_table values (41,41,'export','tb_export','主表')");
+        DBFunction.executeNonQuery("insert into tb_gen_field(tid,field_name,xtype,save_value,data_key) values (41,'sex','combobox',1,'sex')");
+        CodeDictionary.invalidate();
+        DesignCache.invalidate();
+    }
+
+    private static PageHelper pager(String where) {
+        PageHelper pager = new PageHelper();
+        pager.isDataPer = false;
+        pager.tables = "tb_export a1";
+        pager.showColumns = "a1.id,a1.name,a1.sex,a1.serialcode";
+        pager.where = where;
+        return pager;
+    }
+
+    private static Table heads() throws Exception {
+        JsonArray array = new JsonArray();
+        for (String field : FIELDS) {
+            JsonObject dr = new JsonObject();
+            dr.addProperty("field_explain", "列" + field);
+            array.add(dr);
+        }
+        return ExcelUtils.addHeadsText(array);
+    }
+
+    @Test
+    public void cursorSameAsQuery() throws Exception {
+        String sql = "select id,name,sex from tb_export where id>@id order by id";
+        JsonArray expected = DBFunction.executeJsonArray(sql, new DBParameter("@id", 100));
+        JsonArray actual = new JsonArray();
+        List<Integer> sizes = new ArrayList<>();
+        long count = DBFunction.executeCursor(sql, 1000, rows -> {
+            sizes.add(rows.size());
+            actual.addAll(rows);
+            //单独的连接，回调中可以执行其它查询
+            assertEquals(ROWS, DBFunction.getTableCount("select count(1) from tb_export"));
+        }, new DBParameter("@id", 100));
+        assertEquals(ROWS - 100, count);
+        assertEquals(Arrays.asList(1000, 1000, 400), sizes);
+        assertEquals(expected, actual);
+
+        assertEquals(0, DBFunction.executeCursor("select id from tb_export where id<0", 1000, rows -> fail()));
+    }
+
+    @Test
+    public void writeGridSameAsOldExport() throws Exception {
+        File dir = Files.createTempDirectory("excel").toFile();
+        try {
+            for (String where : new String[]{"", " and a1.id<=1000", " and a1.id<0"}) {
+                File legacy = new File(dir, "legacy.xlsx");
+                File streamed = new File(dir, "streamed.xlsx");
+
+                //原导出：全部读入JsonArray，转文本后一次写入
+                try (OutputStream out = new FileOutputStream(legacy)) {
+                    ExcelWriter writer = new ExcelWriter(out, ExcelTypeEnum.XLSX, true);
+                    PageHelper pager = pager(where);
+                    JsonArray array = pager.getAllGrid("a1.id");
+                    BLL_Common.setExcelCodeText(array, pager.showColumns, OID);
+                    List<List<String>> data = new ArrayList<>();
+                    for (int i = 0; i < array.size(); i++) {
+                        JsonObject dr = GsonUtils.getObject(array, i);
+                        List<String> item = new ArrayList<>();
+                        for (String field : FIELDS) item.add(GsonUtils.tryParse(dr, field.toLowerCase(), ""));
+                        data.add(item);
+                    }
+                    writer.write0(data, new Sheet(1, 0), heads());
+                    writer.finish();
+                }
+
+                long count;
+                try (OutputStream out = new FileOutputStream(streamed)) {
+                    ExcelWriter writer = new ExcelWriter(out, ExcelTypeEnum.XLSX, true);
+                    try {
+                        count = ExcelUtils.writeGrid(writer, new Sheet(1, 0), heads(), pager(where), FIELDS, OID, "a1.id");
+                    } finally {
+                        writer.finish();
+                    }
+                }
+
+                List<List<String>> expected = read(legacy);
+                List<List<String>> actual = read(streamed);
+                assertEquals(where, expected, actual);
+                assertEquals(where, count + 1, actual.size());
+                assertEquals(Arrays.asList("列id", "列name", "列sex", "列serialcode"), actual.get(0));
+            }
+            List<List<String>> rows = read(new File(dir, "streamed.xlsx"));
+            assertEquals(1, rows.size()); //无数据时只有表头
+        } finally {
+            for (File file : dir.listFiles()) file.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void writeGridTranslatesCodes() throws Exception {
+        File file = File.createTempFile("excel", ".xlsx");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                ExcelWriter writer = new ExcelWriter(out, ExcelTypeEnum.XLSX, true);
+                ExcelUtils.writeGrid(writer, new Sheet(1, 0), heads(), pager(""), FIELDS, OID, "a1.id");
+                writer.finish();
+            }
+            List<List<String>> rows = read(file);
+            assertEquals(ROWS + 1, rows.size());
+            JsonArray array = DBFunction.executeJsonArray("select id,name,sex from tb_export order by id");
+            Map<String, String> texts = new HashMap<>();
+            texts.put("1", "男");
+            texts.put("2", "女");
+            texts.put("0", "未知");
+            texts.put("1,2", "男,女");
+            texts.put("9", "9");
+            texts.put("", "");
+            for (int i = 0; i < array.size(); i++) {
+                JsonObject dr = GsonUtils.getObject(array, i);
+                List<String> row = rows.get(i + 1);
+                assertEquals(GsonUtils.tryParse(dr, "id", ""), row.get(0));
+                assertEquals(GsonUtils.tryParse(dr, "name", ""), row.get(1));
+                assertEquals(texts.get(GsonUtils.tryParse(dr, "sex", "")), row.get(2));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * 子进程-Xmx64m导出100万行：行由H2的system_range生成并延迟执行(LAZY_QUERY_EXECUTION)，数据库不占堆；
+     * 原导出整体读入JsonArray约需数百MB
+     */
+    @Test
+    public void exportMillionRowsInSmallHeap() throws Exception {
+        File dir = Files.createTempDirectory("excel").toFile();
+        File config = new File(dir, "config/application-druid.yml");
+        File file = new File(dir, "million.xlsx");
+        try {
+            config.getParentFile().mkdirs();
+            try (InputStream in = ExcelUtilsTest.class.getResourceAsStream("/config/application-druid.yml")) {
+                String yml = new String(readAll(in), StandardCharsets.UTF_8)
+                        .replace("jdbc:h2:mem:bench;", "jdbc:h2:mem:export;LAZY_QUERY_EXECUTION=1;");
+                Files.write(config.toPath(), yml.getBytes(StandardCharsets.UTF_8));
+            }
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            String classpath = dir.getPath() + File.pathSeparator + System.getProperty("java.class.path");
+            Process process = new ProcessBuilder(java, "-Xmx64m", "-cp", classpath, MillionExport.class.getName(), file.getPath())
+                    .redirectErrorStream(true).start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Thread reader = new Thread(() -> {
+                try (InputStream in = process.getInputStream()) {
+                    output.write(readAll(in));
+                } catch (IOException ignored) {
+                }
+            });
+            reader.start();
+            assertTrue("导出超时", process.waitFor(10, TimeUnit.MINUTES));
+            reader.join();
+            String log = new String(output.toByteArray(), StandardCharsets.UTF_8);
+            assertEquals(log, 0, process.exitValue());
+            assertTrue(log, log.contains("rows=" + MillionExport.ROWS));
+            assertTrue(file.length() > 0);
+        } finally {
+            file.delete();
+            config.delete();
+            config.getParentFile().delete();
+            dir.delete();
+        }
+    }
+
+    /**
+     * 小堆子进程：按编码表转文本后流式写入100万行
+     */
+    public static class MillionExport {
+        static final int ROWS = 1000000;
+
+        public static void main(String[] args) throws Exception {
+            createCodes();
+            PageHelper pager = new PageHelper();
+            pager.isDataPer = false;
+            pager.querySql = "select x as id,concat('姓名',x) as name,mod(x,3) as sex,mod(x,100) as serialcode" +
+                    " from system_range(1," + ROWS + ") a1 where 1=1";
+            pager.showColumns = "a1.id,a1.name,a1.sex,a1.serialcode";
+            long count;
+            try (OutputStream out = new FileOutputStream(args[0])) {
+                ExcelWriter writer = new ExcelWriter(out, ExcelTypeEnum.XLSX, true);
+                try {
+                    count = ExcelUtils.writeGrid(writer, new Sheet(1, 0), heads(), pager, FIELDS, OID);
+                } finally {
+                    writer.finish();
+                }
+            }
+            System.out.println("rows=" + count + " max_heap=" + Runtime.getRuntime().maxMemory());
+            System.exit(count == ROWS ? 0 : 1);
+        }
+    }
+
+    private static List<List<String>> read(File file) throws Exception {
+        List<List<String>> rows = new ArrayList<>();
+        DataFormatter formatter = new DataFormatter();
+        try (Workbook workbook = new XSSFWorkbook(file)) {
+            for (Row row : workbook.getSheetAt(0)) {
+                List<String> cells = new ArrayList<>();
+                for (int i = 0; i < FIELDS.size(); i++) cells.add(formatter.formatCellValue(row.getCell(i)));
+                rows.add(cells);
+            }
+        }
+        return rows;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) != -1) out.write(buffer, 0, len);
+        return out.toByteArray();
+    }
+}
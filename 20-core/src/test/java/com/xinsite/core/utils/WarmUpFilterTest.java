@@ -0,0 +1,97 @@
+package com.xinsite.core.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 预热拦截：未完成时除健康检查和静态资源外返回503，完成后放行
+ */
+public class WarmUpFilterTest {
+    private final WarmUpFilter filter = new WarmUpFilter();
+
+    @Before
+    public void setup() {
+        WarmUp.reset();
+    }
+
+    @After
+    public void tearDown() {
+        WarmUp.reset();
+    }
+
+    private static HttpServletRequest request(String servletPath, String pathInfo) {
+        return (HttpServletRequest) Proxy.newProxyInstance(WarmUpFilterTest.class.getClassLoader(),
+                new Class[]{HttpServletRequest.class}, (p, method, args) -> {
+                    if (method.getName().equals("getServletPath")) return servletPath;
+                    if (method.getName().equals("getPathInfo")) return pathInfo;
+                    return null;
+                });
+    }
+
+    /**
+     * 返回状态码，放行时为0
+     */
+    private int doFilter(String servletPath, String pathInfo, Map<String, String> headers, StringWriter body) throws Exception {
+        int[] status = {0};
+        HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{HttpServletResponse.class}, (p, method, args) -> {
+                    if (method.getName().equals("setStatus")) status[0] = (Integer) args[0];
+                    if (method.getName().equals("setHeader")) headers.put((String) args[0], (String) args[1]);
+                    if (method.getName().equals("getWriter")) return new PrintWriter(body, true);
+                    return null;
+                });
+        boolean[] passed = {false};
+        FilterChain chain = (req, resp) -> passed[0] = true;
+        filter.doFilter(request(servletPath, pathInfo), response, chain);
+        assertEquals(passed[0], status[0] == 0);
+        return status[0];
+    }
+
+    private int doFilter(String servletPath) throws Exception {
+        return doFilter(servletPath, null, new HashMap<>(), new StringWriter());
+    }
+
+    @Test
+    public void blockedWhileWarming() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        StringWriter body = new StringWriter();
+        assertEquals(503, doFilter("/login", null, headers, body));
+        assertEquals("5", headers.get("Retry-After"));
+        assertTrue(body.toString().contains("\"success\":false"));
+
+        //Shiro中为anon的路径同样拦截
+        assertEquals(503, doFilter("/anon/loadfile"));
+        assertEquals(503, doFilter("/login.html"));
+        assertEquals(503, doFilter("/publicKey"));
+    }
+
+    @Test
+    public void excludesWhileWarming() throws Exception {
+        assertEquals(0, doFilter("/anon/health"));
+        assertEquals(0, doFilter("/anon", "/health", new HashMap<>(), new StringWriter()));
+        assertEquals(0, doFilter("/javascript/jquery.min.js"));
+        assertEquals(0, doFilter("/styles/main.css"));
+        assertEquals(0, doFilter("/images/logo.png"));
+        assertEquals(0, doFilter("/favicon.ico"));
+    }
+
+    @Test
+    public void passedWhenReady() throws Exception {
+        WarmUp.run();
+        assertTrue(WarmUp.isReady());
+        assertEquals(0, doFilter("/login"));
+        assertEquals(0, doFilter("/anon/loadfile"));
+    }
+}
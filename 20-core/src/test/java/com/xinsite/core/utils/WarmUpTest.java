@@ -0,0 +1,136 @@
+package com.xinsite.core.utils;
+
+import com.xinsite.common.uitls.TaskUtils;
+import com.xinsite.common.uitls.TaskUtils.Pool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 启动预热：阶段顺序、同阶段并行、超时及失败不影响其它任务、状态不含异常信息、
+ * 任务数多于线程池线程数时排队时间不算超时
+ */
+public class WarmUpTest {
+
+    @Before
+    public void setup() {
+        WarmUp.reset();
+    }
+
+    @After
+    public void tearDown() {
+        WarmUp.reset();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String status(String name) {
+        for (Map<String, Object> task : (List<Map<String, Object>>) WarmUp.getStatus().get("tasks")) {
+            if (name.equals(task.get("name"))) return (String) task.get("status");
+        }
+        return null;
+    }
+
+    @Test
+    public void stageOrderAndParallel() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        WarmUp.register("b1", 1, 10, Pool.db, () -> {
+            events.add("b1");
+            barrier.await(5, TimeUnit.SECONDS);   //与b2同时执行才能通过
+            return null;
+        });
+        WarmUp.register("a", 0, 10, Pool.db, () -> {
+            Thread.sleep(200);
+            events.add("a");
+            return null;
+        });
+        WarmUp.register("b2", 1, 10, Pool.cpu, () -> {
+            events.add("b2");
+            barrier.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        WarmUp.register("c", 2, 10, Pool.io, () -> events.add("c"));
+        assertFalse(WarmUp.isReady());
+
+        WarmUp.run();
+        assertTrue(WarmUp.isReady());
+        assertEquals(Boolean.FALSE, WarmUp.getStatus().get("degraded"));
+        assertEquals(4, events.size());
+        assertEquals("a", events.get(0));
+        assertTrue(events.subList(1, 3).containsAll(java.util.Arrays.asList("b1", "b2")));
+        assertEquals("c", events.get(3));
+        for (String name : new String[]{"a", "b1", "b2", "c"}) assertEquals("success", status(name));
+    }
+
+    @Test
+    public void timeoutAndFailureIsolated() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        WarmUp.register("slow", 0, 1, Pool.io, () -> {
+            Thread.sleep(10000);
+            events.add("slow");
+            return null;
+        });
+        WarmUp.register("broken", 0, 10, Pool.db, () -> {
+            throw new IllegalStateException("jdbc:mysql://10.0.0.1 password=secret");
+        });
+        WarmUp.register("fast", 0, 10, Pool.cpu, () -> events.add("fast"));
+        WarmUp.register("next", 1, 10, Pool.db, () -> events.add("next"));
+
+        long start = System.currentTimeMillis();
+        WarmUp.run();
+        long millis = System.currentTimeMillis() - start;
+
+        assertTrue("took " + millis, millis < 5000);
+        assertTrue(WarmUp.isReady());
+        assertEquals(Boolean.TRUE, WarmUp.getStatus().get("degraded"));
+        assertEquals("timeout", status("slow"));
+        assertEquals("failure", status("broken"));
+        assertEquals("success", status("fast"));
+        assertEquals("success", status("next"));
+        assertEquals(java.util.Arrays.asList("fast", "next"), events);
+
+        //健康检查可匿名访问，不返回异常信息
+        String text = WarmUp.getStatus().toString();
+        assertFalse(text, text.contains("secret"));
+        assertFalse(text, text.contains("IllegalStateException"));
+    }
+
+    /**
+     * 同WarmUpRunner第1阶段7个db任务、db线程池4个线程：后面的任务排队，各自执行时间都在超时以内
+     */
+    @Test
+    public void queuedTasksNotTimedOut() {
+        int threads = 0;
+        for (Map<String, Object> stats : TaskUtils.getInstance().getStats()) {
+            if ("db".equals(stats.get("pool"))) threads = (Integer) stats.get("threads");
+        }
+        int count = threads + 3;
+        for (int i = 0; i < count; i++) {
+            WarmUp.register("db" + i, 1, 1, Pool.db, () -> {
+                Thread.sleep(600);
+                return null;
+            });
+        }
+        long start = System.currentTimeMillis();
+        WarmUp.run();
+        long millis = System.currentTimeMillis() - start;
+
+        assertTrue("took " + millis, millis >= 1200);   //两批执行
+        assertEquals(Boolean.FALSE, WarmUp.getStatus().get("degraded"));
+        for (int i = 0; i < count; i++) assertEquals("success", status("db" + i));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void registerAfterRun() {
+        WarmUp.run();
+        WarmUp.register("late", 0, 10, Pool.db, () -> null);
+    }
+}
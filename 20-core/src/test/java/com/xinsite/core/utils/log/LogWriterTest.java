@@ -0,0 +1,214 @@
+package com.xinsite.core.utils.log;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * LogWriter：字段按长度截断，批量插入失败时逐条插入，按入队顺序写入，关闭时写完队列，
+ * 队列满时各溢出策略(block、drop_oldest、drop_newest)及计数，应用关闭后不再启动写线程
+ */
+public class LogWriterTest {
+
+    private static Map<String, Object> row(String log_message) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("log_type", 0);
+        map.put("log_fun", "测试");
+        map.put("log_message", log_message);
+        return map;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void truncateToColumnWidths() {
+        Map<String, Object> map = row(repeat('中', 1500));
+        map.put("log_ip", repeat('1', 60));
+        map.put("user_id", 12345);
+        LogWriter.truncate(map);
+        assertEquals(1000, map.get("log_message").toString().length());
+        assertEquals(50, map.get("log_ip").toString().length());
+        assertEquals("测试", map.get("log_fun"));
+        assertEquals(12345, map.get("user_id"));
+    }
+
+    @Test
+    public void badRowDoesNotDropBatch() {
+        List<Map<String, Object>> inserted = Collections.synchronizedList(new ArrayList<>());
+        LogWriter writer = new LogWriter(100, 10, 50, LogWriter.Overflow.block, rows -> {
+            for (Map<String, Object> row : rows) {
+                if ("bad".equals(row.get("log_message"))) throw new IllegalStateException("constraint");
+            }
+            inserted.addAll(rows);
+        });
+        for (int i = 0; i < 10; i++) writer.add(row(i == 3 ? "bad" : "ok" + i), 0);
+        writer.shutdown(5000);
+
+        assertEquals(9, inserted.size());
+        assertEquals(9L, writer.getStats().get("written"));
+        assertEquals(1L, writer.getStats().get("failed"));
+    }
+
+    private static Map<String, Object> row(int index) {
+        return row("log" + index);
+    }
+
+    private static List<String> messages(List<Map<String, Object>> rows) {
+        List<String> list = new ArrayList<>();
+        synchronized (rows) {
+            for (Map<String, Object> row : rows) list.add((String) row.get("log_message"));
+        }
+        return list;
+    }
+
+    private static List<String> expected(int... indexes) {
+        List<String> list = new ArrayList<>();
+        for (int index : indexes) list.add("log" + index);
+        return list;
+    }
+
+    @Test
+    public void writeInOrder() {
+        List<Map<String, Object>> inserted = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        LogWriter writer = new LogWriter(50, 7, 20, LogWriter.Overflow.block, rows -> {
+            batches.add(rows.size());
+            inserted.addAll(rows);
+        });
+        int[] indexes = new int[1000];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+            writer.add(row(i), 0);
+        }
+        writer.shutdown(5000);
+
+        assertEquals(expected(indexes), messages(inserted));
+        for (int size : batches) assertTrue("batch " + size, size <= 7);
+        assertEquals(1000L, writer.getStats().get("written"));
+        assertEquals(0L, writer.getStats().get("dropped"));
+    }
+
+    /**
+     * 没到批次条数和间隔，关闭时写完队列中的日志，关闭后入队的计入dropped
+     */
+    @Test
+    public void flushOnShutdown() {
+        List<Map<String, Object>> inserted = Collections.synchronizedList(new ArrayList<>());
+        LogWriter writer = new LogWriter(100, 1000, 60 * 1000, LogWriter.Overflow.block, inserted::addAll);
+        for (int i = 0; i < 50; i++) writer.add(row(i), 0);
+        assertTrue(inserted.isEmpty());
+        writer.shutdown(5000);
+
+        assertEquals(50, inserted.size());
+        assertEquals(50L, writer.getStats().get("written"));
+        writer.add(row(50), 0);
+        assertEquals(50, inserted.size());
+        assertEquals(1L, writer.getStats().get("dropped"));
+        assertEquals(0, writer.getStats().get("queued"));
+    }
+
+    /**
+     * 写线程卡在第一条日志的插入上，队列(5条)写满后的溢出策略
+     */
+    private static class BlockedInserter implements LogWriter.Inserter {
+        final List<Map<String, Object>> inserted = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void insert(List<Map<String, Object>> rows) throws Exception {
+            entered.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            inserted.addAll(rows);
+        }
+
+        LogWriter fill(LogWriter.Overflow overflow) throws Exception {
+            LogWriter writer = new LogWriter(5, 1, 10, overflow, this);
+            writer.add(row(0), 0);
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i <= 5; i++) writer.add(row(i), 0);
+            assertEquals(5, writer.getStats().get("queued"));
+            return writer;
+        }
+    }
+
+    @Test
+    public void overflowDropNewest() throws Exception {
+        BlockedInserter inserter = new BlockedInserter();
+        LogWriter writer = inserter.fill(LogWriter.Overflow.drop_newest);
+        for (int i = 6; i < 10; i++) writer.add(row(i), 0);
+        assertEquals(4L, writer.getStats().get("dropped"));
+        inserter.release.countDown();
+        writer.shutdown(5000);
+
+        assertEquals(expected(0, 1, 2, 3, 4, 5), messages(inserter.inserted));
+        assertEquals(6L, writer.getStats().get("written"));
+        assertEquals(4L, writer.getStats().get("dropped"));
+    }
+
+    @Test
+    public void overflowDropOldest() throws Exception {
+        BlockedInserter inserter = new BlockedInserter();
+        LogWriter writer = inserter.fill(LogWriter.Overflow.drop_oldest);
+        for (int i = 6; i < 10; i++) writer.add(row(i), 0);
+        assertEquals(4L, writer.getStats().get("dropped"));
+        assertEquals(5, writer.getStats().get("queued"));
+        inserter.release.countDown();
+        writer.shutdown(5000);
+
+        assertEquals(expected(0, 5, 6, 7, 8, 9), messages(inserter.inserted));
+        assertEquals(6L, writer.getStats().get("written"));
+        assertEquals(4L, writer.getStats().get("dropped"));
+    }
+
+    @Test
+    public void overflowBlock() throws Exception {
+        BlockedInserter inserter = new BlockedInserter();
+        LogWriter writer = inserter.fill(LogWriter.Overflow.block);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> future = pool.submit(() -> writer.add(row(6), 0));
+        Thread.sleep(300);
+        assertFalse("队列满时应等待", future.isDone());
+        inserter.release.countDown();
+        future.get(5, TimeUnit.SECONDS);
+        pool.shutdown();
+        writer.shutdown(5000);
+
+        assertEquals(expected(0, 1, 2, 3, 4, 5, 6), messages(inserter.inserted));
+        assertEquals(7L, writer.getStats().get("written"));
+        assertEquals(0L, writer.getStats().get("dropped"));
+    }
+
+    private static int countWriterThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("sys-log-writer".equals(thread.getName()) && thread.isAlive()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * 应用关闭后(LogWriterShutdown)再写日志：不再启动新的写线程，日志计入dropped
+     */
+    @Test
+    public void noWriterAfterShutdownInstance() {
+        LogWriter.shutdownInstance();
+        assertEquals(0, countWriterThreads());
+        LogWriter writer = LogWriter.getInstance();
+        long dropped = (Long) writer.getStats().get("dropped");
+        writer.add(row(1), 0);
+        LogWriter.getInstance().add(row(2), 0);
+
+        assertSame(writer, LogWriter.getInstance());
+        assertEquals(dropped + 2, writer.getStats().get("dropped"));
+        assertEquals(0, writer.getStats().get("queued"));
+        assertEquals(0, countWriterThreads());
+    }
+}
@@ -4,12 +4,14 @@ import com.xinsite.common.uitls.PropsUtils;
 import com.xinsite.common.base.BaseController;
 import com.xinsite.common.uitls.web.http.ServletUtils;
 import com.xinsite.core.cache.SysConfigCache;
+import com.xinsite.core.utils.WarmUp;
 import com.xinsite.core.utils.user.ShiroUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -38,6 +40,15 @@ public class AnonController extends BaseController {
         return resultMap;
     }
 
+    /**
+     * 健康检查：启动预热完成返回200，否则503，内容为预热状态
+     */
+    @RequestMapping(value = "health")
+    public Map<String, Object> health(HttpServletResponse response) {
+        if (!WarmUp.isReady()) response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        return WarmUp.getStatus();
+    }
+
     //主页面加载文件
     @RequestMapping(value = "loadfile", method = {RequestMethod.POST})
     public Map<String, Object> loadFile(HttpServletRequest request) {
@@ -4,11 +4,9 @@ import com.alibaba.excel.ExcelWriter;
 import com.alibaba.excel.metadata.Sheet;
 import com.alibaba.excel.metadata.Table;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import com.xinsite.common.base.BaseController;
 import com.xinsite.common.enums.LogEnum;
 import com.xinsite.common.uitls.codec.Md5Utils;
-import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.lang.DateUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.core.utils.search.PageHelper;
@@ -28,7 +26,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -205,7 +202,6 @@ public class SingleCelleditingController extends BaseController {
                     pager.showColumns = pager.showColumns.toLowerCase();
                     pager.where += " and a1.item_id=" + item_id;
                     pager.validExcelMaxCount();
-                    JsonArray array = pager.getAllGrid("a1.serialcode desc,a1.create_time desc");
 
                     String item_name = BLL_Menu.getItemName(item_id);
                     ExcelWriter writer = ExcelUtils.getExcelWriter(MapUrl);
@@ -213,18 +209,11 @@ public class SingleCelleditingController extends BaseController {
                     sheet1.setSheetName(item_name);
                     Table table = ExcelUtils.addHeadsText(excel_fields);
 
-                    BLL_Common.setExcelCodeText(array, pager.showColumns, oid);
-                    List<List<String>> data = new ArrayList<>();
-                    for (int i = 0; i < array.size(); i++) {
-                        JsonObject dr = GsonUtils.getObject(array, i);
-                        List<String> item = new ArrayList<>();
-                        for (String field : fields) {
-                            item.add(GsonUtils.tryParse(dr, field.toLowerCase(), ""));
-                        }
-                        data.add(item);
+                    try {
+                        ExcelUtils.writeGrid(writer, sheet1, table, pager, fields, oid, "a1.serialcode desc,a1.create_time desc");
+                    } finally {
+                        writer.finish();
                     }
-                    writer.write0(data, sheet1, table);
-                    writer.finish();
 
                     LogUtils.addOperateLog("导出Excel", "成功", "栏目：" + item_name);
                     filename = String.format("static/tempfiles/%s.xlsx", filename);
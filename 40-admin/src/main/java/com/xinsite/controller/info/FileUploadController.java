@@ -7,21 +7,25 @@ import com.xinsite.common.uitls.Global;
 import com.xinsite.common.uitls.codec.EncodeUtils;
 import com.xinsite.common.uitls.gson.GsonUtils;
 import com.xinsite.common.uitls.io.FileUtils;
-import com.xinsite.common.uitls.lang.DateUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.model.ChunkUploadModel;
 import com.xinsite.core.model.UploadModel;
 import com.xinsite.core.utils.search.PageHelper;
 import com.xinsite.core.bll.BLL_Object_Att;
+import com.xinsite.core.utils.ChunkUploadUtils;
 import com.xinsite.core.utils.FileWebUtils;
 import com.xinsite.core.utils.log.LogError;
 import com.xinsite.core.utils.search.SearchUtils;
+import com.xinsite.core.utils.user.UserUtils;
 import com.xinsite.dal.dbhelper.DBFunction;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
@@ -86,18 +90,7 @@ public class FileUploadController extends BaseController {
             UploadModel fileUpload = FileWebUtils.savefileupload(request, upload_filetype, Global.getMaxFileSize());
             if (!StringUtils.isEmpty(fileUpload.visualPath)) {
                 attach_add = fileUpload.visualPath.replace("\\", "/");
-
-                Map ht = new HashMap();
-                ht.put("item_id", item_id);
-                ht.put("idleaf", idleaf);
-                ht.put("serialcode", 200000);
-
-                ht.put("attach_name", fileUpload.fileName);
-                ht.put("attach_add", attach_add);
-                ht.put("attach_size", fileUpload.fileSize);
-                ht.put("attach_type", fileUpload.extName);
-                ht.put("create_time", DateUtils.getDateTime());
-                attach_id = DBFunction.insertByTbName(ht, "tb_object_att");
+                attach_id = BLL_Object_Att.addObjectAtt(item_id, idleaf, fileUpload);
 
                 Hashtable jsn = new Hashtable();
                 jsn.put("success", true);
@@ -116,6 +109,104 @@ public class FileUploadController extends BaseController {
         return ret.getFailResult("status", status);
     }
 
+    //分片上传：开始(或继续)上传，本人上传过内容相同的文件时直接引用(秒传)
+    @RequestMapping(value = "chunk/init")
+    public String chunkInit(HttpServletRequest request) {
+        int item_id = getParaValue(request, "item_id", 0);
+        int idleaf = getParaValue(request, "idleaf", 0);
+        String file_name = getParaValue(request, "file_name", "");
+        long file_size = getParaValue(request, "file_size", 0L);
+        String file_md5 = getParaValue(request, "file_md5", "");
+        int chunk_size = getParaValue(request, "chunk_size", 0);
+
+        String upload_filetype = Global.getConfig("config.upload_filetype");
+        try {
+            int user_id = UserUtils.getUserId();
+            UploadModel fileUpload = ChunkUploadUtils.getExistFile(file_name, file_size, file_md5, user_id, upload_filetype);
+            if (fileUpload != null) {
+                int attach_id = BLL_Object_Att.addObjectAtt(item_id, idleaf, fileUpload);
+                return ret.clear().addMap("exist", true).addMap("attach_id", attach_id)
+                        .addMap("url", fileUpload.visualPath.replace("\\", "/")).getSuccessResult();
+            }
+            ChunkUploadModel upload = ChunkUploadUtils.init(file_name, file_size, file_md5, chunk_size, user_id, upload_filetype);
+            return ret.clear().addMap("exist", false).addMap("upload_id", upload.uploadId).addMap("chunk_size", upload.chunkSize)
+                    .addMap("chunk_count", upload.chunkCount).addMap("chunks", ChunkUploadUtils.getReceived(upload)).getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write(LogEnum.Error, ex.toString());
+            return ret.getFailResult(ex.getMessage());
+        }
+    }
+
+    //分片上传：已收到的分片(续传时跳过)
+    @RequestMapping(value = "chunk/status")
+    public String chunkStatus(HttpServletRequest request) {
+        try {
+            ChunkUploadModel upload = getChunkUpload(request);
+            if (upload == null) return ret.getFailResult("上传不存在或已过期");
+            return ret.clear().addMap("chunk_count", upload.chunkCount).addMap("chunks", ChunkUploadUtils.getReceived(upload)).getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write(LogEnum.Error, ex.toString());
+        }
+        return ret.getFailResult();
+    }
+
+    //分片上传：上传一个分片(file)，index分片序号，chunk_md5分片内容MD5
+    @RequestMapping(value = "chunk/upload")
+    public String chunkUpload(HttpServletRequest request) {
+        int index = getParaValue(request, "index", -1);
+        String chunk_md5 = getParaValue(request, "chunk_md5", "");
+        try {
+            ChunkUploadModel upload = getChunkUpload(request);
+            if (upload == null) return ret.getFailResult("上传不存在或已过期");
+            MultipartFile chunk = FileWebUtils.getMultipartFile(request, "file");
+            if (chunk == null) return ret.getFailResult("请选择文件");
+            try (InputStream in = chunk.getInputStream()) {
+                ChunkUploadUtils.uploadChunk(upload, index, in, chunk_md5);
+            }
+            return ret.clear().addMap("index", index).getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write(LogEnum.Error, ex.toString());
+            return ret.getFailResult(ex.getMessage());
+        }
+    }
+
+    //分片上传：全部分片上传后合成文件并新增附件
+    @RequestMapping(value = "chunk/complete")
+    public String chunkComplete(HttpServletRequest request) {
+        int item_id = getParaValue(request, "item_id", 0);
+        int idleaf = getParaValue(request, "idleaf", 0);
+        try {
+            ChunkUploadModel upload = getChunkUpload(request);
+            if (upload == null) return ret.getFailResult("上传不存在或已过期");
+            UploadModel fileUpload = ChunkUploadUtils.complete(upload);
+            int attach_id = BLL_Object_Att.addObjectAtt(item_id, idleaf, fileUpload);
+            return ret.clear().addMap("attach_id", attach_id).addMap("url", fileUpload.visualPath.replace("\\", "/")).getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write(LogEnum.Error, ex.toString());
+            return ret.getFailResult(ex.getMessage());
+        }
+    }
+
+    //分片上传：取消上传
+    @RequestMapping(value = "chunk/cancel")
+    public String chunkCancel(HttpServletRequest request) {
+        try {
+            ChunkUploadModel upload = getChunkUpload(request);
+            if (upload != null) ChunkUploadUtils.remove(upload.uploadId);
+            return ret.getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write(LogEnum.Error, ex.toString());
+        }
+        return ret.getFailResult();
+    }
+
+    //当前用户的分片上传
+    private ChunkUploadModel getChunkUpload(HttpServletRequest request) throws Exception {
+        ChunkUploadModel upload = ChunkUploadUtils.getUpload(getParaValue(request, "upload_id", ""));
+        if (upload == null || upload.userId != UserUtils.getUserId()) return null;
+        return upload;
+    }
+
     // 附件列表
     @RequestMapping(value = "grid")
     public String grid(HttpServletRequest request) {
@@ -206,11 +297,11 @@ public class FileUploadController extends BaseController {
                 String path = FileUtils.getUploadFildPath();
                 if (strs.length == 2) {
                     value = FileWebUtils.fileDownLoad(request, response, path + strs[0], strs[1], "");
-                    if (!StringUtils.isEmpty(value)) return value;
+                    return StringUtils.isEmpty(value) ? null : value;  //成功时文件已输出(或交给容器sendfile)，不能再写响应体
                 } else if (value.indexOf("\\|\\|") == -1) {
                     String filename = value.substring(value.lastIndexOf("/"));
                     value = FileWebUtils.fileDownLoad(request, response, path + value, filename, "");
-                    if (!StringUtils.isEmpty(value)) return value;
+                    return StringUtils.isEmpty(value) ? null : value;  //成功时文件已输出(或交给容器sendfile)，不能再写响应体
                 }
             }
         } catch (Exception ex) {
@@ -231,7 +322,7 @@ public class FileUploadController extends BaseController {
                 if (strs.length == 2) {
                     String path = FileUtils.getRootPath();
                     value = FileWebUtils.fileDownLoad(request, response, path + strs[0], strs[1], "");
-                    if (!StringUtils.isEmpty(value)) return value;
+                    return StringUtils.isEmpty(value) ? null : value;  //成功时文件已输出(或交给容器sendfile)，不能再写响应体
                 }
             }
         } catch (Exception ex) {
@@ -0,0 +1,72 @@
+package com.xinsite.controller.monitor;
+
+import com.xinsite.common.base.BaseController;
+import com.xinsite.common.enums.LogEnum;
+import com.xinsite.common.uitls.metrics.EndpointMetrics;
+import com.xinsite.core.utils.log.LogError;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * create by zhangxiaxin
+ * create time: 2020-04-20
+ * object name: 请求监控
+ */
+
+@Controller
+@RequestMapping(value = "monitor/request")
+public class RequestController extends BaseController {
+
+    /**
+     * 请求监控页面
+     */
+    @GetMapping("index")
+    public ModelAndView index(HttpServletRequest request) {
+        ModelAndView model = new ModelAndView();
+        model.addObject("summary", EndpointMetrics.getSummary());
+        model.setViewName("monitor/request");
+        return model;
+    }
+
+    /**
+     * 请求统计(Json)，minutes：最近几分钟(1~15)，top：按请求次数取前几个处理方法
+     */
+    @ResponseBody
+    @RequiresPermissions("monitor:request:grid")
+    @RequestMapping(value = "data")
+    public String data(HttpServletRequest request) {
+        int minutes = getParaValue(request, "minutes", 5);
+        int top = getParaValue(request, "top", 100);
+        try {
+            return ret.clear().addMap("summary", EndpointMetrics.getSummary())
+                    .addMap("endpoints", EndpointMetrics.getEndpoints(minutes, top))
+                    .getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write("请求监控查询", LogEnum.Error, ex.toString());
+        }
+        return ret.getFailResult();
+    }
+
+    /**
+     * 清空统计
+     */
+    @ResponseBody
+    @RequiresPermissions("monitor:request:clear")
+    @RequestMapping(value = "reset")
+    public String reset(HttpServletRequest request) {
+        try {
+            EndpointMetrics.reset();
+            return ret.clear().getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write("请求监控清空", LogEnum.Error, ex.toString());
+        }
+        return ret.getFailResult();
+    }
+
+}
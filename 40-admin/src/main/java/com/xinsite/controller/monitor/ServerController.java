@@ -1,11 +1,15 @@
 package com.xinsite.controller.monitor;
 
 import com.xinsite.common.base.BaseController;
+import com.xinsite.common.enums.LogEnum;
+import com.xinsite.core.utils.log.LogError;
 import com.xinsite.core.utils.web.domain.Server;
+import com.xinsite.core.utils.web.domain.ServerHistory;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletRequest;
@@ -41,4 +45,22 @@ public class ServerController extends BaseController {
         return "monitor/server::" + fragment;
     }
 
+    /**
+     * 监控历史(Json)：from、to为毫秒时间，不传时取最近minutes分钟(默认60)
+     */
+    @ResponseBody
+    @RequestMapping(value = "history")
+    public String history(HttpServletRequest request) {
+        long now = System.currentTimeMillis();
+        int minutes = getParaValue(request, "minutes", 60);
+        long from = getParaValue(request, "from", now - minutes * 60 * 1000L);
+        long to = getParaValue(request, "to", now);
+        try {
+            return ret.clear().addMap("history", ServerHistory.getRange(from, to)).getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write("服务器监控历史", LogEnum.Error, ex.toString());
+        }
+        return ret.getFailResult();
+    }
+
 }
@@ -0,0 +1,72 @@
+package com.xinsite.controller.monitor;
+
+import com.xinsite.common.base.BaseController;
+import com.xinsite.common.enums.LogEnum;
+import com.xinsite.core.utils.log.LogError;
+import com.xinsite.dal.dbhelper.SqlStats;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * create by zhangxiaxin
+ * create time: 2020-04-20
+ * object name: SQL执行监控
+ */
+
+@Controller
+@RequestMapping(value = "monitor/sql")
+public class SqlController extends BaseController {
+
+    /**
+     * SQL监控页面
+     */
+    @GetMapping("index")
+    public ModelAndView index(HttpServletRequest request) {
+        ModelAndView model = new ModelAndView();
+        model.addObject("summary", SqlStats.getSummary());
+        model.setViewName("monitor/sql");
+        return model;
+    }
+
+    /**
+     * 执行统计及慢SQL(Json)，top：按总耗时取前几条语句
+     */
+    @ResponseBody
+    @RequiresPermissions("monitor:sql:grid")
+    @RequestMapping(value = "data")
+    public String data(HttpServletRequest request) {
+        int top = getParaValue(request, "top", 100);
+        try {
+            return ret.clear().addMap("summary", SqlStats.getSummary())
+                    .addMap("statements", SqlStats.getStatements(top))
+                    .addMap("slows", SqlStats.getSlowStatements())
+                    .getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write("SQL监控查询", LogEnum.Error, ex.toString());
+        }
+        return ret.getFailResult();
+    }
+
+    /**
+     * 清空统计
+     */
+    @ResponseBody
+    @RequiresPermissions("monitor:sql:clear")
+    @RequestMapping(value = "reset")
+    public String reset(HttpServletRequest request) {
+        try {
+            SqlStats.reset();
+            return ret.clear().getSuccessResult();
+        } catch (Exception ex) {
+            LogError.write("SQL监控清空", LogEnum.Error, ex.toString());
+        }
+        return ret.getFailResult();
+    }
+
+}
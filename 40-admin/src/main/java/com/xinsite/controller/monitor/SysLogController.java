@@ -1,6 +1,7 @@
 package com.xinsite.controller.monitor;
 
 import com.google.gson.JsonArray;
+import com.xinsite.common.annotation.ReadOnly;
 import com.xinsite.common.enums.LogEnum;
 import com.xinsite.common.uitls.Global;
 import com.xinsite.common.uitls.extjs.JsonTree;
@@ -43,9 +44,10 @@ public class SysLogController extends BaseController {
         return "[]";
     }
 
-    // [操作日志]信息查询列表
+    // [操作日志]信息查询列表(只读副本)
     @RequestMapping(value = "grid")
     @RequiresPermissions("monitor:log:grid")
+    @ReadOnly
     public String grid(HttpServletRequest request) {
         int log_type = getParaValue(request, "log_type", 0);
         int itemid = getParaValue(request, "item_id", 0);
@@ -55,12 +57,13 @@ public class SysLogController extends BaseController {
             pager.showColumns = "a1.log_id,a1.log_fun,a1.log_ip,a1.action_type,a1.log_message,a1.log_result,a1.create_time,a1.user_id,ifnull(a2.user_name,a1.login_name) user_name,a1.serialcode";
             pager.tables = "sys_log a1 left join sys_user a2 on a1.user_id=a2.user_id";
             if (log_type > 0) pager.where += " and a1.log_type=" + log_type;
+            pager.seekKey = "a1.log_id";  //日志记录多，下一页按键集分页
             pager.addDataPerWhere(Keys.getKey("load_all", "true"), Keys.getKey("field_user", "user_id")); //加数据权限
 
             if (!UserUtils.isSuperAdminer()) {
                 pager.where += StringUtils.format(" and a2.role_id!={0}", Global.getConfig("config.super_role"));
             }
-            pager.loadPageGrid();
+            pager.loadPageGrid("a1.log_id desc");
 
             return retGrid.getGridJson(pager.array, pager.recordCount);
         } catch (Exception ex) {
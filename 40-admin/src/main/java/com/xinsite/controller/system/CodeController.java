@@ -14,6 +14,7 @@ import com.xinsite.core.utils.search.PageHelper;
 import com.xinsite.core.bll.system.BLL_Code;
 import com.xinsite.core.bll.system.BLL_CodeType;
 import com.xinsite.core.bll.system.BLL_DataShow;
+import com.xinsite.core.cache.CodeDictionary;
 import com.xinsite.core.utils.search.SearchUtils;
 import com.xinsite.core.utils.TreeUtils;
 import com.xinsite.dal.bean.DBParameter;
@@ -112,6 +113,7 @@ public class CodeController extends BaseController {
             }
             String sql = StringUtils.format("update sys_code set isdel=1 where id={0}", code_id);
             if (DBFunction.executeNonQuery(sql) > 0) {
+                CodeDictionary.invalidate();
                 LogUtils.addOperateLog(item_id, "编码表删除", "成功");
                 return ret.getSuccessResult();
             }
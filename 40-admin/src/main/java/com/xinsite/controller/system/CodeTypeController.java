@@ -7,6 +7,7 @@ import com.xinsite.common.uitls.extjs.JsonTree;
 import com.xinsite.common.uitls.lang.NumberUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.core.bll.system.BLL_CodeType;
+import com.xinsite.core.cache.CodeDictionary;
 import com.xinsite.core.utils.log.LogError;
 import com.xinsite.core.utils.log.LogUtils;
 import com.xinsite.core.utils.user.UserUtils;
@@ -43,7 +44,7 @@ public class CodeTypeController extends BaseController {
             sql_where += StringUtils.format(" and (ispublic=1 or org_id={0})", UserUtils.getOrgId());
             JsonArray array = BLL_CodeType.getCodeTypeTree(sql_where);
             json = JsonTree.getTreeJson(array, "");
-            json = json.replace("ispublic:\"1\"", "ispublic:\"1\",iconCls:\"icon_code_pub\"");
+            json = json.replace("\"ispublic\":\"1\"", "\"ispublic\":\"1\",\"iconCls\":\"icon_code_pub\"");
             return json;
         } catch (Exception ex) {
             LogError.write("编码类型树目录", LogEnum.Error, ex.toString());
@@ -125,6 +126,7 @@ public class CodeTypeController extends BaseController {
                     LogUtils.addOperateLog(item_id, "编码类型新增", "成功");
                 } else {
                     DBFunction.updateByTbName(ht, "sys_codetype", "Id=" + id);
+                    CodeDictionary.invalidate();
                     LogUtils.addOperateLog(item_id, "编码类型修改", "成功");
                 }
                 return ret.getSuccessResult(id);
@@ -10,6 +10,7 @@ import com.xinsite.common.uitls.lang.DateUtils;
 import com.xinsite.common.uitls.lang.NumberUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.core.utils.search.PageHelper;
+import com.xinsite.core.cache.NameDictionary;
 import com.xinsite.core.bll.BLL_Common;
 import com.xinsite.core.bll.system.BLL_Dept;
 import com.xinsite.core.bll.system.BLL_Member;
@@ -92,6 +93,7 @@ public class DeptController extends BaseController {
                     }
                 }
                 if (BLL_Dept.saveSort(list)) {
+                    NameDictionary.invalidate(NameDictionary.Type.dept);
                     LogUtils.addOperateLog(item_id, "部门排序", "成功");
                     return ret.getSuccessResult();
                 }
@@ -117,6 +119,7 @@ public class DeptController extends BaseController {
                 ht.put(field, value);
                 DBFunction.updateByTbName(ht, "sys_dept", "dept_id=" + Id);
 
+                NameDictionary.invalidate(NameDictionary.Type.dept);
                 LogUtils.addOperateLog(item_id, "部门单元格编辑", "成功");
                 return ret.getSuccessResult();
             }
@@ -135,6 +138,7 @@ public class DeptController extends BaseController {
         try {
             boolean success = BLL_Dept.deleteByIds("dept_id", Id);
             if (success) {
+                NameDictionary.invalidate(NameDictionary.Type.dept);
                 LogUtils.addOperateLog(item_id, "部门删除", "成功");
                 return ret.getSuccessResult();
             }
@@ -182,6 +186,7 @@ public class DeptController extends BaseController {
             boolean isAdd = (dept_id == 0);
             dept_id = BLL_Dept.saveInfo(ht, dept_id, pid);
             if (dept_id > 0) {
+                NameDictionary.invalidate(NameDictionary.Type.dept);
                 LogUtils.addOperateLog(item_id, "部门" + (isAdd ? "新增" : "修改"), "成功");
                 return ret.getSuccessResult(dept_id);
             } else {
@@ -118,7 +118,7 @@ public class GenDataController extends BaseController {
             ht.put("object_name", getParaValue(request, "object_name", ""));
             ht.put("item_method", getParaValue(request, "item_method", ""));
             ht.put("expanded", getParaValue(request, "expanded", ""));    //是否展开
-            DBFunction.updateByTbName(ht, "tb_gen_object", "oid=" + oid);
+            BLL_GenData.updateObject(oid, ht);
             LogUtils.addOperateLog(item_id, "数据对象修改", "成功");
             return ret.getSuccessResult();
         } catch (Exception ex) {
@@ -211,7 +211,7 @@ public class GenDataController extends BaseController {
                 if (field.equalsIgnoreCase("field_name")) {
                     ht.put("dataIndex", value);
                 }
-                DBFunction.updateByTbName(ht, "tb_gen_field", "fid=" + Id);
+                BLL_GenData.updateField(Id, ht);
 
                 LogUtils.addOperateLog(item_id, "数据表字段编辑", "成功");
                 return ret.getSuccessResult();
@@ -11,6 +11,7 @@ import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.core.bll.design.BLL_Design;
 import com.xinsite.core.bll.info.BLL_UploadFile;
 import com.xinsite.core.bll.system.BLL_Menu;
+import com.xinsite.core.cache.PermissionSnapshot;
 import com.xinsite.core.utils.TreeUtils;
 import com.xinsite.core.utils.log.LogError;
 import com.xinsite.core.utils.log.LogUtils;
@@ -116,6 +117,7 @@ public class ItemController extends BaseController {
                 Map ht = new HashMap();
                 ht.put(field, value);
                 DBFunction.updateByTbName(ht, "sys_menu", "item_id=" + Id);
+                PermissionSnapshot.invalidate();
                 LogUtils.addOperateLog(item_id, "栏目单元格编辑", "成功");
                 return ret.getSuccessResult();
             }
@@ -135,6 +137,7 @@ public class ItemController extends BaseController {
         try {
             success = BLL_Menu.deleteByIds("item_id", Id);
             if (success) {
+                PermissionSnapshot.invalidate();
                 LogUtils.addOperateLog(item_id, "栏目删除", "成功");
                 return ret.getSuccessResult();
             }
@@ -197,6 +200,7 @@ public class ItemController extends BaseController {
             id = BLL_Menu.saveItemTableInfo(ht, id);
             if (id > 0) {
                 if (!isAdd) {
+                    PermissionSnapshot.invalidate();
                     per_value = getParaValue(request, "per_value", "");
                     if (!per_value.equals(re_per_value)) {
                         ShiroUtils.clearCachedAuthorizationInfo("role", 0);
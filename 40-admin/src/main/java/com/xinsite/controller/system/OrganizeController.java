@@ -9,6 +9,7 @@ import com.xinsite.common.uitls.idgen.IdGenerate;
 import com.xinsite.common.uitls.lang.DateUtils;
 import com.xinsite.common.uitls.lang.NumberUtils;
 import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.cache.NameDictionary;
 import com.xinsite.core.bll.system.*;
 import com.xinsite.core.utils.search.PageHelper;
 import com.xinsite.core.bll.BLL_Common;
@@ -85,6 +86,7 @@ public class OrganizeController extends BaseController {
                 ht.put(field, value);
                 DBFunction.updateByTbName(ht, "sys_organize", "org_id=" + Id);
 
+                NameDictionary.invalidate(NameDictionary.Type.organize);
                 LogUtils.addOperateLog(item_id, "组织机构单元格编辑", "成功");
             }
         } catch (Exception ex) {
@@ -114,6 +116,7 @@ public class OrganizeController extends BaseController {
                     }
                 }
                 if (BLL_Organize.saveSort(list)) {
+                    NameDictionary.invalidate(NameDictionary.Type.organize);
                     LogUtils.addOperateLog(item_id, "组织机构排序", "成功");
                 }
             }
@@ -133,6 +136,7 @@ public class OrganizeController extends BaseController {
         try {
             boolean success = BLL_Organize.deleteByIds("org_id", Id);
             if (success) {
+                NameDictionary.invalidate(NameDictionary.Type.organize);
                 LogUtils.addOperateLog(item_id, "组织机构删除", "成功");
                 return ret.getSuccessResult();
             }
@@ -189,6 +193,7 @@ public class OrganizeController extends BaseController {
 
             org_id = BLL_Organize.saveInfo(ht, org_id, pid);
             if (org_id > 0) {
+                NameDictionary.invalidate(NameDictionary.Type.organize);
                 LogUtils.addOperateLog(item_id, "组织机构" + (isAdd ? "新增" : "修改"), "成功");
                 return ret.getSuccessResult(org_id);
             } else {
@@ -265,6 +270,7 @@ public class OrganizeController extends BaseController {
                         ShiroUtils.kickoutUser(user_id, MessageUtils.message("user.password.reset"));  //重置密码用户下线
                     }
 
+                    NameDictionary.invalidate(NameDictionary.Type.user);
                     LogUtils.addOperateLog(item_id, "管理员" + (isAdd ? "新增" : "修改"), "成功");
                     return ret.getSuccessResult(user_id);
                 } else {
@@ -12,6 +12,7 @@ import com.xinsite.common.uitls.lang.StringUtils;
 import com.xinsite.core.utils.search.PageHelper;
 import com.xinsite.core.model.user.LoginUser;
 import com.xinsite.core.model.system.PowerSearchModel;
+import com.xinsite.core.cache.NameDictionary;
 import com.xinsite.core.bll.permission.BLL_PowerInfo;
 import com.xinsite.core.bll.permission.BLL_UserPower;
 import com.xinsite.core.bll.system.*;
@@ -82,6 +83,7 @@ public class UserController extends BaseController {
                 ht.put(field, value);
                 DBFunction.updateByTbName(ht, "sys_user", "user_id=" + user_id);
                 userCacheService.changeUserInfoFlag(user_id);
+                NameDictionary.invalidate(NameDictionary.Type.user);
                 LogUtils.addOperateLog(item_id, "用户单元格编辑", "成功");
                 return ret.getSuccessResult();
             }
@@ -103,6 +105,7 @@ public class UserController extends BaseController {
                 BLL_User.saveDesignTableSort("user_id", sort_vals);
             }
 
+            NameDictionary.invalidate(NameDictionary.Type.user);
             LogUtils.addOperateLog(item_id, "用户排序", "成功");
             return ret.getSuccessResult();
         } catch (Exception ex) {
@@ -124,6 +127,7 @@ public class UserController extends BaseController {
                 success = BLL_User.deleteByIds("user_id", user_ids);
             }
             if (success) {
+                NameDictionary.invalidate(NameDictionary.Type.user);
                 LogUtils.addOperateLog(item_id, "用户删除", "成功");
                 return ret.getSuccessResult();
             }
@@ -274,6 +278,7 @@ public class UserController extends BaseController {
                     } else {
                         BLL_PassWord.setUserPassword(user_id + "", "add_password");
                     }
+                    NameDictionary.invalidate(NameDictionary.Type.user);
                     LogUtils.addOperateLog(item_id, "用户" + (isAdd ? "新增" : "修改"), "成功");
                     return ret.getSuccessResult(user_id);
                 } else {
@@ -335,6 +340,7 @@ public class UserController extends BaseController {
                     loginUser.setLoginName(ht.get("login_name").toString());
                     //ShiroUtils.runAsPrincipal(loginUser);  //多个用户登录无效
                     userCacheService.changeUserInfoFlag(loginUser.getUserId());
+                    NameDictionary.invalidate(NameDictionary.Type.user);
                     LogUtils.addOperateLog(item_id, "用户基本信息修改", "成功");
                     return ret.getSuccessResult(User_Id);
                 } else {
@@ -391,6 +397,7 @@ public class UserController extends BaseController {
                     loginUser.setHeadPhoto(VisualPath);
                     //ShiroUtils.runAsPrincipal(loginUser);
                     userCacheService.changeUserInfoFlag(loginUser.getUserId());
+                    NameDictionary.invalidate(NameDictionary.Type.user);
                     LogUtils.addOperateLog(item_id, "用户头像修改", "成功");
                     ret.clear();
                     ret.addMap("id", User_Id);
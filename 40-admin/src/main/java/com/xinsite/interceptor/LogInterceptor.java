@@ -3,10 +3,13 @@ package com.xinsite.interceptor;
 import com.xinsite.common.uitls.lang.ByteUtils;
 import com.xinsite.common.uitls.lang.DateUtils;
 import com.xinsite.common.uitls.lang.TimeUtils;
+import com.xinsite.common.uitls.metrics.EndpointMetrics;
+import com.xinsite.common.uitls.metrics.ResponseSizeWrapper;
 import com.xinsite.common.uitls.network.IpUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.NamedThreadLocal;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
@@ -15,9 +18,11 @@ import javax.servlet.http.HttpServletResponse;
 import java.text.SimpleDateFormat;
 
 /**
- * 日志拦截器
+ * 日志拦截器，并按处理方法统计请求耗时、状态码、响应字节数(EndpointMetrics)
  */
 public class LogInterceptor implements HandlerInterceptor {
+    private static final String METRICS_NAME = LogInterceptor.class.getName() + ".name";
+    private static final String METRICS_START = LogInterceptor.class.getName() + ".start";
     private static final ThreadLocal<Long> startTimeThreadLocal = new NamedThreadLocal<Long>("LogInterceptor StartTime");
     private static Logger logger = LoggerFactory.getLogger(LogInterceptor.class);
 
@@ -25,6 +30,12 @@ public class LogInterceptor implements HandlerInterceptor {
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         long beginTime = System.currentTimeMillis();// 1、开始时间
         startTimeThreadLocal.set(beginTime);		// 线程绑定变量（该数据只有当前请求的线程可见）
+        if (handler instanceof HandlerMethod && EndpointMetrics.isEnabled()) {
+            HandlerMethod method = (HandlerMethod) handler;
+            String name = method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+            request.setAttribute(METRICS_NAME, name);
+            request.setAttribute(METRICS_START, EndpointMetrics.begin(name));
+        }
         if (logger.isDebugEnabled()){
             logger.debug("开始计时: {}  URI: {}  IP: {}", new SimpleDateFormat("hh:mm:ss.SSS").format(beginTime), request.getRequestURI(), IpUtils.getRemoteAddr(request));
         }
@@ -34,17 +45,28 @@ public class LogInterceptor implements HandlerInterceptor {
     @Override
     public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
         if (modelAndView != null){
-            logger.info("ViewName: " + modelAndView.getViewName() + " <<<<<<<<< " + request.getRequestURI() + " >>>>>>>>> " + handler);
+            logger.debug("ViewName: " + modelAndView.getViewName() + " <<<<<<<<< " + request.getRequestURI() + " >>>>>>>>> " + handler);
         }
     }
 
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        long beginTime = startTimeThreadLocal.get();// 得到线程绑定的局部变量（开始时间）
+        Long beginTime = startTimeThreadLocal.get();// 得到线程绑定的局部变量（开始时间）
         long endTime = System.currentTimeMillis(); 	// 2、结束时间
-        long executeTime = endTime - beginTime;	// 3、获取执行时间
+        long executeTime = beginTime == null ? 0 : endTime - beginTime;	// 3、获取执行时间
         startTimeThreadLocal.remove(); // 用完之后销毁线程变量数据
 
+        // 请求统计：异常未转成错误状态码时按500计，响应字节数取ResponseSizeFilter统计的实际写出字节数
+        Object name = request.getAttribute(METRICS_NAME);
+        if (name != null) {
+            request.removeAttribute(METRICS_NAME);
+            int status = response.getStatus();
+            if (ex != null && status < 400) status = 500;
+            long bytes = ResponseSizeWrapper.getBytes(request);
+            if (bytes <= 0) bytes = getContentLength(response, bytes);  //未经过滤器，或sendfile由容器直接输出
+            EndpointMetrics.end((String) name, (Long) request.getAttribute(METRICS_START), status, bytes);
+        }
+
         // 保存日志
 //        LogUtils.saveLog(UserUtils.getUser(), request, handler, ex, null, null, executeTime);
 
@@ -58,4 +80,17 @@ public class LogInterceptor implements HandlerInterceptor {
 
     }
 
+    /**
+     * 响应头Content-Length，没有时返回default_
+     */
+    private static long getContentLength(HttpServletResponse response, long default_) {
+        String length = response.getHeader("Content-Length");
+        if (length == null) return default_;
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException ex) {
+            return default_;
+        }
+    }
+
 }
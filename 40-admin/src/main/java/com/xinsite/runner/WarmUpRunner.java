@@ -0,0 +1,76 @@
+package com.xinsite.runner;
+
+import com.xinsite.common.uitls.TaskUtils.Pool;
+import com.xinsite.common.uitls.codec.RSAUtils;
+import com.xinsite.core.bll.design.BLL_Design;
+import com.xinsite.core.bll.system.BLL_Menu;
+import com.xinsite.core.cache.CodeDictionary;
+import com.xinsite.core.cache.NameDictionary;
+import com.xinsite.core.cache.PermissionSnapshot;
+import com.xinsite.core.cache.SysConfigCache;
+import com.xinsite.core.utils.WarmUp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动预热：系统配置先加载，之后编码字典、设计元数据、菜单、RSA密钥池、用户部门名称、在线用户权限并行加载；
+ * 预热完成后按config.open_browser打开浏览器(默认不打开)
+ */
+
+@Component
+public class WarmUpRunner implements CommandLineRunner {
+    private static final Logger logger = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    @Value("${server.port}")
+    private String port;
+
+    @Value("${server.servlet.context-path}")
+    private String contextPath;
+
+    /**
+     * 首页地址
+     */
+    @Value("${shiro.user.loginUrl}")
+    private String indexUrl;
+
+    @Value("${config.open_browser:false}")
+    private boolean openBrowser;
+
+    @Override
+    public void run(String... args) {
+        WarmUp.register("系统配置", 0, 10, Pool.db, SysConfigCache::preload);
+        WarmUp.register("编码字典", 1, 30, Pool.db, CodeDictionary::preload);
+        WarmUp.register("设计元数据", 1, 60, Pool.db, BLL_Design::preload);
+        WarmUp.register("菜单栏目", 1, 10, Pool.db, () -> BLL_Menu.getAllItems().size());
+        WarmUp.register("用户名称", 1, 30, Pool.db, () -> NameDictionary.preload(NameDictionary.Type.user));
+        WarmUp.register("部门名称", 1, 30, Pool.db, () -> NameDictionary.preload(NameDictionary.Type.dept));
+        WarmUp.register("机构名称", 1, 30, Pool.db, () -> NameDictionary.preload(NameDictionary.Type.organize));
+        WarmUp.register("用户权限", 1, 30, Pool.db, PermissionSnapshot::preload);
+        WarmUp.register("RSA密钥池", 1, 30, Pool.cpu, () -> {
+            while (RSAUtils.getKeyPairCount() < 10 && !Thread.currentThread().isInterrupted()) RSAUtils.addKeyPair();
+            return RSAUtils.getKeyPairCount();
+        });
+        WarmUp.run();
+
+        if (openBrowser) openBrowser("http://localhost:" + port + contextPath + indexUrl);
+    }
+
+    /**
+     * 按操作系统打开默认浏览器，没有图形界面时打开失败只记录日志
+     */
+    private void openBrowser(String url) {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String[] command;
+        if (os.contains("win")) command = new String[]{"rundll32", "url.dll,FileProtocolHandler", url};
+        else if (os.contains("mac")) command = new String[]{"open", url};
+        else command = new String[]{"xdg-open", url};
+        try {
+            new ProcessBuilder(command).start();
+        } catch (Exception ex) {
+            logger.info("Open browser failed: {}", ex.toString());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.xinsite.runner;
+
+import com.xinsite.common.uitls.Global;
+import com.xinsite.dal.uitls.Utils_Yml;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * 监视application.yml，变化时重新加载配置快照
+ */
+
+@Component
+public class YmlWatchRunner implements CommandLineRunner {
+    @Value("${config.yml_watch:false}")
+    private boolean watch;
+
+    @Override
+    public void run(String... args) {
+        Utils_Yml.addReloadListener(location -> Global.reload());
+        if (watch) Utils_Yml.watch(null);
+    }
+}
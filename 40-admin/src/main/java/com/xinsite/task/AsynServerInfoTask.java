@@ -3,12 +3,15 @@ package com.xinsite.task;
 import com.alibaba.druid.support.logging.Log;
 import com.alibaba.druid.support.logging.LogFactory;
 import com.xinsite.core.utils.web.domain.Server;
+import com.xinsite.core.utils.web.domain.ServerHistory;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+
 /**
  * 获取服务器信息任务
  * create by zhangxiaxin
@@ -29,4 +32,17 @@ public class AsynServerInfoTask {
         }
     }
 
+    /**
+     * 服务器监控历史采样，到config.server_sample_seconds间隔时才采样
+     */
+    @Scheduled(initialDelay = 10 * 1000, fixedDelay = 1000)
+    public void sampleServerInfo() {
+        ServerHistory.sample();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        ServerHistory.close();
+    }
+
 }
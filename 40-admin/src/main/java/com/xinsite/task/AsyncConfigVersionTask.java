@@ -0,0 +1,29 @@
+package com.xinsite.task;
+
+import com.alibaba.druid.support.logging.Log;
+import com.alibaba.druid.support.logging.LogFactory;
+import com.xinsite.core.cache.SysConfigCache;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 系统参数配置版本检查任务：按config.sys_config_poll_seconds比较配置版本号，重新加载其它实例修改的机构配置
+ * create by zhangxiaxin
+ */
+@Component
+@EnableScheduling
+public class AsyncConfigVersionTask {
+    protected final static Log log = LogFactory.getLog(AsyncConfigVersionTask.class);
+
+    @Scheduled(initialDelay = 10 * 1000, fixedDelay = 1000)  //每秒调用，实际间隔按配置
+    public void pollConfigVersionTask() {
+        try {
+            int count = SysConfigCache.poll();
+            if (count > 0) log.info("SysConfigCache reloaded " + count + " organize(s)");
+        } catch (Exception ex) {
+            log.error(ex.toString());
+        }
+    }
+
+}
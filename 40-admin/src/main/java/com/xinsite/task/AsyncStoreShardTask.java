@@ -0,0 +1,47 @@
+package com.xinsite.task;
+
+import com.alibaba.druid.support.logging.Log;
+import com.alibaba.druid.support.logging.LogFactory;
+import com.xinsite.common.uitls.Global;
+import com.xinsite.core.bll.design.BLL_Store;
+import com.xinsite.core.cache.StoreShardCache;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 历史记录分表登记任务：启动后载入分表登记，之后定时按实际记录数校正；
+ * config.store_compress为true时每天凌晨把完整内容的历史记录转换为关键帧+补丁(升级后开启，转换完成后关闭)
+ * create by zhangxiaxin
+ */
+@Component
+@EnableScheduling
+@EnableAsync
+public class AsyncStoreShardTask {
+    protected final static Log log = LogFactory.getLog(AsyncStoreShardTask.class);
+
+    @Async
+    @Scheduled(initialDelay = 10 * 1000, fixedDelay = 10 * 60 * 1000)  //间隔10分钟
+    public void reconcileShardTask() {
+        try {
+            StoreShardCache.reconcile();
+        } catch (Exception ex) {
+            log.error(ex.toString());
+        }
+    }
+
+    @Async
+    @Scheduled(cron = "0 0 3 * * ?")  //每天凌晨3点
+    public void compressHistoryTask() {
+        try {
+            if (!Global.getBoolean("config.store_compress")) return;
+            int count = BLL_Store.compressHistoryRecords();
+            log.info("历史记录转换为关键帧+补丁：" + count + "条");
+        } catch (Exception ex) {
+            log.error(ex.toString());
+        }
+    }
+
+}
@@ -169,6 +169,24 @@ function setGridPageSize(cookieName, pageSize) {
     return pageSize;
 }
 
+///Grid键集分页：翻到下一页时带上一页末行的主键值seek_id、排序值seek_value(后台PageHelper.seekKey)，其它翻页按偏移量
+function setGridSeek(store, idProperty) {
+    store.on('load', function (store) {
+        store.seekPage = store.currentPage;
+    });
+    store.on('beforeload', function (store, operation) {
+        var params = store.proxy.extraParams;
+        delete params.seek_id;
+        delete params.seek_value;
+        var last = store.last();
+        if (last && operation.page == store.seekPage + 1 && store.sorters.getCount() == 1) {
+            var value = last.get(store.sorters.first().property);
+            params.seek_id = last.get(idProperty);
+            params.seek_value = value == null ? "" : value;
+        }
+    });
+}
+
 //根据左边菜单树的record,获取ItemIds(功能权限的ItemIds)
 function getItemIds(record) {
     var item_ids = "";
@@ -73,15 +73,13 @@ function createPanelSystemLog(treenode) {
             }
         },
         sorters: [{
-            property: 'serialcode',
-            direction: 'desc'
-        }, {
-            property: 'create_time',
+            property: 'log_id',
             direction: 'desc'
         }],
         pageSize: pageSize,
         model: 'model_monitor_sys_log'
     });
+    setGridSeek(store, 'log_id');
     var columns = [new Ext.grid.RowNumberer({width: 50, tdCls: 'blue'}),
         {text: 'log_id', width: 20, dataIndex: 'log_id', hideable: false, hidden: true}, {
             text: '操作时间',
@@ -0,0 +1,125 @@
+package com.xinsite.controller.info;
+
+import com.xinsite.common.uitls.codec.EncodeUtils;
+import com.xinsite.common.uitls.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.File;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * 附件下载：文件输出后(包括交给Tomcat sendfile)不能再写响应体
+ */
+public class FileUploadControllerTest {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private MockMvc mvc;
+    private File genFile;
+    private File upFile;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        mvc = MockMvcBuilders.standaloneSetup(new FileUploadController())
+                .setMessageConverters(new StringHttpMessageConverter(StandardCharsets.UTF_8))
+                .build();
+        content = new byte[64 * 1024];  //大于sendfile最小长度(48K)
+        new Random(17).nextBytes(content);
+        genFile = new File(FileUtils.getRootPath() + "download-test.bin");
+        upFile = new File(FileUtils.getUploadFildPath() + "download-test.bin");
+        Files.write(genFile.toPath(), content);
+        Files.write(upFile.toPath(), content);
+    }
+
+    @After
+    public void tearDown() {
+        genFile.delete();
+        upFile.delete();
+    }
+
+    private static String value(String path, String filename) throws Exception {
+        return EncodeUtils.encodeBase64(URLEncoder.encode(path + "||" + filename, "utf-8"));
+    }
+
+    @Test
+    public void sendfileLeavesBodyEmpty() throws Exception {
+        MvcResult result = mvc.perform(get("/info/file/gen/download")
+                .param("value", value("download-test.bin", "a.bin"))
+                .requestAttr(SENDFILE_SUPPORT, Boolean.TRUE)).andReturn();
+        MockHttpServletResponse response = result.getResponse();
+        assertEquals(200, response.getStatus());
+        assertEquals(content.length, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(genFile.getCanonicalPath(), result.getRequest().getAttribute(SENDFILE_FILENAME));
+        assertEquals(0L, result.getRequest().getAttribute(SENDFILE_START));
+        assertEquals((long) content.length, result.getRequest().getAttribute(SENDFILE_END));
+    }
+
+    @Test
+    public void sendfileRange() throws Exception {
+        MvcResult result = mvc.perform(get("/info/file/gen/download")
+                .param("value", value("download-test.bin", "a.bin"))
+                .header("Range", "bytes=1000-")
+                .requestAttr(SENDFILE_SUPPORT, Boolean.TRUE)).andReturn();
+        MockHttpServletResponse response = result.getResponse();
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 1000-" + (content.length - 1) + "/" + content.length, response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(1000L, result.getRequest().getAttribute(SENDFILE_START));
+        assertEquals((long) content.length, result.getRequest().getAttribute(SENDFILE_END));
+    }
+
+    @Test
+    public void uploadedFileSendfile() throws Exception {
+        MvcResult result = mvc.perform(get("/info/file/up/download")
+                .param("value", value("download-test.bin", "a.bin"))
+                .requestAttr(SENDFILE_SUPPORT, Boolean.TRUE)).andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+        assertEquals(upFile.getCanonicalPath(), result.getRequest().getAttribute(SENDFILE_FILENAME));
+    }
+
+    @Test
+    public void streamedBodyIsFileOnly() throws Exception {
+        MvcResult result = mvc.perform(get("/info/file/gen/download")
+                .param("value", value("download-test.bin", "a.bin"))).andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+        assertArrayEquals(content, result.getResponse().getContentAsByteArray());
+        assertNull(result.getRequest().getAttribute(SENDFILE_FILENAME));
+    }
+
+    @Test
+    public void notModified() throws Exception {
+        String etag = mvc.perform(get("/info/file/gen/download")
+                .param("value", value("download-test.bin", "a.bin"))
+                .requestAttr(SENDFILE_SUPPORT, Boolean.TRUE)).andReturn().getResponse().getHeader("ETag");
+        MockHttpServletResponse response = mvc.perform(get("/info/file/gen/download")
+                .param("value", value("download-test.bin", "a.bin"))
+                .header("If-None-Match", etag)).andReturn().getResponse();
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void missingFile() throws Exception {
+        MockHttpServletResponse response = mvc.perform(get("/info/file/gen/download")
+                .param("value", value("no-such-file.bin", "a.bin"))).andReturn().getResponse();
+        assertEquals("文件不存在", response.getContentAsString());
+    }
+}
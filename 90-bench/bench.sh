@@ -0,0 +1,18 @@
+#!/bin/sh
+# 运行基准测试，结果输出target/jmh-result.json，并与baseline.json比较
+# 用法：./bench.sh [JMH参数，如 JsonTree -p size=1000]
+#   THRESHOLD=10        变差超过该百分比时退出码为1
+#   SAVE_BASELINE=1     本次结果保存为新的baseline.json(没有基线时也会保存)
+#   SKIP_BUILD=1        不重新打包
+cd "$(dirname "$0")" || exit 2
+if [ -z "$SKIP_BUILD" ]; then
+    (cd .. && mvn -q -B -P bench -pl 90-bench -am package -DskipTests) || exit 2
+fi
+java -jar target/benchmarks.jar -rf json -rff target/jmh-result.json "$@" || exit 2
+
+if [ -n "$SAVE_BASELINE" ] || [ ! -f baseline.json ]; then
+    cp target/jmh-result.json baseline.json
+    echo "已保存基线 baseline.json"
+    exit 0
+fi
+java -cp target/benchmarks.jar com.xinsite.bench.BenchCompare baseline.json target/jmh-result.json "${THRESHOLD:-10}"
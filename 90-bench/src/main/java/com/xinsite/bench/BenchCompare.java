@@ -0,0 +1,97 @@
+package com.xinsite.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 比较JMH结果(-rf json)与基线，变差超过阈值(百分比)的列出并以退出码1结束
+ * 用法：BenchCompare baseline.json result.json [阈值,默认10]
+ */
+public class BenchCompare {
+
+    private static class Score {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Score(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("用法：BenchCompare baseline.json result.json [阈值百分比]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Score> baseline = load(args[0]);
+        Map<String, Score> result = load(args[1]);
+
+        int regressions = 0;
+        System.out.println(String.format("%-70s %14s %14s %9s", "benchmark", "baseline", "current", "change"));
+        for (Map.Entry<String, Score> entry : result.entrySet()) {
+            Score now = entry.getValue();
+            Score base = baseline.get(entry.getKey());
+            if (base == null || base.score == 0) {
+                System.out.println(String.format("%-70s %14s %14.3f %9s", entry.getKey(), "-", now.score, "new"));
+                continue;
+            }
+            //吞吐量越大越好，其它模式(平均时间等)越小越好
+            double change = (now.score - base.score) / base.score * 100;
+            double worse = "thrpt".equals(now.mode) ? -change : change;
+            //变化在两次误差范围内不算变差
+            boolean noise = Math.abs(now.score - base.score) <= base.error + now.error;
+            String flag = worse > threshold && !noise ? "  << REGRESSION" : "";
+            if (!flag.isEmpty()) regressions++;
+            System.out.println(String.format("%-70s %14.3f %14.3f %+8.1f%% %s%s", entry.getKey(),
+                    base.score, now.score, change, now.unit, flag));
+        }
+        for (String key : baseline.keySet()) {
+            if (!result.containsKey(key)) System.out.println(String.format("%-70s %14s", key, "missing"));
+        }
+        System.out.println(String.format("%d项变差超过%.1f%%", regressions, threshold));
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * 读取JMH json结果，key为benchmark加参数
+     */
+    private static Map<String, Score> load(String file) throws Exception {
+        Map<String, Score> map = new TreeMap<>();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(file)), StandardCharsets.UTF_8)) {
+            JsonArray array = new JsonParser().parse(reader).getAsJsonArray();
+            for (JsonElement element : array) {
+                JsonObject dr = element.getAsJsonObject();
+                StringBuilder key = new StringBuilder(dr.get("benchmark").getAsString());
+                if (dr.has("params")) {
+                    Map<String, String> params = new TreeMap<>();
+                    for (Map.Entry<String, JsonElement> p : dr.getAsJsonObject("params").entrySet()) {
+                        params.put(p.getKey(), p.getValue().getAsString());
+                    }
+                    key.append(params);
+                }
+                JsonObject metric = dr.getAsJsonObject("primaryMetric");
+                double error = metric.get("scoreError").isJsonPrimitive() && metric.get("scoreError").getAsJsonPrimitive().isNumber()
+                        ? metric.get("scoreError").getAsDouble() : 0;
+                map.put(key.toString(), new Score(dr.get("mode").getAsString(), metric.get("score").getAsDouble(),
+                        Double.isNaN(error) ? 0 : error, metric.get("scoreUnit").getAsString()));
+            }
+        }
+        return map;
+    }
+}
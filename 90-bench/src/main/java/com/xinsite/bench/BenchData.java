@@ -0,0 +1,51 @@
+package com.xinsite.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.Random;
+
+/**
+ * 基准测试数据生成，固定随机种子，每次运行数据相同
+ */
+public class BenchData {
+
+    /**
+     * 树形数据：id从1开始，pid随机指向前面的结点(0为根)，每行带text、iconCls
+     */
+    public static JsonArray treeRows(int size) {
+        Random random = new Random(size);
+        JsonArray array = new JsonArray();
+        for (int i = 1; i <= size; i++) {
+            JsonObject dr = new JsonObject();
+            dr.addProperty("id", String.valueOf(i));
+            dr.addProperty("pid", String.valueOf(i == 1 ? 0 : random.nextInt(Math.min(i - 1, 50)) + Math.max(i - 50, 0)));
+            dr.addProperty("text", "结点" + i);
+            dr.addProperty("iconCls", "icon_" + (i % 7));
+            array.add(dr);
+        }
+        return array;
+    }
+
+    /**
+     * 文本：中英文、标点混合，长度约为length
+     */
+    public static String text(int length) {
+        String chars = "新建用户部门机构栏目权限数据查询保存删除abcdefghijklmnopqrstuvwxyz0123456789 ,.";
+        Random random = new Random(length);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(chars.charAt(random.nextInt(chars.length())));
+        return sb.toString();
+    }
+
+    /**
+     * 带脚本、事件属性的文本，长度约为length
+     */
+    public static String xssText(int length) {
+        StringBuilder sb = new StringBuilder(length + 64);
+        while (sb.length() < length) {
+            sb.append(text(64)).append("<script>alert('x')</script><img src=x onerror=\"alert(1)\">javascript:void(0)");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.xinsite.bench;
+
+import com.xinsite.common.uitls.io.ChunkFileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传文件保存：原1KB缓冲整文件复制、分片按偏移写入(含分片MD5)顺序及4线程并行，文件64MB、分片2MB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkUploadBench {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 2 * 1024 * 1024;
+
+    private byte[] data;
+    private File file;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        data = new byte[FILE_SIZE];
+        new Random(FILE_SIZE).nextBytes(data);
+        file = File.createTempFile("upload", ".part");
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        file.delete();
+    }
+
+    @Benchmark
+    public long streamCopy() throws Exception {
+        try (InputStream in = new ByteArrayInputStream(data); FileOutputStream out = new FileOutputStream(file)) {
+            byte[] buffer = new byte[1024];
+            int len;
+            while ((len = in.read(buffer)) > 0) out.write(buffer, 0, len);
+        }
+        return file.length();
+    }
+
+    @Benchmark
+    public long chunkSequential() throws Exception {
+        ChunkFileUtils.preallocate(file, FILE_SIZE);
+        for (int position = 0; position < FILE_SIZE; position += CHUNK_SIZE) {
+            ChunkFileUtils.writeChunk(file, position, new ByteArrayInputStream(data, position, CHUNK_SIZE), CHUNK_SIZE);
+        }
+        return file.length();
+    }
+
+    @Benchmark
+    public long chunkParallel() throws Exception {
+        ChunkFileUtils.preallocate(file, FILE_SIZE);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int position = 0; position < FILE_SIZE; position += CHUNK_SIZE) {
+            int start = position;
+            futures.add(executor.submit(() -> ChunkFileUtils.writeChunk(file, start, new ByteArrayInputStream(data, start, CHUNK_SIZE), CHUNK_SIZE)));
+        }
+        for (Future<String> future : futures) future.get();
+        return file.length();
+    }
+}
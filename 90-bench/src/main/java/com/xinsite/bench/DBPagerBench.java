@@ -0,0 +1,77 @@
+package com.xinsite.bench;
+
+import com.google.gson.JsonArray;
+import com.xinsite.dal.dbhelper.DBFunction;
+import com.xinsite.dal.dbhelper.DBPager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DBPager分页取数，内存数据库H2(MySQL兼容模式，config/application-druid.yml)，
+ * 首页、末页偏移量分页及末页键集分页
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBPagerBench {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"20"})
+    public int pageSize;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists bench_pager");
+        DBFunction.executeNonQuery("create table bench_pager(id int primary key,name varchar(50),dept_id int,create_time varchar(20),isdel int)");
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("name", "用户" + i);
+            row.put("dept_id", i % 100);
+            row.put("create_time", "2019-01-01 00:00:00");
+            row.put("isdel", 0);
+            list.add(row);
+            if (list.size() == 5000 || i == rows) {
+                DBFunction.insertBatch(list, "bench_pager", "id", "name", "dept_id", "create_time", "isdel");
+                list.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists bench_pager");
+    }
+
+    private DBPager pager(int pageStart) {
+        return new DBPager("id,name,dept_id,create_time from bench_pager where isdel=0", "id", pageStart, pageSize);
+    }
+
+    @Benchmark
+    public JsonArray firstPage() throws Exception {
+        return pager(0).getCurPageArray();
+    }
+
+    @Benchmark
+    public JsonArray lastPageOffset() throws Exception {
+        return pager(rows - pageSize).getCurPageArray();
+    }
+
+    @Benchmark
+    public JsonArray lastPageSeek() throws Exception {
+        DBPager pager = pager(rows - pageSize);
+        pager.setSeek("id", "id", false, null, rows - pageSize);
+        return pager.getCurPageArray();
+    }
+}
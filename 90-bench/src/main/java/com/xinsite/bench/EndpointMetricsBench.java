@@ -0,0 +1,58 @@
+package com.xinsite.bench;
+
+import com.xinsite.common.uitls.metrics.EndpointMetrics;
+import com.xinsite.common.uitls.metrics.LatencyHistogram;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求统计的额外开销：只取开始结束时间(基线)、begin/end记录一次请求、只记录耗时分布，单线程及多线程争用
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointMetricsBench {
+
+    private static final String[] NAMES = {"SysUserController.grid", "SysUserController.save", "SysMenuController.tree", "SqlController.data"};
+
+    private LatencyHistogram histogram;
+    private int index;
+
+    @Setup
+    public void setup() {
+        histogram = new LatencyHistogram();
+        for (String name : NAMES) EndpointMetrics.end(name, EndpointMetrics.begin(name), 200, 100);
+    }
+
+    private String nextName() {
+        return NAMES[index++ & 3];
+    }
+
+    @Benchmark
+    public long baseline() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public void record() {
+        String name = nextName();
+        EndpointMetrics.end(name, EndpointMetrics.begin(name), 200, 1024);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordThreads() {
+        String name = NAMES[(int) (Thread.currentThread().getId() & 3)];
+        EndpointMetrics.end(name, EndpointMetrics.begin(name), 200, 1024);
+    }
+
+    @Benchmark
+    public void histogram() {
+        histogram.record(index++ & 0xFFFF);
+    }
+}
@@ -0,0 +1,106 @@
+package com.xinsite.bench;
+
+import com.xinsite.common.uitls.web.http.FileDownloadUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件下载输出：原4KB缓冲复制、transferTo到Socket(Tomcat sendfile同样走零拷贝)、transferTo到输出流(不支持sendfile时)
+ * 通过本机回环连接发送整个文件，接收端读后丢弃；CPU对比可加 -prof perfnorm(Linux)或 -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileDownloadBench {
+
+    @Param({"64", "1024"})
+    public int sizeMb;
+
+    private File file;
+    private long length;
+    private ServerSocketChannel server;
+    private SocketChannel sink;
+    private SocketChannel source;
+    private Thread drain;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = File.createTempFile("download", ".bin");
+        length = sizeMb * 1024L * 1024L;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            byte[] block = BenchData.text(1024 * 1024).getBytes("UTF-8");
+            for (long written = 0; written < length; written += block.length) {
+                raf.write(block, 0, (int) Math.min(block.length, length - written));
+            }
+        }
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        source = SocketChannel.open(server.getLocalAddress());
+        sink = server.accept();
+        drain = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            try {
+                while (sink.read(buffer) >= 0) buffer.clear();
+            } catch (Exception ignored) {
+            }
+        }, "download-drain");
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        source.close();
+        sink.close();
+        server.close();
+        drain.join(1000);
+        file.delete();
+    }
+
+    @Benchmark
+    public long streamCopy() throws Exception {
+        OutputStream out = Channels.newOutputStream(source);
+        long total = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+                total += length;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long transferToSocket() throws Exception {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileDownloadUtils.transfer(channel, 0, length, source);
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long transferToStream() throws Exception {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileDownloadUtils.transfer(channel, 0, length, Channels.newChannel(Channels.newOutputStream(source)));
+        }
+        return length;
+    }
+}
@@ -0,0 +1,48 @@
+package com.xinsite.bench;
+
+import com.google.gson.JsonArray;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GsonUtils按字段过滤
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsonUtilsBench {
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private JsonArray array;
+    private String pid;
+    private String ids;
+
+    @Setup
+    public void setup() {
+        array = BenchData.treeRows(size);
+        pid = String.valueOf(size / 2);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= size; i += Math.max(size / 50, 1)) {
+            if (sb.length() > 0) sb.append(",");
+            sb.append(i);
+        }
+        ids = sb.toString();
+    }
+
+    @Benchmark
+    public JsonArray getWhereArray() {
+        return GsonUtils.getWhereArray(array, "pid", pid);
+    }
+
+    @Benchmark
+    public JsonArray getWhereArrayByIds() {
+        return GsonUtils.getWhereArrayByIds(array, "id", ids);
+    }
+}
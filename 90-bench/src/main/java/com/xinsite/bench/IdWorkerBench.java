@@ -0,0 +1,36 @@
+package com.xinsite.bench;
+
+import com.xinsite.common.uitls.idgen.IdWorker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IdWorker生成id，单线程及多线程争用
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdWorkerBench {
+
+    private IdWorker worker;
+
+    @Setup
+    public void setup() {
+        worker = new IdWorker(1, 1);
+    }
+
+    @Benchmark
+    public long nextId() {
+        return worker.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long nextIdThreads() {
+        return worker.nextId();
+    }
+}
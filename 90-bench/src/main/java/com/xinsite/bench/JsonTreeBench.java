@@ -0,0 +1,39 @@
+package com.xinsite.bench;
+
+import com.google.gson.JsonArray;
+import com.xinsite.common.uitls.extjs.JsonTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonTree全部加载树、逐层加载输出
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonTreeBench {
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private JsonArray array;
+
+    @Setup
+    public void setup() {
+        array = BenchData.treeRows(size);
+    }
+
+    @Benchmark
+    public String getTreeJsonByPid() {
+        return JsonTree.getTreeJsonByPid(array, "0", "expanded:true", "iconCls:'icon_leaf'");
+    }
+
+    @Benchmark
+    public String getTreeJson() {
+        return JsonTree.getTreeJson(array, "leaf:false");
+    }
+}
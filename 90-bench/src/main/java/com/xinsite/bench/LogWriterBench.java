@@ -0,0 +1,93 @@
+package com.xinsite.bench;
+
+import com.xinsite.core.utils.log.LogWriter;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sys_log写入吞吐：原来每条日志一个线程单条插入，与LogWriter队列批量插入比较；
+ * 每次调用写EVENTS条日志并等到全部写入，内存数据库H2(MySQL兼容模式，config/application-druid.yml)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogWriterBench {
+    private static final int EVENTS = 200;
+
+    private LogWriter writer;
+    private long written;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_log");
+        DBFunction.executeNonQuery("create table sys_log(log_id bigint auto_increment primary key,org_id int,log_ip varchar(50)," +
+                "log_type int,log_fun varchar(200),log_result varchar(30),log_message varchar(1000),action_type varchar(30)," +
+                "create_time datetime,user_id int,login_name varchar(100),dept_id int)");
+        writer = new LogWriter(10000, EVENTS, 1000, LogWriter.Overflow.block);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        writer.shutdown(10 * 1000);
+        DBFunction.executeNonQuery("drop table if exists sys_log");
+    }
+
+    private static Map<String, Object> event(int index) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("org_id", 1);
+        map.put("log_ip", "192.168.1." + (index % 255));
+        map.put("log_type", 3);
+        map.put("log_fun", "用户管理:保存");
+        map.put("action_type", "操作");
+        map.put("log_result", "成功");
+        map.put("log_message", "保存用户" + index);
+        map.put("create_time", "2019-10-01 12:00:00");
+        map.put("user_id", index);
+        map.put("dept_id", 1);
+        return map;
+    }
+
+    /**
+     * 原SaveLogThread：每条日志启动一个线程单条插入
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void threadPerEvent() throws Exception {
+        List<Thread> threads = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            Map<String, Object> map = event(i);
+            Thread thread = new Thread(() -> {
+                try {
+                    DBFunction.insertByTbName(map, "sys_log");
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void batchedQueue() throws Exception {
+        for (int i = 0; i < EVENTS; i++) writer.add(event(i), 0);
+        written += EVENTS;
+        while (getFinished() < written) Thread.sleep(0, 100000);
+    }
+
+    private long getFinished() {
+        Map<String, Object> stats = writer.getStats();
+        return (Long) stats.get("written") + (Long) stats.get("failed");
+    }
+}
@@ -0,0 +1,79 @@
+package com.xinsite.bench;
+
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.dbhelper.NSQLUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NSQLUtils命名参数解析(不缓存/缓存)及参数绑定
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NSQLUtilsBench {
+
+    @Param({"2", "8", "32"})
+    public int paramCount;
+
+    private String sql;
+    private DBParameter[] params;
+    private int literal;
+    private Connection conn;
+    private PreparedStatement pstmt;
+    private NSQLUtils nsql;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder("select id,name from bench_nsql where isdel=0");
+        params = new DBParameter[paramCount];
+        for (int i = 0; i < paramCount; i++) {
+            sb.append(" and (c").append(i).append("=@p").append(i).append(" or c").append(i).append(" is null)");
+            params[i] = new DBParameter("@p" + i, i);
+        }
+        sql = sb.toString();
+        conn = DriverManager.getConnection("jdbc:h2:mem:bench_nsql;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        StringBuilder ddl = new StringBuilder("create table if not exists bench_nsql(id int,name varchar(50),isdel int");
+        for (int i = 0; i < paramCount; i++) ddl.append(",c").append(i).append(" int");
+        conn.createStatement().execute(ddl.append(")").toString());
+        nsql = NSQLUtils.get(sql);
+        pstmt = conn.prepareStatement(nsql.getSql());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        pstmt.close();
+        conn.close();
+    }
+
+    @Benchmark
+    public NSQLUtils parse() {
+        return NSQLUtils.parse(sql);
+    }
+
+    @Benchmark
+    public NSQLUtils getCached() {
+        return NSQLUtils.get(sql);
+    }
+
+    /**
+     * 只是拼接的数字常量不同，命中同一缓存项
+     */
+    @Benchmark
+    public NSQLUtils getCachedLiteral() {
+        return NSQLUtils.get(sql + " and id<>" + (literal++ & 1023));
+    }
+
+    @Benchmark
+    public PreparedStatement bind() throws Exception {
+        nsql.setParameters(sql, pstmt, params);
+        return pstmt;
+    }
+}
@@ -0,0 +1,105 @@
+package com.xinsite.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.bll.system.BLL_User;
+import com.xinsite.core.cache.NameDictionary;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 列表用户名：原来每页读取整个sys_user后逐行线性匹配，与NameDictionary按id查找比较；
+ * users个用户，每页rows行，每行1~3个用户id，内存数据库H2(MySQL兼容模式，config/application-druid.yml)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameDictionaryBench {
+
+    @Param({"50000"})
+    public int users;
+
+    @Param({"1000"})
+    public int rows;
+
+    private JsonArray page;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_user");
+        DBFunction.executeNonQuery("create table sys_user(user_id int primary key,user_name varchar(50),head_photo varchar(200),org_id int,serialcode int)");
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 1; i <= users; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("user_id", i);
+            row.put("user_name", "用户" + i);
+            row.put("head_photo", "");
+            row.put("org_id", 1);
+            row.put("serialcode", i);
+            list.add(row);
+            if (list.size() == 1000) {
+                DBFunction.insertBatch(list, "sys_user", "user_id", "user_name", "head_photo", "org_id", "serialcode");
+                list.clear();
+            }
+        }
+        if (!list.isEmpty()) DBFunction.insertBatch(list, "sys_user", "user_id", "user_name", "head_photo", "org_id", "serialcode");
+
+        Random random = new Random(rows);
+        page = new JsonArray();
+        for (int i = 0; i < rows; i++) {
+            StringBuilder ids = new StringBuilder();
+            for (int k = random.nextInt(3); k >= 0; k--) {
+                if (ids.length() > 0) ids.append(",");
+                ids.append(random.nextInt(users) + 1);
+            }
+            JsonObject dr = new JsonObject();
+            dr.addProperty("id", i);
+            dr.addProperty("user_ids", ids.toString());
+            page.add(dr);
+        }
+        NameDictionary.invalidate(NameDictionary.Type.user);
+        NameDictionary.preload(NameDictionary.Type.user);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_user");
+    }
+
+    /**
+     * 原setGridUserNames
+     */
+    @Benchmark
+    public JsonArray scanTable() throws Exception {
+        JsonArray array = page.deepCopy();
+        JsonArray code = DBFunction.executeJsonArray("select user_id,user_name,serialcode from sys_user order by serialcode");
+        for (int i = 0; i < array.size(); i++) {
+            JsonObject dr = GsonUtils.getObject(array, i);
+            String values = StringUtils.joinAsFilter(GsonUtils.tryParse(dr, "user_ids", ""));
+            if (StringUtils.isEmpty(values)) continue;
+            JsonArray drs = GsonUtils.getWhereArrayByIds(code, "user_id", values);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < drs.size(); j++) {
+                if (sb.length() != 0) sb.append(",");
+                sb.append(GsonUtils.tryParse(GsonUtils.getObject(drs, j), "user_name", ""));
+            }
+            dr.addProperty("user_ids_text", sb.toString());
+        }
+        return array;
+    }
+
+    @Benchmark
+    public JsonArray dictionary() throws Exception {
+        JsonArray array = page.deepCopy();
+        BLL_User.setGridUserNames(array, "user_ids");
+        return array;
+    }
+}
@@ -0,0 +1,137 @@
+package com.xinsite.bench;
+
+import com.google.gson.JsonArray;
+import com.xinsite.common.enums.system.PerEnum;
+import com.xinsite.common.uitls.gson.GsonUtils;
+import com.xinsite.common.uitls.lang.StringUtils;
+import com.xinsite.core.bll.permission.BLL_UserPower;
+import com.xinsite.core.cache.PermissionSnapshot;
+import com.xinsite.core.model.user.LoginUser;
+import com.xinsite.core.shiro.service.UserCacheService;
+import com.xinsite.dal.dbhelper.DBFunction;
+import com.xinsite.dal.uitls.Utils_Context;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每秒权限检查次数：栏目功能(是否有删除按钮)、控制器权限值，原来每次查询，与权限快照比较；
+ * items个栏目，每栏目4个功能，用户及角色各有一半栏目的权限，内存数据库H2(MySQL兼容模式，config/application-druid.yml)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionSnapshotBench {
+    private static final int FUNS = 4;
+
+    @Param({"200"})
+    public int items;
+
+    private LoginUser loginUser;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        DBFunction.executeNonQuery("drop view if exists view_menu_fun");
+        DBFunction.executeNonQuery("drop view if exists view_power_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_menu_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_power_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_power_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_role");
+        DBFunction.executeNonQuery("create table sys_menu(item_id int primary key,pid int,item_name varchar(100),per_value varchar(50)," +
+                "isdel int default 0,isused int default 1)");
+        DBFunction.executeNonQuery("create table sys_menu_fun(fun_id int primary key,item_id int,name varchar(100),itemid varchar(30)," +
+                "per_value varchar(50),isdel int default 0)");
+        DBFunction.executeNonQuery("create table sys_power_menu(pm_id int auto_increment primary key,tb_type int not null,tb_id int not null," +
+                "item_id int not null,del_item int,data_per int,data_ids varchar(1000),create_time datetime,isdel int default 0)");
+        DBFunction.executeNonQuery("create table sys_power_fun(pm_id int not null,fun_id int not null,primary key(pm_id,fun_id))");
+        DBFunction.executeNonQuery("create table sys_role(role_id int primary key,role_name varchar(100),role_per_value varchar(50))");
+        DBFunction.executeNonQuery("create view view_menu_fun as select a1.item_id,b1.fun_id,b1.itemid,b1.name fun_name," +
+                "a1.per_value grid_per_value,b1.per_value from sys_menu a1 left join sys_menu_fun b1 on a1.item_id=b1.item_id and b1.isdel=0" +
+                " where a1.isdel=0 and a1.isused=1");
+        DBFunction.executeNonQuery("create view view_power_fun as select a1.tb_type,a1.tb_id,a1.item_id,a1.del_item,a1.data_per,a1.data_ids," +
+                "b1.fun_id from sys_power_menu a1 left join sys_power_fun b1 on a1.pm_id=b1.pm_id where a1.isdel=0");
+        DBFunction.executeNonQuery("insert into sys_role values (1,'角色','role1')");
+        String[] itemids = {"btn_add", "btn_mod", "btn_del", "btn_excel"};
+        for (int item_id = 1; item_id <= items; item_id++) {
+            DBFunction.executeNonQuery(String.format("insert into sys_menu values (%d,0,'栏目%d','item%d:grid',0,1)", item_id, item_id, item_id));
+            for (int k = 0; k < FUNS; k++) {
+                int fun_id = (item_id - 1) * FUNS + k + 1;
+                DBFunction.executeNonQuery(String.format("insert into sys_menu_fun values (%d,%d,'功能%d','%s','item%d:fun%d',0)",
+                        fun_id, item_id, fun_id, itemids[k], item_id, k));
+            }
+            //单数栏目用户权限，双数栏目角色权限，删除按钮只授权一半
+            int tb_type = item_id % 2 == 1 ? PerEnum.用户权限.getIndex() : PerEnum.角色权限.getIndex();
+            DBFunction.executeNonQuery(String.format("insert into sys_power_menu(tb_type,tb_id,item_id,data_per) values (%d,1,%d,1)", tb_type, item_id));
+            int pm_id = (int) DBFunction.getTableCount("select max(pm_id) from sys_power_menu");
+            for (int k = 0; k < (item_id % 4 < 2 ? FUNS : 2); k++) {
+                DBFunction.executeNonQuery(String.format("insert into sys_power_fun values (%d,%d)", pm_id, (item_id - 1) * FUNS + k + 1));
+            }
+        }
+
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("userCacheService", new UserCacheService() {
+            @Override
+            public String getCacheRemoveItemIds(int user_id) {
+                return StringUtils.joinAsFilter(BLL_UserPower.getUserRemoveItemIds(user_id));
+            }
+        });
+        context.refresh();
+        new Utils_Context().setApplicationContext(context);
+
+        loginUser = new LoginUser();
+        loginUser.setUserId(1);
+        loginUser.setRoleId(1);
+        PermissionSnapshot.invalidate();
+        PermissionSnapshot.get(loginUser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        DBFunction.executeNonQuery("drop view if exists view_menu_fun");
+        DBFunction.executeNonQuery("drop view if exists view_power_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_menu_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_power_menu");
+        DBFunction.executeNonQuery("drop table if exists sys_power_fun");
+        DBFunction.executeNonQuery("drop table if exists sys_role");
+    }
+
+    private int nextItem() {
+        next = next % items + 1;
+        return next;
+    }
+
+    /**
+     * 原getLoginItemPower：每次查询该栏目的功能
+     */
+    @Benchmark
+    public boolean itemQuery() throws Exception {
+        JsonArray array = BLL_UserPower.queryLoginItemPower(String.valueOf(nextItem()), loginUser);
+        return array.size() > 0 && GsonUtils.getObjectValue(array, 0, "item_ids").contains("btn_del");
+    }
+
+    @Benchmark
+    public boolean itemSnapshot() throws Exception {
+        PermissionSnapshot.ItemPower power = PermissionSnapshot.get(loginUser).getItemPower(nextItem());
+        return power != null && power.item_ids.contains("btn_del");
+    }
+
+    /**
+     * 原UserRealm授权信息未缓存时：每次查询用户的控制器权限值
+     */
+    @Benchmark
+    public boolean permissionQuery() {
+        return BLL_UserPower.getUserFunPermissions(loginUser).contains("item" + nextItem() + ":fun2");
+    }
+
+    @Benchmark
+    public boolean permissionSnapshot() throws Exception {
+        return PermissionSnapshot.get(loginUser).getFunPermissions().contains("item" + nextItem() + ":fun2");
+    }
+}
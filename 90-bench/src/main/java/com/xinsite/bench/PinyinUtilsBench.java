@@ -0,0 +1,38 @@
+package com.xinsite.bench;
+
+import com.xinsite.common.uitls.text.PinyinUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PinyinUtils全拼、首字母
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinyinUtilsBench {
+
+    @Param({"4", "32", "256"})
+    public int length;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = BenchData.text(length);
+    }
+
+    @Benchmark
+    public String getFullSpell() {
+        return PinyinUtils.getFullSpell(text);
+    }
+
+    @Benchmark
+    public String getFirstSpell() {
+        return PinyinUtils.getFirstSpell(text);
+    }
+}
@@ -0,0 +1,46 @@
+package com.xinsite.bench;
+
+import com.xinsite.common.uitls.codec.RSAUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RSAUtils公钥加密、私钥解密(登录密码长度)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RSAUtilsBench {
+
+    @Param({"16", "64"})
+    public int length;
+
+    private String publicKey;
+    private String privateKey;
+    private String text;
+    private String cipher;
+
+    @Setup
+    public void setup() {
+        Map<Integer, String> keyMap = RSAUtils.generateKeyPair();
+        publicKey = keyMap.get(0);
+        privateKey = keyMap.get(1);
+        text = BenchData.text(length).replaceAll("[^a-z0-9]", "x");
+        cipher = RSAUtils.encrypt(text, publicKey);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return RSAUtils.encrypt(text, publicKey);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return RSAUtils.decrypt(cipher, privateKey);
+    }
+}
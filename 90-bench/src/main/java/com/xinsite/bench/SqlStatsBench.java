@@ -0,0 +1,66 @@
+package com.xinsite.bench;
+
+import com.xinsite.dal.bean.DBParameter;
+import com.xinsite.dal.dbhelper.NSQLUtils;
+import com.xinsite.dal.dbhelper.SqlStats;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SqlStats.record每条语句的开销：普通语句只计入汇总，慢SQL另放入按耗时的最小堆(折叠常量后的语句、参数、调用方法)；
+ * literal为拼接常量的语句(同BLL_PassWord.initPassword)，需要先折叠常量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlStatsBench {
+
+    @Param({"named", "literal"})
+    public String kind;
+
+    private String sql;
+    private NSQLUtils dbsql;
+    private DBParameter[] params;
+    private int user_id;
+
+    @Setup
+    public void setup() {
+        if (kind.equals("named")) {
+            sql = "update sys_user set pwd_salt=@pwd_salt,password=@password where user_id=@user_id";
+            dbsql = NSQLUtils.get(sql);
+            params = new DBParameter[]{new DBParameter("@pwd_salt", "9f3c2a7be1d04c55"),
+                    new DBParameter("@password", "e10adc3949ba59abbe56e057f20f883e"), new DBParameter("@user_id", 1)};
+        } else {
+            sql = "update sys_user set pwd_salt='9f3c2a7be1d04c55',password='e10adc3949ba59abbe56e057f20f883e' where user_id=";
+        }
+        SqlStats.reset();
+    }
+
+    private String literalSql() {
+        return sql + (user_id++ & 1023);
+    }
+
+    /**
+     * 只计入汇总
+     */
+    @Benchmark
+    public void record() {
+        long start = SqlStats.start();
+        if (dbsql != null) SqlStats.record(dbsql, sql, params, start, false);
+        else SqlStats.record(null, literalSql(), null, start, false);
+    }
+
+    /**
+     * 开始时间提前1秒，按慢SQL记录
+     */
+    @Benchmark
+    public void recordSlow() {
+        long start = SqlStats.start() - 1_000_000_000L;
+        if (dbsql != null) SqlStats.record(dbsql, sql, params, start, false);
+        else SqlStats.record(null, literalSql(), null, start, false);
+    }
+}
@@ -0,0 +1,96 @@
+package com.xinsite.bench;
+
+import com.xinsite.core.bll.design.BLL_Store;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 历史记录保存(锁定tb_info_share后加锁读取上一版本、生成补丁)及还原(关键帧起依次应用补丁)，
+ * 内存数据库H2(MySQL兼容模式，config/application-druid.yml)；lines为表单内容行数；
+ * 结束时输出全部版本按完整内容存储与实际存储(关键帧+补丁)的长度及减少的比例
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreBench {
+    private static final int ITEM_ID = 7;
+    private static final long IDLEAF = 70;
+
+    @Param({"60", "600"})
+    public int lines;
+
+    private int version;
+    private long full_length;  //各版本完整内容的长度合计
+    private int keyframe_id;
+    private int last_id;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists tb_info_share");
+        DBFunction.executeNonQuery("drop table if exists tb_info_store1");
+        DBFunction.executeNonQuery("create table tb_info_share(share_uuid varchar(50),item_id int not null,idleaf bigint not null,title varchar(200)," +
+                "modify_time datetime,modify_records int,sub_table_num int)");
+        DBFunction.executeNonQuery("create table tb_info_store1(store_id bigint auto_increment primary key,share_uuid varchar(50),store_data longtext," +
+                "create_time datetime,opertype varchar(50),user_id int)");
+        DBFunction.executeNonQuery("create index idx_share_uuid on tb_info_store1(share_uuid,store_id)");
+        DBFunction.executeNonQuery("insert into tb_info_share(share_uuid,item_id,idleaf,sub_table_num) values ('bench'," + ITEM_ID + "," + IDLEAF + ",1)");
+        //一个关键帧加上KEYFRAME_INTERVAL-1个补丁
+        for (int i = 0; i < BLL_Store.KEYFRAME_INTERVAL; i++) save();
+        keyframe_id = (int) DBFunction.getTableCount("select min(store_id) from tb_info_store1");
+        last_id = (int) DBFunction.getTableCount("select max(store_id) from tb_info_store1");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        long stored = DBFunction.getTableCount("select sum(length(store_data)) from tb_info_store1");
+        System.out.println(String.format("lines=%d，%d个版本：完整内容%d，实际存储%d，减少%.1f%%", lines, version, full_length, stored,
+                full_length == 0 ? 0 : 100.0 * (full_length - stored) / full_length));
+        DBFunction.executeNonQuery("drop table if exists tb_info_store1");
+        DBFunction.executeNonQuery("drop table if exists tb_info_share");
+    }
+
+    private String content(int version) {
+        StringBuilder sb = new StringBuilder("{\"success\":true,\"rows\":[\n");
+        for (int i = 0; i < lines; i++) {
+            sb.append("{\"field_").append(i).append("\":\"").append(i == version % lines ? "版本" + version : "原始内容" + i).append("\"},\n");
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * 新增一个版本(每次不同用户，不合并)
+     */
+    @Benchmark
+    public boolean save() throws Exception {
+        int v = version++;
+        String store_data = content(v);
+        full_length += store_data.length();
+        DBFunction.startTransaction();
+        try {
+            boolean result = BLL_Store.addHistoryRecord(store_data, ITEM_ID, IDLEAF, 1 + v, "修改");
+            DBFunction.commit();
+            return result;
+        } catch (Exception ex) {
+            DBFunction.rollback();
+            throw ex;
+        }
+    }
+
+    @Benchmark
+    public String restoreKeyframe() throws Exception {
+        return BLL_Store.restoreVersionData(keyframe_id, 1);
+    }
+
+    /**
+     * 关键帧后第KEYFRAME_INTERVAL-1个补丁
+     */
+    @Benchmark
+    public String restoreLastPatch() throws Exception {
+        return BLL_Store.restoreVersionData(last_id, 1);
+    }
+}
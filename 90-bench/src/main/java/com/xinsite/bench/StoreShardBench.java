@@ -0,0 +1,95 @@
+package com.xinsite.bench;
+
+import com.xinsite.core.bll.design.BLL_Store;
+import com.xinsite.core.cache.StoreShardCache;
+import com.xinsite.dal.dbhelper.DBFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 历史记录保存耗时与分表数：shards个已登记的分表(最后一个可写入)，每次新增一条信息并保存第一个版本(取当前分表号)，
+ * 内存数据库H2(MySQL兼容模式，config/application-druid.yml)；分表容量取系统参数默认值(100万条)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreShardBench {
+    private static final int ITEM_ID = 9;
+    private static final long CAPACITY = 1000000L;
+
+    @Param({"1", "32", "256"})
+    public int shards;
+
+    private long idleaf;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dropTables();
+        DBFunction.executeNonQuery("create table sys_config(id int auto_increment primary key,org_id int,item_id int," +
+                "config_key varchar(50),config_value varchar(1000))");
+        DBFunction.executeNonQuery("create table sys_config_version(org_id int primary key,version bigint not null default 0," +
+                "modify_time datetime not null default current_timestamp)");
+        DBFunction.executeNonQuery("create table tb_info_share(share_uuid varchar(50),item_id int not null,idleaf bigint not null,title varchar(200)," +
+                "modify_time datetime,modify_records int,sub_table_num int)");
+        DBFunction.executeNonQuery("create index idx_share_item on tb_info_share(item_id,idleaf)");
+        DBFunction.executeNonQuery("create index idx_info_share_uuid on tb_info_share(share_uuid)");
+        DBFunction.executeNonQuery("create table tb_info_store_shard(shard_num int primary key,row_count bigint not null default 0," +
+                "capacity bigint not null default 0,status int not null default 0,modify_time datetime)");
+        for (int shard_num = 1; shard_num <= shards; shard_num++) {
+            DBFunction.executeNonQuery("create table tb_info_store" + shard_num + "(store_id int auto_increment primary key,share_uuid varchar(50)," +
+                    "store_data longtext,create_time datetime,opertype varchar(50),user_id int)");
+            DBFunction.executeNonQuery("create index idx_share_uuid_" + shard_num + " on tb_info_store" + shard_num + "(share_uuid,store_id)");
+            //前面的分表已写满，最后一个可写入
+            boolean last = shard_num == shards;
+            DBFunction.executeNonQuery(String.format("insert into tb_info_store_shard values (%d,%d,%d,%d,null)", shard_num,
+                    last ? 0 : CAPACITY, CAPACITY, last ? StoreShardCache.STATUS_ACTIVE : StoreShardCache.STATUS_FULL));
+        }
+        StoreShardCache.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dropTables();
+    }
+
+    private void dropTables() throws Exception {
+        DBFunction.executeNonQuery("drop table if exists sys_config");
+        DBFunction.executeNonQuery("drop table if exists sys_config_version");
+        DBFunction.executeNonQuery("drop table if exists tb_info_share");
+        DBFunction.executeNonQuery("drop table if exists tb_info_store_shard");
+        for (int shard_num = 1; shard_num <= shards; shard_num++) {
+            DBFunction.executeNonQuery("drop table if exists tb_info_store" + shard_num);
+        }
+    }
+
+    /**
+     * 新增信息后保存第一个版本(同BLL_Share.addInfoShare在保存信息的事务中)
+     */
+    @Benchmark
+    public boolean saveNewInfo() throws Exception {
+        long id = ++idleaf;
+        DBFunction.executeNonQuery("insert into tb_info_share(share_uuid,item_id,idleaf,sub_table_num) values ('bench-" +
+                id + "'," + ITEM_ID + "," + id + ",0)");
+        DBFunction.startTransaction();
+        try {
+            boolean result = BLL_Store.addHistoryRecord("{\"idleaf\":" + id + "}", ITEM_ID, id, 1, "新增");
+            DBFunction.commit();
+            return result;
+        } catch (Exception ex) {
+            DBFunction.rollback();
+            throw ex;
+        }
+    }
+
+    /**
+     * 只取当前分表号
+     */
+    @Benchmark
+    public int activeShardNum() throws Exception {
+        return StoreShardCache.getActiveShardNum();
+    }
+}
@@ -0,0 +1,98 @@
+package com.xinsite.bench;
+
+import com.xinsite.common.uitls.codec.EncodeUtils;
+import com.xinsite.common.xss.XssFilter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EncodeUtils.xssFilter文本过滤、XssFilter请求包装后读取全部参数、典型表单提交(参数读取两次)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XssBench {
+
+    @Param({"64", "1024", "16384"})
+    public int length;
+
+    private String text;
+    private String xssText;
+    private XssFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletRequest formRequest;
+
+    @Setup
+    public void setup() {
+        text = BenchData.text(length);
+        xssText = BenchData.xssText(length);
+        filter = new XssFilter();
+        filter.enabled = true;
+        request = new MockHttpServletRequest("POST", "/system/user/save");
+        request.setServletPath("/system/user/save");
+        for (int i = 0; i < 20; i++) {
+            request.addParameter("field" + i, i % 4 == 0 ? xssText : text);
+        }
+        formRequest = new MockHttpServletRequest("POST", "/system/user/save");
+        formRequest.setServletPath("/system/user/save");
+        formRequest.addParameter("item_id", "12");
+        formRequest.addParameter("user_id", "1024");
+        formRequest.addParameter("login_name", "zhangsan");
+        formRequest.addParameter("user_name", "张三");
+        formRequest.addParameter("dept_id", "5");
+        formRequest.addParameter("role_id", "3");
+        formRequest.addParameter("email", "zhangsan@xinsite.vip");
+        formRequest.addParameter("phone", "13800000000");
+        formRequest.addParameter("sex", "1");
+        formRequest.addParameter("birthday", "1990-01-01");
+        formRequest.addParameter("isused", "true");
+        formRequest.addParameter("remark", text);
+        formRequest.addParameter("grid_data", "[{\"id\":1,\"text\":\"<b>加粗</b>\"}]");
+    }
+
+    @Benchmark
+    public String xssFilterText() {
+        return EncodeUtils.xssFilter(text);
+    }
+
+    @Benchmark
+    public String xssFilterScript() {
+        return EncodeUtils.xssFilter(xssText);
+    }
+
+    @Benchmark
+    public void filterRequest(final Blackhole bh) throws Exception {
+        FilterChain chain = (req, resp) -> {
+            HttpServletRequest wrapper = (HttpServletRequest) req;
+            Enumeration<String> names = wrapper.getParameterNames();
+            while (names.hasMoreElements()) {
+                bh.consume(wrapper.getParameter(names.nextElement()));
+            }
+        };
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+    }
+
+    @Benchmark
+    public void filterFormPost(final Blackhole bh) throws Exception {
+        FilterChain chain = (req, resp) -> {
+            HttpServletRequest wrapper = (HttpServletRequest) req;
+            for (int n = 0; n < 2; n++) {
+                Enumeration<String> names = wrapper.getParameterNames();
+                while (names.hasMoreElements()) {
+                    bh.consume(wrapper.getParameter(names.nextElement()));
+                }
+            }
+        };
+        filter.doFilter(formRequest, new MockHttpServletResponse(), chain);
+    }
+}
@@ -0,0 +1,44 @@
+package com.xinsite.bench;
+
+import com.xinsite.dal.datasource.DataSourceHolder;
+import com.xinsite.dal.uitls.Utils_Yml;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取配置：每次解析yml文件(原getValue的做法)、读取快照、DataSourceHolder读取主数据源字段
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YmlBench {
+    private static final String LOCATION = "config/application-druid.yml";
+    private static final String KEY = "spring.datasource.druid.master.url";
+
+    @Setup
+    public void setup() {
+        Utils_Yml.getSnapshot(LOCATION);
+        DataSourceHolder.getMasterKey();
+    }
+
+    @Benchmark
+    public String parse() {
+        Properties props = Utils_Yml.getYmlByFileName(LOCATION);
+        return props.getProperty(KEY);
+    }
+
+    @Benchmark
+    public String snapshot() {
+        return Utils_Yml.getSnapshot(LOCATION).get(KEY);
+    }
+
+    @Benchmark
+    public String masterKey() {
+        return DataSourceHolder.getMasterKey();
+    }
+}
@@ -133,6 +133,17 @@ CREATE TABLE `sys_config` (
   PRIMARY KEY (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=48 DEFAULT CHARSET=utf8 COMMENT='系统参数配置表';
 
+-- ----------------------------
+-- Table structure for sys_config_version
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_config_version`;
+CREATE TABLE `sys_config_version` (
+  `org_id`            int(11)           NOT NULL                      COMMENT '机构号Id',
+  `version`           bigint(20)        NOT NULL DEFAULT '0'          COMMENT '配置版本号，修改系统参数配置时加1',
+  `modify_time`       datetime          NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '修改时间',
+  PRIMARY KEY (`org_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='系统参数配置版本表(多个应用实例同步配置缓存)';
+
 -- ----------------------------
 -- Records of sys_config
 -- ----------------------------
@@ -331,7 +342,7 @@ CREATE TABLE `sys_menu` (
   `create_time`       datetime          NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `modify_time`       datetime          DEFAULT NULL                  COMMENT '修改时间',
   PRIMARY KEY (`item_id`)
-) ENGINE=InnoDB AUTO_INCREMENT=106 DEFAULT CHARSET=utf8 COMMENT='系统菜单栏目表';
+) ENGINE=InnoDB AUTO_INCREMENT=108 DEFAULT CHARSET=utf8 COMMENT='系统菜单栏目表';
 
 -- ----------------------------
 -- Records of sys_menu
@@ -366,6 +377,8 @@ INSERT INTO `sys_menu` VALUES ('101', '0', '0', '普通表单生成', '1', 'list
 INSERT INTO `sys_menu` VALUES ('103', '101', '0', '单表对象', '1', 'list', '', null, null, '', 'false', '0', '1', '0', '0', '0', '0', '2020-03-27 03:12:07', '2020-03-27 03:12:07');
 INSERT INTO `sys_menu` VALUES ('104', '101', '0', '多表对象', '2', 'list', '', null, null, '', 'false', '0', '1', '0', '0', '0', '0', '2020-03-27 03:12:22', '2020-03-27 03:12:22');
 INSERT INTO `sys_menu` VALUES ('105', '101', '0', '树形对象', '3', 'list', '', null, null, '', 'false', '0', '1', '0', '0', '0', '0', '2020-03-27 03:12:34', '2020-03-27 03:12:34');
+INSERT INTO `sys_menu` VALUES ('106', '2', '0', 'SQL监控', '5', 'page', 'monitor/sql/index', null, 'monitor:sql:grid', '', 'false', '0', '1', '0', '0', '0', '0', '2020-04-20 09:00:00', '2020-04-20 09:00:00');
+INSERT INTO `sys_menu` VALUES ('107', '2', '0', '请求监控', '6', 'page', 'monitor/request/index', null, 'monitor:request:grid', '', 'false', '0', '1', '0', '0', '0', '0', '2020-04-20 09:00:00', '2020-04-20 09:00:00');
 
 -- ----------------------------
 -- Table structure for sys_menu_fun
@@ -380,7 +393,7 @@ CREATE TABLE `sys_menu_fun` (
   `serialcode`        int(11)           DEFAULT NULL                  COMMENT '排序号',
   `isdel`             int(11)           DEFAULT '0'                   COMMENT '是否删除，0：未删除；1：删除',
   PRIMARY KEY (`fun_id`)
-) ENGINE=InnoDB AUTO_INCREMENT=69 DEFAULT CHARSET=utf8 COMMENT='菜单功能表';
+) ENGINE=InnoDB AUTO_INCREMENT=71 DEFAULT CHARSET=utf8 COMMENT='菜单功能表';
 
 -- ----------------------------
 -- Records of sys_menu_fun
@@ -453,6 +466,8 @@ INSERT INTO `sys_menu_fun` VALUES ('65', '32', '对象修改', 'btn_mod', 'syste
 INSERT INTO `sys_menu_fun` VALUES ('66', '0', '审批修改', 'btn_trial_mod', 'trialmod', '8', '1');
 INSERT INTO `sys_menu_fun` VALUES ('67', '20', '上传附件类型', 'btn_attach', 'system:item:attach', '7', '0');
 INSERT INTO `sys_menu_fun` VALUES ('68', '15', '成员分配', 'btn_member', 'system:member:save', '5', '0');
+INSERT INTO `sys_menu_fun` VALUES ('69', '106', '清空统计', 'btn_clear', 'monitor:sql:clear', '1', '0');
+INSERT INTO `sys_menu_fun` VALUES ('70', '107', '清空统计', 'btn_clear', 'monitor:request:clear', '1', '0');
 
 -- ----------------------------
 -- Table structure for sys_organize
@@ -960,13 +975,32 @@ CREATE TABLE `tb_info_store1` (
   `create_time`       datetime          NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `opertype`          varchar(50)       DEFAULT NULL                  COMMENT '操作类型：新增、修改',
   `user_id`           int(11)           DEFAULT NULL                  COMMENT '操作用户',
-  PRIMARY KEY (`store_id`)
+  PRIMARY KEY (`store_id`),
+  KEY `idx_share_uuid` (`share_uuid`,`store_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='历史记录存储表';
 
 -- ----------------------------
 -- Records of tb_info_store1
 -- ----------------------------
 
+-- ----------------------------
+-- Table structure for tb_info_store_shard
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_info_store_shard`;
+CREATE TABLE `tb_info_store_shard` (
+  `shard_num`         int(11)           NOT NULL                      COMMENT '分表号，tb_info_store{shard_num}',
+  `row_count`         bigint(20)        NOT NULL DEFAULT '0'          COMMENT '记录数(后台定时校正)',
+  `capacity`          bigint(20)        NOT NULL DEFAULT '0'          COMMENT '容量(条)',
+  `status`            int(11)           NOT NULL DEFAULT '0'          COMMENT '0：可写入；1：已写满',
+  `modify_time`       datetime          DEFAULT NULL                  COMMENT '修改时间',
+  PRIMARY KEY (`shard_num`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='历史记录分表登记表';
+
+-- ----------------------------
+-- Records of tb_info_store_shard
+-- ----------------------------
+INSERT INTO `tb_info_store_shard` VALUES ('1', '0', '1000000', '0', null);
+
 -- ----------------------------
 -- Table structure for tb_object_att
 -- ----------------------------
@@ -989,6 +1023,30 @@ CREATE TABLE `tb_object_att` (
 -- Records of tb_object_att
 -- ----------------------------
 
+-- ----------------------------
+-- Table structure for tb_object_file
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_object_file`;
+CREATE TABLE `tb_object_file` (
+  `file_md5`          varchar(32)       NOT NULL                      COMMENT '文件内容MD5',
+  `file_size`         bigint(20)        NOT NULL                      COMMENT '文件大小',
+  `attach_add`        varchar(400)      NOT NULL                      COMMENT '文件地址',
+  `create_time`       datetime          DEFAULT NULL                  COMMENT '创建时间',
+  PRIMARY KEY (`file_md5`,`file_size`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='已上传文件登记(秒传)';
+
+-- ----------------------------
+-- Table structure for tb_object_file_user
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_object_file_user`;
+CREATE TABLE `tb_object_file_user` (
+  `file_md5`          varchar(32)       NOT NULL                      COMMENT '文件内容MD5',
+  `file_size`         bigint(20)        NOT NULL                      COMMENT '文件大小',
+  `user_id`           int(11)           NOT NULL                      COMMENT '完整上传过该文件的用户Id',
+  `create_time`       datetime          DEFAULT NULL                  COMMENT '创建时间',
+  PRIMARY KEY (`file_md5`,`file_size`,`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='已上传文件的上传用户(只限本人秒传)';
+
 -- ----------------------------
 -- View structure for view_flow_item
 -- ----------------------------